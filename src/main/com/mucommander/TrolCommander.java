@@ -37,15 +37,24 @@ import org.slf4j.LoggerFactory;
 
 import com.mucommander.auth.CredentialsManager;
 import com.mucommander.bookmark.file.BookmarkProtocolProvider;
+import com.mucommander.cache.StartupCache;
 import com.mucommander.command.Command;
 import com.mucommander.command.CommandManager;
 import com.mucommander.command.CommandType;
+import com.mucommander.commons.file.ArchiveEntriesCache;
 import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.FileProtocols;
 import com.mucommander.commons.file.icon.impl.SwingFileIconProvider;
 import com.mucommander.commons.file.impl.ftp.FTPProtocolProvider;
+import com.mucommander.commons.file.impl.s3.S3ProtocolProvider;
+import com.mucommander.commons.file.impl.sftp.SFTPFile;
 import com.mucommander.commons.file.impl.smb.SMBProtocolProvider;
+import com.mucommander.commons.file.impl.tar.TarArchiveFile;
+import com.mucommander.commons.io.ParallelBzip2InputStream;
+import com.mucommander.commons.io.SegmentedInputStream;
 import com.mucommander.commons.runtime.OsFamily;
 import com.mucommander.conf.MuConfigurations;
+import com.mucommander.core.FolderListingCache;
 import com.mucommander.conf.MuPreference;
 import com.mucommander.conf.MuPreferences;
 import com.mucommander.extension.ExtensionManager;
@@ -85,6 +94,11 @@ public class TrolCommander {
     private static boolean isLaunching = true;
     /** Launch lock. */
     private static final Object LAUNCH_LOCK = new Object();
+    /** Name of the folder, within the preferences folder, that holds the persistent cache of archive entries. */
+    private static final String ARCHIVE_CACHE_FOLDER_NAME = "archive_cache";
+
+    /** Protocols whose folder listings are cached, see {@link FolderListingCache} */
+    private static final String[] LISTING_CACHE_PROTOCOLS = {FileProtocols.SFTP, FileProtocols.FTP, FileProtocols.WEBDAV, FileProtocols.WEBDAVS, FileProtocols.S3};
 
 
     // - Initialisation ---------------------------------------------------------
@@ -380,6 +394,22 @@ public class TrolCommander {
         }
     }
 
+    private static class SaveStartupCacheTask extends LauncherTask {
+        SaveStartupCacheTask(LauncherCmdHelper helper, LauncherTask... depends) {
+            super("save_startup_cache", helper, depends);
+        }
+
+        @Override
+        void run() throws Exception {
+            // Store what has been parsed at startup so that the next sessions don't need to parse it again
+            try {
+                StartupCache.save();
+            } catch (Exception e) {
+                getLogger().info("Could not save the startup cache", e);
+            }
+        }
+    }
+
     private static class StartBonjourTask extends LauncherTask {
         StartBonjourTask(LauncherCmdHelper helper, LauncherTask... depends) {
             super("bonjour", helper, depends);
@@ -515,6 +545,36 @@ public class TrolCommander {
             // the servers to decide whether to show them.
             FTPProtocolProvider.setForceHiddenFilesListing(MuConfigurations.getPreferences().getVariable(MuPreference.LIST_HIDDEN_FILES, MuPreferences.DEFAULT_LIST_HIDDEN_FILES));
 
+            // Upload S3 files of unknown length part by part, several parts at a time
+            S3ProtocolProvider.setMultipartPartSize(MuConfigurations.getPreferences().getVariable(MuPreference.S3_MULTIPART_PART_SIZE, MuPreferences.DEFAULT_S3_MULTIPART_PART_SIZE) * 1024 * 1024);
+            S3ProtocolProvider.setMultipartThreads(MuConfigurations.getPreferences().getVariable(MuPreference.S3_MULTIPART_THREADS, MuPreferences.DEFAULT_S3_MULTIPART_THREADS));
+
+            // Keep several SFTP read and write requests outstanding so that transfers are not bound by the round-trip time
+            SFTPFile.setPipelineBlockSize(MuConfigurations.getPreferences().getVariable(MuPreference.SFTP_PIPELINE_BLOCK_SIZE, MuPreferences.DEFAULT_SFTP_PIPELINE_BLOCK_SIZE) * 1024);
+            SFTPFile.setPipelineWindow(MuConfigurations.getPreferences().getVariable(MuPreference.SFTP_PIPELINE_WINDOW, MuPreferences.DEFAULT_SFTP_PIPELINE_WINDOW));
+
+            // Download large HTTP and S3 files with several concurrent range requests
+            SegmentedInputStream.setDefaultSegmentSize(MuConfigurations.getPreferences().getVariable(MuPreference.SEGMENTED_DOWNLOAD_SEGMENT_SIZE, MuPreferences.DEFAULT_SEGMENTED_DOWNLOAD_SEGMENT_SIZE) * 1024 * 1024);
+            SegmentedInputStream.setDefaultConcurrency(MuConfigurations.getPreferences().getVariable(MuPreference.SEGMENTED_DOWNLOAD_CONCURRENCY, MuPreferences.DEFAULT_SEGMENTED_DOWNLOAD_CONCURRENCY));
+            SegmentedInputStream.setDefaultRetries(MuConfigurations.getPreferences().getVariable(MuPreference.SEGMENTED_DOWNLOAD_RETRIES, MuPreferences.DEFAULT_SEGMENTED_DOWNLOAD_RETRIES));
+
+            // Store the entries of listed archives so that they don't need to be parsed again in the next sessions
+            ArchiveEntriesCache.setMaxSize(MuConfigurations.getPreferences().getVariable(MuPreference.ARCHIVE_ENTRIES_CACHE_SIZE, MuPreferences.DEFAULT_ARCHIVE_ENTRIES_CACHE_SIZE) * 1024L * 1024L);
+            ArchiveEntriesCache.setCacheFolder(PlatformManager.getPreferencesFolder().getChild(ARCHIVE_CACHE_FOLDER_NAME));
+            // Index large tar.gz archives so that their entries can be read without decompressing all that precedes them
+            TarArchiveFile.setGzipIndexSpan(MuConfigurations.getPreferences().getVariable(MuPreference.ARCHIVE_GZIP_INDEX_SPAN, MuPreferences.DEFAULT_ARCHIVE_GZIP_INDEX_SPAN) * 1024L * 1024L);
+            // Decompress the blocks of bzip2 archives on several threads
+            ParallelBzip2InputStream.setDefaultThreads(MuConfigurations.getPreferences().getVariable(MuPreference.ARCHIVE_DECOMPRESSION_THREADS, MuPreferences.DEFAULT_ARCHIVE_DECOMPRESSION_THREADS));
+
+            // Serve the listings of remote folders from memory when navigating back to them, each protocol has
+            // its own time-to-live and memory budget
+            for (String protocol : LISTING_CACHE_PROTOCOLS) {
+                String section = MuPreferences.LISTING_CACHE_SECTION + '.' + protocol + '.';
+                int ttl = MuConfigurations.getPreferences().getVariable(section + MuPreferences.LISTING_CACHE_TTL, MuPreferences.DEFAULT_LISTING_CACHE_TTL);
+                int maxSize = MuConfigurations.getPreferences().getVariable(section + MuPreferences.LISTING_CACHE_MAX_SIZE, MuPreferences.DEFAULT_LISTING_CACHE_MAX_SIZE);
+                FolderListingCache.setLimits(protocol, ttl * 1000L, maxSize * 1024L);
+            }
+
 //            FileFactory.registerProtocolFile();
             // Use CredentialsManager for file URL authentication
             FileFactory.setDefaultAuthenticator(CredentialsManager.getAuthenticator());
@@ -818,6 +878,7 @@ public class TrolCommander {
             LauncherTask taskShowSetupWindow = new ShowSetupWindowTask(helper, taskLoadConfigs);
             LauncherTask taskLoadShellHistory = new LoadShellHistoryTask(helper);
             LauncherTask taskDisposeSplash = new DisposeSplashTask(helper, taskShowSplash, taskCreateWindow);
+            LauncherTask taskSaveStartupCache = new SaveStartupCacheTask(helper, taskCreateWindow, taskLoadDict);
             LauncherTask taskRegisterArchives = new RegisterArchiveProtocolsTask(helper);
             LauncherTask taskRegisterNetwork = new RegisterNetworkProtocolsTask(helper);
             LauncherTask taskRegisterOtherProtocols = new RegisterOtherProtocolsTask(helper);
@@ -849,6 +910,7 @@ public class TrolCommander {
             tasks.add(enableNotificationsTask);
             tasks.add(taskInitDesktop);
             tasks.add(taskDisposeSplash);
+            tasks.add(taskSaveStartupCache);
             tasks.add(taskShowSetupWindow);
             tasks.add(taskRegisterArchives);
             tasks.add(taskRegisterNetwork);
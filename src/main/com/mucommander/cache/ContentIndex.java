@@ -0,0 +1,458 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2017 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.cache;
+
+import com.mucommander.PlatformManager;
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
+import com.mucommander.conf.MuPreferencesAPI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Persistent trigram index of file contents, used by file search to skip files that can't contain the searched data.
+ * <p>
+ * For every indexed file the set of distinct byte trigrams of its content is stored, keyed on the file path and
+ * validated by the file size and date. Files are indexed from the bytes read while they're searched, so stale
+ * entries are rebuilt the next time a search scans the file without finding a match.
+ * The index is kept in a single binary file, its location, size cap and age limit are configurable in preferences.
+ * When the size cap is exceeded, the least recently used entries are evicted.
+ * <p>
+ * ASCII letters are indexed in lower case, so the same index serves case-sensitive and case-insensitive searches.
+ */
+public class ContentIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContentIndex.class);
+
+    private static final String INDEX_FILE_NAME = "content_index.bin";
+
+    private static final int MAGIC = 0x54434958;
+    private static final int FORMAT_VERSION = 1;
+
+    /** Files bigger than this size aren't indexed */
+    private static final long MAX_FILE_SIZE = 32 * 1024 * 1024;
+
+    /** Files having more distinct trigrams than this are considered to contain anything */
+    private static final int MAX_TRIGRAMS = 64 * 1024;
+
+    /** Estimated memory used by an entry, in addition to its path and trigrams */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private static final ThreadLocal<BitSet> trigramsSet = ThreadLocal.withInitial(() -> new BitSet(1 << 24));
+
+    private static ContentIndex instance;
+
+    private final AbstractFile indexFile;
+    private final long maxSize;
+    private final long maxAge;
+
+    /** Entries in access order, the first one is the least recently used */
+    private final Map<String, Entry> entries = new LinkedHashMap<>(1024, 0.75f, true);
+
+    /** Estimated size of the index in bytes */
+    private long size;
+
+    private boolean modified;
+
+    private static class Entry {
+        final long fileSize;
+        final long fileDate;
+        long lastAccess;
+        /** sorted trigrams, <code>null</code> if the file has too many trigrams to be pruned */
+        final int[] trigrams;
+
+        Entry(long fileSize, long fileDate, long lastAccess, int[] trigrams) {
+            this.fileSize = fileSize;
+            this.fileDate = fileDate;
+            this.lastAccess = lastAccess;
+            this.trigrams = trigrams;
+        }
+
+        boolean containsAll(int[] query) {
+            if (trigrams == null) {
+                return true;
+            }
+            for (int trigram : query) {
+                if (Arrays.binarySearch(trigrams, trigram) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long getSize(String path) {
+            return ENTRY_OVERHEAD + 2 * path.length() + (trigrams == null ? 0 : 4 * trigrams.length);
+        }
+    }
+
+
+    ContentIndex(AbstractFile indexFile, long maxSize, long maxAge) {
+        this.indexFile = indexFile;
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Returns the content index configured in preferences. A new instance is loaded whenever the configuration
+     * has changed since the last call.
+     *
+     * @return the content index
+     * @throws IOException if the index location can't be resolved
+     */
+    public static synchronized ContentIndex getInstance() throws IOException {
+        MuPreferencesAPI prefs = MuConfigurations.getPreferences();
+        String location = prefs.getVariable(MuPreference.FIND_FILE_INDEX_LOCATION, MuPreferences.DEFAULT_FIND_FILE_INDEX_LOCATION);
+        AbstractFile folder = location.isEmpty() ? PlatformManager.getPreferencesFolder() : FileFactory.getFile(location);
+        if (folder == null) {
+            throw new IOException("Invalid index location: " + location);
+        }
+        AbstractFile file = folder.getChild(INDEX_FILE_NAME);
+        long maxSize = prefs.getVariable(MuPreference.FIND_FILE_INDEX_MAX_SIZE, MuPreferences.DEFAULT_FIND_FILE_INDEX_MAX_SIZE) * 1024L * 1024L;
+        long maxAge = prefs.getVariable(MuPreference.FIND_FILE_INDEX_MAX_AGE, MuPreferences.DEFAULT_FIND_FILE_INDEX_MAX_AGE) * DAY;
+
+        if (instance == null || !instance.indexFile.equals(file) || instance.maxSize != maxSize || instance.maxAge != maxAge) {
+            if (instance != null) {
+                instance.save();
+            }
+            instance = new ContentIndex(file, maxSize, maxAge);
+            instance.load();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the trigrams of the given data in the form expected by {@link #mayContain(AbstractFile, int[])}.
+     *
+     * @param data searched data
+     * @return sorted distinct trigrams, <code>null</code> if data is too short to be looked up in the index
+     */
+    public static int[] getTrigrams(byte[] data) {
+        if (data == null || data.length < 3) {
+            return null;
+        }
+        int[] result = new int[data.length - 2];
+        int trigram = 0;
+        for (int i = 0; i < data.length; i++) {
+            trigram = ((trigram << 8) | fold(data[i])) & 0xffffff;
+            if (i >= 2) {
+                result[i - 2] = trigram;
+            }
+        }
+        Arrays.sort(result);
+        int count = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (i == 0 || result[i] != result[count - 1]) {
+                result[count++] = result[i];
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Lower case ASCII letters
+     */
+    private static int fold(byte b) {
+        int c = b & 0xff;
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    /**
+     * Checks whether the given file may contain data having the specified trigrams. Files that are missing from
+     * the index or have changed since they were indexed may contain anything, they're indexed while they're searched
+     * through the stream returned by {@link #createIndexer(AbstractFile)}.
+     *
+     * @param file file to check
+     * @param query trigrams returned by {@link #getTrigrams(byte[])}
+     * @return <code>false</code> if the file can't contain the data, <code>true</code> if it has to be searched
+     */
+    public boolean mayContain(AbstractFile file, int[] query) {
+        Entry entry = getEntry(file);
+        if (entry == null) {
+            return true;
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return entry.containsAll(query);
+    }
+
+    /**
+     * Returns an indexer collecting the trigrams of the given file while it's searched, or <code>null</code> if
+     * the file is already indexed or is too big to be indexed.
+     *
+     * @param file file to index
+     * @return the file indexer, <code>null</code> if the file doesn't need to be indexed
+     */
+    public Indexer createIndexer(AbstractFile file) {
+        if (getEntry(file) != null) {
+            return null;
+        }
+        long fileSize = file.getSize();
+        if (fileSize > MAX_FILE_SIZE || fileSize < 0) {
+            return null;
+        }
+        return new Indexer(file.getAbsolutePath(), fileSize, file.getLastModifiedDate());
+    }
+
+    /**
+     * Returns the up-to-date entry of the given file, a stale entry is removed.
+     */
+    private synchronized Entry getEntry(AbstractFile file) {
+        String path = file.getAbsolutePath();
+        Entry entry = entries.get(path);
+        if (entry != null && (entry.fileSize != file.getSize() || entry.fileDate != file.getLastModifiedDate())) {
+            remove(path);
+            entry = null;
+        }
+        return entry;
+    }
+
+    /**
+     * Collects the trigrams of a file from the bytes read by the search, so that the file is read only once.
+     * The file is added to the index by {@link #finish()} only if it has been read entirely.
+     */
+    public class Indexer {
+        private final String path;
+        private final long fileSize;
+        private final long fileDate;
+        private final BitSet set = trigramsSet.get();
+        private int trigram;
+        private long pos;
+        private boolean eof;
+        private boolean skipped;
+
+        private Indexer(String path, long fileSize, long fileDate) {
+            this.path = path;
+            this.fileSize = fileSize;
+            this.fileDate = fileDate;
+        }
+
+        /**
+         * Returns a stream collecting the trigrams of the bytes read from the given stream of the indexed file.
+         *
+         * @param in stream of the indexed file
+         * @return a stream reading from <code>in</code>
+         */
+        public InputStream wrap(InputStream in) {
+            return new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b < 0) {
+                        eof = true;
+                    } else {
+                        add((byte)b);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int read = super.read(b, off, len);
+                    if (read < 0) {
+                        eof = true;
+                    }
+                    for (int i = 0; i < read; i++) {
+                        add(b[off + i]);
+                    }
+                    return read;
+                }
+
+                @Override
+                public long skip(long n) throws IOException {
+                    skipped = true;
+                    return super.skip(n);
+                }
+            };
+        }
+
+        private void add(byte b) {
+            trigram = ((trigram << 8) | fold(b)) & 0xffffff;
+            if (++pos >= 3) {
+                set.set(trigram);
+            }
+        }
+
+        /**
+         * Adds the file to the index if it has been read entirely, the collected trigrams are discarded otherwise.
+         * Must always be called, by the thread that created the indexer, once the search of the file is over.
+         */
+        public void finish() {
+            if (!eof || skipped || pos != fileSize) {
+                set.clear();
+                return;
+            }
+            int count = set.cardinality();
+            int[] trigrams = null;
+            if (count <= MAX_TRIGRAMS) {
+                trigrams = new int[count];
+                int index = 0;
+                for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+                    trigrams[index++] = i;
+                    set.clear(i);
+                }
+            } else {
+                set.clear();
+            }
+            Entry entry = new Entry(fileSize, fileDate, System.currentTimeMillis(), trigrams);
+            synchronized (ContentIndex.this) {
+                put(path, entry);
+            }
+        }
+    }
+
+    private void put(String path, Entry entry) {
+        Entry old = entries.put(path, entry);
+        if (old != null) {
+            size -= old.getSize(path);
+        }
+        size += entry.getSize(path);
+        modified = true;
+    }
+
+    private void remove(String path) {
+        Entry old = entries.remove(path);
+        if (old != null) {
+            size -= old.getSize(path);
+            modified = true;
+        }
+    }
+
+    /**
+     * Removes entries not accessed for longer than the maximum age, then least recently used entries
+     * until the index fits in its size cap.
+     */
+    private void evict() {
+        long oldest = System.currentTimeMillis() - maxAge;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> e = iterator.next();
+            if (e.getValue().lastAccess >= oldest && size <= maxSize) {
+                continue;
+            }
+            size -= e.getValue().getSize(e.getKey());
+            iterator.remove();
+            modified = true;
+        }
+    }
+
+    /**
+     * Writes the index to disk if it has been modified since it was loaded.
+     */
+    public synchronized void save() {
+        evict();
+        if (!modified) {
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(indexFile.getOutputStream()))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(entries.size());
+            // Entries are written in access order, so the order is preserved on load
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(entry.fileSize);
+                out.writeLong(entry.fileDate);
+                out.writeLong(entry.lastAccess);
+                if (entry.trigrams == null) {
+                    out.writeInt(-1);
+                    continue;
+                }
+                out.writeInt(entry.trigrams.length);
+                int last = 0;
+                for (int trigram : entry.trigrams) {
+                    writeVarInt(out, trigram - last);
+                    last = trigram;
+                }
+            }
+            modified = false;
+        } catch (IOException e) {
+            LOGGER.info("Can't save content index to " + indexFile, e);
+        }
+    }
+
+    void load() {
+        try {
+            if (!indexFile.exists()) {
+                return;
+            }
+        } catch (Exception e) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(indexFile.getInputStream()))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                LOGGER.info("Ignoring content index of unknown format " + indexFile);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long fileSize = in.readLong();
+                long fileDate = in.readLong();
+                long lastAccess = in.readLong();
+                int length = in.readInt();
+                int[] trigrams = null;
+                if (length >= 0) {
+                    trigrams = new int[length];
+                    int last = 0;
+                    for (int j = 0; j < length; j++) {
+                        last += readVarInt(in);
+                        trigrams[j] = last;
+                    }
+                }
+                put(path, new Entry(fileSize, fileDate, lastAccess, trigrams));
+            }
+        } catch (IOException e) {
+            LOGGER.info("Can't load content index from " + indexFile, e);
+            entries.clear();
+            size = 0;
+        }
+        modified = false;
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+}
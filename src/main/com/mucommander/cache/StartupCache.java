@@ -0,0 +1,433 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2017 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.cache;
+
+import com.mucommander.PlatformManager;
+import com.mucommander.RuntimeConstants;
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.io.StreamUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.KeyStroke;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Snapshot of data parsed at startup, such as the current theme, the action keymap, the toolbar and command bar
+ * descriptions and the dictionary, which spares parsing their source files again in every session.
+ *
+ * <p>Entries are stored in a single file of the preferences folder, which is read at once the first time an entry
+ * is requested. Each entry is keyed by a name and holds the data written by its owner along with a signature of the
+ * files it was parsed from: their path, date, size and, for small files, MD5 hash. An entry is returned only if its
+ * source files still have the same date and size, or the same hash if only their date has changed. The whole cache is
+ * discarded when the application version changes, as the way data is parsed and stored may have changed too.</p>
+ *
+ * <p>The cache is written by {@link #save()} if entries have been added or updated, the owners of the entries are
+ * expected to parse their source files whenever an entry is missing. The signature of the source files is taken by
+ * {@link #sign(String, AbstractFile...)} before they're parsed, so that a file changed in the meantime doesn't get
+ * stored with data parsed from its previous contents.</p>
+ *
+ * @author Oleg Trifonov
+ */
+public class StartupCache {
+    private static Logger logger;
+
+    private static final int MAGIC = 0x53544348;
+    private static final int FORMAT_VERSION = 1;
+
+    /** Name of the cache file within the preferences folder */
+    private static final String CACHE_FILE_NAME = "startup.cache";
+
+    /** Source files larger than this are validated by their date and size only, hashing them would be too costly */
+    private static final long MAX_HASHED_SIZE = 1024 * 1024;
+
+    /** Cache file, <code>null</code> for the default one */
+    private static AbstractFile cacheFile;
+
+    /** Cached entries by key, <code>null</code> until the cache file has been read */
+    private static Map<String, Entry> entries;
+
+    /** Whether entries have changed since the cache file was read */
+    private static boolean modified;
+
+    private StartupCache() {
+    }
+
+    /**
+     * Sets the file where the cache is stored, the file is read again the next time an entry is requested.
+     * By default, this file is {@link #CACHE_FILE_NAME} within the preferences folder.
+     *
+     * @param file the cache file, <code>null</code> for the default one
+     */
+    public static synchronized void setCacheFile(AbstractFile file) {
+        cacheFile = file;
+        entries = null;
+        modified = false;
+    }
+
+    private static AbstractFile getCacheFile() throws IOException {
+        if (cacheFile == null) {
+            return PlatformManager.getPreferencesFolder().getChild(CACHE_FILE_NAME);
+        }
+        return cacheFile;
+    }
+
+    /**
+     * Returns the data of the given entry, <code>null</code> if there is none or if its source files have changed
+     * since it was stored.
+     *
+     * @param key the entry's key
+     * @param sources the files the entry's data is parsed from
+     * @return the entry's data, <code>null</code> if the entry is missing or out of date
+     */
+    public static synchronized byte[] get(String key, AbstractFile... sources) {
+        Entry entry = getEntries().get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.sources.length == sources.length) {
+            boolean valid = true;
+            for (int i = 0; i < sources.length && valid; i++) {
+                valid = entry.sources[i].validate(sources[i]);
+            }
+            if (valid) {
+                return entry.data;
+            }
+        }
+        getLogger().debug("Startup cache entry " + key + " is out of date");
+        entries.remove(key);
+        modified = true;
+        return null;
+    }
+
+    /**
+     * Returns the signature of the files an entry is about to be parsed from, to be passed to
+     * {@link #put(String, byte[], Signature)} along with the parsed data.
+     *
+     * @param key the entry's key
+     * @param sources the files the entry's data is parsed from
+     * @return the signature of the files, <code>null</code> if it can't be computed
+     */
+    public static Signature sign(String key, AbstractFile... sources) {
+        Source[] signatures = new Source[sources.length];
+        try {
+            for (int i = 0; i < sources.length; i++) {
+                signatures[i] = new Source(sources[i]);
+            }
+        } catch (IOException e) {
+            getLogger().info("Failed to compute the signature of startup cache entry " + key, e);
+            return null;
+        }
+        return new Signature(signatures);
+    }
+
+    /**
+     * Stores the data of the given entry, replacing the existing one if any. Nothing is stored if the signature of
+     * its source files couldn't be computed.
+     *
+     * @param key the entry's key
+     * @param data the entry's data
+     * @param signature the signature of the files the entry's data was parsed from, taken before parsing them
+     */
+    public static synchronized void put(String key, byte[] data, Signature signature) {
+        if (signature == null) {
+            return;
+        }
+        getEntries().put(key, new Entry(signature.sources, data));
+        modified = true;
+    }
+
+    /**
+     * Writes the cache file if entries have been added, updated or removed since it was read.
+     *
+     * @throws IOException if an error occurred while writing the cache file
+     */
+    public static synchronized void save() throws IOException {
+        if (!modified) {
+            getLogger().debug("Startup cache not modified, not saving");
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(getCacheFile().getOutputStream()))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(getApplicationVersion());
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                out.writeUTF(e.getKey());
+                e.getValue().write(out);
+            }
+        }
+        modified = false;
+    }
+
+    private static Map<String, Entry> getEntries() {
+        if (entries == null) {
+            entries = new LinkedHashMap<>();
+            try {
+                load();
+            } catch (Exception e) {
+                getLogger().info("Failed to read the startup cache, discarding it", e);
+                entries.clear();
+                modified = true;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Reads the whole cache file into memory, then its entries.
+     */
+    private static void load() throws IOException {
+        AbstractFile file = getCacheFile();
+        if (!file.exists()) {
+            return;
+        }
+        byte bytes[] = new byte[(int)file.getSize()];
+        try (InputStream in = file.getInputStream()) {
+            StreamUtils.readFully(in, bytes);
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !getApplicationVersion().equals(in.readUTF())) {
+            getLogger().debug("Startup cache was written by another version, discarding it");
+            modified = true;
+            return;
+        }
+        int nbEntries = in.readInt();
+        for (int i = 0; i < nbEntries; i++) {
+            String key = in.readUTF();
+            entries.put(key, Entry.read(in));
+        }
+    }
+
+    /**
+     * Writes a string that may be <code>null</code>, to be read by {@link #readString(DataInput)}.
+     *
+     * @param out where to write the string
+     * @param s the string to write, may be <code>null</code>
+     * @throws IOException if an I/O error occurred
+     */
+    public static void writeString(DataOutput out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutput, String)}.
+     *
+     * @param in where to read the string from
+     * @return the string, may be <code>null</code>
+     * @throws IOException if an I/O error occurred
+     */
+    public static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Writes a keystroke that may be <code>null</code>, to be read by {@link #readKeyStroke(DataInput)}.
+     *
+     * @param out where to write the keystroke
+     * @param keyStroke the keystroke to write, may be <code>null</code>
+     * @throws IOException if an I/O error occurred
+     */
+    public static void writeKeyStroke(DataOutput out, KeyStroke keyStroke) throws IOException {
+        writeString(out, keyStroke == null ? null : keyStroke.toString());
+    }
+
+    /**
+     * Reads a keystroke written by {@link #writeKeyStroke(DataOutput, KeyStroke)}.
+     *
+     * @param in where to read the keystroke from
+     * @return the keystroke, may be <code>null</code>
+     * @throws IOException if an I/O error occurred or the keystroke couldn't be resolved
+     */
+    public static KeyStroke readKeyStroke(DataInput in) throws IOException {
+        String s = readString(in);
+        if (s == null) {
+            return null;
+        }
+        KeyStroke keyStroke = KeyStroke.getKeyStroke(s);
+        if (keyStroke == null) {
+            throw new IOException("Invalid keystroke: " + s);
+        }
+        return keyStroke;
+    }
+
+    private static String getApplicationVersion() {
+        return RuntimeConstants.VERSION + ' ' + RuntimeConstants.BUILD_DATE;
+    }
+
+    private static byte[] computeHash(AbstractFile file) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        byte buffer[] = new byte[8192];
+        try (InputStream in = file.getInputStream()) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                md.update(buffer, 0, n);
+            }
+        }
+        return md.digest();
+    }
+
+    private static Logger getLogger() {
+        if (logger == null) {
+            logger = LoggerFactory.getLogger(StartupCache.class);
+        }
+        return logger;
+    }
+
+
+    /**
+     * Signature of the files an entry is parsed from, returned by {@link #sign(String, AbstractFile...)}.
+     */
+    public static final class Signature {
+        private final Source sources[];
+
+        private Signature(Source sources[]) {
+            this.sources = sources;
+        }
+    }
+
+
+    /**
+     * Signature of a file an entry was parsed from.
+     */
+    private static class Source {
+        private final String path;
+        private long date;
+        private final long size;
+        /** MD5 hash of the file, <code>null</code> if the file is too large to be hashed */
+        private final byte hash[];
+
+        Source(AbstractFile file) throws IOException {
+            this.path = file.getAbsolutePath();
+            this.date = file.getLastModifiedDate();
+            this.size = file.getSize();
+            this.hash = size <= MAX_HASHED_SIZE ? computeHash(file) : null;
+        }
+
+        private Source(String path, long date, long size, byte hash[]) {
+            this.path = path;
+            this.date = date;
+            this.size = size;
+            this.hash = hash;
+        }
+
+        /**
+         * Returns <code>true</code> if the given file is this source and hasn't changed. A file whose date has
+         * changed but not its contents is still valid, its new date is kept.
+         */
+        boolean validate(AbstractFile file) {
+            if (!path.equals(file.getAbsolutePath()) || !file.exists() || file.getSize() != size) {
+                return false;
+            }
+            long fileDate = file.getLastModifiedDate();
+            if (fileDate == date) {
+                return true;
+            }
+            if (hash == null) {
+                return false;
+            }
+            try {
+                if (!Arrays.equals(hash, computeHash(file))) {
+                    return false;
+                }
+            } catch (IOException e) {
+                return false;
+            }
+            date = fileDate;
+            modified = true;
+            return true;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(path);
+            out.writeLong(date);
+            out.writeLong(size);
+            out.writeShort(hash == null ? 0 : hash.length);
+            if (hash != null) {
+                out.write(hash);
+            }
+        }
+
+        static Source read(DataInputStream in) throws IOException {
+            String path = in.readUTF();
+            long date = in.readLong();
+            long size = in.readLong();
+            int hashLength = in.readShort();
+            byte hash[] = null;
+            if (hashLength > 0) {
+                hash = new byte[hashLength];
+                in.readFully(hash);
+            }
+            return new Source(path, date, size, hash);
+        }
+    }
+
+
+    /**
+     * Cached data and the signatures of the files it was parsed from.
+     */
+    private static class Entry {
+        private final Source sources[];
+        private final byte data[];
+
+        Entry(Source sources[], byte data[]) {
+            this.sources = sources;
+            this.data = data;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(sources.length);
+            for (Source source : sources) {
+                source.write(out);
+            }
+            out.writeInt(data.length);
+            out.write(data);
+        }
+
+        static Entry read(DataInputStream in) throws IOException {
+            Source sources[] = new Source[in.readInt()];
+            for (int i = 0; i < sources.length; i++) {
+                sources[i] = Source.read(in);
+            }
+            byte data[] = new byte[in.readInt()];
+            in.readFully(data);
+            return new Entry(sources, data);
+        }
+    }
+}
@@ -25,10 +25,10 @@ import com.mucommander.commons.file.impl.ProxyFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.swing.tree.DefaultMutableTreeNode;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Vector;
 import java.util.WeakHashMap;
@@ -56,7 +56,8 @@ import java.util.WeakHashMap;
  * ones at the top level but also the ones nested one of several levels below. Using this list of entries, it creates
  * a tree to map the structure of the archive and list the content of any particular directory within the archive.
  * This tree is recreated (<code>getEntryIterator()</code> is called again) only if the archive file has changed, i.e.
- * if its date has changed since the tree was created.
+ * if its date has changed since the tree was created. Archives supporting it are listed from the persistent
+ * {@link ArchiveEntriesCache} when their entries were stored in a previous session.
  *
  * <p>Files returned by the <code>ls()</code> are {@link AbstractArchiveEntryFile} instances which use an {@link ArchiveEntry}
  * object to retrieve the entry's attributes. In turn, these <code>AbstractArchiveEntryFile</code> instances query the
@@ -115,11 +116,31 @@ public abstract class AbstractArchiveFile extends ProxyFile {
         archiveEntryFiles = new WeakHashMap<>();
 
         long start = System.currentTimeMillis();
+        boolean cacheable = isEntriesCacheable() && ArchiveEntriesCache.isEnabled();
+        if (cacheable) {
+            List<ArchiveEntry> cachedEntries = ArchiveEntriesCache.load(this);
+            if (cachedEntries != null) {
+                for (ArchiveEntry entry : cachedEntries) {
+                    treeRoot.addArchiveEntry(entry);
+                }
+
+                getLogger().info("entries tree loaded from cache in "+(System.currentTimeMillis()-start)+" ms");
+
+                this.entryTreeRoot = treeRoot;
+                declareEntriesTreeUpToDate();
+                return;
+            }
+        }
+
+        List<ArchiveEntry> allEntries = cacheable ? new ArrayList<>() : null;
         ArchiveEntryIterator entries = getEntryIterator();
         try {
             ArchiveEntry entry;
             while ((entry = entries.nextEntry()) != null) {
                 treeRoot.addArchiveEntry(entry);
+                if (allEntries != null) {
+                    allEntries.add(entry);
+                }
             }
 
             getLogger().info("entries tree created in "+(System.currentTimeMillis()-start)+" ms");
@@ -134,6 +155,10 @@ public abstract class AbstractArchiveFile extends ProxyFile {
                 // Not much we can do about it
             }
         }
+
+        if (allEntries != null) {
+            ArchiveEntriesCache.store(this, allEntries);
+        }
     }
 
     /**
@@ -185,11 +210,10 @@ public abstract class AbstractArchiveFile extends ProxyFile {
      */
     protected void removeFromEntriesTree(ArchiveEntry entry) throws IOException {
         checkEntriesTree();
-        DefaultMutableTreeNode entryNode = entryTreeRoot.findEntryNode(entry.getPath());
+        ArchiveEntryNode entryNode = entryTreeRoot.findEntryNode(entry.getPath());
 
-        if(entryNode!=null) {
-            DefaultMutableTreeNode parentNode = (DefaultMutableTreeNode)entryNode.getParent();
-            parentNode.remove(entryNode);
+        if(entryNode!=null && entryNode.getParent()!=null) {
+            entryNode.getParent().remove(entryNode);
         }
     }
 
@@ -217,7 +241,7 @@ public abstract class AbstractArchiveFile extends ProxyFile {
             throw new IOException();
         }
 
-        DefaultMutableTreeNode matchNode = entryTreeRoot.findEntryNode(entryFile.getEntry().getPath());
+        ArchiveEntryNode matchNode = entryTreeRoot.findEntryNode(entryFile.getEntry().getPath());
         if (matchNode == null) {
             throw new IOException();
         }
@@ -231,7 +255,7 @@ public abstract class AbstractArchiveFile extends ProxyFile {
      * @throws UnsupportedFileOperationException if {@link FileOperation#READ_FILE} operations are not supported by the
      * underlying file protocol.
      */
-    private AbstractFile[] ls(DefaultMutableTreeNode treeNode, AbstractFile parentFile, FilenameFilter filenameFilter, FileFilter fileFilter) throws IOException {
+    private AbstractFile[] ls(ArchiveEntryNode treeNode, AbstractFile parentFile, FilenameFilter filenameFilter, FileFilter fileFilter) throws IOException {
         AbstractFile files[];
         int nbChildren = treeNode.getChildCount();
 
@@ -239,15 +263,16 @@ public abstract class AbstractArchiveFile extends ProxyFile {
         if(filenameFilter==null) {
             files = new AbstractFile[nbChildren];
 
-            for(int c=0; c<nbChildren; c++) {
-                files[c] = getArchiveEntryFile((ArchiveEntry)(((DefaultMutableTreeNode)treeNode.getChildAt(c)).getUserObject()), parentFile);
+            int c = 0;
+            for(ArchiveEntryNode childNode : treeNode.getChildren()) {
+                files[c++] = getArchiveEntryFile(childNode.getEntry(), parentFile);
             }
         }
         // Use provided FilenameFilter and temporarily store created entry files that match the filter in a Vector
         else {
             List<AbstractFile> filesV = new Vector<>();
-            for(int c=0; c<nbChildren; c++) {
-                ArchiveEntry entry = (ArchiveEntry)(((DefaultMutableTreeNode)treeNode.getChildAt(c)).getUserObject());
+            for(ArchiveEntryNode childNode : treeNode.getChildren()) {
+                ArchiveEntry entry = childNode.getEntry();
                 if(!filenameFilter.accept(entry.getName()))
                     continue;
 
@@ -345,7 +370,7 @@ public abstract class AbstractArchiveFile extends ProxyFile {
         entryPath = entryPath.replace(File.separatorChar, ArchiveEntry.SEPARATOR_CHAR);
 
         // Find the entry node corresponding to the given path
-        DefaultMutableTreeNode entryNode = entryTreeRoot.findEntryNode(entryPath);
+        ArchiveEntryNode entryNode = entryTreeRoot.findEntryNode(entryPath);
 
         if(entryNode==null) {
             int depth = ArchiveEntry.getDepth(entryPath);
@@ -378,10 +403,10 @@ public abstract class AbstractArchiveFile extends ProxyFile {
      * @param entryNode tree node corresponding to the entry for which to return a file
      * @return an {@link AbstractFile} instance corresponding to the given entry node
      */
-    private AbstractFile getArchiveEntryFile(DefaultMutableTreeNode entryNode) throws IOException {
-        DefaultMutableTreeNode parentNode = (DefaultMutableTreeNode)entryNode.getParent();
+    private AbstractFile getArchiveEntryFile(ArchiveEntryNode entryNode) throws IOException {
+        ArchiveEntryNode parentNode = entryNode.getParent();
         return getArchiveEntryFile(
-                (ArchiveEntry)entryNode.getUserObject(),
+                entryNode.getEntry(),
                 parentNode==entryTreeRoot
                     ?this
                     :getArchiveEntryFile(parentNode)
@@ -426,6 +451,87 @@ public abstract class AbstractArchiveFile extends ProxyFile {
      */
     public abstract InputStream getEntryInputStream(ArchiveEntry entry, ArchiveEntryIterator entryIterator) throws IOException;
 
+    /**
+     * Returns <code>true</code> if this archive provides random access to its entries: entries can then be read in any
+     * order and from several threads at the same time, each call to
+     * {@link #getEntryInputStream(ArchiveEntry, ArchiveEntryIterator)} with a <code>null</code> iterator returning a
+     * stream that is independent from the others. Archives that can only be read sequentially return
+     * <code>false</code>, reading all their entries being faster with an iterator.
+     *
+     * <p>This implementation returns <code>false</code>.
+     *
+     * @return <code>true</code> if entries can be read concurrently
+     */
+    public boolean isConcurrentEntryAccessSupported() {
+        return false;
+    }
+
+    /**
+     * Returns <code>true</code> if the entries of this archive can be stored in the {@link ArchiveEntriesCache}
+     * and listed from it in later sessions, without calling {@link #getEntryIterator()}.
+     * Archives returning <code>true</code> must override {@link #getEntryPosition(ArchiveEntry)} and
+     * {@link #restoreEntry(ArchiveEntry, long)} so that {@link #getEntryInputStream(ArchiveEntry, ArchiveEntryIterator)}
+     * works with restored entries.
+     *
+     * <p>This implementation returns <code>false</code>.
+     *
+     * @return <code>true</code> if the entries of this archive can be cached
+     */
+    protected boolean isEntriesCacheable() {
+        return false;
+    }
+
+    /**
+     * Returns the information needed to access the given entry's data once it has been restored from the
+     * {@link ArchiveEntriesCache}, typically the position of the entry within the archive.
+     *
+     * <p>This implementation returns <code>-1</code>.
+     *
+     * @param entry an entry returned by the iterator of {@link #getEntryIterator()}
+     * @return the position of the entry
+     */
+    protected long getEntryPosition(ArchiveEntry entry) {
+        return -1;
+    }
+
+    /**
+     * Restores the format-specific state of an entry loaded from the {@link ArchiveEntriesCache}, typically its
+     * {@link ArchiveEntry#getEntryObject() entry object}.
+     *
+     * <p>This implementation does nothing.
+     *
+     * @param entry the entry restored from the cache
+     * @param position the value that {@link #getEntryPosition(ArchiveEntry)} returned for this entry
+     */
+    protected void restoreEntry(ArchiveEntry entry, long position) {
+    }
+
+    /**
+     * Returns the data this archive stored in the {@link ArchiveEntriesCache} with
+     * {@link #storeCachedData(String, byte[])}, <code>null</code> if the cache is disabled, if there is no such data
+     * or if this archive has changed since it was stored.
+     *
+     * @param extension the extension identifying the data
+     * @return the cached data, <code>null</code> if it is not available
+     */
+    protected byte[] loadCachedData(String extension) {
+        return ArchiveEntriesCache.isEnabled() ? ArchiveEntriesCache.loadData(this, extension) : null;
+    }
+
+    /**
+     * Stores format-specific data of this archive in the {@link ArchiveEntriesCache}, such as an index of its
+     * compressed stream, so that it can be reused in later sessions as long as the archive doesn't change.
+     * Does nothing if the cache is disabled.
+     *
+     * @param extension the extension identifying the data
+     * @param data the data to store
+     */
+    protected void storeCachedData(String extension, byte data[]) {
+        if (ArchiveEntriesCache.isEnabled()) {
+            ArchiveEntriesCache.storeData(this, extension, data);
+        }
+    }
+
     /**
      * Returns <code>true</code> if this archive file is writable, i.e. is capable of adding and deleting entries from
      * the underlying archive file.
@@ -526,6 +632,26 @@ public abstract class AbstractArchiveFile extends ProxyFile {
         return ls(entryTreeRoot, this, null, filter);
     }
 
+    /**
+     * This method is overridden to list the topmost entries contained by this archive, which are passed to the
+     * listener as a single batch. The entries are {@link AbstractArchiveEntryFile} instances.
+     *
+     * @param listener the listener that receives the topmost entries contained by this archive
+     * @throws IOException if the archive entries could not be listed
+     * @throws UnsupportedFileOperationException if {@link FileOperation#READ_FILE} operations are not supported by the
+     * underlying file protocol.
+     */
+    @Override
+    public void lsStreaming(FileListingListener listener) throws IOException {
+        // Delegate to the ancestor if this file isn't actually an archive
+        if (!isArchive()) {
+            super.lsStreaming(listener);
+            return;
+        }
+
+        listener.childrenListed(ls());
+    }
+
     // Note: do not override #isDirectory() to always return true, as AbstractArchiveFile instances may be created when
     // the file does not exist yet, and then be mkdir(): in that case, the file will be a directory and not an archive.
 
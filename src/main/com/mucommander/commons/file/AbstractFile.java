@@ -548,6 +548,45 @@ public abstract class AbstractFile implements FileAttributes, PermissionTypes, P
     }
 
 
+    /**
+     * Lists the children files that this file contains like {@link #ls()}, but passes them to the given listener in
+     * batches, as soon as they have been retrieved. Listing stops as soon as the listener returns <code>false</code>,
+     * allowing the listing of a large folder to be cancelled. This method returns when the folder has been listed
+     * entirely or when listing has been stopped by the listener.
+     *
+     * <p>This default implementation retrieves all the children using {@link #ls()} and passes them to the listener as
+     * a single batch. This method should be overridden by protocols that retrieve children in several requests or
+     * that can read them as they're being received.
+     *
+     * @param listener the listener that receives the batches of children
+     * @throws IOException if this operation is not possible (file is not browsable) or if an error occurred.
+     * @throws UnsupportedFileOperationException if this method relies on a file operation that is not supported
+     * or not implemented by the underlying filesystem.
+     */
+    public void lsStreaming(FileListingListener listener) throws IOException {
+        listener.childrenListed(ls());
+    }
+
+
+    /**
+     * Same as {@link #lsStreaming(FileListingListener)} but filters out files that do not match the specified FileFilter
+     * before they are passed to the listener.
+     *
+     * @param filter the FileFilter to be used to filter files out from the list, may be <code>null</code>
+     * @param listener the listener that receives the batches of children
+     * @throws IOException if this operation is not possible (file is not browsable) or if an error occurred.
+     * @throws UnsupportedFileOperationException if this method relies on a file operation that is not supported
+     * or not implemented by the underlying filesystem.
+     */
+    public final void lsStreaming(final FileFilter filter, final FileListingListener listener) throws IOException {
+        if (filter == null) {
+            lsStreaming(listener);
+        } else {
+            lsStreaming(children -> listener.childrenListed(filter.filter(children)));
+        }
+    }
+
+
     /**
      * Returns the children files that this file contains, filtering out files that do not match the specified FilenameFilter.
      * For this operation to be successful, this file must be 'browsable', i.e. {@link #isBrowsable()} must return
@@ -0,0 +1,389 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2010 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file;
+
+import com.mucommander.commons.io.ByteUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Persistent cache of archive entries, used by {@link AbstractArchiveFile} to list an archive without parsing it
+ * again in every session.
+ *
+ * <p>The entries of each archive are stored in a separate file of the cache folder, keyed by the archive's URL,
+ * size and date: a cached list is used only if the archive hasn't changed since it was stored. Along with their
+ * attributes, entries carry the position returned by {@link AbstractArchiveFile#getEntryPosition(ArchiveEntry)}
+ * which allows the archive to access their data directly once they have been restored.
+ *
+ * <p>Archives may also store data of their own along with their entries, such as an index of their compressed
+ * stream, with {@link AbstractArchiveFile#storeCachedData(String, byte[])}. Such data is kept in a separate file
+ * under the same conditions as the entries.
+ *
+ * <p>The total size of the cache is limited: when the limit is exceeded, the files of the least recently used
+ * archives are deleted. The cache folder is reserved to the cache, any file in it counts in its size. The cache is
+ * disabled until a folder has been set with {@link #setCacheFolder(AbstractFile)}.
+ */
+public class ArchiveEntriesCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArchiveEntriesCache.class);
+
+    private static final int MAGIC = 0x41454348;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String FILE_EXTENSION = "entries";
+
+    private static final int FLAG_DIRECTORY = 1;
+    private static final int FLAG_PERMISSIONS = 2;
+    private static final int FLAG_OWNER = 4;
+    private static final int FLAG_GROUP = 8;
+
+    /** Default maximum size of the cache: 64 MB */
+    public static final long DEFAULT_MAX_SIZE = 64 * 1024 * 1024;
+
+    /** Folder containing the cache files, <code>null</code> if the cache is disabled */
+    private static AbstractFile cacheFolder;
+
+    /** Maximum total size of the cache files in bytes */
+    private static long maxSize = DEFAULT_MAX_SIZE;
+
+
+    /**
+     * Sets the folder where cached entries are stored, <code>null</code> disables the cache.
+     *
+     * @param folder the cache folder
+     */
+    public static synchronized void setCacheFolder(AbstractFile folder) {
+        cacheFolder = folder;
+    }
+
+    /**
+     * Returns the folder where cached entries are stored, <code>null</code> if the cache is disabled.
+     *
+     * @return the cache folder
+     */
+    public static synchronized AbstractFile getCacheFolder() {
+        return cacheFolder;
+    }
+
+    /**
+     * Sets the maximum total size of the cache in bytes, <code>0</code> disables the cache.
+     *
+     * @param size the maximum size of the cache
+     */
+    public static synchronized void setMaxSize(long size) {
+        maxSize = size;
+    }
+
+    /**
+     * Returns <code>true</code> if the cache has been enabled.
+     *
+     * @return <code>true</code> if the cache has been enabled
+     */
+    public static synchronized boolean isEnabled() {
+        return cacheFolder != null && maxSize > 0;
+    }
+
+    /**
+     * Returns the cached entries of the given archive, <code>null</code> if the archive isn't cached or has changed
+     * since its entries were stored. Entry objects are restored by
+     * {@link AbstractArchiveFile#restoreEntry(ArchiveEntry, long)}.
+     *
+     * @param archive the archive to look up
+     * @return the cached entries of the archive, <code>null</code> if they are not available
+     */
+    static List<ArchiveEntry> load(AbstractArchiveFile archive) {
+        AbstractFile file = getCacheFile(archive, FILE_EXTENSION);
+        if (file == null) {
+            return null;
+        }
+        try {
+            if (!file.exists()) {
+                return null;
+            }
+            List<ArchiveEntry> entries;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(file.getInputStream()))) {
+                entries = readHeader(in, archive) ? readEntries(in, archive) : null;
+            }
+            if (entries == null) {
+                return null;
+            }
+            touch(file);
+            return entries;
+        } catch (IOException e) {
+            LOGGER.info("Failed to read cached entries of " + archive.getURL().toString(false), e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the data of the given archive stored with the given extension, <code>null</code> if there is none or
+     * if the archive has changed since the data was stored.
+     *
+     * @param archive the archive to look up
+     * @param extension the extension identifying the data
+     * @return the cached data, <code>null</code> if it is not available
+     */
+    static byte[] loadData(AbstractArchiveFile archive, String extension) {
+        AbstractFile file = getCacheFile(archive, extension);
+        if (file == null) {
+            return null;
+        }
+        try {
+            if (!file.exists()) {
+                return null;
+            }
+            byte data[];
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(file.getInputStream()))) {
+                if (!readHeader(in, archive)) {
+                    return null;
+                }
+                data = new byte[in.readInt()];
+                in.readFully(data);
+            }
+            touch(file);
+            return data;
+        } catch (IOException e) {
+            LOGGER.info("Failed to read cached " + extension + " of " + archive.getURL().toString(false), e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the entries of the given archive, then evicts the least recently used archives if the cache exceeds
+     * its maximum size.
+     *
+     * @param archive the archive the entries belong to
+     * @param entries all the entries of the archive
+     */
+    static void store(AbstractArchiveFile archive, List<ArchiveEntry> entries) {
+        AbstractFile file = getCacheFile(archive, FILE_EXTENSION);
+        if (file == null) {
+            return;
+        }
+        try {
+            createFolder(file);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file.getOutputStream()))) {
+                writeHeader(out, archive);
+                writeEntries(out, archive, entries);
+            }
+            evict();
+        } catch (IOException e) {
+            LOGGER.info("Failed to store cached entries of " + archive.getURL().toString(false), e);
+            delete(file);
+        }
+    }
+
+    /**
+     * Stores data of the given archive with the given extension, replacing the data previously stored with it, then
+     * evicts the least recently used archives if the cache exceeds its maximum size.
+     *
+     * @param archive the archive the data belongs to
+     * @param extension the extension identifying the data
+     * @param data the data to store
+     */
+    static void storeData(AbstractArchiveFile archive, String extension, byte data[]) {
+        AbstractFile file = getCacheFile(archive, extension);
+        if (file == null) {
+            return;
+        }
+        try {
+            createFolder(file);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file.getOutputStream()))) {
+                writeHeader(out, archive);
+                out.writeInt(data.length);
+                out.write(data);
+            }
+            evict();
+        } catch (IOException e) {
+            LOGGER.info("Failed to store cached " + extension + " of " + archive.getURL().toString(false), e);
+            delete(file);
+        }
+    }
+
+    private static void createFolder(AbstractFile file) throws IOException {
+        AbstractFile folder = file.getParent();
+        if (!folder.exists()) {
+            folder.mkdirs();
+        }
+    }
+
+    /**
+     * Marks the given cache file as used, the date of a cache file being the date it was last used.
+     */
+    private static void touch(AbstractFile file) throws IOException {
+        if (file.isFileOperationSupported(FileOperation.CHANGE_DATE)) {
+            file.setLastModifiedDate(System.currentTimeMillis());
+        }
+    }
+
+    private static void delete(AbstractFile file) {
+        try {
+            file.delete();
+        } catch (IOException e) {
+            // Not much we can do about it
+        }
+    }
+
+    /**
+     * Deletes the files of the least recently used archives until the cache fits within its maximum size.
+     *
+     * @throws IOException if the cache folder couldn't be listed
+     */
+    private static synchronized void evict() throws IOException {
+        if (cacheFolder == null) {
+            return;
+        }
+        List<AbstractFile> files = new ArrayList<>();
+        long total = 0;
+        for (AbstractFile file : cacheFolder.ls()) {
+            files.add(file);
+            total += file.getSize();
+        }
+        if (total <= maxSize) {
+            return;
+        }
+        files.sort(Comparator.comparingLong(AbstractFile::getLastModifiedDate));
+        for (AbstractFile file : files) {
+            if (total <= maxSize) {
+                break;
+            }
+            long size = file.getSize();
+            try {
+                file.delete();
+                total -= size;
+            } catch (IOException e) {
+                LOGGER.info("Failed to delete " + file.getAbsolutePath(), e);
+            }
+        }
+    }
+
+    /**
+     * Returns the cache file of the given archive with the given extension, <code>null</code> if the cache is disabled.
+     */
+    private static AbstractFile getCacheFile(AbstractArchiveFile archive, String extension) {
+        AbstractFile folder;
+        synchronized (ArchiveEntriesCache.class) {
+            if (!isEnabled()) {
+                return null;
+            }
+            folder = cacheFolder;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(getKey(archive).getBytes(StandardCharsets.UTF_8));
+            return folder.getChild(ByteUtils.toHexString(hash) + '.' + extension);
+        } catch (NoSuchAlgorithmException | IOException e) {
+            LOGGER.info("Failed to resolve cache file", e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the key identifying the given archive, credentials are left out.
+     */
+    private static String getKey(AbstractArchiveFile archive) {
+        return archive.getURL().toString(false);
+    }
+
+    private static void writeHeader(DataOutputStream out, AbstractArchiveFile archive) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(getKey(archive));
+        out.writeLong(archive.getSize());
+        out.writeLong(archive.getLastModifiedDate());
+    }
+
+    /**
+     * Returns <code>true</code> if the header read belongs to the given archive and the archive hasn't changed since.
+     */
+    private static boolean readHeader(DataInputStream in, AbstractArchiveFile archive) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            return false;
+        }
+        // Check that the file belongs to this archive (hash collision) and that the archive hasn't changed since
+        return in.readUTF().equals(getKey(archive)) && in.readLong() == archive.getSize() &&
+                in.readLong() == archive.getLastModifiedDate();
+    }
+
+    private static void writeEntries(DataOutputStream out, AbstractArchiveFile archive, List<ArchiveEntry> entries) throws IOException {
+        out.writeInt(entries.size());
+        for (ArchiveEntry entry : entries) {
+            FilePermissions permissions = entry.getPermissions();
+            String owner = entry.getOwner();
+            String group = entry.getGroup();
+            int flags = (entry.isDirectory() ? FLAG_DIRECTORY : 0) | (permissions != null ? FLAG_PERMISSIONS : 0) |
+                    (owner != null ? FLAG_OWNER : 0) | (group != null ? FLAG_GROUP : 0);
+            out.writeByte(flags);
+            out.writeUTF(entry.getPath());
+            out.writeLong(entry.getLastModifiedDate());
+            out.writeLong(entry.getSize());
+            out.writeLong(archive.getEntryPosition(entry));
+            if (permissions != null) {
+                out.writeShort(permissions.getIntValue());
+                out.writeShort(permissions.getMask().getIntValue());
+            }
+            if (owner != null) {
+                out.writeUTF(owner);
+            }
+            if (group != null) {
+                out.writeUTF(group);
+            }
+        }
+    }
+
+    private static List<ArchiveEntry> readEntries(DataInputStream in, AbstractArchiveFile archive) throws IOException {
+        int count = in.readInt();
+        List<ArchiveEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int flags = in.readByte();
+            String path = in.readUTF();
+            long date = in.readLong();
+            long size = in.readLong();
+            long position = in.readLong();
+            ArchiveEntry entry = new ArchiveEntry(path, (flags & FLAG_DIRECTORY) != 0, date, size, true);
+            if ((flags & FLAG_PERMISSIONS) != 0) {
+                int permissions = in.readShort();
+                int mask = in.readShort();
+                entry.setPermissions(new SimpleFilePermissions(permissions, mask));
+            }
+            if ((flags & FLAG_OWNER) != 0) {
+                entry.setOwner(in.readUTF());
+            }
+            if ((flags & FLAG_GROUP) != 0) {
+                entry.setGroup(in.readUTF());
+            }
+            archive.restoreEntry(entry, position);
+            entries.add(entry);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2010 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A node of an {@link ArchiveEntryTree}. Each node holds an {@link ArchiveEntry} and, for directories, its children
+ * indexed by name so that a child can be looked up in constant time.
+ *
+ * @see ArchiveEntryTree
+ */
+class ArchiveEntryNode {
+
+    /** Entry held by this node, <code>null</code> for the root node */
+    private ArchiveEntry entry;
+
+    /** Name of this node in its parent, i.e. the entry name without trailing separator */
+    private final String name;
+
+    /** Parent node, <code>null</code> for the root node */
+    private ArchiveEntryNode parent;
+
+    /** Children indexed by name, in insertion order. Created on first insertion. */
+    private Map<String, ArchiveEntryNode> children;
+
+    ArchiveEntryNode(String name, ArchiveEntry entry) {
+        this.name = name;
+        this.entry = entry;
+    }
+
+    ArchiveEntry getEntry() {
+        return entry;
+    }
+
+    void setEntry(ArchiveEntry entry) {
+        this.entry = entry;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    ArchiveEntryNode getParent() {
+        return parent;
+    }
+
+    int getChildCount() {
+        return children == null ? 0 : children.size();
+    }
+
+    /**
+     * Returns the children of this node in the order they were added.
+     *
+     * @return the children of this node
+     */
+    Collection<ArchiveEntryNode> getChildren() {
+        return children == null ? Collections.<ArchiveEntryNode>emptyList() : children.values();
+    }
+
+    /**
+     * Returns the child with the given name, <code>null</code> if there is no such child.
+     *
+     * @param name name of the child, without trailing separator
+     * @return the child with the given name
+     */
+    ArchiveEntryNode getChild(String name) {
+        return children == null ? null : children.get(name);
+    }
+
+    /**
+     * Adds the given node to the children of this node, replacing any existing child with the same name.
+     *
+     * @param child the node to add
+     */
+    void add(ArchiveEntryNode child) {
+        if (children == null) {
+            children = new LinkedHashMap<>();
+        }
+        child.parent = this;
+        children.put(child.getName(), child);
+    }
+
+    /**
+     * Removes the given node from the children of this node.
+     *
+     * @param child the node to remove
+     */
+    void remove(ArchiveEntryNode child) {
+        if (children != null && children.get(child.getName()) == child) {
+            children.remove(child.getName());
+            child.parent = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return entry == null ? "" : entry.toString();
+    }
+}
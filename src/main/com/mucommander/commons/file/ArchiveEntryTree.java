@@ -19,83 +19,78 @@
 
 package com.mucommander.commons.file;
 
-import com.mucommander.commons.file.util.PathUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.swing.tree.DefaultMutableTreeNode;
-
 /**
  * Stores archive entries and organizes them in a tree structure that maps entries in the way they are organized
  * inside the archive. An instance of <code>ArchiveEntryTree</code> also acts as the root node: all entry nodes
  * are children of it (direct or indirect).
  *
+ * <p>Each node indexes its children by name, so both insertion and lookup of an entry take a time proportional to
+ * the entry's depth, regardless of the number of entries in a directory.
+ *
  * @author Maxence Bernard
  */
-class ArchiveEntryTree extends DefaultMutableTreeNode {
+class ArchiveEntryTree extends ArchiveEntryNode {
     private static Logger logger = LoggerFactory.getLogger(ArchiveEntryTree.class);
 
     /**
      * Creates a new empty tree.
      */
     ArchiveEntryTree() {
+        super(null, null);
     }
 
     /**
      * Adds the given entry to the archive tree, creating parent nodes as necessary.
+     * If the tree already contains an entry with the same path, it is replaced.
      *
      * @param entry the entry to add to the tree
      */
     void addArchiveEntry(ArchiveEntry entry) {
         String entryPath = entry.getPath();
-        int entryDepth = entry.getDepth();
-        int slashPos = 0;
-        DefaultMutableTreeNode node = this;
-        for(int d=1; d<=entryDepth; d++) {
-            if(d==entryDepth && !entry.isDirectory()) {
-                // create a leaf node for the entry
-                entry.setExists(true);      // the entry has to exist
-                node.add(new DefaultMutableTreeNode(entry, true));
-                break;
+        // Trailing separators are not part of the entry name
+        int len = entryPath.length();
+        while (len > 0 && entryPath.charAt(len - 1) == ArchiveEntry.SEPARATOR_CHAR) {
+            len--;
+        }
+        ArchiveEntryNode node = this;
+        int start = 0;
+        while (start < len) {
+            int end = entryPath.indexOf(ArchiveEntry.SEPARATOR_CHAR, start);
+            if (end < 0 || end > len) {
+                end = len;
             }
-
-            String subPath = d==entryDepth?entryPath:entryPath.substring(0, (slashPos=entryPath.indexOf('/', slashPos)+1));
-
-            int nbChildren = node.getChildCount();
-            DefaultMutableTreeNode childNode = null;
-            boolean matchFound = false;
-            for(int c=0; c<nbChildren; c++) {
-                childNode = (DefaultMutableTreeNode)node.getChildAt(c);
-                // Path comparison is 'trailing slash insensitive'
-                if(PathUtils.pathEquals(((ArchiveEntry)childNode.getUserObject()).getPath(), subPath, "/")) {
-                    // Found a match
-                    matchFound = true;
-                    break;
-                }
+            if (end == start) {
+                // Skip empty path elements
+                start++;
+                continue;
             }
+            String name = entryPath.substring(start, end);
+            start = end + 1;
+            boolean last = end == len;
 
-            if (matchFound) {
-                if (d == entryDepth) {
-                    getLogger().trace("Replacing entry for node "+childNode);
-                    // Replace existing entry
-                    childNode.setUserObject(entry);
-                }
-                else {
-                    node = childNode;
-                }
-            }
-            else {
-                if (d == entryDepth) {
-                    // create a leaf node for the entry
-                    entry.setExists(true);      // the entry has to exist
-                    node.add(new DefaultMutableTreeNode(entry, true));
+            ArchiveEntryNode childNode = node.getChild(name);
+            if (last) {
+                entry.setExists(true);      // the entry has to exist
+                if (childNode != null) {
+                    getLogger().trace("Replacing entry for node " + childNode);
+                    // Replace existing entry, keeping the children of a directory
+                    childNode.setEntry(entry);
                 } else {
-                    getLogger().trace("Creating node for "+subPath);
-                    childNode = new DefaultMutableTreeNode(new ArchiveEntry(subPath, true, entry.getLastModifiedDate(), 0, true), true);
-                    node.add(childNode);
-                    node = childNode;
+                    // create a node for the entry
+                    node.add(new ArchiveEntryNode(name, entry));
                 }
+                return;
+            }
+            if (childNode == null) {
+                String subPath = entryPath.substring(0, end + 1);
+                getLogger().trace("Creating node for " + subPath);
+                childNode = new ArchiveEntryNode(name, new ArchiveEntry(subPath, true, entry.getLastModifiedDate(), 0, true));
+                node.add(childNode);
             }
+            node = childNode;
         }
     }
 
@@ -111,34 +106,24 @@ class ArchiveEntryTree extends DefaultMutableTreeNode {
      * @param entryPath the path to the entry to look up in this tree
      * @return the node that corresponds to the specified entry path
      */
-    DefaultMutableTreeNode findEntryNode(String entryPath) {
-        int entryDepth = ArchiveEntry.getDepth(entryPath);
-        int slashPos = 0;
-        DefaultMutableTreeNode currentNode = this;
-        for(int d=1; d<=entryDepth; d++) {
-            String subPath = d==entryDepth?entryPath:entryPath.substring(0, (slashPos=entryPath.indexOf('/', slashPos)+1));
-
-            int nbChildren = currentNode.getChildCount();
-            DefaultMutableTreeNode matchNode = null;
-            for (int c=0; c<nbChildren; c++) {
-                DefaultMutableTreeNode childNode = (DefaultMutableTreeNode)currentNode.getChildAt(c);
-
-                // Path comparison is 'trailing slash insensitive'
-                if (PathUtils.pathEquals(((ArchiveEntry)childNode.getUserObject()).getPath(), subPath, "/")) {
-                    // Found the node, let's return it
-                    matchNode = childNode;
-                    break;
-                }
+    ArchiveEntryNode findEntryNode(String entryPath) {
+        int len = entryPath.length();
+        ArchiveEntryNode node = this;
+        int start = 0;
+        while (start < len) {
+            int end = entryPath.indexOf(ArchiveEntry.SEPARATOR_CHAR, start);
+            if (end < 0) {
+                end = len;
             }
-
-            if (matchNode == null) {
-                return null;    // No node maching the provided path, return null
+            if (end > start) {
+                node = node.getChild(entryPath.substring(start, end));
+                if (node == null) {
+                    return null;    // No node matching the provided path, return null
+                }
             }
-
-            currentNode = matchNode;
+            start = end + 1;
         }
-
-        return currentNode;
+        return node;
     }
 
     private static Logger getLogger() {
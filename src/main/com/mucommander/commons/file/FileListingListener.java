@@ -0,0 +1,41 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2010 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file;
+
+/**
+ * This interface is used by {@link AbstractFile#lsStreaming(FileListingListener)} to receive the children of a folder in
+ * batches, as soon as they have been retrieved, rather than once the whole folder has been listed. This is useful
+ * for protocols where listing large folders is slow, allowing the first children to be displayed without waiting
+ * for the listing to complete.
+ *
+ * @see AbstractFile#lsStreaming(FileListingListener)
+ * @see AbstractFile#lsStreaming(com.mucommander.commons.file.filter.FileFilter, FileListingListener)
+ */
+public interface FileListingListener {
+
+    /**
+     * Called each time a batch of children has been retrieved. Batches are passed in the order they have been
+     * retrieved, in the thread that called <code>lsStreaming</code>, and are not sorted in any particular way.
+     *
+     * @param children the children that have just been retrieved, may be empty but never <code>null</code>
+     * @return <code>true</code> to continue listing the folder, <code>false</code> to stop listing it, in which case no
+     * other batch will be passed to this listener
+     */
+    boolean childrenListed(AbstractFile children[]);
+}
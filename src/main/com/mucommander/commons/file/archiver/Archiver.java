@@ -22,7 +22,10 @@ import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.FileAttributes;
 import com.mucommander.commons.file.FileOperation;
 import com.mucommander.commons.file.UnsupportedFileOperationException;
+import com.mucommander.commons.file.impl.zip.provider.ZipOutputStream;
 import com.mucommander.commons.io.BufferedRandomOutputStream;
+import com.mucommander.commons.io.ParallelBzip2OutputStream;
+import com.mucommander.commons.io.ParallelGzipOutputStream;
 import com.mucommander.commons.io.RandomAccessOutputStream;
 import org.apache.hadoop.io.compress.bzip2.CBZip2OutputStream;
 
@@ -51,6 +54,11 @@ import java.util.zip.GZIPOutputStream;
  */
 public abstract class Archiver {
 
+    /** Compression level that selects the default level of the format */
+    public static final int DEFAULT_COMPRESSION_LEVEL = -1;
+
+    /** Block size of bzip2 streams in units of 100 KB, used when no compression level is specified */
+    private static final int DEFAULT_BZIP2_BLOCK_SIZE = 9;
 
     /** The underlying stream this archiver is writing to */
     protected OutputStream out;
@@ -168,6 +176,30 @@ public abstract class Archiver {
      * @throws UnsupportedFileOperationException if the underlying filesystem does not support write operations
      */
     public static Archiver getArchiver(AbstractFile file, ArchiveFormat format) throws IOException, UnsupportedFileOperationException {
+        return getArchiver(file, format, DEFAULT_COMPRESSION_LEVEL, 1);
+    }
+
+    /**
+     * Returns an Archiver for the specified format and that uses the given {@link AbstractFile} to write entries to,
+     * compressing zip, gzip and bzip2 data with the given level and number of threads.
+     * <code>null</code> is returned if the specified format is not valid.
+     *
+     * <p>With more than one thread, gzip and bzip2 data are split into blocks compressed on a thread pool by
+     * {@link ParallelGzipOutputStream} and {@link ParallelBzip2OutputStream}, whose output can be read by any
+     * gzip or bzip2 decompressor. Zip entries are compressed concurrently, see
+     * {@link ZipOutputStream#setThreads(int)}.
+     *
+     * @param file the AbstractFile which the returned Archiver will write entries to
+     * @param format an archive format
+     * @param compressionLevel the compression level from 1 (fastest) to 9 (best), {@link #DEFAULT_COMPRESSION_LEVEL}
+     * for the default level of the format. For bzip2, the level is the block size in units of 100 KB.
+     * @param compressionThreads number of threads compressing zip, gzip and bzip2 data
+     * @return an Archiver for the specified format and that uses the given {@link AbstractFile} to write entries to ;
+     * null if the specified format is not valid.
+     * @throws IOException if the file cannot be opened for write, or if an error occurred while intializing the archiver
+     * @throws UnsupportedFileOperationException if the underlying filesystem does not support write operations
+     */
+    public static Archiver getArchiver(AbstractFile file, ArchiveFormat format, int compressionLevel, int compressionThreads) throws IOException, UnsupportedFileOperationException {
 //        switch(format) {
 //            case ISO:
 //                return new ISOArchiver(file);
@@ -191,7 +223,7 @@ public abstract class Archiver {
             out = new BufferedOutputStream(file.getOutputStream());
         }
 
-        return getArchiver(out, format);
+        return getArchiver(out, format, compressionLevel, compressionThreads);
     }
 
 
@@ -202,31 +234,33 @@ public abstract class Archiver {
      *
      * @param out the OutputStream which the returned Archiver will write entries to
      * @param format an archive format
+     * @param compressionLevel the compression level of zip, gzip and bzip2 data
+     * @param compressionThreads number of threads compressing zip, gzip and bzip2 data
      * @return an Archiver for the specified format and that uses the given {@link AbstractFile} to write entries to ;
      * null if the specified format is not valid.
      * @throws IOException if an error occurred while initializing the archiver
      */
-    private static Archiver getArchiver(OutputStream out, ArchiveFormat format) throws IOException {
+    private static Archiver getArchiver(OutputStream out, ArchiveFormat format, int compressionLevel, int compressionThreads) throws IOException {
         Archiver archiver;
 
         switch (format) {
             case ZIP:
-                archiver = new ZipArchiver(out);
+                archiver = new ZipArchiver(out, compressionLevel, compressionThreads);
                 break;
             case GZ:
-                archiver = new SingleFileArchiver(new GZIPOutputStream(out));
+                archiver = new SingleFileArchiver(createGzipOutputStream(out, compressionLevel, compressionThreads));
                 break;
             case BZ2:
-                archiver = new SingleFileArchiver(createBzip2OutputStream(out));
+                archiver = new SingleFileArchiver(createBzip2OutputStream(out, compressionLevel, compressionThreads));
                 break;
             case TAR:
                 archiver = new TarArchiver(out);
                 break;
             case TAR_GZ:
-                archiver = new TarArchiver(new GZIPOutputStream(out));
+                archiver = new TarArchiver(createGzipOutputStream(out, compressionLevel, compressionThreads));
                 break;
             case TAR_BZ2:
-                archiver = new TarArchiver(createBzip2OutputStream(out));
+                archiver = new TarArchiver(createBzip2OutputStream(out, compressionLevel, compressionThreads));
                 break;
 //            case ISO:
 //                throw new IllegalStateException("ISO archiving not supported by stream");
@@ -240,15 +274,43 @@ public abstract class Archiver {
         return archiver;
     }
 
+    /**
+     * Creates and returns a Gzip <code>OutputStream</code> using the given <code>OutputStream</code> as the underlying
+     * stream.
+     *
+     * @param out the underlying stream
+     * @param level the compression level, or {@link #DEFAULT_COMPRESSION_LEVEL}
+     * @param threads number of threads compressing data
+     * @return a Gzip OutputStream
+     * @throws IOException if an error occurred while initializing the Gzip OutputStream
+     */
+    private static OutputStream createGzipOutputStream(OutputStream out, final int level, int threads) throws IOException {
+        if (threads > 1) {
+            return new ParallelGzipOutputStream(out, level, threads);
+        }
+        return new GZIPOutputStream(out) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
     /**
      * Creates and returns a Bzip2 <code>OutputStream</code> using the given <code>OutputStream</code> as the underlying
      * stream.
      *
      * @param out the underlying stream
+     * @param level the block size in units of 100 KB, or {@link #DEFAULT_COMPRESSION_LEVEL}
+     * @param threads number of threads compressing data
      * @return a Bzip2 OutputStream
      * @throws IOException if an error occurred while initializing the Bzip2 OutputStream
      */
-    private static OutputStream createBzip2OutputStream(OutputStream out) throws IOException {
+    private static OutputStream createBzip2OutputStream(OutputStream out, int level, int threads) throws IOException {
+        int blockSize = level == DEFAULT_COMPRESSION_LEVEL ? DEFAULT_BZIP2_BLOCK_SIZE : level;
+        if (threads > 1) {
+            return new ParallelBzip2OutputStream(out, blockSize, threads);
+        }
+
         // Writes the 2 magic bytes 'BZ', as required by CBZip2OutputStream. A quote from CBZip2OutputStream's Javadoc:
         // "Attention: The caller is responsible to write the two BZip2 magic bytes "BZ" to the specified stream
         // prior to calling this constructor."
@@ -256,7 +318,7 @@ public abstract class Archiver {
         out.write('B');
         out.write('Z');
 
-        return new CBZip2OutputStream(out);
+        return new CBZip2OutputStream(out, blockSize);
     }
 
 
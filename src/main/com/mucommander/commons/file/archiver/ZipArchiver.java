@@ -21,10 +21,12 @@ class ZipArchiver extends Archiver {
 
 
 
-    ZipArchiver(OutputStream outputStream) {
+    ZipArchiver(OutputStream outputStream, int compressionLevel, int compressionThreads) {
         super(outputStream);
 
         this.zos = new ZipOutputStream(outputStream);
+        zos.setLevel(compressionLevel);
+        zos.setThreads(compressionThreads);
     }
 
 
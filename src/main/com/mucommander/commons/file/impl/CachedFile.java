@@ -1,6 +1,7 @@
 package com.mucommander.commons.file.impl;
 
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileListingListener;
 import com.mucommander.commons.file.FileOperation;
 import com.mucommander.commons.file.FilePermissions;
 import com.mucommander.commons.file.FileProtocols;
@@ -14,6 +15,8 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
 
 /**
  * CachedFile is a ProxyFile that caches the return values of most {@link AbstractFile} getter methods. This allows
@@ -240,6 +243,48 @@ public class CachedFile extends ProxyFile {
     }
 
 
+    /**
+     * Sets the cached values of the attributes contained in the given NIO attributes, typically read in the same pass
+     * as the directory listing (see {@link com.mucommander.commons.file.impl.local.LocalFile#lsWithAttributes}), so that
+     * the corresponding getters don't have to query the underlying file.
+     * The attributes must have been read without following symbolic links: the directory, size, date and existence
+     * values of a symbolic link are those of its target, so they are left to be retrieved on demand.
+     *
+     * @param attributes attributes of the underlying file, read without following symbolic links
+     * @param hidden <code>true</code> if the underlying file is hidden
+     */
+    public void setFileAttributes(BasicFileAttributes attributes, boolean hidden) {
+        if (hidden) {
+            bitmask |= HIDDEN_VALUE_MASK;
+        } else {
+            bitmask &= ~HIDDEN_VALUE_MASK;
+        }
+        bitmask |= HIDDEN_SET_MASK;
+
+        if (attributes.isSymbolicLink()) {
+            bitmask |= SYMLINK_VALUE_MASK | SYMLINK_SET_MASK;
+        } else {
+            bitmask &= ~SYMLINK_VALUE_MASK;
+            if (attributes.isDirectory()) {
+                bitmask |= DIRECTORY_VALUE_MASK;
+            } else {
+                bitmask &= ~DIRECTORY_VALUE_MASK;
+            }
+            getSize = attributes.size();
+            getLastModified = attributes.lastModifiedTime().toMillis();
+            bitmask |= SYMLINK_SET_MASK | DIRECTORY_SET_MASK | EXISTS_VALUE_MASK | EXISTS_SET_MASK |
+                    SIZE_SET_MASK | LAST_MODIFICATION_SET_MASK;
+        }
+
+        if (attributes instanceof PosixFileAttributes) {
+            PosixFileAttributes posixAttributes = (PosixFileAttributes)attributes;
+            getOwner = posixAttributes.owner().getName();
+            getGroup = posixAttributes.group().getName();
+            bitmask |= OWNER_SET_MASK | GROUP_SET_MASK;
+        }
+    }
+
+
     ////////////////////////////////////////////////////
     // Overridden methods to cache their return value //
     ////////////////////////////////////////////////////
@@ -576,6 +621,16 @@ public class CachedFile extends ProxyFile {
         return files;
     }
 
+    @Override
+    public void lsStreaming(FileListingListener listener) throws IOException {
+        // Don't cache ls() result but create a CachedFile instance around each of the files if recursion is enabled
+        if ((bitmask & RECURSE_INSTANCES_MASK) != 0) {
+            file.lsStreaming(children -> listener.childrenListed(createCachedFiles(children)));
+        } else {
+            file.lsStreaming(listener);
+        }
+    }
+
 
     @Override
     public boolean isFileOperationSupported(FileOperation op) {
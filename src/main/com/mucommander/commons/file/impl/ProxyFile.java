@@ -336,6 +336,11 @@ public abstract class ProxyFile extends AbstractFile {
         return file.ls(filter);
     }
 
+    @Override
+    public void lsStreaming(FileListingListener listener) throws IOException {
+        file.lsStreaming(listener);
+    }
+
     @Override
     public void mkfile() throws IOException {
         file.mkfile();
@@ -1,6 +1,7 @@
 package com.mucommander.commons.file.impl;
 
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -22,14 +23,20 @@ import net.sf.sevenzipjbinding.IInArchive;
 import net.sf.sevenzipjbinding.PropID;
 import net.sf.sevenzipjbinding.SevenZip;
 import net.sf.sevenzipjbinding.SevenZipException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class SevenZipJBindingROArchiveFile extends AbstractROArchiveFile {
-   
+    private static final Logger LOGGER = LoggerFactory.getLogger(SevenZipJBindingROArchiveFile.class);
+
     protected IInArchive inArchive;
     private ArchiveFormat sevenZipJBindingFormat;
 
     private final byte[] formatSignature;
 
+    /** <code>true</code> if the archive is solid, <code>null</code> until it has been opened */
+    private volatile Boolean solid;
+
     /**
      * Creates an AbstractROArchiveFile on top of the given file.
      *
@@ -58,6 +65,7 @@ public class SevenZipJBindingROArchiveFile extends AbstractROArchiveFile {
     public ArchiveEntryIterator getEntryIterator() throws IOException, UnsupportedFileOperationException {
         try {
             final IInArchive sevenZipFile = openInArchive();
+            solid = isSolid(sevenZipFile);
             int nbEntries = sevenZipFile.getNumberOfItems();
             List<ArchiveEntry> entries = new ArrayList<>();
             for (int i = 0; i < nbEntries; i++) {
@@ -83,32 +91,58 @@ public class SevenZipJBindingROArchiveFile extends AbstractROArchiveFile {
         final int[] in = new int[1];
         in[0] = (Integer)entry.getEntryObject();
         final CircularByteBuffer cbb = new CircularByteBuffer(CircularByteBuffer.INFINITE_SIZE);
+        final ExtractionInputStream extractionInputStream = new ExtractionInputStream(cbb.getInputStream());
         new Thread(() -> {
-            synchronized (SevenZipJBindingROArchiveFile.this) {
+            // IInArchive is not thread-safe: each extraction opens an instance of its own, so that several entries
+            // can be extracted at the same time
+            SignatureCheckedRandomAccessFile randomAccessFile = null;
+            IInArchive sevenZipFile = null;
+            try {
+                randomAccessFile = new SignatureCheckedRandomAccessFile(file, formatSignature);
+                sevenZipFile = SevenZip.openInArchive(sevenZipJBindingFormat, randomAccessFile);
+                sevenZipFile.extract(in, false, new ExtractCallback(sevenZipFile, cbb.getOutputStream()));
+            } catch (IOException e) {
+                LOGGER.info("Error extracting entry " + entry.getPath() + " of " + file, e);
+                // Reported to the reader instead of a truncated entry
+                extractionInputStream.error = e;
+            } finally {
+                close(sevenZipFile, randomAccessFile);
                 try {
-                    final IInArchive sevenZipFile = openInArchive();
-                    sevenZipFile.extract(in, false, new ExtractCallback(inArchive, cbb.getOutputStream()));
+                    cbb.getOutputStream().close();
                 } catch (IOException e) {
-                    e.printStackTrace();
-                } finally {
-                    if (inArchive != null) {
-                        try {
-                            inArchive.close();
-                        } catch (SevenZipException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                    try {
-                        cbb.getOutputStream().close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                    inArchive = null;
+                    LOGGER.info("Error closing extraction buffer", e);
                 }
             }
         }).start();
 
-        return cbb.getInputStream();
+        return extractionInputStream;
+    }
+
+    /**
+     * Returns <code>true</code> unless the archive reports that it isn't solid.
+     */
+    private static boolean isSolid(IInArchive archive) throws SevenZipException {
+        return !Boolean.FALSE.equals(archive.getArchiveProperty(PropID.SOLID));
+    }
+
+    /**
+     * Closes an archive instance and the file it was opened on, either of which may be <code>null</code>.
+     */
+    private void close(IInArchive archive, SignatureCheckedRandomAccessFile randomAccessFile) {
+        if (archive != null) {
+            try {
+                archive.close();
+            } catch (SevenZipException e) {
+                LOGGER.info("Error closing archive " + file, e);
+            }
+        }
+        if (randomAccessFile != null) {
+            try {
+                randomAccessFile.close();
+            } catch (IOException e) {
+                LOGGER.info("Error closing " + file, e);
+            }
+        }
     }
 
     /**
@@ -134,4 +168,75 @@ public class SevenZipJBindingROArchiveFile extends AbstractROArchiveFile {
         return result;
     }
 
+    /**
+     * Returns <code>true</code> if the archive isn't solid: entries are extracted by their index, each with an instance
+     * of the archive of its own. Each entry of a solid archive would decompress the whole block preceding it.
+     */
+    @Override
+    public boolean isConcurrentEntryAccessSupported() {
+        if (solid == null) {
+            SignatureCheckedRandomAccessFile randomAccessFile = null;
+            IInArchive archive = null;
+            try {
+                randomAccessFile = new SignatureCheckedRandomAccessFile(file, formatSignature);
+                archive = SevenZip.openInArchive(sevenZipJBindingFormat, randomAccessFile);
+                solid = isSolid(archive);
+            } catch (IOException e) {
+                LOGGER.info("Error reading the properties of archive " + file, e);
+                return false;
+            } finally {
+                close(archive, randomAccessFile);
+            }
+        }
+        return !solid;
+    }
+
+    /**
+     * Returns <code>true</code>: entries are extracted by their index, which is stored as their position.
+     */
+    @Override
+    protected boolean isEntriesCacheable() {
+        return true;
+    }
+
+    @Override
+    protected long getEntryPosition(ArchiveEntry entry) {
+        return (Integer)entry.getEntryObject();
+    }
+
+    @Override
+    protected void restoreEntry(ArchiveEntry entry, long position) {
+        entry.setEntryObject((int)position);
+    }
+
+
+    /**
+     * Reads an entry extracted by another thread, and throws the exception that interrupted the extraction, if any,
+     * instead of reporting the end of the entry.
+     */
+    private static class ExtractionInputStream extends FilterInputStream {
+        /** Set by the extraction thread before it closes the buffer */
+        private volatile IOException error;
+
+        private ExtractionInputStream(InputStream in) {
+            super(in);
+        }
+
+        private int checkEndOfStream(int n) throws IOException {
+            if (n == -1 && error != null) {
+                throw new IOException("Error extracting entry", error);
+            }
+            return n;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return checkEndOfStream(super.read());
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return checkEndOfStream(super.read(b, off, len));
+        }
+    }
 }
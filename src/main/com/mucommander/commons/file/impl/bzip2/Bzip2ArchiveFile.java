@@ -1,11 +1,8 @@
 package com.mucommander.commons.file.impl.bzip2;
 
 import com.mucommander.commons.file.*;
-import org.apache.hadoop.io.compress.bzip2.CBZip2InputStream;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.mucommander.commons.io.ParallelBzip2InputStream;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -19,8 +16,6 @@ import java.io.InputStream;
  * @author Maxence Bernard
  */
 public class Bzip2ArchiveFile extends AbstractROArchiveFile {
-    private static final Logger LOGGER = LoggerFactory.getLogger(Bzip2ArchiveFile.class);
-
     /**
      * Creates a BzipArchiveFile on top of the given file.
      *
@@ -55,28 +50,14 @@ public class Bzip2ArchiveFile extends AbstractROArchiveFile {
 
     @Override
     public InputStream getEntryInputStream(ArchiveEntry entry, ArchiveEntryIterator entryIterator) throws IOException {
-        try {
-            InputStream in = getInputStream();
-
-            // Skips the 2 magic bytes 'BZ', as required by CBZip2InputStream. Quoted from CBZip2InputStream's Javadoc:
-            // "Although BZip2 headers are marked with the magic 'Bz'. this constructor expects the next byte in the
-            // stream to be the first one after the magic.  Thus callers have to skip the first two bytes. Otherwise
-            // this constructor will throw an exception."
-            // Note: the return value of read() is unchecked. In the unlikely event that EOF is reached in the first
-            // 2 bytes, CBZip2InputStream will throw an IOException.
-            in.read();
-            in.read();
+        InputStream in = getInputStream();
 
-            // Quoted from CBZip2InputStream's Javadoc:
-            // "CBZip2InputStream reads bytes from the compressed source stream via the single byte {@link java.io.InputStream#read()
-            // read()} method exclusively. Thus you should consider to use a buffered source stream."
-            return new CBZip2InputStream(new BufferedInputStream(in));
-        } catch(Exception e) {
-            // CBZip2InputStream is known to throw NullPointerException if file is not properly Bzip2-encoded
-            // so we need to catch those and throw them as IOException
-            LOGGER.info("Exception caught while creating CBZip2InputStream, throwing IOException", e);
-
-            throw new IOException();
+        // Blocks are decompressed on several threads
+        try {
+            return new ParallelBzip2InputStream(in);
+        } catch (IOException e) {
+            in.close();
+            throw e;
         }
     }
 }
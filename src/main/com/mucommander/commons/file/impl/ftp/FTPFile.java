@@ -11,16 +11,23 @@ import com.mucommander.commons.io.RandomAccessOutputStream;
 import com.mucommander.commons.util.StringUtils;
 import com.mucommander.core.FolderChangeMonitor;
 import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPClientConfig;
+import org.apache.commons.net.ftp.FTPCmd;
 import org.apache.commons.net.ftp.FTPConnectionClosedException;
+import org.apache.commons.net.ftp.FTPFileEntryParser;
 import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.net.ftp.parser.DefaultFTPFileEntryParserFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 
 /**
@@ -102,6 +109,9 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
     /** Date format used by the SITE UTIME command */
     private final static SimpleDateFormat SITE_UTIME_DATE_FORMAT = new SimpleDateFormat("yyyyMMddHHmm");
 
+    /** Number of files passed at once to the listener by {@link #lsStreaming(FileListingListener)} */
+    private final static int LISTING_BATCH_SIZE = 500;
+
 
     FTPFile(FileURL fileURL) throws IOException {
         this(fileURL, null);
@@ -537,6 +547,58 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
             connHandler.releaseLock();
         }
 
+        return createChildren(files);
+    }
+
+    /**
+     * Lists this folder while the listing is being received from the server, the children being passed to the
+     * listener in batches of {@link #LISTING_BATCH_SIZE} files. If the listener stops the listing, the data
+     * connection is closed without reading the rest of the listing.
+     */
+    @Override
+    public void lsStreaming(FileListingListener listener) throws IOException {
+        // Retrieve a ConnectionHandler and lock it
+        FTPConnectionHandler connHandler = (FTPConnectionHandler)ConnectionPool.getConnectionHandler(this, fileURL, true);
+        try {
+            // Makes sure the connection is started, if not starts it
+            connHandler.checkConnection();
+
+            // The folder is listed using CWD followed by LIST, see #listFiles(FTPConnectionHandler, String)
+            connHandler.ftpClient.changeWorkingDirectory(absPath);
+            connHandler.checkServerReply();
+
+            boolean completed = connHandler.ftpClient.listFiles(files -> listener.childrenListed(createChildren(files)), LISTING_BATCH_SIZE);
+
+            // The server replies with an error if the transfer was aborted, this is expected
+            if (completed) {
+                connHandler.checkServerReply();
+            }
+        }
+        // This exception is not an IOException and needs to be caught and thrown back as an IOException
+        catch(org.apache.commons.net.ftp.parser.ParserInitializationException e) {
+            LOGGER.info("ParserInitializationException caught", e);
+            throw new IOException();
+        } catch(IOException e) {
+            // Checks if the IOException corresponds to a socket error and in that case, closes the connection
+            connHandler.checkSocketException(e);
+
+            // Re-throw IOException
+            throw e;
+        } finally {
+            // Release the lock on the ConnectionHandler
+            connHandler.releaseLock();
+        }
+    }
+
+    /**
+     * Creates the children files corresponding to the given entries of this folder, discarding <code>null</code>,
+     * '.' and '..' entries.
+     *
+     * @param files entries of this folder, as parsed by the FTP client
+     * @return the children files
+     * @throws IOException if a child file couldn't be created
+     */
+    private AbstractFile[] createChildren(org.apache.commons.net.ftp.FTPFile files[]) throws IOException {
         if (files == null || files.length == 0) {
             return new AbstractFile[]{};
         }
@@ -1123,8 +1185,7 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
      */
     private static class FTPConnectionHandler extends ConnectionHandler {
 
-        private FTPClient ftpClient;
-//        private CustomFTPClient ftpClient;
+        private StreamingFTPClient ftpClient;
 
         /** Controls whether passive mode should be used for data transfers (default is true) */
         private boolean passiveMode;
@@ -1150,12 +1211,6 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
 //        /** Connection timeout to the FTP server in seconds */
 //        private final static int CONNECTION_TIMEOUT = 30;
 
-//        private class CustomFTPClient extends FTPClient {
-//
-//            private Socket getSocket() {
-//                return _socket_;
-//            }
-//        }
 
 
         private FTPConnectionHandler(FileURL location) {
@@ -1257,8 +1312,7 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
         public void startConnection() throws IOException {
             LOGGER.info("connecting to {}", getRealm().getHost());
 
-//            this.ftpClient = new CustomFTPClient();
-            this.ftpClient = new FTPClient();
+            this.ftpClient = new StreamingFTPClient();
 
             int retriesLeft = nbConnectionRetries;
             int retryDelay = connectionRetryDelay * 1000;
@@ -1468,4 +1522,90 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
             return FULL_PERMISSION_BITS;        
         }
     }
+
+
+    /**
+     * Receives the entries of a directory listing parsed by {@link StreamingFTPClient}.
+     */
+    private interface ListingCallback {
+
+        /**
+         * Called each time a batch of entries has been parsed.
+         *
+         * @param files the entries that have just been parsed
+         * @return <code>true</code> to continue listing, <code>false</code> to stop
+         * @throws IOException if the entries couldn't be processed, which stops the listing
+         */
+        boolean filesListed(org.apache.commons.net.ftp.FTPFile files[]) throws IOException;
+    }
+
+
+    /**
+     * FTPClient that parses directory listings while they are being received, rather than once the whole listing has
+     * been read like <code>FTPClient#listFiles</code> does.
+     */
+    private static class StreamingFTPClient extends FTPClient {
+
+        /** Parser for the server's listing format, created on first use */
+        private FTPFileEntryParser entryParser;
+
+        /**
+         * Lists the current working directory, passing the parsed entries to the given callback in batches.
+         * The caller must check the server's reply if <code>true</code> is returned.
+         *
+         * @param callback the callback that receives the parsed entries
+         * @param batchSize maximum number of entries passed at once to the callback
+         * @return <code>true</code> if the whole listing has been received, <code>false</code> if it was stopped by
+         * the callback
+         * @throws IOException if an error occurred while communicating with the server
+         */
+        private boolean listFiles(ListingCallback callback, int batchSize) throws IOException {
+            if (entryParser == null) {
+                String systemType;
+                try {
+                    systemType = getSystemType();
+                } catch(IOException e) {
+                    // Some servers don't support the SYST command, most of them use a Unix-like listing format
+                    LOGGER.info("Could not retrieve the system type, assuming Unix", e);
+                    systemType = FTPClientConfig.SYST_UNIX;
+                }
+                entryParser = new DefaultFTPFileEntryParserFactory().createFileEntryParser(systemType);
+            }
+
+            Socket socket = _openDataConnection_(FTPCmd.LIST, getListArguments(null));
+            // The server refused to list the directory, the caller will check the reply
+            if (socket == null) {
+                return true;
+            }
+
+            boolean completed = true;
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), getControlEncoding()));
+                List<org.apache.commons.net.ftp.FTPFile> batch = new ArrayList<>(batchSize);
+                String entry;
+                while (completed && (entry = entryParser.readNextEntry(reader)) != null) {
+                    // Lines that aren't entries (e.g. 'total' lines) can't be parsed
+                    org.apache.commons.net.ftp.FTPFile file = entryParser.parseFTPEntry(entry);
+                    if (file != null) {
+                        batch.add(file);
+                    }
+                    if (batch.size() >= batchSize) {
+                        completed = callback.filesListed(batch.toArray(new org.apache.commons.net.ftp.FTPFile[batch.size()]));
+                        batch.clear();
+                    }
+                }
+                if (completed && !batch.isEmpty()) {
+                    callback.filesListed(batch.toArray(new org.apache.commons.net.ftp.FTPFile[batch.size()]));
+                }
+            } finally {
+                // Closing the data connection before the end of the listing aborts the transfer
+                socket.close();
+            }
+
+            // Read the server's reply to the LIST command, which is a transfer error if it was stopped
+            completePendingCommand();
+
+            return completed;
+        }
+    }
 }
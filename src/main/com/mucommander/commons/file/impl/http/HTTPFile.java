@@ -4,6 +4,9 @@ import com.mucommander.commons.file.*;
 import com.mucommander.commons.io.BlockRandomInputStream;
 import com.mucommander.commons.io.RandomAccessInputStream;
 import com.mucommander.commons.io.RandomAccessOutputStream;
+import com.mucommander.commons.io.SegmentedInputStream;
+import com.mucommander.commons.io.SegmentedInputStream.ResourceChangedException;
+import com.mucommander.commons.io.StreamUtils;
 import com.mucommander.commons.io.base64.Base64Encoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -69,6 +72,9 @@ public class HTTPFile extends ProtocolFile {
     /** True if file has been resolved on the remote HTTP server, either successfully or unsuccessfully */
     private boolean fileResolved;
 
+    /** True if the server declared that it serves byte ranges of the resource ('Accept-Ranges: bytes') */
+    private boolean acceptRanges;
+
     private boolean parentValSet;
     protected AbstractFile parent;
 	
@@ -180,7 +186,9 @@ public class HTTPFile extends ProtocolFile {
             attributes.setDate(date);
 
             // Resolve size with content-length header (-1 if not available)
-            attributes.setSize(conn.getContentLength());
+            attributes.setSize(conn.getContentLengthLong());
+
+            acceptRanges = "bytes".equalsIgnoreCase(conn.getHeaderField("Accept-Ranges"));
 
             // Test if content is HTML
             String contentType = conn.getContentType();
@@ -394,8 +402,77 @@ public class HTTPFile extends ProtocolFile {
         return false;
     }
 
+    /**
+     * Returns a {@link SegmentedInputStream} reading the resource from the given offset with several concurrent
+     * 'Range' requests, if the resource is large enough and has been resolved on a server that serves byte ranges.
+     * No request is issued to find this out: <code>null</code> is returned if the file has not been resolved yet.
+     *
+     * @param offset offset of the first byte to read
+     * @return a segmented stream, <code>null</code> if the resource must be read with a single request
+     */
+    private InputStream getSegmentedInputStream(long offset) {
+        if (!fileResolved || !acceptRanges || !SegmentedInputStream.isSegmentable(attributes.getSize()-offset)) {
+            return null;
+        }
+
+        return new SegmentedInputStream(offset, attributes.getSize()-offset) {
+            @Override
+            protected int readSegment(long offset, byte b[], int len) throws IOException {
+                HttpURLConnection conn = getHttpURLConnection(url);
+                conn.setRequestProperty("Range", "bytes="+offset+"-"+(offset+len-1));
+                // The range is only served if the resource hasn't changed since the first segment
+                String validator = getValidator();
+                if (validator != null) {
+                    conn.setRequestProperty("If-Range", validator);
+                }
+
+                conn.connect();
+                checkHTTPResponse(conn);
+                // A server that ignores the range would send the whole resource, as would a server whose resource
+                // doesn't match 'If-Range'
+                if (conn.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+                    conn.disconnect();
+                    if (validator != null) {
+                        throw new ResourceChangedException(validator, getResponseValidator(conn));
+                    }
+                    throw new IOException("Range not served: "+conn.getResponseCode());
+                }
+                try {
+                    checkValidator(getResponseValidator(conn));
+                } catch (ResourceChangedException e) {
+                    conn.disconnect();
+                    throw e;
+                }
+
+                try (InputStream in = conn.getInputStream()) {
+                    return StreamUtils.readUpTo(in, b, 0, len);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the validator of the given response that can be sent in an 'If-Range' header: its ETag if it is a
+     * strong one, its 'Last-Modified' date otherwise.
+     *
+     * @param conn a connection whose response has been received
+     * @return the validator of the response, <code>null</code> if it has none
+     */
+    private static String getResponseValidator(HttpURLConnection conn) {
+        String etag = conn.getHeaderField("ETag");
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return conn.getHeaderField("Last-Modified");
+    }
+
     @Override
     public InputStream getInputStream() throws IOException {
+        InputStream segmentedIn = getSegmentedInputStream(0);
+        if (segmentedIn != null) {
+            return segmentedIn;
+        }
+
         HttpURLConnection conn = getHttpURLConnection(this.url);
 
         // Establish connection
@@ -703,10 +780,16 @@ public class HTTPFile extends ProtocolFile {
 
     /**
      * Overrides AbstractFile's getInputStream(long) method to provide a more efficient implementation:
-     * use the HTTP 1.1 header to start the transfer at the given offset.
+     * use the HTTP 1.1 header to start the transfer at the given offset. Large resources are read with several
+     * concurrent requests, see {@link #getSegmentedInputStream(long)}.
      */
     @Override
     public InputStream getInputStream(long offset) throws IOException {
+        InputStream segmentedIn = getSegmentedInputStream(offset);
+        if (segmentedIn != null) {
+            return segmentedIn;
+        }
+
         HttpURLConnection conn = getHttpURLConnection(this.url);
 
         // Set header that allows to resume transfer
@@ -52,4 +52,13 @@ public class IsoArchiveFile extends AbstractROArchiveFile {
 
         return new IsoEntryInputStream(rais, isoEntry);
     }
+
+    /**
+     * Returns <code>true</code> if the underlying file has random read access: each entry stream then reads the image
+     * with a <code>RandomAccessInputStream</code> of its own.
+     */
+    @Override
+    public boolean isConcurrentEntryAccessSupported() {
+        return file.isFileOperationSupported(FileOperation.RANDOM_READ_FILE);
+    }
 }
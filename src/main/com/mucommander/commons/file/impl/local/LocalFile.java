@@ -33,21 +33,26 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
 import java.nio.file.attribute.FileOwnerAttributeView;
 import java.nio.file.attribute.PosixFileAttributes;
 import java.nio.file.attribute.UserPrincipal;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.StringTokenizer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.mucommander.commons.file.*;
+import com.mucommander.commons.file.filter.FileFilter;
 import com.mucommander.commons.file.filter.FilenameFilter;
+import com.mucommander.commons.file.impl.CachedFile;
 import com.mucommander.commons.file.util.Kernel32;
 import com.mucommander.commons.file.util.Kernel32API;
 import com.mucommander.commons.file.util.PathUtils;
 import com.mucommander.commons.io.BufferPool;
+import com.mucommander.commons.io.FileTransferException;
 import com.mucommander.commons.io.FilteredOutputStream;
 import com.mucommander.commons.io.RandomAccessInputStream;
 import com.mucommander.commons.io.RandomAccessOutputStream;
@@ -92,6 +97,11 @@ public class LocalFile extends ProtocolFile {
 	private final static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(LocalFile.class);
     private static final boolean IS_UNIX_BASED = OsFamily.getCurrent().isUnixBased();
 
+    /** Attributes read for each child by {@link #lsWithAttributes(FileFilter)}. POSIX attributes are not used as
+     * resolving owner and group names costs more than the rest of the listing. */
+    private static final Class<? extends BasicFileAttributes> LISTING_ATTRIBUTES_CLASS = OsFamily.WINDOWS.isCurrent() ?
+            DosFileAttributes.class : BasicFileAttributes.class;
+
     protected File file;
     private FilePermissions permissions;
 
@@ -113,6 +123,10 @@ public class LocalFile extends ProtocolFile {
      * of having single a root folder '/' */
     public final static boolean USES_ROOT_DRIVES = IS_WINDOWS || OsFamily.OS_2.isCurrent();
 
+    /** Maximum number of bytes handed to a single {@link FileChannel#transferTo} call when copying local files:
+     * large enough to amortize the system calls, small enough to report progress and react to interruptions */
+    public final static long CHANNEL_TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+
     /** Pattern matching Windows-like drives' root, e.g. C:\ */
     final static Pattern DRIVE_ROOT_PATTERN = Pattern.compile("^[a-zA-Z]{1}[:]{1}[\\\\]{1}");
 
@@ -988,6 +1002,95 @@ public class LocalFile extends ProtocolFile {
     }
     }
 
+    /**
+     * Copies this file to the given local file using {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * which lets the kernel move the data (<code>copy_file_range</code> or <code>sendfile</code> under Linux) without
+     * copying it through the Java heap. Directories are copied recursively, symbolic links are skipped like
+     * {@link #copyRecursively(AbstractFile, AbstractFile)} does.
+     *
+     * @param destFile the destination file, must be a local file
+     * @throws IOException if the destination file isn't a local file or if the copy failed
+     */
+    @Override
+    public void copyRemotelyTo(AbstractFile destFile) throws IOException {
+        checkCopyRemotelyPrerequisites(destFile, false, false);
+
+        transferRecursively(file.toPath(), ((LocalFile)destFile.getTopAncestor()).file.toPath());
+    }
+
+    /**
+     * Copies the given source file or directory to the destination path, see {@link #copyRemotelyTo(AbstractFile)}.
+     */
+    private static void transferRecursively(Path sourcePath, Path destPath) throws FileTransferException {
+        if (Files.isSymbolicLink(sourcePath)) {
+            return;
+        }
+
+        if (Files.isDirectory(sourcePath)) {
+            try {
+                if (!Files.isDirectory(destPath)) {
+                    Files.createDirectory(destPath);
+                }
+            } catch (IOException e) {
+                throw new FileTransferException(FileTransferException.WRITING_DESTINATION, e);
+            }
+
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(sourcePath)) {
+                for (Path child : children) {
+                    transferRecursively(child, destPath.resolve(child.getFileName().toString()));
+                }
+            } catch (FileTransferException e) {
+                throw e;
+            } catch (IOException | DirectoryIteratorException e) {
+                throw new FileTransferException(FileTransferException.READING_SOURCE, e);
+            }
+            return;
+        }
+
+        FileChannel in;
+        try {
+            in = FileChannel.open(sourcePath, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new FileTransferException(FileTransferException.OPENING_SOURCE, e);
+        }
+
+        try {
+            FileChannel out;
+            try {
+                out = FileChannel.open(destPath, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (IOException e) {
+                throw new FileTransferException(FileTransferException.OPENING_DESTINATION, e);
+            }
+
+            long position = 0;
+            try {
+                long size = in.size();
+                while (position < size) {
+                    long transferred = in.transferTo(position, Math.min(CHANNEL_TRANSFER_CHUNK_SIZE, size - position), out);
+                    // The source file has been truncated in the meantime
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    position += transferred;
+                }
+            } catch (IOException e) {
+                throw new FileTransferException(FileTransferException.WRITING_DESTINATION, position, e);
+            } finally {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    throw new FileTransferException(FileTransferException.CLOSING_DESTINATION, e);
+                }
+            }
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                throw new FileTransferException(FileTransferException.CLOSING_SOURCE, e);
+            }
+        }
+    }
+
     @Override
     public long getFreeSpace() throws IOException {
         if (JavaVersion.JAVA_1_6.isCurrentOrHigher()) {
@@ -1008,17 +1111,6 @@ public class LocalFile extends ProtocolFile {
 
     // Unsupported file operations
 
-    /**
-     * Always throws {@link UnsupportedFileOperationException} when called.
-     *
-     * @throws UnsupportedFileOperationException always
-     */
-    @Override
-    @UnsupportedFileOperation
-    public void copyRemotelyTo(AbstractFile destFile) throws UnsupportedFileOperationException {
-        throw new UnsupportedFileOperationException(FileOperation.COPY_REMOTELY);
-    }
-
     @Override
     @UnsupportedFileOperation
     public short getReplication() throws UnsupportedFileOperationException {
@@ -1123,6 +1215,84 @@ public class LocalFile extends ProtocolFile {
         return children;
     }
 
+    /**
+     * Lists this folder like {@link #ls(FileFilter)}, reading the attributes of each child in the same pass.
+     * The children are returned as {@link CachedFile} instances whose directory, hidden, symlink, size and date
+     * values are already set, which saves the separate system calls otherwise needed to retrieve each
+     * of them. The attributes are read before the filter is applied, so that filters don't query the files either.
+     *
+     * @param filter the FileFilter to be used to filter files out from the list, may be <code>null</code>
+     * @return the children of this folder, as <code>CachedFile</code> instances
+     * @throws IOException if this folder couldn't be listed
+     */
+    public AbstractFile[] lsWithAttributes(FileFilter filter) throws IOException {
+        List<AbstractFile> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(file.toPath())) {
+            for (Path path : stream) {
+                children.add(createChildWithAttributes(path));
+            }
+        } catch (DirectoryIteratorException e) {
+            throw e.getCause();
+        }
+
+        AbstractFile[] files = children.toArray(new AbstractFile[children.size()]);
+        return filter == null ? files : filter.filter(files);
+    }
+
+    /**
+     * Same as {@link #lsWithAttributes(FileFilter)} but only returns the children which name is contained in the given
+     * collection. Names that don't match any existing child are ignored. This allows a few children of a large folder
+     * to be refreshed without listing the whole folder.
+     *
+     * @param names names of the children to return
+     * @param filter the FileFilter to be used to filter files out from the list, may be <code>null</code>
+     * @return the existing children with the given names, as <code>CachedFile</code> instances
+     */
+    public AbstractFile[] lsWithAttributes(Collection<String> names, FileFilter filter) {
+        Path folderPath = file.toPath();
+        List<AbstractFile> children = new ArrayList<>(names.size());
+        for (String name : names) {
+            Path path = folderPath.resolve(name);
+            if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+                try {
+                    children.add(createChildWithAttributes(path));
+                } catch (IOException e) {
+                    logger.debug("Could not create child {}", path, e);
+                }
+            }
+        }
+
+        AbstractFile[] files = children.toArray(new AbstractFile[children.size()]);
+        return filter == null ? files : filter.filter(files);
+    }
+
+    /**
+     * Creates a <code>CachedFile</code> for the given child of this folder, with its attributes read in one go.
+     *
+     * @param path path of a child of this folder
+     * @return the child, as a <code>CachedFile</code> instance
+     * @throws IOException if the child file couldn't be created
+     */
+    private CachedFile createChildWithAttributes(Path path) throws IOException {
+        String name = path.getFileName().toString();
+
+        // Clone the FileURL of this file and set the child's path, this is more efficient than creating a new
+        // FileURL instance from scratch.
+        FileURL childURL = (FileURL)fileURL.clone();
+        childURL.setPath(absPath+SEPARATOR+name);
+
+        CachedFile child = new CachedFile(FileFactory.getFile(childURL, this, path.toFile()), true);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, LISTING_ATTRIBUTES_CLASS, LinkOption.NOFOLLOW_LINKS);
+            boolean hidden = attributes instanceof DosFileAttributes ? ((DosFileAttributes)attributes).isHidden() : name.startsWith(".");
+            child.setFileAttributes(attributes, hidden);
+        } catch (IOException | UnsupportedOperationException e) {
+            // The attributes will be retrieved on demand
+            logger.trace("Could not read attributes of {}", path, e);
+        }
+        return child;
+    }
+
     @Override
     public boolean isHidden() {
         return file.isHidden();
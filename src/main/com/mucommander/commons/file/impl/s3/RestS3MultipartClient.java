@@ -0,0 +1,215 @@
+package com.mucommander.commons.file.impl.s3;
+
+import com.mucommander.commons.io.StreamUtils;
+import org.jets3t.service.S3ServiceException;
+import org.jets3t.service.security.AWSCredentials;
+import org.jets3t.service.utils.RestUtils;
+import org.jets3t.service.utils.ServiceUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Sends the requests of the S3 multipart upload API over plain HTTP connections, signed with the same version 2
+ * signatures as the requests jets3t sends. jets3t cannot be used for those: its request signer drops the
+ * <code>uploads</code>, <code>uploadId</code> and <code>partNumber</code> sub-resources from the string to sign.
+ *
+ * <p>Objects are addressed path-style (<code>endpoint/bucket/key</code>), which lets this client talk to
+ * S3-compatible servers running on a local address as well as to Amazon S3.
+ *
+ * @author Oleg Trifonov
+ */
+class RestS3MultipartClient implements S3MultipartClient {
+
+    /** Content type of the uploaded objects, the same as jets3t's default */
+    private final static String OBJECT_CONTENT_TYPE = "binary/octet-stream";
+
+    private final static String XML_CONTENT_TYPE = "application/xml";
+
+    /** Base URL of the server, without a trailing slash, e.g. <code>https://s3.amazonaws.com</code> */
+    private final String endpoint;
+
+    private final AWSCredentials credentials;
+
+    /**
+     * Creates a new client sending requests to the given server.
+     *
+     * @param endpoint base URL of the server, e.g. <code>https://s3.amazonaws.com</code>
+     * @param credentials the credentials requests are signed with
+     */
+    RestS3MultipartClient(String endpoint, AWSCredentials credentials) {
+        this.endpoint = endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length()-1) : endpoint;
+        this.credentials = credentials;
+    }
+
+    public String initiate(String bucketName, String key) throws IOException {
+        String response = request("POST", bucketName, key, "uploads", OBJECT_CONTENT_TYPE, null, 0);
+        String uploadId = getElement(response, "UploadId");
+        if (uploadId == null) {
+            throw new IOException("No upload ID in response: "+response);
+        }
+        return uploadId;
+    }
+
+    public String uploadPart(String bucketName, String key, String uploadId, int partNumber, byte data[], int length) throws IOException {
+        HttpURLConnection connection = openConnection("PUT", bucketName, key,
+                "partNumber="+partNumber+"&uploadId="+uploadId, OBJECT_CONTENT_TYPE, data, length);
+        try {
+            readResponse(connection);
+            String etag = connection.getHeaderField("ETag");
+            if (etag == null) {
+                throw new IOException("No ETag returned for part "+partNumber);
+            }
+            return etag;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    public void complete(String bucketName, String key, String uploadId, List<String> etags) throws IOException {
+        StringBuilder sb = new StringBuilder("<CompleteMultipartUpload>");
+        for (int i = 0; i < etags.size(); i++) {
+            sb.append("<Part><PartNumber>").append(i+1).append("</PartNumber><ETag>")
+                .append(etags.get(i)).append("</ETag></Part>");
+        }
+        sb.append("</CompleteMultipartUpload>");
+        byte body[] = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        // The server may report an error in a 200 response, once it has started sending whitespace to keep the
+        // connection alive while assembling the parts
+        String response = request("POST", bucketName, key, "uploadId="+uploadId, XML_CONTENT_TYPE, body, body.length);
+        if (getElement(response, "Error") != null) {
+            throw new IOException("Failed to complete upload: "+response);
+        }
+    }
+
+    public void abort(String bucketName, String key, String uploadId) throws IOException {
+        request("DELETE", bucketName, key, "uploadId="+uploadId, null, null, 0);
+    }
+
+    /**
+     * Sends a request and returns the body of the response.
+     */
+    private String request(String method, String bucketName, String key, String subResource, String contentType, byte body[], int length) throws IOException {
+        HttpURLConnection connection = openConnection(method, bucketName, key, subResource, contentType, body, length);
+        try {
+            return readResponse(connection);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Opens a connection for a signed request and sends the request body, if any.
+     *
+     * @param subResource the query string of the request, whose parameters must be sorted by name
+     */
+    private HttpURLConnection openConnection(String method, String bucketName, String key, String subResource, String contentType, byte body[], int length) throws IOException {
+        String resource;
+        try {
+            resource = "/"+bucketName+"/"+RestUtils.encodeUrlPath(key, "/");
+        } catch(S3ServiceException e) {
+            throw new IOException(e);
+        }
+        resource += "?"+subResource;
+
+        String contentMD5 = "";
+        if (body != null) {
+            try {
+                MessageDigest md5 = MessageDigest.getInstance("MD5");
+                md5.update(body, 0, length);
+                contentMD5 = ServiceUtils.toBase64(md5.digest());
+            } catch(NoSuchAlgorithmException e) {
+                throw new IOException(e);
+            }
+        }
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+        String date = dateFormat.format(new Date());
+
+        String stringToSign = method+"\n"+contentMD5+"\n"+(contentType==null?"":contentType)+"\n"+date+"\n"+resource;
+        String signature;
+        try {
+            signature = ServiceUtils.signWithHmacSha1(credentials.getSecretKey(), stringToSign);
+        } catch(S3ServiceException e) {
+            throw new IOException(e);
+        }
+
+        HttpURLConnection connection = (HttpURLConnection)new URL(endpoint+resource).openConnection();
+        connection.setRequestMethod(method);
+        connection.setUseCaches(false);
+        connection.setRequestProperty("Date", date);
+        connection.setRequestProperty("Authorization", "AWS "+credentials.getAccessKey()+":"+signature);
+        if (contentType != null) {
+            connection.setRequestProperty("Content-Type", contentType);
+        }
+
+        if (body != null) {
+            connection.setRequestProperty("Content-MD5", contentMD5);
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body, 0, length);
+            }
+        } else if (!"DELETE".equals(method)) {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(0);
+            connection.getOutputStream().close();
+        }
+
+        return connection;
+    }
+
+    /**
+     * Returns the body of the response, throws an <code>IOException</code> containing the error returned by the
+     * server if the request was not successful.
+     */
+    private static String readResponse(HttpURLConnection connection) throws IOException {
+        int code = connection.getResponseCode();
+        boolean success = code >= 200 && code < 300;
+        InputStream in = success ? connection.getInputStream() : connection.getErrorStream();
+
+        String body = "";
+        if (in != null) {
+            try {
+                ByteArrayOutputStream bout = new ByteArrayOutputStream();
+                StreamUtils.copyStream(in, bout);
+                body = new String(bout.toByteArray(), StandardCharsets.UTF_8);
+            } finally {
+                in.close();
+            }
+        }
+
+        if (!success) {
+            throw new IOException("HTTP "+code+": "+body);
+        }
+        return body;
+    }
+
+    /**
+     * Returns the text of the first element with the given name in the given XML document, <code>null</code> if there
+     * is no such element. The responses of the multipart upload requests are simple enough not to need an XML parser.
+     */
+    static String getElement(String xml, String name) {
+        int start = xml.indexOf("<"+name+">");
+        if (start == -1) {
+            return null;
+        }
+        start += name.length()+2;
+        int end = xml.indexOf("</"+name+">", start);
+        return end == -1 ? null : xml.substring(start, end);
+    }
+}
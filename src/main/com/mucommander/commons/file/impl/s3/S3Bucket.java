@@ -71,6 +71,11 @@ public class S3Bucket extends S3File {
         return listObjects(bucketName, "", this);
     }
 
+    @Override
+    public void lsStreaming(FileListingListener listener) throws IOException {
+        listObjects(bucketName, "", this, listener);
+    }
+
     @Override
     public void delete() throws IOException {
         try {
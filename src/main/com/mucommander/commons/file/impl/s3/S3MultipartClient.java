@@ -0,0 +1,60 @@
+package com.mucommander.commons.file.impl.s3;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The requests of the S3 multipart upload API, which jets3t 0.7.2 does not provide. Implementations must allow
+ * parts of the same upload to be sent from several threads at the same time.
+ *
+ * @see RestS3MultipartClient
+ * @see S3MultipartOutputStream
+ * @author Oleg Trifonov
+ */
+interface S3MultipartClient {
+
+    /**
+     * Starts a multipart upload ('Initiate Multipart Upload' request).
+     *
+     * @param bucketName name of the bucket
+     * @param key key of the object to upload
+     * @return the upload ID to pass to the other requests
+     * @throws IOException if the request failed
+     */
+    String initiate(String bucketName, String key) throws IOException;
+
+    /**
+     * Uploads a part of the object ('Upload Part' request). All parts but the last one must be at least 5 MB long.
+     *
+     * @param bucketName name of the bucket
+     * @param key key of the object
+     * @param uploadId the upload ID returned by {@link #initiate(String, String)}
+     * @param partNumber number of the part, starting at 1
+     * @param data the part data
+     * @param length number of bytes of the part
+     * @return the ETag of the part
+     * @throws IOException if the request failed
+     */
+    String uploadPart(String bucketName, String key, String uploadId, int partNumber, byte data[], int length) throws IOException;
+
+    /**
+     * Assembles the uploaded parts into the object ('Complete Multipart Upload' request).
+     *
+     * @param bucketName name of the bucket
+     * @param key key of the object
+     * @param uploadId the upload ID returned by {@link #initiate(String, String)}
+     * @param etags the ETags of the parts, in the order of the part numbers
+     * @throws IOException if the request failed
+     */
+    void complete(String bucketName, String key, String uploadId, List<String> etags) throws IOException;
+
+    /**
+     * Discards the parts uploaded so far ('Abort Multipart Upload' request), so that they are not billed.
+     *
+     * @param bucketName name of the bucket
+     * @param key key of the object
+     * @param uploadId the upload ID returned by {@link #initiate(String, String)}
+     * @throws IOException if the request failed
+     */
+    void abort(String bucketName, String key, String uploadId) throws IOException;
+}
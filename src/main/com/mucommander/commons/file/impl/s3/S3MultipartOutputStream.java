@@ -0,0 +1,240 @@
+package com.mucommander.commons.file.impl.s3;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Uploads the data written to it as an S3 object of unknown length, using a multipart upload. The data is split into
+ * parts of a fixed size which are uploaded on a pool of threads while the next parts are being written.
+ *
+ * <p>At most as many parts as there are threads are being uploaded at once, and a part being filled blocks the writing
+ * thread until a slot is free: the memory used by the stream is bounded by <code>(threads+1) * partSize</code>, whatever
+ * the size of the object.
+ *
+ * <p>The object is created when the stream is closed. If an error occurs, or if {@link #abort()} is called, the parts
+ * uploaded so far are discarded and the object is not created. A stream that is not closed nor aborted leaves an
+ * incomplete upload behind, which is billed until it is aborted.
+ *
+ * @author Oleg Trifonov
+ */
+class S3MultipartOutputStream extends OutputStream {
+    private static final Logger LOGGER = LoggerFactory.getLogger(S3MultipartOutputStream.class);
+
+    /** Minimum size of all parts but the last, imposed by S3 */
+    final static int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    /** Maximum number of parts of an upload, imposed by S3 */
+    final static int MAX_PARTS = 10000;
+
+    private final S3MultipartClient client;
+    private final String bucketName;
+    private final String key;
+    private final int partSize;
+    private final int threads;
+
+    private final ExecutorService executor;
+
+    /** <code>null</code> until the first part is submitted */
+    private String uploadId;
+
+    /** Parts being uploaded, in the order of their numbers */
+    private final Deque<Part> pendingParts = new ArrayDeque<>();
+
+    /** ETags of the uploaded parts, in the order of their numbers */
+    private final List<String> etags = new ArrayList<>();
+
+    /** Buffers of uploaded parts, reused for the next parts */
+    private final Deque<byte[]> freeBuffers = new ArrayDeque<>();
+
+    /** Part being filled */
+    private byte part[];
+    private int partLength;
+    private int nbParts;
+
+    private boolean closed;
+
+    /**
+     * Creates a new stream uploading parts of the given size on the given number of threads. No request is sent before
+     * a first part has been filled, or before the stream is closed.
+     *
+     * @param client the client sending the requests
+     * @param bucketName name of the bucket
+     * @param key key of the object to create
+     * @param partSize size of the parts, at least {@link #MIN_PART_SIZE}
+     * @param threads number of parts that can be uploaded at the same time
+     */
+    S3MultipartOutputStream(S3MultipartClient client, String bucketName, String key, int partSize, int threads) {
+        this.client = client;
+        this.bucketName = bucketName;
+        this.key = key;
+        this.partSize = partSize;
+        this.threads = threads;
+        this.part = new byte[partSize];
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, getClass().getSimpleName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (partLength == partSize) {
+            submitPart();
+        }
+        part[partLength++] = (byte)b;
+    }
+
+    @Override
+    public void write(byte b[], int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (len > 0) {
+            if (partLength == partSize) {
+                submitPart();
+            }
+            int n = Math.min(len, partSize - partLength);
+            System.arraycopy(b, off, part, partLength, n);
+            partLength += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Submits the current part for upload, after waiting for a slot if all threads are busy.
+     */
+    private void submitPart() throws IOException {
+        try {
+            if (uploadId == null) {
+                uploadId = client.initiate(bucketName, key);
+            }
+            if (nbParts == MAX_PARTS) {
+                throw new IOException("Object too large, more than "+MAX_PARTS+" parts of "+partSize+" bytes");
+            }
+
+            while (pendingParts.size() >= threads) {
+                collectPart();
+            }
+
+            final byte data[] = part;
+            final int length = partLength;
+            final int partNumber = ++nbParts;
+            pendingParts.add(new Part(data, executor.submit(() -> client.uploadPart(bucketName, key, uploadId, partNumber, data, length))));
+
+            part = freeBuffers.isEmpty() ? new byte[partSize] : freeBuffers.poll();
+            partLength = 0;
+        } catch(IOException e) {
+            abort();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for the oldest part being uploaded and records its ETag.
+     */
+    private void collectPart() throws IOException {
+        Part oldest = pendingParts.poll();
+        try {
+            etags.add(oldest.etag.get());
+            freeBuffers.add(oldest.data);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Uploads the last part, waits for all parts to be uploaded and creates the object. The upload is aborted if any
+     * of this fails.
+     *
+     * @throws IOException if a part could not be uploaded or if the object could not be created
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        // An empty object is uploaded as a single empty part
+        if (partLength > 0 || nbParts == 0) {
+            submitPart();
+        }
+        closed = true;
+
+        try {
+            while (!pendingParts.isEmpty()) {
+                collectPart();
+            }
+            client.complete(bucketName, key, uploadId, etags);
+            uploadId = null;
+        } catch(IOException e) {
+            abort();
+            throw e;
+        } finally {
+            executor.shutdownNow();
+            part = null;
+            freeBuffers.clear();
+        }
+    }
+
+    /**
+     * Cancels the upload: the parts being uploaded are interrupted and the parts uploaded so far are discarded.
+     * The stream cannot be used afterwards. This method does nothing if the stream has been closed successfully.
+     */
+    public void abort() {
+        closed = true;
+
+        for (Part pending : pendingParts) {
+            pending.etag.cancel(true);
+        }
+        pendingParts.clear();
+        executor.shutdownNow();
+
+        if (uploadId != null) {
+            try {
+                client.abort(bucketName, key, uploadId);
+            } catch(IOException e) {
+                LOGGER.info("Failed to abort multipart upload of "+key, e);
+            }
+            uploadId = null;
+        }
+        part = null;
+        freeBuffers.clear();
+    }
+
+
+    /**
+     * A part being uploaded.
+     */
+    private static class Part {
+        private final byte data[];
+        private final Future<String> etag;
+
+        private Part(byte data[], Future<String> etag) {
+            this.data = data;
+            this.etag = etag;
+        }
+    }
+}
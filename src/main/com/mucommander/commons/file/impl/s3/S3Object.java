@@ -4,13 +4,17 @@ import com.mucommander.commons.file.*;
 import com.mucommander.commons.io.BufferPool;
 import com.mucommander.commons.io.FileTransferException;
 import com.mucommander.commons.io.RandomAccessInputStream;
+import com.mucommander.commons.io.SegmentedInputStream;
+import com.mucommander.commons.io.SegmentedInputStream.ResourceChangedException;
 import com.mucommander.commons.io.StreamUtils;
+import org.jets3t.service.Constants;
 import org.jets3t.service.S3Service;
 import org.jets3t.service.S3ServiceException;
 import org.jets3t.service.model.S3Owner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -26,6 +30,13 @@ public class S3Object extends S3File {
     private String bucketName;
     private S3ObjectFileAttributes atts;
 
+    /** Size of the parts of multipart uploads, which also is the largest object uploaded by a single PUT request
+     * when the length is not known in advance */
+    private static int multipartPartSize = 16 * 1024 * 1024;
+
+    /** Number of parts of a multipart upload that are uploaded at the same time */
+    private static int multipartThreads = 4;
+
     /** Maximum size of an S3 object (5GB) */
     private final static long MAX_OBJECT_SIZE = 5368709120l;
 
@@ -123,6 +134,11 @@ public class S3Object extends S3File {
         return listObjects(bucketName, getObjectKey(true), this);
     }
 
+    @Override
+    public void lsStreaming(FileListingListener listener) throws IOException {
+        listObjects(bucketName, getObjectKey(true), this, listener);
+    }
+
     @Override
     public void mkdir() throws IOException {
         if(exists())
@@ -209,6 +225,38 @@ public class S3Object extends S3File {
 
     @Override
     public InputStream getInputStream(long offset) throws IOException {
+        // Large objects are read with several concurrent GET Range requests, which together are much faster than a
+        // single one. The extra requests are negligible in cost compared to the data they transfer.
+        long length = getSize()-offset;
+        if(SegmentedInputStream.isSegmentable(length)) {
+            return new SegmentedInputStream(offset, length) {
+                @Override
+                protected int readSegment(long offset, byte b[], int len) throws IOException {
+                    // The range is only served if the object hasn't changed since the first segment
+                    String etag = getValidator();
+                    org.jets3t.service.model.S3Object object;
+                    try {
+                        object = service.getObject(bucketName, getObjectKey(false), null, null,
+                                etag == null ? null : new String[] {etag}, null, offset, offset+len-1L);
+                    }
+                    catch(S3ServiceException e) {
+                        if (etag != null && e.getResponseCode() == 412) {
+                            throw new ResourceChangedException(etag, null);
+                        }
+                        throw getIOException(e);
+                    }
+
+                    try (InputStream in = object.getDataInputStream()) {
+                        checkValidator(object.getETag());
+                        return StreamUtils.readUpTo(in, b, 0, len);
+                    }
+                    catch(S3ServiceException e) {
+                        throw getIOException(e);
+                    }
+                }
+            };
+        }
+
         try {
             // Note: do *not* use S3ObjectRandomAccessInputStream if the object is to be read sequentially, as it would
             // add unnecessary billing overhead since it reads the object chunk by chunk, each in a separate GET request.
@@ -323,51 +371,107 @@ public class S3Object extends S3File {
             putObject(in, length);
         }
         else {
-            // Copy the stream to a temporary file so that we can know the object's length, which has to be declared
-            // in the PUT request's headers (that is before the transfer is started).
-            final AbstractFile tempFile;
-            final OutputStream tempOut;
+            // The object's length has to be declared in the PUT request's headers, which is not possible here. Read
+            // a first part: if the stream ends before it is full, the object is small enough to be uploaded by a
+            // single PUT request. Otherwise, the stream is uploaded part by part, without being spooled to disk.
+            byte firstPart[] = new byte[multipartPartSize];
+            int firstPartLength;
             try {
-                tempFile = FileFactory.getTemporaryFile(false);
-                tempOut = tempFile.getOutputStream();
-            } catch (IOException e) {
-                throw new FileTransferException(FileTransferException.OPENING_DESTINATION);
+                firstPartLength = StreamUtils.readUpTo(in, firstPart);
+            } catch(IOException e) {
+                closeInputStream(in);
+                throw new FileTransferException(FileTransferException.READING_SOURCE);
             }
 
-            try {
-                // Copy the stream to the temporary file
-                try {
-                    StreamUtils.copyStream(in, tempOut, IO_BUFFER_SIZE);
-                }
-                finally {
-                    // Close the stream even if copyStream() threw an IOException
-                    try {
-                        tempOut.close();
-                    } catch(IOException e) {
-                        // Do not re-throw the exception to prevent swallowing the exception thrown in the try block
-                    }
-                }
+            if(firstPartLength<firstPart.length) {
+                closeInputStream(in);
+                putObject(new ByteArrayInputStream(firstPart, 0, firstPartLength), firstPartLength);
+                return;
+            }
 
-                InputStream tempIn;
-                try {
-                    tempIn = tempFile.getInputStream();
-                } catch(IOException e) {
-                    throw new FileTransferException(FileTransferException.OPENING_SOURCE);
-                }
+            multipartUpload(in, firstPart);
+        }
+    }
 
-                putObject(tempIn, tempFile.getSize());
+    /**
+     * Uploads the given stream with a multipart upload, the parts being uploaded concurrently. The upload is aborted
+     * if the stream cannot be read, in particular when the transfer is cancelled by closing the stream.
+     * The input stream is always closed, whether the operation failed or succeeded.
+     *
+     * @param in the stream that contains the rest of the object
+     * @param firstPart the first bytes of the object, already read from the stream
+     * @throws FileTransferException if an error occurred during the transfer
+     */
+    private void multipartUpload(InputStream in, byte firstPart[]) throws FileTransferException {
+        S3MultipartOutputStream out = new S3MultipartOutputStream(createMultipartClient(), bucketName, getObjectKey(false), multipartPartSize, multipartThreads);
+        try {
+            long size;
+            try {
+                out.write(firstPart);
+                size = firstPart.length + StreamUtils.copyStream(in, out, IO_BUFFER_SIZE);
+            } catch(FileTransferException e) {
+                out.abort();
+                throw e;
+            } catch(IOException e) {
+                out.abort();
+                throw new FileTransferException(FileTransferException.WRITING_DESTINATION);
             }
-            finally {
-                // Delete the temporary file, no matter what.
-                try {
-                    tempFile.delete();
-                } catch(IOException e) {
-                    // Do not re-throw the exception to prevent exceptions caught in the catch block from being replaced
-                }
+
+            try {
+                out.close();
+            } catch(IOException e) {
+                LOGGER.info("Failed to complete multipart upload", e);
+                throw new FileTransferException(FileTransferException.CLOSING_DESTINATION);
             }
+
+            atts.setExists(true);
+            atts.setDirectory(false);
+            atts.setSize(size);
+            atts.setDate(System.currentTimeMillis());
+            atts.updateExpirationDate();
+        }
+        finally {
+            closeInputStream(in);
+        }
+    }
+
+    /**
+     * Returns a client for the multipart upload requests, that sends them to the same server as {@link #service}.
+     *
+     * @return a client for the multipart upload requests
+     */
+    private S3MultipartClient createMultipartClient() {
+        return new RestS3MultipartClient((service.isHttpsOnly()?"https://":"http://")+Constants.S3_HOSTNAME, service.getAWSCredentials());
+    }
+
+    private static void closeInputStream(InputStream in) {
+        try {
+            in.close();
+        }
+        catch(IOException e) {
+            // Do not re-throw the exception to prevent exceptions caught in the catch block from being replaced
         }
     }
 
+    /**
+     * Sets the size of the parts of the multipart uploads, used when uploading streams of unknown length.
+     * The size is raised to the 5 MB minimum imposed by S3 if it is smaller.
+     *
+     * @param partSize size of the parts in bytes
+     */
+    static void setMultipartPartSize(int partSize) {
+        multipartPartSize = Math.max(partSize, S3MultipartOutputStream.MIN_PART_SIZE);
+    }
+
+    /**
+     * Sets the number of parts of a multipart upload that are uploaded at the same time.
+     *
+     * @param threads number of parts uploaded at the same time, at least 1
+     */
+    static void setMultipartThreads(int threads) {
+        multipartThreads = Math.max(threads, 1);
+    }
+
     ///////////////////
     // Inner classes //
     ///////////////////
@@ -16,6 +16,28 @@ import java.util.StringTokenizer;
  * @author Maxence Bernard
  */
 public class S3ProtocolProvider implements ProtocolProvider {
+
+    /**
+     * Sets the size of the parts of the multipart uploads, which are used to upload streams whose length is not known
+     * in advance. Streams that end before a first part is filled are uploaded by a single PUT request.
+     * The default size is 16 MB, sizes under the 5 MB minimum imposed by S3 are raised to it.
+     *
+     * @param partSize size of the parts in bytes
+     */
+    public static void setMultipartPartSize(int partSize) {
+        S3Object.setMultipartPartSize(partSize);
+    }
+
+    /**
+     * Sets the number of parts of a multipart upload that are uploaded at the same time, 4 by default. The memory used
+     * by an upload is bounded by the part size multiplied by this number plus one.
+     *
+     * @param threads number of parts uploaded at the same time
+     */
+    public static void setMultipartThreads(int threads) {
+        S3Object.setMultipartThreads(threads);
+    }
+
     public AbstractFile getFile(FileURL url, Object... instantiationParams) throws IOException {
         Credentials credentials = url.getCredentials();
         if(credentials==null || credentials.getLogin().equals("") || credentials.getPassword().equals(""))
@@ -31,6 +31,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Vector;
 
 
 /**
@@ -78,6 +79,12 @@ public class SFTPFile extends ProtocolFile {
     /** Period of time during which file attributes are cached, before being fetched again from the server. */
     private static long attributeCachingPeriod = 60000;
 
+    /** Number of bytes asked or sent by each read or write request */
+    private static int pipelineBlockSize = 32 * 1024;
+
+    /** Number of read or write requests a stream keeps outstanding at the same time */
+    private static int pipelineWindow = 128;
+
     /** a SFTPConnectionHandlerFactory instance */
     public final static SFTPConnectionHandlerFactory CONN_HANDLER_FACTORY = new SFTPConnectionHandlerFactory();
 
@@ -124,6 +131,27 @@ public class SFTPFile extends ProtocolFile {
         attributeCachingPeriod = period;
     }
 
+    /**
+     * Sets the number of bytes asked or sent by each read or write request of the streams, 32 KB by default. Servers
+     * may return less data than asked by large read requests, in which case the rest is asked by another request.
+     *
+     * @param blockSize size of the requests in bytes, between 4 KB and 256 KB
+     */
+    public static void setPipelineBlockSize(int blockSize) {
+        pipelineBlockSize = Math.min(Math.max(blockSize, 4 * 1024), 256 * 1024);
+    }
+
+    /**
+     * Sets the number of read or write requests a stream keeps outstanding at the same time, 128 by default. A stream
+     * transfers at most this number of blocks per round-trip to the server, <code>1</code> waits for each block before
+     * asking for the next one.
+     *
+     * @param window number of outstanding requests
+     */
+    public static void setPipelineWindow(int window) {
+        pipelineWindow = Math.max(window, 1);
+    }
+
     private OutputStream getOutputStream(boolean append) throws IOException {
         // Retrieve a ConnectionHandler and lock it
         final SFTPConnectionHandler connHandler = (SFTPConnectionHandler)ConnectionPool.getConnectionHandler(CONN_HANDLER_FACTORY, fileURL, true);
@@ -153,15 +181,17 @@ public class SFTPFile extends ProtocolFile {
                 fileAttributes.setSize(0);
             }
 
-            // Custom SftpFileOutputStream constructor, not part of the official J2SSH API
-            OutputStream os = new SftpFileOutputStreamEx(sftpFile, append ? getSize() : 0L) {
+            OutputStream os = new SftpPipelinedOutputStream(new SftpFilePipelineChannel(sftpFile), append ? getSize() : 0L,
+                    pipelineBlockSize, pipelineWindow) {
                 @Override
                 public void close() throws IOException {
-                    // SftpFileOutputStream.close() closes the open SftpFile file handle
-                    super.close();
-
-                    // Release the lock on the ConnectionHandler
-                    connHandler.releaseLock();
+                    try {
+                        // SftpPipelinedOutputStream.close() closes the open SftpFile file handle
+                        super.close();
+                    } finally {
+                        // Release the lock on the ConnectionHandler
+                        connHandler.releaseLock();
+                    }
                 }
             };
             ByteCounter byteCounter = new ByteCounter() {
@@ -424,6 +454,52 @@ public class SFTPFile extends ProtocolFile {
             connHandler.releaseLock();
         }
 
+        return createChildren(files);
+    }
+
+    /**
+     * Lists this folder one SSH_FXP_READDIR request at a time, each batch of entries sent by the server being passed
+     * to the listener as soon as it has been received. The server usually sends about a hundred entries per request.
+     */
+    @Override
+    public void lsStreaming(FileListingListener listener) throws IOException {
+        // Retrieve a ConnectionHandler and lock it
+        SFTPConnectionHandler connHandler = (SFTPConnectionHandler)ConnectionPool.getConnectionHandler(CONN_HANDLER_FACTORY, fileURL, true);
+        try {
+            // Makes sure the connection is started, if not starts it
+            connHandler.checkConnection();
+
+            SftpSubsystemChannel channel = connHandler.sftpClient.getSubsystemChannel();
+            SftpFile dir = channel.openDirectory(absPath);
+            try {
+                Vector<SftpFile> files = new Vector<>();
+                // listChildren returns -1 once all the entries have been read
+                while (channel.listChildren(dir, files) >= 0) {
+                    AbstractFile children[] = createChildren(files.toArray(new SftpFile[files.size()]));
+                    files.clear();
+                    if (!listener.childrenListed(children)) {
+                        break;
+                    }
+                }
+            } finally {
+                channel.closeFile(dir);
+            }
+        } catch (SftpStatusException | SshException e) {
+            throw new IOException(e);
+        } finally {
+            // Release the lock on the ConnectionHandler
+            connHandler.releaseLock();
+        }
+    }
+
+    /**
+     * Creates the children files corresponding to the given entries of this folder, discarding '.' and '..' entries.
+     *
+     * @param files entries of this folder, as returned by the server
+     * @return the children files
+     * @throws IOException if a child file couldn't be created
+     */
+    private AbstractFile[] createChildren(SftpFile files[]) throws IOException {
         int nbFiles = files.length;
 
         // File doesn't exist, return an empty file array
@@ -655,15 +731,17 @@ public class SFTPFile extends ProtocolFile {
 
             SftpFile sftpFile = connHandler.sftpSubsystem.openFile(absPath, SftpSubsystemChannel.OPEN_READ);
 
-            // Custom made constructor, not part of the official J2SSH API
-            return new SftpFileInputStream(sftpFile, offset) {
+            return new SftpPipelinedInputStream(new SftpFilePipelineChannel(sftpFile), offset, pipelineBlockSize, pipelineWindow) {
 
                     @Override
                     public void close() throws IOException {
-                        // SftpFileInputStream.close() closes the open SftpFile file handle
-                        super.close();
-                        // Release the lock on the ConnectionHandler
-                        connHandler.releaseLock();
+                        try {
+                            // SftpPipelinedInputStream.close() closes the open SftpFile file handle
+                            super.close();
+                        } finally {
+                            // Release the lock on the ConnectionHandler
+                            connHandler.releaseLock();
+                        }
                 }
 
             };
@@ -911,17 +989,22 @@ public class SFTPFile extends ProtocolFile {
      */
     private class SFTPRandomAccessInputStream extends RandomAccessInputStream {
 
-        private SftpFileInputStreamEx in;
+        private SftpPipelinedInputStream in;
+        private final SFTPConnectionHandler connHandler;
 
         private SFTPRandomAccessInputStream() throws IOException {
+            connHandler = (SFTPConnectionHandler)ConnectionPool.getConnectionHandler(CONN_HANDLER_FACTORY, fileURL, true);
             try {
-                final SFTPConnectionHandler connHandler = (SFTPConnectionHandler)ConnectionPool.getConnectionHandler(CONN_HANDLER_FACTORY, fileURL, true);
-                    // Makes sure the connection is started, if not starts it
-                    connHandler.checkConnection();
+                // Makes sure the connection is started, if not starts it
+                connHandler.checkConnection();
                 SftpFile sftpFile = connHandler.sftpSubsystem.openFile(absPath, SftpSubsystemChannel.OPEN_READ);
-                this.in = new SftpFileInputStreamEx(sftpFile);//SftpFileInputStreamEx)getInputStream();
+                this.in = new SftpPipelinedInputStream(new SftpFilePipelineChannel(sftpFile), 0, pipelineBlockSize, pipelineWindow);
+            } catch(IOException e) {
+                // Release the lock on the ConnectionHandler if the InputStream could not be created
+                connHandler.releaseLock();
+                throw e;
             } catch (SftpStatusException | SshException e) {
-                e.printStackTrace();
+                connHandler.releaseLock();
                 throw new IOException(e);
             }
         }
@@ -937,7 +1020,6 @@ public class SFTPFile extends ProtocolFile {
         }
 
         public long getOffset() throws IOException {
-            // Custom method, not part of the official J2SSH API
             return in.getPosition();
         }
 
@@ -946,13 +1028,18 @@ public class SFTPFile extends ProtocolFile {
         }
 
         public void seek(long offset) throws IOException {
-            // Custom method, not part of the official J2SSH API
+            // Drops the read-ahead requests unless the offset is in the block being read
             in.setPosition(offset);
         }
 
         @Override
         public void close() throws IOException {
-            in.close();
+            try {
+                in.close();
+            } finally {
+                // Release the lock on the ConnectionHandler
+                connHandler.releaseLock();
+            }
         }
     }
 
@@ -961,7 +1048,7 @@ public class SFTPFile extends ProtocolFile {
 //
 //        private boolean success;
 //        private SessionChannelClient sessionClient;
-//        private SFTPConnectionHandler connHandler;
+//        private final SFTPConnectionHandler connHandler;
 //
 //        private SFTPProcess(String tokens[]) throws IOException {
 //
@@ -22,13 +22,18 @@ package com.mucommander.commons.file.impl.tar;
 import com.mucommander.commons.file.*;
 import com.mucommander.commons.file.impl.tar.provider.TarEntry;
 import com.mucommander.commons.file.impl.tar.provider.TarInputStream;
+import com.mucommander.commons.io.ParallelBzip2InputStream;
 import com.mucommander.commons.io.StreamUtils;
+import com.mucommander.commons.io.gzip.GzipIndex;
+import com.mucommander.commons.io.gzip.IndexingGzipInputStream;
 import com.mucommander.commons.util.StringUtils;
-import org.apache.hadoop.io.compress.bzip2.CBZip2InputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -41,12 +46,32 @@ import java.util.zip.GZIPInputStream;
  * <p>The actual decompression work is performed by the <code>Apache Ant</code> library under the terms of the
  * Apache Software License.
  *
+ * <p>Entries of a gzipped archive can only be reached by decompressing everything that precedes them. The first time
+ * a large archive is read from its start, a {@link GzipIndex} of its compressed stream is built on the way and stored
+ * along with its entries in the {@link ArchiveEntriesCache}: entries are then read by resuming decompression at the
+ * closest checkpoint of the index.
+ *
  * @see com.mucommander.commons.file.impl.tar.TarFormatProvider
  * @author Maxence Bernard
  */
 public class TarArchiveFile extends AbstractROArchiveFile {
     private static final Logger LOGGER = LoggerFactory.getLogger(TarArchiveFile.class);
 
+    /** Default minimum distance between two checkpoints of the index of a gzipped archive: 16 MB */
+    public static final long DEFAULT_GZIP_INDEX_SPAN = 16 * 1024 * 1024;
+
+    /** Extension of the gzip index in the {@link ArchiveEntriesCache} */
+    private static final String GZIP_INDEX_EXTENSION = "gzindex";
+
+    /** Minimum distance between two checkpoints of the index of a gzipped archive, <code>0</code> if disabled */
+    private static long gzipIndexSpan = DEFAULT_GZIP_INDEX_SPAN;
+
+    /** Index of the gzipped archive, <code>null</code> if it has none or if it hasn't been loaded yet */
+    private GzipIndex gzipIndex;
+    /** Date and size of the archive when {@link #gzipIndex} was loaded or built, the index is reloaded if they change */
+    private long gzipIndexDate = -1;
+    private long gzipIndexSize = -1;
+
     /**
      * Creates a TarArchiveFile on of the given file.
      *
@@ -56,6 +81,98 @@ public class TarArchiveFile extends AbstractROArchiveFile {
         super(file);
     }
 
+    /**
+     * Sets the minimum distance in decompressed bytes between two checkpoints of the index built for gzipped archives,
+     * <code>0</code> disables the index. Archives smaller than the span are not indexed.
+     *
+     * @param span the minimum distance between two checkpoints
+     */
+    public static void setGzipIndexSpan(long span) {
+        gzipIndexSpan = Math.max(span, 0);
+    }
+
+    /**
+     * Returns the index of this gzipped archive, loading it from the {@link ArchiveEntriesCache} if needed,
+     * <code>null</code> if it has none.
+     */
+    private synchronized GzipIndex getGzipIndex() {
+        long date = getLastModifiedDate();
+        long size = getSize();
+        if (date != gzipIndexDate || size != gzipIndexSize) {
+            gzipIndex = null;
+            gzipIndexDate = date;
+            gzipIndexSize = size;
+            byte data[] = loadCachedData(GZIP_INDEX_EXTENSION);
+            if (data != null) {
+                try {
+                    gzipIndex = GzipIndex.read(new DataInputStream(new ByteArrayInputStream(data)));
+                } catch (IOException e) {
+                    LOGGER.info("Failed to read the gzip index of " + getAbsolutePath(), e);
+                }
+            }
+        }
+        return gzipIndex;
+    }
+
+    /**
+     * Keeps and stores the given index of this gzipped archive, unless the current one covers more data.
+     */
+    private synchronized void setGzipIndex(GzipIndex index) {
+        if (index.getCheckpoints().isEmpty() || (gzipIndex != null && gzipIndex.getLength() >= index.getLength())) {
+            return;
+        }
+        gzipIndex = index;
+        gzipIndexDate = getLastModifiedDate();
+        gzipIndexSize = getSize();
+        try {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bout);
+            index.write(out);
+            out.flush();
+            storeCachedData(GZIP_INDEX_EXTENSION, bout.toByteArray());
+        } catch (IOException e) {
+            LOGGER.info("Failed to store the gzip index of " + getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Returns a stream of the decompressed data of this gzipped archive, resuming decompression at the closest
+     * checkpoint of the index if there is one, building the index if there is none.
+     *
+     * @param entryOffset offset in the decompressed data of the entry to read, <code>0</code> to read from the start
+     * @return a stream of the decompressed data positioned at <code>entryOffset</code>
+     * @throws IOException if an error occurred while creating the stream
+     */
+    private InputStream createGzipStream(long entryOffset) throws IOException {
+        InputStream in;
+        long position = 0;
+        GzipIndex index = gzipIndexSpan > 0 ? getGzipIndex() : null;
+        GzipIndex.Checkpoint checkpoint = index == null ? null : index.getCheckpoint(entryOffset);
+        if (checkpoint != null) {
+            in = index.getInputStream(file.getInputStream(checkpoint.getCompressedOffset()), checkpoint);
+            position = checkpoint.getUncompressedOffset();
+        } else if (gzipIndexSpan > 0 && index == null && getSize() >= gzipIndexSpan) {
+            // The index covers the data read by the time the stream is closed, the whole archive once it's been listed
+            in = new IndexingGzipInputStream(file.getInputStream(), gzipIndexSpan) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    setGzipIndex(getIndex());
+                }
+            };
+        } else {
+            in = new GZIPInputStream(file.getInputStream());
+        }
+
+        try {
+            StreamUtils.skipFully(in, entryOffset - position);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return in;
+    }
+
 
     /**
      * Returns a TarInputStream which can be used to read TAR entries.
@@ -68,34 +185,24 @@ public class TarArchiveFile extends AbstractROArchiveFile {
      * or is not implemented.
      */
     private TarInputStream createTarStream(long entryOffset) throws IOException, UnsupportedFileOperationException {
-        InputStream in = file.getInputStream();
-
         String name = getName();
             // Gzip-compressed file
-        if (StringUtils.endsWithIgnoreCase(name, "tgz") || StringUtils.endsWithIgnoreCase(name, "tar.gz"))
+        if (StringUtils.endsWithIgnoreCase(name, "tgz") || StringUtils.endsWithIgnoreCase(name, "tar.gz")) {
                 // Note: this will fail for gz/tgz entries inside a tar file (IOException: Not in GZIP format),
                 // why is a complete mystery: the gz/tgz entry can be extracted and then properly browsed
-            in = new GZIPInputStream(in);
+            return new TarInputStream(createGzipStream(entryOffset), 0);
+        }
+
+        InputStream in = file.getInputStream();
 
         // Bzip2-compressed file
-        else if (StringUtils.endsWithIgnoreCase(name, "tbz2") || StringUtils.endsWithIgnoreCase(name, "tar.bz2")) {
+        if (StringUtils.endsWithIgnoreCase(name, "tbz2") || StringUtils.endsWithIgnoreCase(name, "tar.bz2")) {
+            // Blocks are decompressed on several threads
             try {
-                // Skips the 2 magic bytes 'BZ', as required by CBZip2InputStream. Quoted from CBZip2InputStream's Javadoc:
-                // "Although BZip2 headers are marked with the magic 'Bz'. this constructor expects the next byte in the
-                // stream to be the first one after the magic.  Thus callers have to skip the first two bytes. Otherwise
-                // this constructor will throw an exception."
-                StreamUtils.skipFully(in, 2);
-
-                // Quoted from CBZip2InputStream's Javadoc:
-                // "CBZip2InputStream reads bytes from the compressed source stream via the single byte {@link java.io.InputStream#read()
-                // read()} method exclusively. Thus you should consider to use a buffered source stream."
-                in = new CBZip2InputStream(new BufferedInputStream(in));
-            } catch (Exception e) {
-                // CBZip2InputStream is known to throw NullPointerException if file is not properly Bzip2-encoded
-                // so we need to catch those and throw them as IOException
-                LOGGER.info("Exception caught while creating CBZip2InputStream, throwing IOException", e);
-
-                throw new IOException();
+                in = new ParallelBzip2InputStream(in);
+            } catch (IOException e) {
+                in.close();
+                throw e;
             }
         }
 
@@ -149,4 +256,28 @@ public class TarArchiveFile extends AbstractROArchiveFile {
 
         throw new IOException("Unknown TAR entry: "+entry.getName());
     }
+
+    /**
+     * Returns <code>true</code>: the offset of an entry's header is all it takes to read it, which spares
+     * decompressing the whole archive to list it.
+     */
+    @Override
+    protected boolean isEntriesCacheable() {
+        return true;
+    }
+
+    @Override
+    protected long getEntryPosition(ArchiveEntry entry) {
+        TarEntry tarEntry = (TarEntry)entry.getEntryObject();
+        return tarEntry == null ? -1 : tarEntry.getOffset();
+    }
+
+    @Override
+    protected void restoreEntry(ArchiveEntry entry, long position) {
+        if (position >= 0) {
+            TarEntry tarEntry = new TarEntry(entry.getPath());
+            tarEntry.setOffset(position);
+            entry.setEntryObject(tarEntry);
+        }
+    }
 }
@@ -216,6 +216,15 @@ public class ZipArchiveFile extends AbstractRWArchiveFile {
         }
     }
 
+    /**
+     * Returns <code>true</code> if the underlying file has random read access: each entry is then read by
+     * {@link ZipFile} with a <code>RandomAccessInputStream</code> of its own, positioned at the entry's data.
+     */
+    @Override
+    public boolean isConcurrentEntryAccessSupported() {
+        return file.isFileOperationSupported(FileOperation.RANDOM_READ_FILE);
+    }
+
     //////////////////////////////////////////
     // AbstractRWArchiveFile implementation //
     //////////////////////////////////////////
@@ -23,6 +23,9 @@ final class ZipEntryInfo {
     /** <code>true</code> if this entry has a data descriptor in the Zip file */
     boolean hasDataDescriptor;
 
+    /** <code>true</code> if the local file header has a Zip64 extra field, and the data descriptor 8-byte sizes */
+    boolean zip64;
+
     /** The encoding used for filename and comment fields */
     String encoding;
 
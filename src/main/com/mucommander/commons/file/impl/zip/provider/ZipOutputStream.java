@@ -21,10 +21,20 @@ package com.mucommander.commons.file.impl.zip.provider;
 import com.mucommander.commons.io.BufferPool;
 import com.mucommander.commons.io.RandomAccessOutputStream;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
 import java.util.zip.Deflater;
 import java.util.zip.ZipException;
 
@@ -33,6 +43,17 @@ import java.util.zip.ZipException;
  * functionality of this package, especially internal/external file attributes and extra fields with different layouts
  * for local file data and central directory entries.
  *
+ * <p>Entries are compressed one after the other by default. After {@link #setThreads(int)} has been called with more
+ * than one thread, entries whose size is known and does not exceed {@link #MAX_SPOOLED_ENTRY_SIZE} are spooled in
+ * memory and compressed concurrently on a thread pool, while the next entries are being written. Compressed entries
+ * are written in the order they were added, with their CRC and sizes in the local file header, so the resulting
+ * archive does not depend on the number of threads. Other entries are compressed inline once the pending entries
+ * have been written.
+ *
+ * <p>Zip64 end of central directory records and extra fields are written when the number of entries, the sizes or the
+ * offsets exceed the limits of the Zip32 format. The local file header of an entry whose size is too large, or unknown
+ * when writing to a {@link RandomAccessOutputStream}, has a Zip64 extra field, and its data descriptor 8-byte sizes.
+ *
  * <p>--------------------------------------------------------------------------------------------------------------<br>
  * <br>
  * This class is based off the <code>org.apache.tools.zip</code> package of the <i>Apache Ant</i> project. The Ant
@@ -43,6 +64,24 @@ import java.util.zip.ZipException;
  */
 public class ZipOutputStream extends OutputStream implements ZipConstants {
 
+    /** Maximum size of the entries compressed concurrently when several threads are used */
+    public static final int MAX_SPOOLED_ENTRY_SIZE = 8 * 1024 * 1024;
+
+    /** Maximum number of uncompressed bytes of the entries being compressed or waiting to be written */
+    private static final long MAX_PENDING_BYTES = 64 * 1024 * 1024;
+
+    /** Zip64 extended information extra field header id */
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    /** Maximum number of entries of a Zip32 file */
+    private static final int MAX_ZIP32_ENTRIES = 0xFFFF;
+
+    /** Zip64 end of central dir signature */
+    private static final byte[] ZIP64_EOCD_SIG = ZipLong.getBytes(0X06064B50L);
+
+    /** Zip64 end of central dir locator signature */
+    private static final byte[] ZIP64_EOCD_LOCATOR_SIG = ZipLong.getBytes(0X07064B50L);
+
     /** Current entry */
     private ZipEntry entry;
 
@@ -79,6 +118,21 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
     /** Holds byte buffer instance used to convert short and longs, avoids creating lots of small arrays */
     private ZipBuffer zipBuffer = new ZipBuffer();
 
+    /** Executor compressing spooled entries, <code>null</code> if entries are compressed inline */
+    private ExecutorService executor;
+
+    /** Maximum number of spooled entries being compressed or waiting to be written */
+    private int maxPendingEntries;
+
+    /** Spooled entries being compressed or waiting to be written, in the order they were added */
+    private final Deque<Future<SpooledEntry>> pendingEntries = new ArrayDeque<>();
+
+    /** Uncompressed bytes of the pending entries */
+    private long pendingBytes;
+
+    /** Receives the data of the current entry if it is spooled */
+    private EntrySpool spool;
+
     /** 0 (zero) as ZipShort */
     private static final byte[] SHORT_0 = ZipShort.getBytes(0);
 
@@ -97,6 +151,9 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
     /** 20 as ZipShort */
     private static final byte[] SHORT_20 = ZipShort.getBytes(20);
 
+    /** 45 as ZipShort */
+    private static final byte[] SHORT_45 = ZipShort.getBytes(45);
+
     /** 2048 as ZipShort */
     private static final byte[] SHORT_2048 = ZipShort.getBytes(2048);
 
@@ -114,6 +171,11 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
      */
     private boolean hasRandomAccess;
 
+    /**
+     * Entries whose size is at least this value get a Zip64 extra field in their local file header.
+     */
+    private long zip64Threshold = MAX_ZIP32_SIZE;
+
 
     /**
      * Creates a new <code>ZipOutputStream</code> that writes Zip-compressed data to the given <code>OutputStream</code>.
@@ -141,6 +203,33 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         return hasRandomAccess;
     }
 
+    /**
+     * Sets the number of threads compressing entries. This method must be called before the first entry is added.
+     *
+     * @param threads number of threads, values lower than <code>2</code> compress entries inline
+     */
+    public void setThreads(int threads) {
+        if (threads < 2) {
+            return;
+        }
+        maxPendingEntries = threads * 2;
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "ZipOutputStream");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets the size from which local file headers and data descriptors use Zip64 sizes, so that this can be tested
+     * without writing 4 GB entries.
+     *
+     * @param threshold the size from which entries need Zip64 sizes
+     */
+    void setZip64Threshold(long threshold) {
+        this.zip64Threshold = threshold;
+    }
+
     /**
      * The encoding to use for filenames and the file comment.
      *
@@ -181,13 +270,21 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
      * @throws IOException on error
      */
     public void finish() throws IOException {
-        closeEntry();
+        try {
+            closeEntry();
+            writePendingEntries(0);
+        }
+        finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
         long cdOffset = written;
         int nbEntries = entries.size();
         ZipEntry ze;
         for (int i=0; i <nbEntries; i++) {
             ze =  entries.elementAt(i);
-            written += writeCentralFileHeader(ze, out, encoding, ze.getEntryInfo().headerOffset, !hasRandomAccess, zipBuffer);
+            written += writeCentralFileHeader(ze, out, encoding, ze.getEntryInfo().headerOffset, ze.getEntryInfo().hasDataDescriptor, zipBuffer);
         }
         long cdLength = written - cdOffset;
         writeCentralDirectoryEnd(out, nbEntries, cdLength, cdOffset, comment, encoding, zipBuffer);
@@ -204,6 +301,19 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         if (entry == null)
             return;
 
+        if (spool != null) {
+            final ZipEntry ze = entry;
+            final EntrySpool data = spool;
+            final int entryLevel = level;
+            pendingEntries.add(executor.submit(() -> compressEntry(ze, data, entryLevel)));
+            pendingBytes += data.count;
+            entry = null;
+            entryInfo = null;
+            spool = null;
+            writePendingEntries(maxPendingEntries);
+            return;
+        }
+
         finalizeEntryData(entry, zeos, out, !hasRandomAccess, zipBuffer);
         written += entry.getCompressedSize();
 
@@ -217,6 +327,82 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         zeos = null;
     }
 
+    /**
+     * Compresses the data of a spooled entry, called by the threads of the executor.
+     *
+     * @param entry the entry
+     * @param spool the uncompressed data of the entry
+     * @param level the compression level of DEFLATED entries
+     * @return the compressed entry
+     */
+    private static SpooledEntry compressEntry(ZipEntry entry, EntrySpool spool, int level) {
+        CRC32 crc = new CRC32();
+        crc.update(spool.buf, 0, spool.count);
+        entry.setCrc(crc.getValue());
+        entry.setSize(spool.count);
+
+        if (entry.getMethod() != DEFLATED) {
+            entry.setCompressedSize(spool.count);
+            return new SpooledEntry(entry, spool.buf, spool.count);
+        }
+
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(spool.buf, 0, spool.count);
+            deflater.finish();
+            ByteArrayOutputStream bout = new ByteArrayOutputStream(spool.count / 2 + 64);
+            byte buf[] = new byte[WRITE_BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int len = deflater.deflate(buf);
+                bout.write(buf, 0, len);
+            }
+            entry.setCompressedSize(bout.size());
+            return new SpooledEntry(entry, bout.toByteArray(), bout.size());
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Writes the spooled entries at the head of the queue whose compression is finished, and waits for the others
+     * until no more than the given number of entries are pending and their size is under the limit.
+     *
+     * @param maxPending maximum number of entries that may remain pending
+     * @throws IOException if an entry could not be compressed or written
+     */
+    private void writePendingEntries(int maxPending) throws IOException {
+        while (!pendingEntries.isEmpty()) {
+            Future<SpooledEntry> future = pendingEntries.peek();
+            if (!future.isDone() && pendingEntries.size() <= maxPending && pendingBytes <= MAX_PENDING_BYTES) {
+                return;
+            }
+            pendingEntries.poll();
+            SpooledEntry spooledEntry;
+            try {
+                spooledEntry = future.get();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException)cause;
+                }
+                throw new IOException(cause);
+            }
+            ZipEntryInfo info = spooledEntry.entry.getEntryInfo();
+            pendingBytes -= spooledEntry.entry.getSize();
+            info.zip64 = spooledEntry.entry.getSize() >= zip64Threshold
+                    || spooledEntry.entry.getCompressedSize() >= zip64Threshold;
+
+            info.headerOffset = written;
+            written += writeLocalFileHeader(spooledEntry.entry, out, encoding, false, true, info.zip64, zipBuffer);
+            info.dataOffset = written;
+            out.write(spooledEntry.data, 0, spooledEntry.length);
+            written += spooledEntry.length;
+        }
+    }
+
     /**
      * Writes the size and CRC information of an entry. This method is to be called right after a file entry's data
      * has been written.
@@ -238,8 +424,8 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         if (entry.getMethod() == DEFLATED) {
             ((DeflatedOutputStream)zeos).finishDeflate();
 
-            entry.setSize(adjustToLong(zeos.getTotalIn()));
-            long compressedSize = adjustToLong(zeos.getTotalOut());
+            entry.setSize(zeos.getTotalIn());
+            long compressedSize = zeos.getTotalOut();
             entry.setCompressedSize(compressedSize);
             entry.setCrc(crc);
         }
@@ -251,6 +437,14 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
             entry.setCrc(crc);
         }
 
+        // Without a data descriptor, sizes that don't fit in the 32-bit fields need the Zip64 extra field, which must
+        // have been reserved in the local file header
+        ZipEntryInfo entryInfo = entry.getEntryInfo();
+        if (!useDataDescriptor && !entryInfo.zip64
+                && (entry.getSize() >= MAX_ZIP32_SIZE || entry.getCompressedSize() >= MAX_ZIP32_SIZE)) {
+            throw new ZipException("Entry too large for its local file header: " + entry.getName());
+        }
+
         // If random access output, write the local file header containing
         // the correct CRC and compressed/uncompressed sizes
         if (!useDataDescriptor) {
@@ -258,10 +452,17 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
 
             long save = raos.getOffset();
 
-            raos.seek(entry.getEntryInfo().headerOffset + 14);
+            raos.seek(entryInfo.headerOffset + 14);
             raos.write(ZipLong.getBytes(entry.getCrc(), zipBuffer.longBuffer));
-            raos.write(ZipLong.getBytes(entry.getCompressedSize(), zipBuffer.longBuffer));
-            raos.write(ZipLong.getBytes(entry.getSize(), zipBuffer.longBuffer));
+            if (entryInfo.zip64) {
+                // The 32-bit fields are left to 0xFFFFFFFF, the Zip64 extra field ends the header
+                raos.seek(entryInfo.dataOffset - 16);
+                writeZip64Long(raos, entry.getSize());
+                writeZip64Long(raos, entry.getCompressedSize());
+            } else {
+                raos.write(ZipLong.getBytes(entry.getCompressedSize(), zipBuffer.longBuffer));
+                raos.write(ZipLong.getBytes(entry.getSize(), zipBuffer.longBuffer));
+            }
             raos.seek(save);
         }
     }
@@ -293,6 +494,20 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
             entry.setTime(System.currentTimeMillis());
         }
 
+        // Spool entries of known size to compress them concurrently
+        long size = entry.getSize();
+        if (executor != null && size >= 0 && size <= MAX_SPOOLED_ENTRY_SIZE) {
+            spool = new EntrySpool((int)size);
+            return;
+        }
+
+        // Entries compressed inline are written after the spooled ones
+        writePendingEntries(0);
+        entryInfo.hasDataDescriptor = !hasRandomAccess;
+        // Reserve room for Zip64 sizes in the local file header if they may need it. When streaming an entry of
+        // unknown size, the header is left as java.util.zip does, its data descriptor gets 8-byte sizes past 4 GB.
+        entryInfo.zip64 = size >= zip64Threshold || (size < 0 && hasRandomAccess);
+
         if(entryMethod == DEFLATED) {
             deflater.reset();
             deflater.setLevel(level);
@@ -304,7 +519,7 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         }
 
         entryInfo.headerOffset = written;
-        written += writeLocalFileHeader(entry, out, encoding, !hasRandomAccess, zipBuffer);
+        written += writeLocalFileHeader(entry, out, encoding, !hasRandomAccess, false, entryInfo.zip64, zipBuffer);
         entryInfo.dataOffset = written;
     }
 
@@ -359,6 +574,25 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
      * @throws IOException if an I/O error occurred
      */
     protected static long writeLocalFileHeader(ZipEntry ze, OutputStream out, String encoding, boolean useDataDescriptor, ZipBuffer zipBuffer) throws IOException {
+        return writeLocalFileHeader(ze, out, encoding, useDataDescriptor, false, false, zipBuffer);
+    }
+
+    /**
+     * Writes the local file header entry.
+     *
+     * @param ze the entry to write
+     * @param out the OutputStream to write the header to
+     * @param encoding the encoding to use for writing the entry's filename
+     * @param useDataDescriptor indicates whether a data descriptor will follow the file entry's data
+     * @param sizesKnown if true, the CRC and sizes of the entry are written in the header, otherwise they are left
+     * blank to be written later
+     * @param zip64 if true, the sizes are stored in a Zip64 extra field ending the header and the 32-bit fields are
+     * set to <code>0xFFFFFFFF</code>
+     * @param zipBuffer a ZipBuffer instance used to convert integer values to Zip variants
+     * @return the size (number of bytes) of the written local file header
+     * @throws IOException if an I/O error occurred
+     */
+    private static long writeLocalFileHeader(ZipEntry ze, OutputStream out, String encoding, boolean useDataDescriptor, boolean sizesKnown, boolean zip64, ZipBuffer zipBuffer) throws IOException {
         out.write(LFH_SIG);
         // written += 4;
 
@@ -366,7 +600,7 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
 
         // version needed to extract
         // general purpose bit flag
-        writeVersionAndGPBF(out, encoding, useDataDescriptor);
+        writeVersionAndGPBF(out, encoding, useDataDescriptor, zip64);
         // nbWritten += 4;
 
         // compression method
@@ -381,9 +615,20 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         // compressed length
         // uncompressed length
 
-        // this information is not known at this stage so it will be set after the data has been written,
-        // either in the data descriptor (if used), or here by seeking (requires random access)
-        out.write(LONG_TRIPLE_0);   // 12 zero bytes
+        // unless the entry has been compressed already, this information is not known at this stage so it will be set
+        // after the data has been written, either in the data descriptor (if used), or here by seeking (requires
+        // random access)
+        if (zip64) {
+            out.write(sizesKnown ? ZipLong.getBytes(ze.getCrc(), zipBuffer.longBuffer) : LONG_0);
+            out.write(ZipLong.getBytes(MAX_ZIP32_SIZE, zipBuffer.longBuffer));
+            out.write(ZipLong.getBytes(MAX_ZIP32_SIZE, zipBuffer.longBuffer));
+        } else if (sizesKnown) {
+            out.write(ZipLong.getBytes(ze.getCrc(), zipBuffer.longBuffer));
+            out.write(ZipLong.getBytes(ze.getCompressedSize(), zipBuffer.longBuffer));
+            out.write(ZipLong.getBytes(ze.getSize(), zipBuffer.longBuffer));
+        } else {
+            out.write(LONG_TRIPLE_0);   // 12 zero bytes
+        }
         // written += 12;
 
         // file name length
@@ -393,6 +638,10 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
 
         // extra field length
         byte[] extra = ze.getLocalFileDataExtra();
+        if (zip64) {
+            // Both sizes are always present in the local file header, zero until they're known
+            extra = addZip64ExtraField(extra, sizesKnown ? ze.getSize() : 0, sizesKnown ? ze.getCompressedSize() : 0, -1);
+        }
         out.write(ZipShort.getBytes(extra.length, zipBuffer.shortBuffer));
         // written += 2;
 
@@ -413,17 +662,25 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
     /**
      * Writes the data descriptor, using the CRC, compressed and uncompressed size attributes contained in the
      * given ZipEntry.
-     * The length of the field is returned, it is always 16 bytes.
+     * The length of the field is returned, it is 16 bytes, or 24 bytes with the 8-byte sizes of entries whose local
+     * file header has a Zip64 extra field or whose sizes exceed the Zip32 limit.
      *
      * @param ze the entry for which to write the data descriptor
      * @param out the OutputStream where to write the data descriptor to
      * @param zipBuffer a ZipBuffer instance used to convert integer values to Zip variants
-     * @return the number of bytes that were written, i.e. the size of the data descriptor (16 bytes)
+     * @return the number of bytes that were written, i.e. the size of the data descriptor (16 or 24 bytes)
      * @throws IOException if an I/O error occurred
      */
     protected static long writeDataDescriptor(ZipEntry ze, OutputStream out, ZipBuffer zipBuffer) throws IOException {
         out.write(DD_SIG);
         out.write(ZipLong.getBytes(ze.getCrc(), zipBuffer.longBuffer));
+        ZipEntryInfo entryInfo = ze.getEntryInfo();
+        if ((entryInfo != null && entryInfo.zip64)
+                || ze.getSize() >= MAX_ZIP32_SIZE || ze.getCompressedSize() >= MAX_ZIP32_SIZE) {
+            writeZip64Long(out, ze.getCompressedSize());
+            writeZip64Long(out, ze.getSize());
+            return 24;
+        }
         out.write(ZipLong.getBytes(ze.getCompressedSize(), zipBuffer.longBuffer));
         out.write(ZipLong.getBytes(ze.getSize(), zipBuffer.longBuffer));
 
@@ -459,6 +716,14 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
      * @return the number of bytes that were written, i.e. the size of the central file header 
      */
     protected static long writeCentralFileHeader(ZipEntry ze, OutputStream out, String encoding, long localFileHeaderOffset, boolean useDataDescriptor, ZipBuffer zipBuffer) throws IOException {
+        // Values that do not fit in the Zip32 fields are stored in a Zip64 extra field
+        long size = ze.getSize();
+        long compressedSize = ze.getCompressedSize();
+        boolean zip64Size = size >= MAX_ZIP32_SIZE;
+        boolean zip64CompressedSize = compressedSize >= MAX_ZIP32_SIZE;
+        boolean zip64Offset = localFileHeaderOffset >= MAX_ZIP32_SIZE;
+        boolean zip64 = zip64Size || zip64CompressedSize || zip64Offset;
+
         out.write(CFH_SIG);
         // nbWritten += 4;
 
@@ -468,7 +733,7 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
 
         // version needed to extract
         // general purpose bit flag
-        writeVersionAndGPBF(out, encoding, useDataDescriptor);
+        writeVersionAndGPBF(out, encoding, useDataDescriptor, zip64);
         // nbWritten += 4;
 
         // compression method
@@ -483,8 +748,8 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         // compressed length
         // uncompressed length
         out.write(ZipLong.getBytes(ze.getCrc(), zipBuffer.longBuffer));
-        out.write(ZipLong.getBytes(ze.getCompressedSize(), zipBuffer.longBuffer));
-        out.write(ZipLong.getBytes(ze.getSize(), zipBuffer.longBuffer));
+        out.write(ZipLong.getBytes(zip64CompressedSize ? MAX_ZIP32_SIZE : compressedSize, zipBuffer.longBuffer));
+        out.write(ZipLong.getBytes(zip64Size ? MAX_ZIP32_SIZE : size, zipBuffer.longBuffer));
         // nbWritten += 12;
 
         // file name length
@@ -494,6 +759,10 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
 
         // extra field length
         byte[] extra = ze.getCentralDirectoryExtra();
+        if (zip64) {
+            extra = addZip64ExtraField(extra, zip64Size ? size : -1, zip64CompressedSize ? compressedSize : -1,
+                    zip64Offset ? localFileHeaderOffset : -1);
+        }
         out.write(ZipShort.getBytes(extra.length, zipBuffer.shortBuffer));
         // nbWritten += 2;
 
@@ -519,7 +788,7 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         // nbWritten += 4;
 
         // relative offset of LFH
-        out.write(ZipLong.getBytes(localFileHeaderOffset, zipBuffer.longBuffer));
+        out.write(ZipLong.getBytes(zip64Offset ? MAX_ZIP32_SIZE : localFileHeaderOffset, zipBuffer.longBuffer));
         // nbWritten += 4;
 
         long nbWritten = 46;
@@ -550,6 +819,20 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
      * @throws IOException if an I/O error occurred
      */
     protected static long writeVersionAndGPBF(OutputStream out, String encoding, boolean useDataDescriptor) throws IOException {
+        return writeVersionAndGPBF(out, encoding, useDataDescriptor, false);
+    }
+
+    /**
+     * Writes the 'version needed to extract' (2 bytes) and 'general purpose bit flag' (2 bytes) fields.
+     *
+     * @param out the OutputStream to write the fields to
+     * @param encoding the encoding used for writing the filename and optional comment
+     * @param useDataDescriptor true if a data descriptor is used for the entry
+     * @param zip64 true if the entry has a Zip64 extra field, which requires version 4.5
+     * @return the number of bytes that were written, i.e. 4
+     * @throws IOException if an I/O error occurred
+     */
+    private static long writeVersionAndGPBF(OutputStream out, String encoding, boolean useDataDescriptor, boolean zip64) throws IOException {
         boolean isUTF8 = isUTF8(encoding);
 
         // General purpose bit flag :
@@ -558,7 +841,7 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
 
         if (useDataDescriptor) {
             // requires version 2 as we are going to store length info in the data descriptor
-            out.write(SHORT_20);
+            out.write(zip64 ? SHORT_45 : SHORT_20);
 
             // General purpose bit flag
             out.write(isUTF8?
@@ -568,7 +851,7 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         }
         else {
             // Version
-            out.write(SHORT_10);
+            out.write(zip64 ? SHORT_45 : SHORT_10);
 
             // General purpose bit flag
             out.write(isUTF8?
@@ -596,19 +879,41 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
     protected static void writeCentralDirectoryEnd(OutputStream out, int nbEntries, long cdLength, long cdOffset, String comment, String encoding, ZipBuffer zipBuffer)
             throws IOException {
 
+        // The Zip64 records follow the central directory and precede the end of central directory record
+        boolean zip64 = nbEntries >= MAX_ZIP32_ENTRIES || cdLength >= MAX_ZIP32_SIZE || cdOffset >= MAX_ZIP32_SIZE;
+        if (zip64) {
+            long zip64EocdOffset = cdOffset + cdLength;
+
+            out.write(ZIP64_EOCD_SIG);
+            writeZip64Long(out, 44);        // size of the remaining record
+            out.write(SHORT_45);            // version made by
+            out.write(SHORT_45);            // version needed to extract
+            out.write(LONG_0);              // number of this disk
+            out.write(LONG_0);              // disk where the central directory starts
+            writeZip64Long(out, nbEntries); // number of entries on this disk
+            writeZip64Long(out, nbEntries); // total number of entries
+            writeZip64Long(out, cdLength);
+            writeZip64Long(out, cdOffset);
+
+            out.write(ZIP64_EOCD_LOCATOR_SIG);
+            out.write(LONG_0);              // disk where the Zip64 end of central directory record starts
+            writeZip64Long(out, zip64EocdOffset);
+            out.write(ZipLong.getBytes(1)); // total number of disks
+        }
+
         out.write(EOCD_SIG);
 
         // disk numbers
         out.write(LONG_0);      // 2x SHORT_0
 
         // number of entries
-        ZipShort.getBytes(nbEntries, zipBuffer.shortBuffer);
+        ZipShort.getBytes(Math.min(nbEntries, MAX_ZIP32_ENTRIES), zipBuffer.shortBuffer);
         out.write(zipBuffer.shortBuffer);
         out.write(zipBuffer.shortBuffer);
 
         // length and location of CD
-        out.write(ZipLong.getBytes(cdLength, zipBuffer.longBuffer));
-        out.write(ZipLong.getBytes(cdOffset, zipBuffer.longBuffer));
+        out.write(ZipLong.getBytes(Math.min(cdLength, MAX_ZIP32_SIZE), zipBuffer.longBuffer));
+        out.write(ZipLong.getBytes(Math.min(cdOffset, MAX_ZIP32_SIZE), zipBuffer.longBuffer));
 
         // ZIP file comment
         byte[] data = getBytes(comment, encoding);
@@ -616,6 +921,52 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         out.write(data);
     }
 
+    /**
+     * Returns the given extra field data followed by a Zip64 extended information extra field containing the
+     * specified values. Values equal to <code>-1</code> are omitted.
+     *
+     * @param extra the extra field data of the entry
+     * @param size the uncompressed size, or -1
+     * @param compressedSize the compressed size, or -1
+     * @param localFileHeaderOffset the offset to the local file header, or -1
+     * @return the extra field data including the Zip64 extra field
+     */
+    private static byte[] addZip64ExtraField(byte extra[], long size, long compressedSize, long localFileHeaderOffset) {
+        long values[] = {size, compressedSize, localFileHeaderOffset};
+        int dataLength = 0;
+        for (long value : values) {
+            if (value != -1) {
+                dataLength += 8;
+            }
+        }
+        byte result[] = Arrays.copyOf(extra, extra.length + 4 + dataLength);
+        int off = extra.length;
+        System.arraycopy(ZipShort.getBytes(ZIP64_EXTRA_ID), 0, result, off, 2);
+        System.arraycopy(ZipShort.getBytes(dataLength), 0, result, off + 2, 2);
+        off += 4;
+        for (long value : values) {
+            if (value != -1) {
+                for (int i = 0; i < 8; i++) {
+                    result[off++] = (byte)(value >>> (8 * i));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the given value as an 8-byte little-endian integer, as used by Zip64 records.
+     *
+     * @param out the OutputStream to write the value to
+     * @param value the value to write
+     * @throws IOException if an I/O error occurred
+     */
+    private static void writeZip64Long(OutputStream out, long value) throws IOException {
+        for (int i = 0; i < 8; i++) {
+            out.write((int)(value >>> (8 * i)) & 0xFF);
+        }
+    }
+
     /**
      * Retrieve the bytes for the given String in the encoding set for
      * this Stream.
@@ -663,7 +1014,7 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
      */
     @Override
     public void write(byte[] b, int offset, int length) throws IOException {
-        (zeos==null?out:zeos).write(b, offset, length);
+        getEntryStream().write(b, offset, length);
     }
 
     /**
@@ -676,7 +1027,7 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
      */
     @Override
     public void write(byte[] b) throws IOException {
-        (zeos==null?out:zeos).write(b, 0, b.length);
+        getEntryStream().write(b, 0, b.length);
     }
 
     /**
@@ -690,7 +1041,19 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
      */
     @Override
     public void write(int b) throws IOException {
-        (zeos==null?out:zeos).write(b);
+        getEntryStream().write(b);
+    }
+
+    /**
+     * Returns the stream receiving the data of the current entry.
+     *
+     * @return the stream receiving the data of the current entry
+     */
+    private OutputStream getEntryStream() {
+        if (spool != null) {
+            return spool;
+        }
+        return zeos == null ? out : zeos;
     }
 
     /**
@@ -719,4 +1082,55 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
     public void flush() throws IOException {
         out.flush();
     }
+
+
+    /**
+     * Receives the data of an entry compressed concurrently. The buffer is allocated with the size declared by the
+     * entry and grows if more data is written.
+     */
+    private static class EntrySpool extends OutputStream {
+        private byte buf[];
+        private int count;
+
+        EntrySpool(int size) {
+            buf = new byte[size];
+        }
+
+        private void ensureCapacity(int capacity) throws IOException {
+            if (capacity < 0) {
+                throw new ZipException("Entry too large to be spooled");
+            }
+            if (capacity > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(capacity, (int)Math.min(buf.length * 2L, Integer.MAX_VALUE - 8)));
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureCapacity(count + 1);
+            buf[count++] = (byte)b;
+        }
+
+        @Override
+        public void write(byte b[], int off, int len) throws IOException {
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+    }
+
+    /**
+     * An entry compressed concurrently, waiting to be written.
+     */
+    private static class SpooledEntry {
+        private final ZipEntry entry;
+        private final byte data[];
+        private final int length;
+
+        SpooledEntry(ZipEntry entry, byte data[], int length) {
+            this.entry = entry;
+            this.data = data;
+            this.length = length;
+        }
+    }
 }
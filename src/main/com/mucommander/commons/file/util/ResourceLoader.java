@@ -313,6 +313,27 @@ public class ResourceLoader {
     }
 
 
+    /**
+     * Returns the file in which the resource with the given path is stored: the JAR file for a resource located inside
+     * a JAR file, the resource file itself otherwise. Unlike {@link #getResourceAsFile(String)}, this method doesn't
+     * need to parse the JAR file, the returned file can be used to find out cheaply whether the resource may have
+     * changed.
+     *
+     * @param path forward slash-separated path to the resource to look for, relative to the parent classpath
+     * location (directory or JAR file) that contains it.
+     * @return the file that contains the resource, or <code>null</code> if the resource couldn't be located
+     */
+    public static AbstractFile getResourceContainerAsFile(String path) {
+        URL aClassURL = getResourceAsURL(removeLeadingSlash(path), getDefaultClassLoader(), null);
+        if(aClassURL==null)
+            return null;        // no resource under that path
+
+        if("jar".equals(aClassURL.getProtocol()))
+            return FileFactory.getFile(getJarFilePath(aClassURL));
+
+        return FileFactory.getFile(getLocalFilePath(aClassURL));
+    }
+
     /**
      * Returns an {@link AbstractFile} to the root package of the given <code>Class</code>. For example, if the
      * specified <code>Class</code> is <code>java.lang.Object</code>'s, the returned file will be the Java runtime
@@ -23,9 +23,13 @@ import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This class allows to share and reuse byte buffers to avoid excessive memory allocation and garbage collection.
@@ -47,7 +51,10 @@ import java.util.List;
  * used again and from being garbage-collected.</li>
  * </ul>
  *
- * <p>Note: this class is thread safe and thus can safely be used by concurrent threads.
+ * <p>Note: this class is thread safe and thus can safely be used by concurrent threads. Pooled buffers are kept in
+ * lock-free stacks, one per buffer class and length, so that concurrent threads don't contend for a single lock and
+ * finding a buffer doesn't require scanning the whole pool. The pool keeps statistics about its efficiency,
+ * see {@link #getHitCount()}, {@link #getMissCount()} and {@link #getAllocatedBytes()}.
  *
  * @author Maxence Bernard, Nicolas Rinaudo
  * @see com.mucommander.commons.io.StreamUtils
@@ -56,23 +63,35 @@ public class BufferPool {
     /** Logger used by this class. */
     private static final Logger LOGGER = LoggerFactory.getLogger(BufferPool.class);
 
-    /** List of BufferContainer instances that wraps available buffers */
-    private static List<BufferContainer> bufferContainers = new ArrayList<>();
+    /** Stacks of available buffers, one for each buffer class and length */
+    private static final Map<SizeClass, Deque<BufferContainer>> sizeClasses = new ConcurrentHashMap<>();
+
+    /** All BufferContainer instances that wrap available buffers, used to detect buffers that are released twice */
+    private static final Set<BufferContainer> bufferContainers = ConcurrentHashMap.newKeySet();
 
     /** The initial default buffer size */
     final static int INITIAL_DEFAULT_BUFFER_SIZE = 65536;
 
     /** Size of buffers returned by get*Buffer methods without a size argument */
-    private static int defaultBufferSize = INITIAL_DEFAULT_BUFFER_SIZE;
+    private static volatile int defaultBufferSize = INITIAL_DEFAULT_BUFFER_SIZE;
 
     /** The initial max pool size */
     final static long INITIAL_POOL_LIMIT = 10485760;
 
     /** Maximum combined size of all pooled buffers, in bytes */
-    private static long maxPoolSize = INITIAL_POOL_LIMIT;
+    private static volatile long maxPoolSize = INITIAL_POOL_LIMIT;
 
     /** Current combined size of all pooled buffers, in bytes */
-    private static long poolSize;
+    private static final AtomicLong poolSize = new AtomicLong();
+
+    /** Number of requests served with a pooled buffer */
+    private static final LongAdder hitCount = new LongAdder();
+
+    /** Number of requests that required allocating a new buffer */
+    private static final LongAdder missCount = new LongAdder();
+
+    /** Combined size of all buffers allocated by the pool, in bytes */
+    private static final LongAdder allocatedBytes = new LongAdder();
 
 
     /**
@@ -81,7 +100,7 @@ public class BufferPool {
      *
      * @return a byte array with a length of {@link #getDefaultBufferSize()}
      */
-    public static synchronized byte[] getByteArray() {
+    public static byte[] getByteArray() {
         return getByteArray(getDefaultBufferSize());
     }
 
@@ -99,7 +118,7 @@ public class BufferPool {
      * @param length length of the byte array
      * @return a byte array of the specified size
      */
-    public static synchronized byte[] getByteArray(int length) {
+    public static byte[] getByteArray(int length) {
         return (byte[])getBuffer(new ByteArrayFactory(), length);
     }
 
@@ -109,7 +128,7 @@ public class BufferPool {
      *
      * @return a char array with a length of {@link #getDefaultBufferSize()}
      */
-    public static synchronized char[] getCharArray() {
+    public static char[] getCharArray() {
         return getCharArray(getDefaultBufferSize());
     }
 
@@ -127,7 +146,7 @@ public class BufferPool {
      * @param length length of the char array
      * @return a char array of the specified length
      */
-    public static synchronized char[] getCharArray(int length) {
+    public static char[] getCharArray(int length) {
         return (char[])getBuffer(new CharArrayFactory(), length);
     }
 
@@ -137,7 +156,7 @@ public class BufferPool {
      *
      * @return a ByteBuffer with a capacity equal to {@link #getDefaultBufferSize()}
      */
-    public static synchronized ByteBuffer getByteBuffer() {
+    public static ByteBuffer getByteBuffer() {
         return getByteBuffer(getDefaultBufferSize());
     }
 
@@ -155,7 +174,7 @@ public class BufferPool {
      * @param capacity capacity of the ByteBuffer
      * @return a ByteBuffer with the specified capacity
      */
-    public static synchronized ByteBuffer getByteBuffer(int capacity) {
+    public static ByteBuffer getByteBuffer(int capacity) {
         return (ByteBuffer)getBuffer(new ByteBufferFactory(), capacity);
     }
 
@@ -166,7 +185,7 @@ public class BufferPool {
      *
      * @return a CharBuffer with a capacity equal to {@link #getDefaultBufferSize()}
      */
-    public static synchronized CharBuffer getCharBuffer() {
+    public static CharBuffer getCharBuffer() {
         return getCharBuffer(getDefaultBufferSize());
     }
 
@@ -184,7 +203,7 @@ public class BufferPool {
      * @param capacity capacity of the CharBuffer
      * @return a CharBuffer with the specified capacity
      */
-    public static synchronized CharBuffer getCharBuffer(int capacity) {
+    public static CharBuffer getCharBuffer(int capacity) {
         return (CharBuffer)getBuffer(new CharBufferFactory(), capacity);
     }
 
@@ -196,7 +215,7 @@ public class BufferPool {
      * @param factory BufferFactory used to identify the target buffer class and create a new buffer (if necessary)
      * @return a buffer with a size equal to {@link #getDefaultBufferSize()}
      */
-    public static synchronized Object getBuffer(BufferFactory factory) {
+    public static Object getBuffer(BufferFactory factory) {
         return getBuffer(factory, getDefaultBufferSize());
     }
 
@@ -213,26 +232,25 @@ public class BufferPool {
      * @param size size of the buffer
      * @return a buffer of the specified size
      */
-    public static synchronized Object getBuffer(BufferFactory factory, int size) {
-        // Looks for a buffer container in the pool that matches the specified size and buffer class.
-        Iterator<BufferContainer> it = bufferContainers.iterator();
-        while (it.hasNext()) {
-            BufferContainer bufferContainer = it.next();
-            Object buffer = bufferContainer.getBuffer();
-
+    public static Object getBuffer(BufferFactory factory, int size) {
+        // Looks for a buffer in the stack that matches the specified size and buffer class.
+        Deque<BufferContainer> stack = sizeClasses.get(new SizeClass(factory.getBufferClass(), size));
+        BufferContainer bufferContainer = stack == null ? null : stack.pollFirst();
+        if (bufferContainer != null) {
+            bufferContainers.remove(bufferContainer);
             // Caution: mind the difference between BufferContainer#getLength() and BufferContainer#getSize()
-            if (bufferContainer.getLength() == size && (factory.matchesBufferClass(buffer.getClass()))) {
-                it.remove();
-                //bufferContainers.removeElementAt(i);
-                poolSize -= bufferContainer.getSize();
-                return buffer;
-            }
+            poolSize.addAndGet(-bufferContainer.getSize());
+            hitCount.increment();
+            return bufferContainer.getBuffer();
         }
 
         LOGGER.trace("Creating new buffer with {} size=", factory, size);
 
         // No buffer with the same class and size found in the pool, create a new one and return it
-        return factory.newBuffer(size);
+        Object buffer = factory.newBuffer(size);
+        missCount.increment();
+        allocatedBytes.add(factory.newBufferContainer(buffer).getSize());
+        return buffer;
     }
 
 
@@ -248,7 +266,7 @@ public class BufferPool {
      * @return <code>true</code> if the buffer was added to the pool, <code>false</code> if the buffer was already in the pool
      * @throws IllegalArgumentException if specified buffer is null
      */
-    public static synchronized boolean releaseByteArray(byte buffer[]) {
+    public static boolean releaseByteArray(byte buffer[]) {
         return releaseBuffer(buffer, new ByteArrayFactory());
     }
 
@@ -264,7 +282,7 @@ public class BufferPool {
      * @return <code>true</code> if the buffer was added to the pool, <code>false</code> if the buffer was already in the pool
      * @throws IllegalArgumentException if specified buffer is null
      */
-    public static synchronized boolean releaseCharArray(char buffer[]) {
+    public static boolean releaseCharArray(char buffer[]) {
         return releaseBuffer(buffer, new CharArrayFactory());
     }
 
@@ -280,7 +298,7 @@ public class BufferPool {
      * @return <code>true</code> if the buffer was added to the pool, <code>false</code> if the buffer was already in the pool
      * @throws IllegalArgumentException if specified buffer is null
      */
-    public static synchronized boolean releaseByteBuffer(ByteBuffer buffer) {
+    public static boolean releaseByteBuffer(ByteBuffer buffer) {
         return releaseBuffer(buffer, new ByteBufferFactory());
     }
 
@@ -296,7 +314,7 @@ public class BufferPool {
      * @return <code>true</code> if the buffer was added to the pool, <code>false</code> if the buffer was already in the pool
      * @throws IllegalArgumentException if specified buffer is null
      */
-    public static synchronized boolean releaseCharBuffer(CharBuffer buffer) {
+    public static boolean releaseCharBuffer(CharBuffer buffer) {
         return releaseBuffer(buffer, new CharBufferFactory());
     }
 
@@ -314,27 +332,32 @@ public class BufferPool {
      * @return <code>true</code> if the buffer was added to the pool, <code>false</code> if the buffer was already in the pool or the pool size limit has been reached
      * @throws IllegalArgumentException if specified buffer is null
      */
-    public static synchronized boolean releaseBuffer(Object buffer, BufferFactory factory) {
+    public static boolean releaseBuffer(Object buffer, BufferFactory factory) {
         if(buffer==null)
             throw new IllegalArgumentException("specified buffer is null");
 
         BufferContainer bufferContainer = factory.newBufferContainer(buffer);
 
-        if(bufferContainers.contains(bufferContainer)) {
+        if(!bufferContainers.add(bufferContainer)) {
             LOGGER.info("Warning: specified buffer is already in the pool: {}", buffer);
             return false;
         }
 
         long bufferSize = bufferContainer.getSize();        // size in bytes (!= length)
 
-        if(maxPoolSize!=-1 && poolSize+bufferSize>maxPoolSize) {
-            LOGGER.info("Warning: maximum pool size reached, buffer not added to the pool of type {}. Enable trace to get the buffer.", buffer.getClass());
-            LOGGER.trace("Warning: maximum pool size reached, buffer not added to the pool of type {} : {}", buffer.getClass(), buffer);
-            return false;
-        }
+        long currentPoolSize;
+        do {
+            currentPoolSize = poolSize.get();
+            if(maxPoolSize!=-1 && currentPoolSize+bufferSize>maxPoolSize) {
+                bufferContainers.remove(bufferContainer);
+                LOGGER.info("Warning: maximum pool size reached, buffer not added to the pool of type {}. Enable trace to get the buffer.", buffer.getClass());
+                LOGGER.trace("Warning: maximum pool size reached, buffer not added to the pool of type {} : {}", buffer.getClass(), buffer);
+                return false;
+            }
+        } while(!poolSize.compareAndSet(currentPoolSize, currentPoolSize+bufferSize));
 
-        bufferContainers.add(bufferContainer);
-        poolSize += bufferSize;
+        sizeClasses.computeIfAbsent(new SizeClass(factory.getBufferClass(), bufferContainer.getLength()),
+                key -> new ConcurrentLinkedDeque<>()).offerFirst(bufferContainer);
 
         return true;
     }
@@ -373,15 +396,51 @@ public class BufferPool {
      */
     public static int getBufferCount(BufferFactory factory) {
         int count = 0;
-        for (BufferContainer bufferContainer : bufferContainers) {
-            if (factory.matchesBufferClass(bufferContainer.getBuffer().getClass())) {
-                count ++;
+        for (Map.Entry<SizeClass, Deque<BufferContainer>> entry : sizeClasses.entrySet()) {
+            if (factory.matchesBufferClass(entry.getKey().bufferClass)) {
+                count += entry.getValue().size();
             }
-
         }
         return count;
     }
 
+    /**
+     * Returns the number of buffer requests that were served with a buffer from the pool.
+     *
+     * @return the number of buffer requests that were served with a buffer from the pool
+     */
+    public static long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns the number of buffer requests that couldn't be served from the pool and required a new buffer to be
+     * allocated.
+     *
+     * @return the number of buffer requests that required a new buffer to be allocated
+     */
+    public static long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Returns the combined size in bytes of all the buffers the pool had to allocate.
+     *
+     * @return the combined size in bytes of all the buffers the pool had to allocate
+     */
+    public static long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    /**
+     * Resets the hit, miss and allocation counters.
+     */
+    public static void resetStatistics() {
+        hitCount.reset();
+        missCount.reset();
+        allocatedBytes.reset();
+    }
+
     /**
      * Returns the default size of buffers returned by <code>get*Buffer</code> methods without a <code>size</code>
      * argument.
@@ -399,7 +458,7 @@ public class BufferPool {
      *
      * @param bufferSize the new buffer size
      */
-    public static synchronized void setDefaultBufferSize(int bufferSize) {
+    public static void setDefaultBufferSize(int bufferSize) {
         BufferPool.defaultBufferSize = bufferSize;
     }
 
@@ -410,7 +469,7 @@ public class BufferPool {
      * @return the combined size in bytes of all buffers that are currenty in the pool
      */
     public static long getPoolSize() {
-        return poolSize;
+        return poolSize.get();
     }
 
     /**
@@ -433,7 +492,7 @@ public class BufferPool {
      *
      * @param maxPoolSize the maximum combined size in bytes for all buffers in the pool
      */
-    public static synchronized void setMaxPoolSize(long maxPoolSize) {
+    public static void setMaxPoolSize(long maxPoolSize) {
         BufferPool.maxPoolSize = maxPoolSize;
     }
 
@@ -472,10 +531,17 @@ public class BufferPool {
          * Implements a shallow equal comparison.
          */
         public boolean equals(Object o) {
-            // Note: this method is used by Vector.contains()
+            // Note: this method is used to look for the container in the set of pooled buffers
             return (o instanceof BufferContainer) && buffer == ((BufferContainer)o).buffer;
         }
 
+        /**
+         * Returns the identity hash code of the wrapped buffer, consistently with {@link #equals(Object)}.
+         */
+        public int hashCode() {
+            return System.identityHashCode(buffer);
+        }
+
         /**
          * Returns the length of the wrapped buffer instance.
          *
@@ -659,8 +725,40 @@ public class BufferPool {
         }
     }
 
-	public static synchronized void releaseAll() {
-		bufferContainers.clear();
-		poolSize = 0;
+    /**
+     * Identifies the stack of buffers having the same class and length.
+     */
+    private static class SizeClass {
+        private final Class<?> bufferClass;
+        private final int length;
+
+        SizeClass(Class<?> bufferClass, int length) {
+            this.bufferClass = bufferClass;
+            this.length = length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SizeClass)) {
+                return false;
+            }
+            SizeClass sizeClass = (SizeClass)o;
+            return length == sizeClass.length && bufferClass == sizeClass.bufferClass;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * bufferClass.hashCode() + length;
+        }
+    }
+
+	public static void releaseAll() {
+		for (Deque<BufferContainer> stack : sizeClasses.values()) {
+			BufferContainer bufferContainer;
+			while ((bufferContainer = stack.pollFirst()) != null) {
+				bufferContainers.remove(bufferContainer);
+				poolSize.addAndGet(-bufferContainer.getSize());
+			}
+		}
 	}
 }
@@ -82,6 +82,19 @@ public class ByteCounter {
     }
 
 
+    /**
+     * Decreases the byte counter by the provided number of bytes, for bytes that have been accounted for but need to be
+     * transferred again. The byte counter won't go below zero.
+     *
+     * @param nbBytes number of bytes to remove from the byte counter, will be ignored if negative
+     */
+    public synchronized void subtract(long nbBytes) {
+        if (nbBytes > 0) {
+            this.count = Math.max(0, count - nbBytes);
+        }
+    }
+
+
     /**
      * Increases the byte counter by the number of bytes contained in the specified counter (as returned by its
      * {@link #getByteCount()} method) and resets its byte counter after (if specified).
@@ -0,0 +1,661 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2010 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import org.apache.hadoop.io.compress.bzip2.CBZip2InputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * An <code>InputStream</code> that reads data in the bzip2 format, decompressing it on several threads like pbzip2
+ * does. The magic bytes <code>BZ</code> are read by this stream, and concatenated bzip2 streams are read as one.
+ *
+ * <p>bzip2 blocks are independent of each other: the compressed stream is scanned for the magic numbers that start
+ * blocks, and each block is shifted to a byte boundary and wrapped into a bzip2 stream of its own, which is
+ * decompressed with {@link CBZip2InputStream} on a thread pool. Decompressed blocks are returned in their original
+ * order. The CRC of each block is verified by the decompressor, and the combined CRC of each stream by this stream.
+ * As a block or end of stream magic number may appear by chance within compressed data, a block that fails to
+ * decompress is decompressed again along with the chunks that follow it, up to the maximum size of a compressed block,
+ * before the error is reported. Likewise, an end of stream is only accepted if the combined CRC of the stream matches.
+ *
+ * <p>The compressed stream is only read by the thread calling the <code>read</code> methods. The number of blocks
+ * being decompressed or waiting to be read is limited to twice the number of threads, and only the first
+ * {@link #MAX_BUFFERED_BLOCK_SIZE} bytes of a block are decompressed in advance, the rest being decompressed as it is
+ * read: a 900 KB block of repeated bytes decompresses to 45 MB.
+ *
+ * @see ParallelBzip2OutputStream
+ * @author Oleg Trifonov
+ */
+public class ParallelBzip2InputStream extends InputStream {
+
+    /** Magic number of the start of a bzip2 block */
+    private static final long BLOCK_MAGIC = 0x314159265359L;
+
+    /** Magic number of the end of a bzip2 stream */
+    private static final long END_OF_STREAM_MAGIC = 0x177245385090L;
+
+    private static final int MAGIC_BITS = 48;
+
+    private static final long MAGIC_MASK = (1L << MAGIC_BITS) - 1;
+
+    /** Maximum length of a Huffman code, each symbol of a block is encoded on at most this number of bits */
+    private static final int MAX_CODE_LENGTH = 20;
+
+    /** Upper bound of the number of bits of the block header, Huffman tables and selectors of a block */
+    private static final long MAX_BLOCK_HEADER_BITS = 256 * 1024;
+
+    /** Maximum number of decompressed bytes of a block that are decompressed before the block is read */
+    static final int MAX_BUFFERED_BLOCK_SIZE = 4 * 1024 * 1024;
+
+    /** Number of threads of streams created without an explicit number of threads, <code>0</code> for the number of processors */
+    private static volatile int defaultThreads;
+
+    /** The compressed stream */
+    private final InputStream in;
+    private final byte inBuffer[] = new byte[64 * 1024];
+    private int inPosition;
+    private int inLength;
+
+    /** Byte being scanned and its number of bits left to scan */
+    private int currentByte;
+    private int bitsLeft;
+
+    /** Compressed bytes of the block being scanned, from the byte holding its first bit */
+    private byte blockBuffer[] = new byte[128 * 1024];
+    private int blockBufferLength;
+    /** Position of the first bit of the block being scanned within the first byte of the block buffer */
+    private int blockStartBit;
+    /** Number of bits scanned since the start of the block being scanned */
+    private long blockBits;
+
+    /** Block size of the stream being scanned, in units of 100 KB */
+    private int blockSize100k;
+    /** Magic number that starts the block being scanned, <code>-1</code> once the compressed stream has been scanned */
+    private long nextMagic;
+
+    private final ExecutorService executor;
+
+    /** Blocks in the order they must be read */
+    private final Deque<Block> pendingBlocks = new ArrayDeque<>();
+
+    /** Maximum number of blocks being decompressed or waiting to be read */
+    private final int maxPendingBlocks;
+
+    /** Block being read */
+    private DecompressedBlock currentBlock;
+
+    /** Combined CRC of the blocks of the current stream read so far */
+    private int combinedCRC;
+
+    private boolean closed;
+
+    /**
+     * Creates a new stream decompressing blocks on the number of threads set with {@link #setDefaultThreads(int)}.
+     *
+     * @param in the compressed stream, starting with the magic bytes <code>BZ</code>
+     * @throws IOException if the stream is not in the bzip2 format or could not be read
+     */
+    public ParallelBzip2InputStream(InputStream in) throws IOException {
+        this(in, getDefaultThreads());
+    }
+
+    /**
+     * Creates a new stream decompressing blocks on the given number of threads.
+     *
+     * @param in the compressed stream, starting with the magic bytes <code>BZ</code>
+     * @param threads number of threads decompressing blocks
+     * @throws IOException if the stream is not in the bzip2 format or could not be read
+     */
+    public ParallelBzip2InputStream(InputStream in, int threads) throws IOException {
+        this.in = in;
+        if (!readStreamHeader() || nextMagic == -1) {
+            throw new IOException("Not in BZIP2 format");
+        }
+        this.maxPendingBlocks = threads * 2;
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, getClass().getSimpleName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets the number of threads of the streams created without an explicit number of threads, <code>0</code> for
+     * the number of processors.
+     *
+     * @param threads number of threads decompressing blocks
+     */
+    public static void setDefaultThreads(int threads) {
+        defaultThreads = Math.max(threads, 0);
+    }
+
+    private static int getDefaultThreads() {
+        int threads = defaultThreads;
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+
+    //////////////
+    // Scanning //
+    //////////////
+
+    /**
+     * Reads the next compressed byte, returns <code>false</code> at the end of the compressed stream.
+     */
+    private boolean nextByte() throws IOException {
+        if (inPosition == inLength) {
+            int n;
+            do {
+                n = in.read(inBuffer, 0, inBuffer.length);
+            } while (n == 0);
+            if (n == -1) {
+                return false;
+            }
+            inLength = n;
+            inPosition = 0;
+        }
+        currentByte = inBuffer[inPosition++] & 0xFF;
+        bitsLeft = 8;
+        if (blockBufferLength == blockBuffer.length) {
+            blockBuffer = Arrays.copyOf(blockBuffer, blockBuffer.length * 2);
+        }
+        blockBuffer[blockBufferLength++] = (byte)currentByte;
+        return true;
+    }
+
+    /**
+     * Reads the given number of bits, returns <code>-1</code> at the end of the compressed stream.
+     */
+    private long readBits(int n) throws IOException {
+        long value = 0;
+        for (int i = 0; i < n; i++) {
+            if (bitsLeft == 0 && !nextByte()) {
+                return -1;
+            }
+            value = (value << 1) | ((currentByte >>> --bitsLeft) & 1);
+        }
+        blockBits += n;
+        return value;
+    }
+
+    /**
+     * Reads the header of the first stream and the magic number that follows it. Returns <code>false</code> if there
+     * is no header, sets {@link #nextMagic} to <code>-1</code> if the header is not followed by a magic number.
+     */
+    private boolean readStreamHeader() throws IOException {
+        // Streams start on a byte boundary
+        bitsLeft = 0;
+        blockBufferLength = 0;
+        if (readBits(8) != 'B' || readBits(8) != 'Z' || readBits(8) != 'h') {
+            return false;
+        }
+        long blockSize = readBits(8);
+        if (blockSize < '1' || blockSize > '9') {
+            return false;
+        }
+        blockSize100k = (int)(blockSize - '0');
+
+        blockBufferLength = 0;
+        blockStartBit = 0;
+        blockBits = 0;
+        long magic = readBits(MAGIC_BITS);
+        nextMagic = magic == BLOCK_MAGIC || magic == END_OF_STREAM_MAGIC ? magic : -1;
+        return true;
+    }
+
+    /**
+     * Scans the compressed stream up to the end of the next magic number, returns the magic number or
+     * <code>-1</code> at the end of the compressed stream.
+     */
+    private long scanToMagic() throws IOException {
+        // Bits scanned so far, the last one in the low-order bit
+        long bits = 0;
+        int n = 0;
+        while (bitsLeft > 0) {
+            bits = (bits << 1) | ((currentByte >>> --bitsLeft) & 1);
+            blockBits++;
+            long magic = bits & MAGIC_MASK;
+            if (++n >= MAGIC_BITS && (magic == BLOCK_MAGIC || magic == END_OF_STREAM_MAGIC)) {
+                return magic;
+            }
+        }
+        // Whole bytes, the magic number may end at any of their bits
+        while (nextByte()) {
+            bits = (bits << 8) | currentByte;
+            n = Math.min(n + 8, 64);
+            for (int shift = 7; shift >= 0; shift--) {
+                long magic = (bits >>> shift) & MAGIC_MASK;
+                if ((magic == BLOCK_MAGIC || magic == END_OF_STREAM_MAGIC) && n - shift >= MAGIC_BITS) {
+                    bitsLeft = shift;
+                    blockBits += 8 - shift;
+                    return magic;
+                }
+            }
+            bitsLeft = 0;
+            blockBits += 8;
+        }
+        return -1;
+    }
+
+    /**
+     * Scans the compressed stream from the current magic number up to the next one, and submits the block it starts
+     * for decompression, or queues the end of stream it starts or the error found in the compressed stream.
+     */
+    private void scanBlock() throws IOException {
+        boolean endOfStream = nextMagic == END_OF_STREAM_MAGIC;
+        long crc = readBits(32);
+        // The block ends where the next magic number starts. The end of the last stream is followed by the end of the
+        // compressed stream, or by bits that are ignored.
+        long magic = crc == -1 ? -1 : scanToMagic();
+        if (crc == -1 || (magic == -1 && !endOfStream)) {
+            queueError(new EOFException("Unexpected end of BZIP2 input stream"));
+            return;
+        }
+        long length = magic == -1 ? blockBits : blockBits - MAGIC_BITS;
+        long endBit = blockStartBit + length;
+        int endByte = (int)(endBit / 8);
+        Chunk chunk = new Chunk(Arrays.copyOf(blockBuffer, endByte + 1), blockStartBit, length, (int)crc, blockSize100k);
+
+        if (endOfStream) {
+            // Kept along with its bits, which are part of the previous block if the magic number is found by chance
+            boolean streamFollows = magic != -1 && readConcatenatedStreamHeader(endBit);
+            pendingBlocks.add(new Block(chunk, (int)crc, streamFollows));
+        } else {
+            Block block = new Block(chunk);
+            block.future = executor.submit(() -> decompress(block.chunks));
+            pendingBlocks.add(block);
+        }
+
+        // The next block starts with the magic number that was just scanned
+        System.arraycopy(blockBuffer, endByte, blockBuffer, 0, blockBufferLength - endByte);
+        blockBufferLength -= endByte;
+        blockStartBit = (int)(endBit % 8);
+        blockBits = MAGIC_BITS;
+        nextMagic = magic;
+    }
+
+    /**
+     * Returns <code>true</code> if the bits between the end of stream that starts the block buffer and the given bit
+     * are the header of a concatenated stream, i.e. the end of stream's padding followed by <code>BZh</code> and a
+     * block size, in which case the block size of the stream is updated.
+     */
+    private boolean readConcatenatedStreamHeader(long endBit) {
+        // Streams start on a byte boundary
+        int headerByte = (blockStartBit + MAGIC_BITS + 32 + 7) / 8;
+        if (endBit != (headerByte + 4) * 8L || blockBuffer[headerByte] != 'B' || blockBuffer[headerByte + 1] != 'Z'
+                || blockBuffer[headerByte + 2] != 'h') {
+            return false;
+        }
+        int blockSize = blockBuffer[headerByte + 3];
+        if (blockSize < '1' || blockSize > '9') {
+            return false;
+        }
+        blockSize100k = blockSize - '0';
+        return true;
+    }
+
+    private void queueError(IOException e) {
+        pendingBlocks.add(new Block(e));
+        nextMagic = -1;
+    }
+
+    /**
+     * Returns the next block, scanning blocks ahead until the number of pending blocks reaches the limit.
+     */
+    private Block nextBlock() throws IOException {
+        while (nextMagic != -1 && pendingBlocks.size() < maxPendingBlocks) {
+            scanBlock();
+        }
+        return pendingBlocks.poll();
+    }
+
+
+    ///////////////////
+    // Decompression //
+    ///////////////////
+
+    /**
+     * Decompresses the given consecutive chunks as a single block. This method is called by the decompressing threads.
+     */
+    private static DecompressedBlock decompress(List<Chunk> chunks) throws IOException {
+        Chunk first = chunks.get(0);
+        long bits = 16 + MAGIC_BITS + 32;
+        for (Chunk chunk : chunks) {
+            bits += chunk.length;
+        }
+        // A stream holding the chunks, without the magic bytes 'BZ' which CBZip2InputStream expects to be skipped
+        BitWriter stream = new BitWriter((int)((bits + 7) / 8));
+        stream.write(8, 'h');
+        stream.write(8, '0' + first.blockSize100k);
+        for (Chunk chunk : chunks) {
+            stream.copy(chunk.data, chunk.startBit, chunk.length);
+        }
+        stream.write(24, END_OF_STREAM_MAGIC >>> 24);
+        stream.write(24, END_OF_STREAM_MAGIC);
+        // The combined CRC of a stream of one block is the CRC of the block
+        stream.write(32, first.crc);
+        stream.finish();
+
+        try {
+            InputStream in = new CBZip2InputStream(new ByteArrayInputStream(stream.data));
+            byte data[] = new byte[Math.min(first.blockSize100k * 100000, MAX_BUFFERED_BLOCK_SIZE)];
+            int length = 0;
+            while (length < data.length) {
+                int n = in.read(data, length, data.length - length);
+                if (n == -1) {
+                    in.close();
+                    return new DecompressedBlock(first.crc, data, length, null);
+                }
+                length += n;
+            }
+            return new DecompressedBlock(first.crc, data, length, in);
+        } catch (RuntimeException e) {
+            // CBZip2InputStream is known to throw runtime exceptions on corrupt data
+            throw new IOException("Corrupt BZIP2 stream", e);
+        }
+    }
+
+    /**
+     * Waits for the given block to be decompressed. If it failed, the block is decompressed again along with the
+     * chunks that follow it in case it was cut by a magic number appearing within compressed data, until it succeeds
+     * or the chunks exceed the maximum size of a compressed block.
+     */
+    private DecompressedBlock waitFor(Block block) throws IOException {
+        try {
+            return block.future.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            IOException error = e.getCause() instanceof IOException ? (IOException)e.getCause() : new IOException(e.getCause());
+            List<Chunk> chunks = new ArrayList<>(block.chunks);
+            long maxBits = block.chunks.get(0).blockSize100k * 100000L * MAX_CODE_LENGTH + MAX_BLOCK_HEADER_BITS;
+            long bits = block.chunks.get(0).length;
+            while (true) {
+                Block next = pendingBlocks.isEmpty() ? nextBlock() : pendingBlocks.poll();
+                if (next == null || next.chunks == null || bits + next.chunks.get(0).length > maxBits) {
+                    if (next != null) {
+                        pendingBlocks.addFirst(next);
+                    }
+                    throw error;
+                }
+                if (next.future != null) {
+                    next.future.cancel(true);
+                }
+                chunks.addAll(next.chunks);
+                bits += next.chunks.get(0).length;
+                try {
+                    return decompress(chunks);
+                } catch (IOException e2) {
+                    // The block may span more chunks
+                }
+            }
+        }
+    }
+
+
+    /////////////////////////
+    // InputStream methods //
+    /////////////////////////
+
+    @Override
+    public int read() throws IOException {
+        byte b[] = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte b[], int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            if (currentBlock != null) {
+                int n = currentBlock.read(b, off, len);
+                if (n != -1) {
+                    return n;
+                }
+                currentBlock = null;
+            }
+
+            Block block = nextBlock();
+            if (block == null) {
+                return -1;
+            }
+            if (block.error != null) {
+                // Keep failing on subsequent reads
+                pendingBlocks.addFirst(block);
+                throw block.error;
+            }
+            if (block.endOfStream) {
+                if (block.crc != combinedCRC) {
+                    throw new IOException("BZIP2 CRC error");
+                }
+                combinedCRC = 0;
+                if (!block.streamFollows) {
+                    // Anything that follows the last stream is ignored
+                    for (Block ignored : pendingBlocks) {
+                        if (ignored.future != null) {
+                            ignored.future.cancel(true);
+                        }
+                    }
+                    pendingBlocks.clear();
+                    nextMagic = -1;
+                    return -1;
+                }
+                continue;
+            }
+            currentBlock = waitFor(block);
+            combinedCRC = ((combinedCRC << 1) | (combinedCRC >>> 31)) ^ currentBlock.crc;
+        }
+    }
+
+    @Override
+    public int available() {
+        return currentBlock == null ? 0 : currentBlock.length - currentBlock.position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        executor.shutdownNow();
+        if (currentBlock != null) {
+            currentBlock.close();
+        }
+        in.close();
+    }
+
+
+    /**
+     * The compressed bits of a block.
+     */
+    private static class Chunk {
+        private final byte data[];
+        /** Position of the first bit of the block within the first byte of data */
+        private final int startBit;
+        /** Number of bits of the block */
+        private final long length;
+        private final int crc;
+        private final int blockSize100k;
+
+        private Chunk(byte data[], int startBit, long length, int crc, int blockSize100k) {
+            this.data = data;
+            this.startBit = startBit;
+            this.length = length;
+            this.crc = crc;
+            this.blockSize100k = blockSize100k;
+        }
+    }
+
+    /**
+     * An entry of the pending blocks: a block being decompressed, the end of a stream or an error.
+     */
+    private static class Block {
+        /** Chunks of the block or of the end of stream, <code>null</code> for an error */
+        private final List<Chunk> chunks;
+        /** Decompression of the block, <code>null</code> for the end of a stream or an error */
+        private Future<DecompressedBlock> future;
+        private final boolean endOfStream;
+        /** Combined CRC of the stream that ends */
+        private final int crc;
+        /** True if the stream that ends is followed by a concatenated stream */
+        private final boolean streamFollows;
+        private final IOException error;
+
+        private Block(Chunk chunk) {
+            this(Collections.singletonList(chunk), false, 0, false, null);
+        }
+
+        private Block(Chunk chunk, int crc, boolean streamFollows) {
+            this(Collections.singletonList(chunk), true, crc, streamFollows, null);
+        }
+
+        private Block(IOException error) {
+            this(null, false, 0, false, error);
+        }
+
+        private Block(List<Chunk> chunks, boolean endOfStream, int crc, boolean streamFollows, IOException error) {
+            this.chunks = chunks;
+            this.endOfStream = endOfStream;
+            this.crc = crc;
+            this.streamFollows = streamFollows;
+            this.error = error;
+        }
+    }
+
+    /**
+     * The decompressed data of a block: the data decompressed in advance, followed by the stream decompressing the
+     * rest of the block if it is larger than {@link #MAX_BUFFERED_BLOCK_SIZE}.
+     */
+    private static class DecompressedBlock {
+        private final int crc;
+        private final byte data[];
+        private final int length;
+        private int position;
+        private InputStream rest;
+
+        private DecompressedBlock(int crc, byte data[], int length, InputStream rest) {
+            this.crc = crc;
+            this.data = data;
+            this.length = length;
+            this.rest = rest;
+        }
+
+        private int read(byte b[], int off, int len) throws IOException {
+            if (position < length) {
+                int n = Math.min(len, length - position);
+                System.arraycopy(data, position, b, off, n);
+                position += n;
+                return n;
+            }
+            if (rest == null) {
+                return -1;
+            }
+            try {
+                int n;
+                do {
+                    n = rest.read(b, off, len);
+                } while (n == 0);
+                if (n == -1) {
+                    close();
+                }
+                return n;
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt BZIP2 stream", e);
+            }
+        }
+
+        private void close() throws IOException {
+            if (rest != null) {
+                rest.close();
+                rest = null;
+            }
+        }
+    }
+
+    /**
+     * Writes bits to a byte array, the most significant ones first.
+     */
+    private static class BitWriter {
+        private final byte data[];
+        private int position;
+        private long bitBuffer;
+        private int bitCount;
+
+        private BitWriter(int length) {
+            this.data = new byte[length];
+        }
+
+        /**
+         * Writes the given number of low-order bits of the given value, at most 32.
+         */
+        private void write(int n, long value) {
+            bitBuffer = (bitBuffer << n) | (value & ((1L << n) - 1));
+            bitCount += n;
+            while (bitCount >= 8) {
+                bitCount -= 8;
+                data[position++] = (byte)(bitBuffer >>> bitCount);
+            }
+        }
+
+        /**
+         * Writes the given number of bits of the given array, starting at the given bit of its first byte.
+         */
+        private void copy(byte src[], int startBit, long n) {
+            int i = 0;
+            if (startBit > 0) {
+                int head = (int)Math.min(n, 8 - startBit);
+                write(head, (src[0] & 0xFF) >>> (8 - startBit - head));
+                n -= head;
+                i = 1;
+            }
+            for (; n >= 8; n -= 8) {
+                write(8, src[i++] & 0xFF);
+            }
+            if (n > 0) {
+                write((int)n, (src[i] & 0xFF) >>> (8 - n));
+            }
+        }
+
+        private void finish() {
+            if (bitCount > 0) {
+                write(8 - bitCount, 0);
+            }
+        }
+    }
+}
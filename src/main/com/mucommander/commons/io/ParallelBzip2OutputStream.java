@@ -0,0 +1,171 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2010 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import org.apache.hadoop.io.compress.bzip2.CBZip2OutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+
+/**
+ * An <code>OutputStream</code> that writes data in the bzip2 format, compressing it on several threads like pbzip2
+ * does. The magic bytes <code>BZ</code> are written by this stream.
+ *
+ * <p>Data is split into chunks small enough to fit in a single bzip2 block, which are compressed independently with
+ * {@link CBZip2OutputStream}. Rather than concatenating complete bzip2 streams, which not all decompressors support,
+ * the block of each compressed chunk is extracted and the blocks are written one after the other in a single bzip2
+ * stream, whose combined CRC is computed from the CRCs of the blocks. As bzip2 blocks are not aligned on byte
+ * boundaries, the blocks are shifted to the current bit position of the stream by the writing thread.
+ *
+ * @author Oleg Trifonov
+ */
+public class ParallelBzip2OutputStream extends ParallelCompressorOutputStream<ParallelBzip2OutputStream.CompressedBlock> {
+
+    /** Magic number of the end of a bzip2 stream */
+    private static final long END_OF_STREAM_MAGIC = 0x177245385090L;
+
+    /** Bits preceding the first block in a stream created by CBZip2OutputStream: 'h' and the block size */
+    private static final int STREAM_HEADER_BITS = 16;
+
+    /** Bits of a block header preceding the block CRC: the block magic number */
+    private static final int BLOCK_MAGIC_BITS = 48;
+
+    private final int blockSize100k;
+
+    /** Combined CRC of the blocks written so far */
+    private int combinedCRC;
+
+    /** Bits waiting to be written, the most significant ones first */
+    private long bitBuffer;
+    private int bitCount;
+
+    /**
+     * Creates a new stream compressing data with the given block size on the given number of threads.
+     *
+     * @param out the underlying stream
+     * @param blockSize100k the bzip2 block size in units of 100 KB, from 1 to 9
+     * @param threads number of threads compressing blocks
+     */
+    public ParallelBzip2OutputStream(OutputStream out, int blockSize100k, int threads) {
+        // The first stage of bzip2 turns runs of 4 bytes into 5 bytes: chunks of 4/5th of a block always fit in a block
+        super(out, (blockSize100k * 100000 - 20) / 5 * 4, threads);
+        this.blockSize100k = blockSize100k;
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        out.write('B');
+        out.write('Z');
+        out.write('h');
+        out.write('0' + blockSize100k);
+    }
+
+    @Override
+    protected Callable<CompressedBlock> createCompressionTask(byte data[], int length, boolean last) {
+        return () -> {
+            if (length == 0) {
+                return null;
+            }
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4 + 64);
+            try (CBZip2OutputStream bzip2Out = new CBZip2OutputStream(compressed, blockSize100k)) {
+                bzip2Out.write(data, 0, length);
+            }
+            return new CompressedBlock(compressed.toByteArray());
+        };
+    }
+
+    @Override
+    protected void writeBlock(CompressedBlock block) throws IOException {
+        if (block == null) {
+            return;
+        }
+        byte data[] = block.data;
+        int nbBytes = (int)(block.endBit / 8);
+        for (int i = STREAM_HEADER_BITS / 8; i < nbBytes; i++) {
+            writeBits(8, data[i] & 0xff);
+        }
+        int remainingBits = (int)(block.endBit % 8);
+        if (remainingBits > 0) {
+            writeBits(remainingBits, (data[nbBytes] & 0xff) >>> (8 - remainingBits));
+        }
+        combinedCRC = ((combinedCRC << 1) | (combinedCRC >>> 31)) ^ block.crc;
+    }
+
+    @Override
+    protected void writeTrailer() throws IOException {
+        writeBits(24, END_OF_STREAM_MAGIC >>> 24);
+        writeBits(24, END_OF_STREAM_MAGIC & 0xffffff);
+        writeBits(16, combinedCRC >>> 16);
+        writeBits(16, combinedCRC & 0xffff);
+        if (bitCount > 0) {
+            writeBits(8 - bitCount, 0);
+        }
+    }
+
+    /**
+     * Writes the given number of low-order bits of the given value, at most 24.
+     */
+    private void writeBits(int n, long value) throws IOException {
+        bitBuffer = (bitBuffer << n) | value;
+        bitCount += n;
+        while (bitCount >= 8) {
+            bitCount -= 8;
+            out.write((int)(bitBuffer >>> bitCount));
+        }
+    }
+
+
+    /**
+     * The single block of a bzip2 stream created by {@link CBZip2OutputStream}.
+     */
+    static class CompressedBlock {
+        private final byte data[];
+        /** Position of the bit following the block, i.e. of the end of stream magic number */
+        private final long endBit;
+        private final int crc;
+
+        CompressedBlock(byte data[]) throws IOException {
+            this.data = data;
+            this.crc = (int)readBits(data, STREAM_HEADER_BITS + BLOCK_MAGIC_BITS, 32);
+            // The stream ends with the end of stream magic number and the combined CRC, which equals the CRC of the
+            // single block, followed by up to 7 bits of padding
+            long totalBits = data.length * 8L;
+            for (int padding = 0; padding < 8; padding++) {
+                long endBit = totalBits - padding - 80;
+                if (endBit > STREAM_HEADER_BITS && readBits(data, endBit, 48) == END_OF_STREAM_MAGIC
+                        && (int)readBits(data, endBit + 48, 32) == crc) {
+                    this.endBit = endBit;
+                    return;
+                }
+            }
+            throw new IOException("Compressed chunk is not a single bzip2 block");
+        }
+
+        private static long readBits(byte data[], long position, int n) {
+            long value = 0;
+            for (int i = 0; i < n; i++) {
+                long bit = position + i;
+                value = (value << 1) | ((data[(int)(bit >>> 3)] >>> (7 - (bit & 7))) & 1);
+            }
+            return value;
+        }
+    }
+}
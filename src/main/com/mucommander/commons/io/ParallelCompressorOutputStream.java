@@ -0,0 +1,233 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2010 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class of the <code>OutputStream</code>s that compress data on several threads, in the manner of pigz and
+ * pbzip2: the data is split into blocks which are compressed independently on a thread pool, the compressed blocks
+ * being written to the underlying stream in their original order as soon as they are ready.
+ *
+ * <p>Subclasses create the task compressing a block and write the compressed blocks along with the header and
+ * trailer of their format. The number of blocks being compressed or waiting to be written is limited to twice the
+ * number of threads, which bounds the memory used by the stream.
+ *
+ * <p>Data is only written to the underlying stream by the thread calling the <code>write</code> methods, and
+ * {@link #flush()} cannot flush a partial block: data is guaranteed to have been written once the stream has been
+ * closed or finished.
+ *
+ * <p>The threads of the pool are stopped when the stream is finished or fails, and when they have been idle for
+ * {@link #THREAD_KEEP_ALIVE_SECONDS} seconds, so that a stream that is abandoned without being closed doesn't leak them.
+ *
+ * @param <T> type of the compressed blocks
+ * @author Oleg Trifonov
+ */
+public abstract class ParallelCompressorOutputStream<T> extends OutputStream {
+
+    /** Time after which idle compression threads are stopped */
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 5;
+
+    /** The underlying stream */
+    protected final OutputStream out;
+
+    /** Size of the uncompressed blocks */
+    private final int blockSize;
+
+    private final ThreadPoolExecutor executor;
+
+    /** Compressed blocks in the order they must be written */
+    private final Deque<Future<T>> pendingBlocks = new ArrayDeque<>();
+
+    /** Maximum number of blocks being compressed or waiting to be written */
+    private final int maxPendingBlocks;
+
+    /** Block being filled */
+    private byte block[];
+    private int blockLength;
+
+    private boolean headerWritten;
+    private boolean finished;
+
+    /**
+     * Creates a new stream compressing blocks of the given size on the given number of threads.
+     *
+     * @param out the underlying stream
+     * @param blockSize size of the uncompressed blocks
+     * @param threads number of threads compressing blocks
+     */
+    protected ParallelCompressorOutputStream(OutputStream out, int blockSize, int threads) {
+        this.out = out;
+        this.blockSize = blockSize;
+        this.maxPendingBlocks = threads * 2;
+        this.block = new byte[blockSize];
+        this.executor = new ThreadPoolExecutor(threads, threads, THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, getClass().getSimpleName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Writes the header of the format, called before the first compressed block is written.
+     *
+     * @throws IOException if an error occurred while writing the header
+     */
+    protected abstract void writeHeader() throws IOException;
+
+    /**
+     * Returns the task compressing the given block. This method is called by the writing thread in the order of the
+     * blocks, the given array is not modified afterwards.
+     *
+     * @param data the uncompressed data
+     * @param length the number of bytes of the block
+     * @param last <code>true</code> if this is the last block of the stream
+     * @return the task compressing the block
+     */
+    protected abstract Callable<T> createCompressionTask(byte data[], int length, boolean last);
+
+    /**
+     * Writes the given compressed block to the underlying stream.
+     *
+     * @param compressedBlock the compressed block
+     * @throws IOException if an error occurred while writing the block
+     */
+    protected abstract void writeBlock(T compressedBlock) throws IOException;
+
+    /**
+     * Writes the trailer of the format, called after the last compressed block has been written.
+     *
+     * @throws IOException if an error occurred while writing the trailer
+     */
+    protected abstract void writeTrailer() throws IOException;
+
+    @Override
+    public void write(int b) throws IOException {
+        if (finished) {
+            throw new IOException("Stream finished");
+        }
+        if (blockLength == blockSize) {
+            submitBlock(false);
+        }
+        block[blockLength++] = (byte)b;
+    }
+
+    @Override
+    public void write(byte b[], int off, int len) throws IOException {
+        if (finished) {
+            throw new IOException("Stream finished");
+        }
+        while (len > 0) {
+            if (blockLength == blockSize) {
+                submitBlock(false);
+            }
+            int n = Math.min(len, blockSize - blockLength);
+            System.arraycopy(b, off, block, blockLength, n);
+            blockLength += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Submits the current block for compression, and writes compressed blocks until the number of pending blocks
+     * is under the limit. If an error occurs, the pending blocks are dropped and the stream can no longer be written.
+     */
+    private void submitBlock(boolean last) throws IOException {
+        try {
+            if (!headerWritten) {
+                writeHeader();
+                headerWritten = true;
+            }
+            pendingBlocks.add(executor.submit(createCompressionTask(block, blockLength, last)));
+            block = last ? null : new byte[blockSize];
+            blockLength = 0;
+            while (pendingBlocks.size() >= (last ? 1 : maxPendingBlocks)) {
+                writeBlock(waitFor(pendingBlocks.poll()));
+            }
+        } catch (IOException | RuntimeException e) {
+            finished = true;
+            pendingBlocks.clear();
+            executor.shutdownNow();
+            throw e;
+        }
+    }
+
+    private T waitFor(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Compresses and writes the remaining data and the trailer of the format, without closing the underlying stream.
+     *
+     * @throws IOException if an error occurred while compressing or writing data
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            submitBlock(true);
+            writeTrailer();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Flushes the underlying stream. Data of the current block is not compressed until the block is full or the
+     * stream is finished.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+}
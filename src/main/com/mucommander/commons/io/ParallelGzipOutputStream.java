@@ -0,0 +1,134 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2010 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * An <code>OutputStream</code> that writes data in the gzip format, compressing it on several threads like pigz does.
+ *
+ * <p>Data is split into blocks of {@link #BLOCK_SIZE} bytes which are compressed into raw deflate data independently,
+ * each block using the last 32 KB of the previous block as a preset dictionary so that the compression ratio is
+ * nearly the same as that of a single deflate stream. Blocks but the last one end with a sync flush, which aligns
+ * them on a byte boundary: their concatenation is a single valid deflate stream, written in a single gzip member
+ * readable by any gzip decompressor such as {@link java.util.zip.GZIPInputStream}.
+ *
+ * <p>The CRC-32 of the data, stored in the gzip trailer, is computed by the writing thread.
+ *
+ * @author Oleg Trifonov
+ */
+public class ParallelGzipOutputStream extends ParallelCompressorOutputStream<byte[]> {
+
+    /** Size of the blocks compressed independently */
+    public static final int BLOCK_SIZE = 128 * 1024;
+
+    /** Size of the deflate window, used as a preset dictionary */
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    /** gzip header: magic number, deflate method, no flags, no modification time, unknown OS */
+    private static final byte HEADER[] = {0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte)0xff};
+
+    private final int level;
+
+    private final CRC32 crc = new CRC32();
+
+    private long totalLength;
+
+    /** The previous block, used as dictionary by the next one */
+    private byte previousBlock[];
+    private int previousBlockLength;
+
+    /**
+     * Creates a new stream compressing data with the given level on the given number of threads.
+     *
+     * @param out the underlying stream
+     * @param level the compression level, from 1 to 9, or {@link Deflater#DEFAULT_COMPRESSION}
+     * @param threads number of threads compressing blocks
+     */
+    public ParallelGzipOutputStream(OutputStream out, int level, int threads) {
+        super(out, BLOCK_SIZE, threads);
+        this.level = level;
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        out.write(HEADER);
+    }
+
+    @Override
+    protected Callable<byte[]> createCompressionTask(byte data[], int length, boolean last) {
+        crc.update(data, 0, length);
+        totalLength += length;
+
+        byte dictionary[] = previousBlock;
+        int dictionaryOffset = Math.max(0, previousBlockLength - DICTIONARY_SIZE);
+        int dictionaryLength = previousBlockLength - dictionaryOffset;
+        previousBlock = data;
+        previousBlockLength = length;
+
+        return () -> {
+            Deflater deflater = new Deflater(level, true);
+            try {
+                if (dictionary != null) {
+                    deflater.setDictionary(dictionary, dictionaryOffset, dictionaryLength);
+                }
+                deflater.setInput(data, 0, length);
+                if (last) {
+                    deflater.finish();
+                }
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+                byte buffer[] = new byte[Math.min(length + 64, 64 * 1024)];
+                while (true) {
+                    int n = deflater.deflate(buffer, 0, buffer.length, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, n);
+                    // A flush is complete when the output buffer hasn't been filled
+                    if (last ? deflater.finished() : n < buffer.length) {
+                        break;
+                    }
+                }
+                return compressed.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        };
+    }
+
+    @Override
+    protected void writeBlock(byte compressedBlock[]) throws IOException {
+        out.write(compressedBlock);
+    }
+
+    @Override
+    protected void writeTrailer() throws IOException {
+        writeIntLE(crc.getValue());
+        writeIntLE(totalLength);
+    }
+
+    private void writeIntLE(long value) throws IOException {
+        out.write((int)value);
+        out.write((int)(value >> 8));
+        out.write((int)(value >> 16));
+        out.write((int)(value >> 24));
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2010 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Base class of the <code>InputStream</code>s that download a remote file of known length with several concurrent
+ * range requests: the file is split into segments of a fixed size which are fetched on a thread pool, and returned by
+ * the <code>read</code> methods in their original order as soon as they are ready.
+ *
+ * <p>Subclasses read a segment with a single request. The number of segments being fetched or waiting to be read is
+ * limited to the concurrency of the stream, which bounds the memory used by the stream. A segment that could not be
+ * fetched is requested again up to the configured number of retries, after which the error is reported by the
+ * <code>read</code> methods.
+ *
+ * <p>As segments are fetched with independent requests, the file could change in between. Subclasses pass the
+ * validator of each response, such as an ETag, to {@link #checkValidator(String)}: the validator of the first segment
+ * is captured before the other segments are requested, can be sent along with their requests with
+ * {@link #getValidator()}, and must be matched by their responses. Otherwise the download fails with a
+ * {@link ResourceChangedException} rather than mixing bytes of two versions of the file.
+ *
+ * <p>No request is issued before the first byte is read. Closing the stream interrupts the segments being fetched.
+ *
+ * @author Oleg Trifonov
+ */
+public abstract class SegmentedInputStream extends InputStream {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentedInputStream.class);
+
+    /** Default size of the segments, 8 MB */
+    private static volatile int defaultSegmentSize = 8 * 1024 * 1024;
+
+    /** Default number of segments fetched at the same time */
+    private static volatile int defaultConcurrency = 4;
+
+    /** Default number of times a failed segment is requested again */
+    private static volatile int defaultRetries = 3;
+
+    /** Offset of the first byte after the end of the stream */
+    private final long end;
+
+    /** Offset of the next segment to submit */
+    private long nextSegmentOffset;
+
+    /** Offset of the first segment */
+    private final long start;
+
+    /** Validator of the response to the first segment, <code>null</code> if it had none */
+    private volatile String validator;
+
+    /** Released once the validator is known, or the first segment has been fetched or has failed */
+    private final CountDownLatch validatorKnown = new CountDownLatch(1);
+
+    private final int segmentSize;
+    private final int concurrency;
+    private final int retries;
+
+    private ExecutorService executor;
+
+    /** Segments being fetched, in the order they must be read */
+    private final Deque<Future<Segment>> pendingSegments = new ArrayDeque<>();
+
+    /** Buffers of read segments, reused for the next segments */
+    private final Deque<byte[]> freeBuffers = new ArrayDeque<>();
+
+    /** Segment being read */
+    private Segment segment;
+    private int segmentPosition;
+
+    private boolean closed;
+
+    /**
+     * Creates a new stream reading <code>length</code> bytes starting at <code>offset</code>, with the default
+     * segment size, concurrency and retries.
+     *
+     * @param offset offset of the first byte to read
+     * @param length number of bytes to read
+     */
+    protected SegmentedInputStream(long offset, long length) {
+        this(offset, length, defaultSegmentSize, defaultConcurrency, defaultRetries);
+    }
+
+    /**
+     * Creates a new stream reading <code>length</code> bytes starting at <code>offset</code>.
+     *
+     * @param offset offset of the first byte to read
+     * @param length number of bytes to read
+     * @param segmentSize size of the segments
+     * @param concurrency number of segments fetched at the same time
+     * @param retries number of times a failed segment is requested again
+     */
+    protected SegmentedInputStream(long offset, long length, int segmentSize, int concurrency, int retries) {
+        this.nextSegmentOffset = offset;
+        this.start = offset;
+        this.end = offset + length;
+        this.segmentSize = segmentSize;
+        this.concurrency = concurrency;
+        this.retries = retries;
+    }
+
+    /**
+     * Reads a segment of the file with a single request. This method is called by the threads of the pool, possibly
+     * several times for the same segment if it fails.
+     *
+     * @param offset offset of the first byte of the segment in the file
+     * @param b the array to read the segment into
+     * @param len the length of the segment
+     * @return the number of bytes read, less than <code>len</code> only if the end of the file was reached
+     * @throws IOException if the segment could not be read
+     */
+    protected abstract int readSegment(long offset, byte b[], int len) throws IOException;
+
+    /**
+     * Returns the validator of the response to the first segment, which the requests of the other segments may send
+     * so that the server only serves the version of the file of the first segment.
+     *
+     * @return the validator of the first segment, <code>null</code> when reading the first segment or if its response
+     * had no validator
+     */
+    protected String getValidator() {
+        return validator;
+    }
+
+    /**
+     * Checks the validator of the response to a segment request, such as an ETag or a last modification date. The
+     * validator of the first segment is captured, the ones of the other segments must match it.
+     *
+     * @param responseValidator the validator of the response, <code>null</code> if it had none
+     * @throws ResourceChangedException if the validator doesn't match the one of the first segment
+     */
+    protected void checkValidator(String responseValidator) throws ResourceChangedException {
+        if (validatorKnown.getCount() > 0) {
+            // Other segments are not requested before the first one is known
+            validator = responseValidator;
+            validatorKnown.countDown();
+        } else if (validator != null && !validator.equals(responseValidator)) {
+            throw new ResourceChangedException(validator, responseValidator);
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if a file of the given length is worth downloading with the default settings, i.e. if
+     * it spans more than one segment and the default concurrency is more than one.
+     *
+     * @param length the number of bytes to read
+     * @return <code>true</code> if a file of the given length is worth downloading in segments
+     */
+    public static boolean isSegmentable(long length) {
+        return defaultConcurrency > 1 && length > defaultSegmentSize;
+    }
+
+    /**
+     * Sets the default size of the segments.
+     *
+     * @param segmentSize size of the segments in bytes
+     */
+    public static void setDefaultSegmentSize(int segmentSize) {
+        defaultSegmentSize = Math.max(segmentSize, 64 * 1024);
+    }
+
+    /**
+     * Sets the default number of segments fetched at the same time. Setting a value of 1 disables segmented
+     * downloads, see {@link #isSegmentable(long)}.
+     *
+     * @param concurrency number of segments fetched at the same time
+     */
+    public static void setDefaultConcurrency(int concurrency) {
+        defaultConcurrency = Math.max(concurrency, 1);
+    }
+
+    /**
+     * Sets the default number of times a failed segment is requested again before the error is reported.
+     *
+     * @param retries number of retries per segment
+     */
+    public static void setDefaultRetries(int retries) {
+        defaultRetries = Math.max(retries, 0);
+    }
+
+    /**
+     * Submits segments until <code>concurrency</code> of them are being fetched or the end of the file is reached.
+     */
+    private void submitSegments() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(concurrency, r -> {
+                Thread thread = new Thread(r, getClass().getSimpleName());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        while (pendingSegments.size() < concurrency && nextSegmentOffset < end) {
+            final long offset = nextSegmentOffset;
+            final int length = (int)Math.min(segmentSize, end - offset);
+            final byte buffer[] = freeBuffers.isEmpty() ? new byte[segmentSize] : freeBuffers.poll();
+            pendingSegments.add(executor.submit(() -> fetchSegment(offset, buffer, length)));
+            nextSegmentOffset += length;
+        }
+    }
+
+    /**
+     * Fetches a segment, retrying if it fails. Segments other than the first one wait for the validator of the first
+     * one to be known.
+     *
+     * @return the fetched segment
+     */
+    private Segment fetchSegment(long offset, byte buffer[], int length) throws IOException {
+        if (offset == start) {
+            try {
+                return fetchSegmentWithRetries(offset, buffer, length);
+            } finally {
+                validatorKnown.countDown();
+            }
+        }
+
+        try {
+            validatorKnown.await();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        return fetchSegmentWithRetries(offset, buffer, length);
+    }
+
+    private Segment fetchSegmentWithRetries(long offset, byte buffer[], int length) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                int nbRead = readSegment(offset, buffer, length);
+                if (nbRead != length) {
+                    throw new IOException("Segment at "+offset+" truncated: "+nbRead+" bytes out of "+length);
+                }
+                return new Segment(buffer, length);
+            } catch(InterruptedIOException | ResourceChangedException e) {
+                throw e;
+            } catch(IOException e) {
+                if (attempt >= retries || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                LOGGER.info("Failed to read segment at {}, retrying", offset, e);
+            }
+        }
+    }
+
+    /**
+     * Makes the next segment the current one, waiting for it if needed.
+     *
+     * @return <code>false</code> if the end of the stream was reached
+     */
+    private boolean nextSegment() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (segment != null) {
+            freeBuffers.add(segment.data);
+            segment = null;
+        }
+        submitSegments();
+        Future<Segment> next = pendingSegments.poll();
+        if (next == null) {
+            return false;
+        }
+
+        try {
+            segment = next.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+            throw new IOException(cause);
+        }
+        segmentPosition = 0;
+
+        // Keep the pool busy while the segment is being read
+        submitSegments();
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (segment == null || segmentPosition == segment.length) {
+            if (!nextSegment()) {
+                return -1;
+            }
+        }
+        return segment.data[segmentPosition++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte b[], int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (segment == null || segmentPosition == segment.length) {
+            if (!nextSegment()) {
+                return -1;
+            }
+        }
+        int n = Math.min(len, segment.length - segmentPosition);
+        System.arraycopy(segment.data, segmentPosition, b, off, n);
+        segmentPosition += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return segment == null ? 0 : segment.length - segmentPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Future<Segment> pending : pendingSegments) {
+            pending.cancel(true);
+        }
+        pendingSegments.clear();
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        segment = null;
+        freeBuffers.clear();
+    }
+
+
+    /**
+     * A fetched segment.
+     */
+    private static class Segment {
+        private final byte data[];
+        private final int length;
+
+        private Segment(byte data[], int length) {
+            this.data = data;
+            this.length = length;
+        }
+    }
+
+
+    /**
+     * Thrown when the response to a segment request doesn't match the version of the file of the first segment,
+     * i.e. the file has changed during the download. Such a segment is not requested again.
+     */
+    public static class ResourceChangedException extends IOException {
+
+        public ResourceChangedException(String expectedValidator, String actualValidator) {
+            super("Resource changed during download: expected "+expectedValidator+", got "+actualValidator);
+        }
+    }
+}
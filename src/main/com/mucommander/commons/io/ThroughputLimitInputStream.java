@@ -200,6 +200,28 @@ public class ThroughputLimitInputStream extends InputStream {
     }
 
 
+    /**
+     * Blocks until the throughput limit allows more bytes to be consumed, and returns the number of bytes, at most
+     * <code>len</code>, that can be transferred right away. The returned number of bytes is accounted as if it had been
+     * read from this stream.
+     *
+     * <p>This method allows transfers that bypass {@link #read(byte[], int, int)}, <code>FileChannel#transferTo</code>
+     * for instance, to be throttled and paused the same way regular reads are.</p>
+     *
+     * @param len the maximum number of bytes that are to be transferred
+     * @return the number of bytes that can be transferred right away, between 1 and <code>len</code>
+     */
+    public long acquire(long len) {
+        if(bpsLimit<0)
+            return len;
+
+        long nbAllowed = Math.min(getNbAllowedBytes(), len);
+        addToLimitCounter(nbAllowed);
+
+        return nbAllowed;
+    }
+
+
     ////////////////////////////////
     // InputStream implementation //
     ////////////////////////////////
@@ -0,0 +1,553 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2010 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io.gzip;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.ZipException;
+
+/**
+ * A decoder of raw deflate data (RFC 1951) that stops at the boundaries between deflate blocks and tells where they
+ * are in the compressed stream, which <code>java.util.zip.Inflater</code> does not. Those boundaries are the points
+ * at which decompression can later be resumed, given the 32 KB of output that precede them.
+ *
+ * <p>The decoded bytes are kept in a ring buffer holding the window and the bytes that have not been read yet:
+ * {@link #decode()} decodes until about 32 KB are waiting to be read or the current block ends, and
+ * {@link #read(byte[], int, int)} hands them out.
+ *
+ * <p>The decoder reads the underlying stream itself, so that gzip headers and trailers are read with
+ * {@link #readAlignedByte()} between deflate streams.
+ *
+ * @author Oleg Trifonov
+ */
+final class DeflateDecoder {
+
+    /** Maximum distance of a match, and thus size of the dictionary needed to resume decompression */
+    static final int WINDOW_SIZE = 32 * 1024;
+
+    private static final int RING_SIZE = 2 * WINDOW_SIZE;
+    private static final int RING_MASK = RING_SIZE - 1;
+
+    /** Maximum number of bytes waiting to be read, leaves room in the ring for the window and a whole match */
+    private static final int MAX_PENDING = WINDOW_SIZE - 258;
+
+    /** Number of bits looked up at once when decoding a symbol, longer codes are decoded bit by bit */
+    private static final int FAST_BITS = 10;
+    private static final int FAST_MASK = (1 << FAST_BITS) - 1;
+
+    private static final int MAX_CODE_LENGTH = 15;
+
+    private static final int[] LENGTH_BASE = {3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59,
+            67, 83, 99, 115, 131, 163, 195, 227, 258};
+    private static final int[] LENGTH_EXTRA = {0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4,
+            5, 5, 5, 5, 0};
+    private static final int[] DISTANCE_BASE = {1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385,
+            513, 769, 1025, 1537, 2049, 3073, 4097, 6145, 8193, 12289, 16385, 24577};
+    private static final int[] DISTANCE_EXTRA = {0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10,
+            10, 11, 11, 12, 12, 13, 13};
+    private static final int[] CODE_LENGTH_ORDER = {16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15};
+
+    private static final Huffman FIXED_LITERALS = new Huffman(288);
+    private static final Huffman FIXED_DISTANCES = new Huffman(30);
+
+    static {
+        int lengths[] = new int[288];
+        Arrays.fill(lengths, 0, 144, 8);
+        Arrays.fill(lengths, 144, 256, 9);
+        Arrays.fill(lengths, 256, 280, 7);
+        Arrays.fill(lengths, 280, 288, 8);
+        try {
+            FIXED_LITERALS.build(lengths, 0, 288);
+            Arrays.fill(lengths, 0, 30, 5);
+            FIXED_DISTANCES.build(lengths, 0, 30);
+        } catch (ZipException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** Decoder states */
+    private static final int BLOCK_HEADER = 0;
+    private static final int STORED = 1;
+    private static final int HUFFMAN = 2;
+    private static final int FINISHED = 3;
+
+    private final InputStream in;
+
+    private final byte input[] = new byte[64 * 1024];
+    private int inputPos;
+    private int inputLimit;
+    /** Number of bytes read from the underlying stream before the ones in <code>input</code> */
+    private long inputOffset;
+
+    /** Bits read from the input and not consumed yet, the next one being the lowest */
+    private long bits;
+    private int bitCount;
+    /** Number of zero bits added after the end of the input so that the last code can be looked up */
+    private int padBits;
+
+    private final byte ring[] = new byte[RING_SIZE];
+    /** Number of bytes decoded into the ring */
+    private long produced;
+    /** Number of bytes read from the ring */
+    private long consumed;
+    /** Value of <code>produced</code> at the start of the current deflate stream */
+    private long streamStart;
+
+    private int state = BLOCK_HEADER;
+    private boolean lastBlock;
+    private int storedRemaining;
+
+    private Huffman literals;
+    private Huffman distances;
+    private final Huffman dynamicLiterals = new Huffman(286);
+    private final Huffman dynamicDistances = new Huffman(30);
+    private final Huffman codeLengths = new Huffman(19);
+    private final int lengths[] = new int[286 + 30];
+
+    /**
+     * Creates a new decoder reading from the given stream, which must be positioned at the start of deflate data.
+     *
+     * @param in the stream to read compressed data from
+     */
+    DeflateDecoder(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Starts decoding a new deflate stream at the current position, after the end of the previous one.
+     */
+    void startStream() {
+        state = BLOCK_HEADER;
+        lastBlock = false;
+        streamStart = produced;
+    }
+
+    /**
+     * Returns <code>true</code> if the decoder is between two blocks of the current deflate stream.
+     */
+    boolean isAtBlockBoundary() {
+        return state == BLOCK_HEADER;
+    }
+
+    /**
+     * Returns <code>true</code> if the next block starts on a byte boundary, i.e. at {@link #getInputPosition()}.
+     */
+    boolean isByteAligned() {
+        return (bitCount & 7) == 0;
+    }
+
+    /**
+     * Returns <code>true</code> if the last block of the current deflate stream has been decoded.
+     */
+    boolean isFinished() {
+        return state == FINISHED;
+    }
+
+    /**
+     * Returns the offset in the underlying stream of the first byte whose bits have not been consumed.
+     */
+    long getInputPosition() {
+        return inputOffset + inputPos - (bitCount - padBits) / 8;
+    }
+
+    /**
+     * Returns the number of bytes decoded since the decoder was created.
+     */
+    long getOutputPosition() {
+        return produced;
+    }
+
+    /**
+     * Returns the number of bytes decoded since the start of the current deflate stream.
+     */
+    long getStreamOutputLength() {
+        return produced - streamStart;
+    }
+
+    /**
+     * Returns the number of decoded bytes waiting to be read.
+     */
+    int getPending() {
+        return (int)(produced - consumed);
+    }
+
+    /**
+     * Returns a copy of the last bytes decoded in the current deflate stream, up to {@link #WINDOW_SIZE} of them.
+     */
+    byte[] getWindow() {
+        int length = (int)Math.min(WINDOW_SIZE, produced - streamStart);
+        byte window[] = new byte[length];
+        copyFromRing(produced - length, window, 0, length);
+        return window;
+    }
+
+    private void copyFromRing(long position, byte b[], int off, int len) {
+        int start = (int)position & RING_MASK;
+        int n = Math.min(len, RING_SIZE - start);
+        System.arraycopy(ring, start, b, off, n);
+        if (n < len) {
+            System.arraycopy(ring, 0, b, off + n, len - n);
+        }
+    }
+
+    /**
+     * Copies decoded bytes waiting to be read to the given array.
+     *
+     * @return the number of bytes copied, <code>0</code> if no bytes are waiting
+     */
+    int read(byte b[], int off, int len) {
+        int n = Math.min(len, getPending());
+        copyFromRing(consumed, b, off, n);
+        consumed += n;
+        return n;
+    }
+
+    /**
+     * Decodes data until enough bytes are waiting to be read, or until the end of the current block.
+     *
+     * @throws IOException if the data is corrupt or ends prematurely
+     */
+    void decode() throws IOException {
+        if (state == BLOCK_HEADER) {
+            readBlockHeader();
+        }
+        if (state == STORED) {
+            copyStored();
+        } else if (state == HUFFMAN) {
+            decodeHuffman();
+        }
+    }
+
+    /**
+     * Reads the next byte after skipping to a byte boundary, used to read what follows the deflate stream.
+     *
+     * @return the next byte, <code>-1</code> at the end of the input
+     * @throws IOException if an I/O error occurred
+     */
+    int readAlignedByte() throws IOException {
+        consume(bitCount & 7);
+        if (bitCount - padBits >= 8) {
+            int b = (int)bits & 0xFF;
+            consume(8);
+            return b;
+        }
+        if (padBits > 0 || (inputPos == inputLimit && !fillInput())) {
+            return -1;
+        }
+        return input[inputPos++] & 0xFF;
+    }
+
+    void close() throws IOException {
+        in.close();
+    }
+
+
+    ///////////////////
+    // Bit functions //
+    ///////////////////
+
+    private boolean fillInput() throws IOException {
+        inputOffset += inputLimit;
+        inputPos = 0;
+        inputLimit = 0;
+        int n;
+        do {
+            n = in.read(input, 0, input.length);
+        } while (n == 0);
+        if (n == -1) {
+            return false;
+        }
+        inputLimit = n;
+        return true;
+    }
+
+    /**
+     * Makes at least <code>n</code> bits available, padding with zeros past the end of the input.
+     */
+    private void ensure(int n) throws IOException {
+        while (bitCount <= 56) {
+            if (inputPos == inputLimit && (padBits > 0 || !fillInput())) {
+                break;
+            }
+            bits |= (long)(input[inputPos++] & 0xFF) << bitCount;
+            bitCount += 8;
+        }
+        while (bitCount < n) {
+            bitCount += 8;
+            padBits += 8;
+        }
+    }
+
+    private void consume(int n) throws EOFException {
+        if (n > bitCount - padBits) {
+            throw new EOFException("Unexpected end of ZLIB input stream");
+        }
+        bits >>>= n;
+        bitCount -= n;
+    }
+
+    private int readBits(int n) throws IOException {
+        if (n == 0) {
+            return 0;
+        }
+        if (bitCount < n) {
+            ensure(n);
+        }
+        int value = (int)bits & ((1 << n) - 1);
+        consume(n);
+        return value;
+    }
+
+    private int decodeSymbol(Huffman huffman) throws IOException {
+        if (bitCount < MAX_CODE_LENGTH) {
+            ensure(MAX_CODE_LENGTH);
+        }
+        int entry = huffman.fast[(int)bits & FAST_MASK];
+        if (entry != 0) {
+            consume(entry & 15);
+            return entry >>> 4;
+        }
+
+        // Canonical decoding of codes longer than FAST_BITS, one bit at a time
+        int code = 0;
+        int first = 0;
+        int index = 0;
+        for (int len = 1; len <= MAX_CODE_LENGTH; len++) {
+            code |= (int)(bits >>> (len - 1)) & 1;
+            int count = huffman.count[len];
+            if (code - count < first) {
+                consume(len);
+                return huffman.symbol[index + (code - first)];
+            }
+            index += count;
+            first += count;
+            first <<= 1;
+            code <<= 1;
+        }
+        throw new ZipException("invalid code");
+    }
+
+
+    /////////////////////
+    // Block functions //
+    /////////////////////
+
+    private void readBlockHeader() throws IOException {
+        lastBlock = readBits(1) == 1;
+        switch (readBits(2)) {
+            case 0:
+                consume(bitCount & 7);
+                int length = readBits(16);
+                if (length != (~readBits(16) & 0xFFFF)) {
+                    throw new ZipException("invalid stored block lengths");
+                }
+                storedRemaining = length;
+                state = STORED;
+                break;
+            case 1:
+                literals = FIXED_LITERALS;
+                distances = FIXED_DISTANCES;
+                state = HUFFMAN;
+                break;
+            case 2:
+                readDynamicTables();
+                state = HUFFMAN;
+                break;
+            default:
+                throw new ZipException("invalid block type");
+        }
+    }
+
+    private void readDynamicTables() throws IOException {
+        int nbLiterals = readBits(5) + 257;
+        int nbDistances = readBits(5) + 1;
+        int nbCodes = readBits(4) + 4;
+        if (nbLiterals > 286 || nbDistances > 30) {
+            throw new ZipException("too many length or distance symbols");
+        }
+
+        Arrays.fill(lengths, 0, 19, 0);
+        for (int i = 0; i < nbCodes; i++) {
+            lengths[CODE_LENGTH_ORDER[i]] = readBits(3);
+        }
+        codeLengths.build(lengths, 0, 19);
+
+        int index = 0;
+        while (index < nbLiterals + nbDistances) {
+            int symbol = decodeSymbol(codeLengths);
+            if (symbol < 16) {
+                lengths[index++] = symbol;
+                continue;
+            }
+            int length = 0;
+            int repeat;
+            if (symbol == 16) {
+                if (index == 0) {
+                    throw new ZipException("invalid bit length repeat");
+                }
+                length = lengths[index - 1];
+                repeat = 3 + readBits(2);
+            } else if (symbol == 17) {
+                repeat = 3 + readBits(3);
+            } else {
+                repeat = 11 + readBits(7);
+            }
+            if (index + repeat > nbLiterals + nbDistances) {
+                throw new ZipException("invalid bit length repeat");
+            }
+            while (repeat-- > 0) {
+                lengths[index++] = length;
+            }
+        }
+        if (lengths[256] == 0) {
+            throw new ZipException("invalid code -- missing end-of-block");
+        }
+
+        dynamicLiterals.build(lengths, 0, nbLiterals);
+        dynamicDistances.build(lengths, nbLiterals, nbDistances);
+        literals = dynamicLiterals;
+        distances = dynamicDistances;
+    }
+
+    private void endBlock() {
+        state = lastBlock ? FINISHED : BLOCK_HEADER;
+    }
+
+    private void copyStored() throws IOException {
+        while (storedRemaining > 0 && getPending() < MAX_PENDING) {
+            if (bitCount > 0) {
+                // Bytes already moved to the bit buffer come first
+                ring[(int)produced++ & RING_MASK] = (byte)readBits(8);
+                storedRemaining--;
+                continue;
+            }
+            if (inputPos == inputLimit && !fillInput()) {
+                throw new EOFException("Unexpected end of ZLIB input stream");
+            }
+            int start = (int)produced & RING_MASK;
+            int n = Math.min(Math.min(storedRemaining, inputLimit - inputPos), Math.min(MAX_PENDING - getPending(), RING_SIZE - start));
+            System.arraycopy(input, inputPos, ring, start, n);
+            inputPos += n;
+            produced += n;
+            storedRemaining -= n;
+        }
+        if (storedRemaining == 0) {
+            endBlock();
+        }
+    }
+
+    private void decodeHuffman() throws IOException {
+        final byte ring[] = this.ring;
+        long out = produced;
+        long limit = consumed + MAX_PENDING;
+        try {
+            while (out < limit) {
+                int symbol = decodeSymbol(literals);
+                if (symbol < 256) {
+                    ring[(int)out++ & RING_MASK] = (byte)symbol;
+                } else if (symbol == 256) {
+                    endBlock();
+                    return;
+                } else {
+                    symbol -= 257;
+                    if (symbol >= 29) {
+                        throw new ZipException("invalid literal/length code");
+                    }
+                    int length = LENGTH_BASE[symbol] + readBits(LENGTH_EXTRA[symbol]);
+                    symbol = decodeSymbol(distances);
+                    if (symbol >= 30) {
+                        throw new ZipException("invalid distance code");
+                    }
+                    int distance = DISTANCE_BASE[symbol] + readBits(DISTANCE_EXTRA[symbol]);
+                    if (distance > out - streamStart) {
+                        throw new ZipException("invalid distance too far back");
+                    }
+                    for (int i = 0; i < length; i++, out++) {
+                        ring[(int)out & RING_MASK] = ring[(int)(out - distance) & RING_MASK];
+                    }
+                }
+            }
+        } finally {
+            produced = out;
+        }
+    }
+
+
+    /**
+     * A canonical Huffman code, with a lookup table for the codes of up to {@link #FAST_BITS} bits.
+     */
+    private static class Huffman {
+        /** Number of codes of each length */
+        private final int count[] = new int[MAX_CODE_LENGTH + 1];
+        /** Symbols ordered by code */
+        private final int symbol[];
+        /** Symbol and code length indexed by the next FAST_BITS bits, 0 for longer codes */
+        private final int fast[] = new int[1 << FAST_BITS];
+        private final int offsets[] = new int[MAX_CODE_LENGTH + 2];
+        private final int nextCode[] = new int[MAX_CODE_LENGTH + 1];
+
+        private Huffman(int maxSymbols) {
+            symbol = new int[maxSymbols];
+        }
+
+        private void build(int lengths[], int off, int n) throws ZipException {
+            Arrays.fill(count, 0);
+            Arrays.fill(fast, 0);
+            for (int i = 0; i < n; i++) {
+                count[lengths[off + i]]++;
+            }
+            count[0] = 0;
+
+            int left = 1;
+            for (int len = 1; len <= MAX_CODE_LENGTH; len++) {
+                left <<= 1;
+                left -= count[len];
+                if (left < 0) {
+                    throw new ZipException("invalid code lengths set");
+                }
+            }
+
+            offsets[1] = 0;
+            for (int len = 1; len <= MAX_CODE_LENGTH; len++) {
+                offsets[len + 1] = offsets[len] + count[len];
+            }
+            int code = 0;
+            for (int len = 1; len <= MAX_CODE_LENGTH; len++) {
+                code = (code + count[len - 1]) << 1;
+                nextCode[len] = code;
+            }
+
+            for (int i = 0; i < n; i++) {
+                int len = lengths[off + i];
+                if (len == 0) {
+                    continue;
+                }
+                symbol[offsets[len]++] = i;
+                int reversed = Integer.reverse(nextCode[len]++) >>> (32 - len);
+                if (len <= FAST_BITS) {
+                    for (int j = reversed; j < fast.length; j += 1 << len) {
+                        fast[j] = (i << 4) | len;
+                    }
+                }
+            }
+        }
+    }
+}
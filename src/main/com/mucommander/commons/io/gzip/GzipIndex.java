@@ -0,0 +1,249 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2010 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io.gzip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * An index of the points at which the decompression of a gzip file can be resumed, so that data far into the file
+ * can be read without decompressing everything that precedes it.
+ *
+ * <p>Each {@link Checkpoint} holds the offset of a deflate block in the compressed file, the offset of the data it
+ * decodes to, and the 32 KB of data that precede it, which the block may refer to. Checkpoints are only taken at
+ * blocks starting on a byte boundary, so that decompression can be resumed with <code>java.util.zip.Inflater</code>.
+ * The index is built by {@link IndexingGzipInputStream} while the file is read from start to end.
+ *
+ * @author Oleg Trifonov
+ */
+public class GzipIndex {
+
+    /** Maximum number of checkpoints of an index, the distance between checkpoints grows to stay within it */
+    public static final int MAX_CHECKPOINTS = 256;
+
+    private static final int FORMAT_VERSION = 1;
+
+    /** Checkpoints ordered by offset */
+    private final List<Checkpoint> checkpoints;
+
+    /** Number of decompressed bytes the index was built from */
+    private final long length;
+
+    GzipIndex(List<Checkpoint> checkpoints, long length) {
+        this.checkpoints = checkpoints;
+        this.length = length;
+    }
+
+    /**
+     * Returns the number of decompressed bytes the index was built from. Data past this offset can still be read
+     * from the last checkpoint.
+     *
+     * @return the number of decompressed bytes the index was built from
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the checkpoints of this index, ordered by offset.
+     *
+     * @return the checkpoints of this index
+     */
+    public List<Checkpoint> getCheckpoints() {
+        return Collections.unmodifiableList(checkpoints);
+    }
+
+    /**
+     * Returns the last checkpoint before the given offset in the decompressed data, <code>null</code> if there is
+     * none, in which case the data must be read from the start of the file.
+     *
+     * @param offset offset in the decompressed data
+     * @return the closest checkpoint before the offset, <code>null</code> if there is none
+     */
+    public Checkpoint getCheckpoint(long offset) {
+        int low = 0;
+        int high = checkpoints.size() - 1;
+        Checkpoint found = null;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Checkpoint checkpoint = checkpoints.get(mid);
+            if (checkpoint.uncompressedOffset <= offset) {
+                found = checkpoint;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns a stream of the decompressed data starting at the given checkpoint.
+     *
+     * @param in the gzip file, positioned at {@link Checkpoint#getCompressedOffset()}
+     * @param checkpoint a checkpoint of this index
+     * @return a stream of the decompressed data from {@link Checkpoint#getUncompressedOffset()}
+     * @throws IOException if the window of the checkpoint could not be decompressed
+     */
+    public InputStream getInputStream(InputStream in, Checkpoint checkpoint) throws IOException {
+        return new ResumedGzipInputStream(in, checkpoint.getWindow());
+    }
+
+    /**
+     * Writes this index to the given stream, in a form that {@link #read(DataInputStream)} reads back.
+     *
+     * @param out the stream to write to
+     * @throws IOException if an I/O error occurred
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(length);
+        out.writeInt(checkpoints.size());
+        for (Checkpoint checkpoint : checkpoints) {
+            out.writeLong(checkpoint.uncompressedOffset);
+            out.writeLong(checkpoint.compressedOffset);
+            out.writeInt(checkpoint.windowLength);
+            out.writeInt(checkpoint.compressedWindow.length);
+            out.write(checkpoint.compressedWindow);
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #write(DataOutputStream)}.
+     *
+     * @param in the stream to read from
+     * @return the index
+     * @throws IOException if an I/O error occurred or if the data is not a valid index
+     */
+    public static GzipIndex read(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unsupported index version");
+        }
+        long length = in.readLong();
+        int count = in.readInt();
+        if (count < 0 || count > MAX_CHECKPOINTS) {
+            throw new IOException("Invalid number of checkpoints: " + count);
+        }
+        List<Checkpoint> checkpoints = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long uncompressedOffset = in.readLong();
+            long compressedOffset = in.readLong();
+            int windowLength = in.readInt();
+            int compressedLength = in.readInt();
+            if (windowLength < 0 || windowLength > DeflateDecoder.WINDOW_SIZE || compressedLength < 0 || compressedLength > 2 * DeflateDecoder.WINDOW_SIZE) {
+                throw new IOException("Invalid checkpoint window");
+            }
+            byte compressedWindow[] = new byte[compressedLength];
+            in.readFully(compressedWindow);
+            checkpoints.add(new Checkpoint(uncompressedOffset, compressedOffset, windowLength, compressedWindow));
+        }
+        return new GzipIndex(checkpoints, length);
+    }
+
+
+    /**
+     * A point at which decompression can be resumed.
+     */
+    public static class Checkpoint {
+        private final long uncompressedOffset;
+        private final long compressedOffset;
+        private final int windowLength;
+        /** The window, deflated: an index holds a few megabytes of windows rather than 32 KB per checkpoint */
+        private final byte compressedWindow[];
+
+        private Checkpoint(long uncompressedOffset, long compressedOffset, int windowLength, byte compressedWindow[]) {
+            this.uncompressedOffset = uncompressedOffset;
+            this.compressedOffset = compressedOffset;
+            this.windowLength = windowLength;
+            this.compressedWindow = compressedWindow;
+        }
+
+        /**
+         * Creates a checkpoint with the given window, which is compressed.
+         */
+        static Checkpoint create(long uncompressedOffset, long compressedOffset, byte window[]) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+            try {
+                deflater.setInput(window);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(window.length / 2);
+                byte buffer[] = new byte[8192];
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(buffer);
+                    out.write(buffer, 0, n);
+                }
+                return new Checkpoint(uncompressedOffset, compressedOffset, window.length, out.toByteArray());
+            } finally {
+                deflater.end();
+            }
+        }
+
+        /**
+         * Returns the offset of the checkpoint in the decompressed data.
+         *
+         * @return the offset of the checkpoint in the decompressed data
+         */
+        public long getUncompressedOffset() {
+            return uncompressedOffset;
+        }
+
+        /**
+         * Returns the offset of the checkpoint in the gzip file.
+         *
+         * @return the offset of the checkpoint in the gzip file
+         */
+        public long getCompressedOffset() {
+            return compressedOffset;
+        }
+
+        /**
+         * Returns the decompressed data that precedes the checkpoint, up to 32 KB.
+         */
+        byte[] getWindow() throws IOException {
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(compressedWindow);
+                byte window[] = new byte[windowLength];
+                int length = 0;
+                while (length < windowLength) {
+                    int n = inflater.inflate(window, length, windowLength - length);
+                    if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new ZipException("Truncated checkpoint window");
+                    }
+                    length += n;
+                }
+                return window;
+            } catch (DataFormatException e) {
+                throw new ZipException(e.getMessage());
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+}
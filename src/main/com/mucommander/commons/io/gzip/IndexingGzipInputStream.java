@@ -0,0 +1,232 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2010 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io.gzip;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+/**
+ * A replacement for <code>GZIPInputStream</code> that builds a {@link GzipIndex} of the data it decompresses. A
+ * checkpoint is taken at the first suitable deflate block after every <code>span</code> bytes of decompressed data;
+ * when the index reaches {@link GzipIndex#MAX_CHECKPOINTS}, every other checkpoint is dropped and the span doubled.
+ *
+ * <p>Decompression is done in Java, which is slower than <code>GZIPInputStream</code>: this stream is meant to be
+ * used once per file, the index then allowing to resume decompression anywhere with a <code>GZIPInputStream</code>
+ * speed. Like <code>GZIPInputStream</code>, concatenated members are read as one stream and their checksums verified.
+ *
+ * @author Oleg Trifonov
+ */
+public class IndexingGzipInputStream extends InputStream {
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final DeflateDecoder decoder;
+    private final CRC32 crc = new CRC32();
+
+    /** Minimum number of decompressed bytes between two checkpoints */
+    private long span;
+    private final List<GzipIndex.Checkpoint> checkpoints = new ArrayList<>();
+    /** Offset of the last checkpoint in the decompressed data */
+    private long lastCheckpoint;
+
+    private byte skipBuffer[];
+    private boolean eof;
+
+    /**
+     * Creates a new stream decompressing the given gzip file from its start.
+     *
+     * @param in the gzip file
+     * @param span minimum number of decompressed bytes between two checkpoints
+     * @throws IOException if the stream does not start with a gzip header
+     */
+    public IndexingGzipInputStream(InputStream in, long span) throws IOException {
+        this.decoder = new DeflateDecoder(in);
+        this.span = Math.max(span, DeflateDecoder.WINDOW_SIZE);
+        readHeader(true);
+    }
+
+    /**
+     * Returns the index of the data decompressed so far.
+     *
+     * @return the index of the data decompressed so far
+     */
+    public GzipIndex getIndex() {
+        return new GzipIndex(new ArrayList<>(checkpoints), decoder.getOutputPosition());
+    }
+
+    private int readByte() throws IOException {
+        int b = decoder.readAlignedByte();
+        if (b == -1) {
+            throw new EOFException("Unexpected end of ZLIB input stream");
+        }
+        return b;
+    }
+
+    private long readInt() throws IOException {
+        return readByte() | (readByte() << 8) | (readByte() << 16) | ((long)readByte() << 24);
+    }
+
+    /**
+     * Reads the header of a member.
+     *
+     * @param first <code>true</code> for the first member, which must be present
+     * @return <code>false</code> if there are no more members
+     */
+    private boolean readHeader(boolean first) throws IOException {
+        int id1 = decoder.readAlignedByte();
+        int id2 = id1 == -1 ? -1 : decoder.readAlignedByte();
+        if (id1 != 0x1F || id2 != 0x8B) {
+            if (first) {
+                throw new ZipException("Not in GZIP format");
+            }
+            // Like GZIPInputStream, ignore trailing data that is not a gzip member
+            return false;
+        }
+        if (readByte() != 8) {
+            throw new ZipException("Unsupported compression method");
+        }
+        int flags = readByte();
+        // MTIME, XFL and OS
+        for (int i = 0; i < 6; i++) {
+            readByte();
+        }
+        if ((flags & FEXTRA) != 0) {
+            int length = readByte() | (readByte() << 8);
+            for (int i = 0; i < length; i++) {
+                readByte();
+            }
+        }
+        if ((flags & FNAME) != 0) {
+            while (readByte() != 0) {
+            }
+        }
+        if ((flags & FCOMMENT) != 0) {
+            while (readByte() != 0) {
+            }
+        }
+        if ((flags & FHCRC) != 0) {
+            readByte();
+            readByte();
+        }
+        decoder.startStream();
+        crc.reset();
+        return true;
+    }
+
+    private void readTrailer() throws IOException {
+        if (readInt() != crc.getValue()) {
+            throw new ZipException("Corrupt GZIP trailer");
+        }
+        if (readInt() != (decoder.getStreamOutputLength() & 0xFFFFFFFFL)) {
+            throw new ZipException("Corrupt GZIP trailer");
+        }
+    }
+
+    /**
+     * Takes a checkpoint at the current block boundary if it is byte-aligned and far enough from the last one.
+     */
+    private void addCheckpoint() {
+        long position = decoder.getOutputPosition();
+        if (position - lastCheckpoint < span || !decoder.isByteAligned()) {
+            return;
+        }
+        checkpoints.add(GzipIndex.Checkpoint.create(position, decoder.getInputPosition(), decoder.getWindow()));
+        lastCheckpoint = position;
+
+        if (checkpoints.size() > GzipIndex.MAX_CHECKPOINTS) {
+            // Keep every other checkpoint, they are then at least twice the span apart
+            List<GzipIndex.Checkpoint> kept = new ArrayList<>(checkpoints.size() / 2);
+            for (int i = 1; i < checkpoints.size(); i += 2) {
+                kept.add(checkpoints.get(i));
+            }
+            checkpoints.clear();
+            checkpoints.addAll(kept);
+            span *= 2;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte b[] = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte b[], int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (decoder.getPending() == 0) {
+            if (eof) {
+                return -1;
+            }
+            if (decoder.isFinished()) {
+                readTrailer();
+                if (!readHeader(false)) {
+                    eof = true;
+                }
+                continue;
+            }
+            if (decoder.isAtBlockBoundary()) {
+                addCheckpoint();
+            }
+            decoder.decode();
+        }
+        int n = decoder.read(b, off, len);
+        crc.update(b, off, n);
+        return n;
+    }
+
+    /**
+     * Skips bytes by decompressing them, as the index must cover them.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        if (skipBuffer == null) {
+            skipBuffer = new byte[DeflateDecoder.WINDOW_SIZE];
+        }
+        long remaining = n;
+        while (remaining > 0) {
+            int read = read(skipBuffer, 0, (int)Math.min(skipBuffer.length, remaining));
+            if (read == -1) {
+                break;
+            }
+            remaining -= read;
+        }
+        return n - remaining;
+    }
+
+    @Override
+    public int available() {
+        return decoder.getPending();
+    }
+
+    @Override
+    public void close() throws IOException {
+        decoder.close();
+    }
+}
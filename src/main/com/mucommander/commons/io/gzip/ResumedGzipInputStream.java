@@ -0,0 +1,142 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2010 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io.gzip;
+
+import com.mucommander.commons.io.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses a gzip file from a deflate block in the middle of a member, with the window that precedes the block
+ * as the dictionary. The members that follow, if any, are read with a <code>GZIPInputStream</code>.
+ *
+ * <p>The checksum of the member the stream starts in cannot be verified, only the ones of the following members are.
+ *
+ * @author Oleg Trifonov
+ */
+class ResumedGzipInputStream extends InputStream {
+
+    private final InputStream in;
+    private final Inflater inflater = new Inflater(true);
+    private final byte buffer[] = new byte[64 * 1024];
+    private int bufferLength;
+
+    /** Stream of the following members, <code>null</code> until the first member ends */
+    private InputStream next;
+    private boolean eof;
+
+    /**
+     * Creates a new stream reading the given compressed stream.
+     *
+     * @param in the gzip file, positioned at the start of a deflate block
+     * @param window the data that precedes the block
+     */
+    ResumedGzipInputStream(InputStream in, byte window[]) {
+        this.in = in;
+        if (window.length > 0) {
+            inflater.setDictionary(window);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte b[] = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte b[], int off, int len) throws IOException {
+        if (next != null) {
+            return next.read(b, off, len);
+        }
+        if (eof) {
+            return -1;
+        }
+        if (len == 0) {
+            return 0;
+        }
+        try {
+            while (true) {
+                int n = inflater.inflate(b, off, len);
+                if (n > 0) {
+                    return n;
+                }
+                if (inflater.finished()) {
+                    openNextMember();
+                    return next == null ? -1 : next.read(b, off, len);
+                }
+                if (inflater.needsDictionary()) {
+                    throw new ZipException("Unexpected dictionary");
+                }
+                if (inflater.needsInput()) {
+                    bufferLength = in.read(buffer, 0, buffer.length);
+                    if (bufferLength == -1) {
+                        throw new EOFException("Unexpected end of ZLIB input stream");
+                    }
+                    inflater.setInput(buffer, 0, bufferLength);
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        }
+    }
+
+    /**
+     * Skips the trailer of the member and opens the following member, if any.
+     */
+    private void openNextMember() throws IOException {
+        int remaining = inflater.getRemaining();
+        InputStream rest = new SequenceInputStream(new ByteArrayInputStream(buffer, bufferLength - remaining, remaining), in);
+        // CRC32 and ISIZE
+        StreamUtils.skipFully(rest, 8);
+
+        // Like GZIPInputStream, ignore trailing data that is not a gzip member
+        PushbackInputStream pin = new PushbackInputStream(rest, 2);
+        byte magic[] = new byte[2];
+        int n = pin.read(magic);
+        if (n == 1) {
+            n += Math.max(pin.read(magic, 1, 1), 0);
+        }
+        if (n == 2 && (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B) {
+            pin.unread(magic);
+            next = new GZIPInputStream(pin);
+        } else {
+            eof = true;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        if (next != null) {
+            next.close();
+        } else {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2010 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.commons.io.security;
+
+/**
+ * Provides a <code>ChecksumMessageDigest</code> implementation of the <i>CRC32C</i> algorithm, using the
+ * {@link CRC32C} class.
+ *
+ * @author Oleg Trifonov
+ */
+public class CRC32CMessageDigest extends ChecksumMessageDigest {
+
+    public CRC32CMessageDigest() {
+        super(new CRC32C(), getAlgorithmName());
+    }
+
+    /**
+     * Returns the name of the algorithm implemented by this MessageDigest.
+     *
+     * @return the name of the algorithm implemented by this MessageDigest
+     */
+    protected static String getAlgorithmName() {
+        return "CRC32C";
+    }
+}
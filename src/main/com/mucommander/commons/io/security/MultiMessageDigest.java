@@ -0,0 +1,127 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2010 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.commons.io.security;
+
+import com.mucommander.commons.io.ByteUtils;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Feeds the same data to several <code>MessageDigest</code> instances, so that checksums of different algorithms can
+ * be calculated in a single pass over a file, instead of reading the file once per algorithm.
+ *
+ * <p>Data can be supplied as byte arrays or as <code>ByteBuffer</code>s, which allows direct and memory-mapped
+ * buffers to be digested without copying them to the Java heap first, for the algorithms that support it.
+ *
+ * <p>This class is not thread-safe: each thread calculating checksums must use its own instance.
+ *
+ * @author Oleg Trifonov
+ */
+public class MultiMessageDigest {
+
+    /** The digests data is fed to */
+    private final MessageDigest digests[];
+
+    /**
+     * Creates a new <code>MultiMessageDigest</code> feeding data to the given digests.
+     *
+     * @param digests the digests to update, in the order their checksums are returned
+     */
+    public MultiMessageDigest(MessageDigest... digests) {
+        this.digests = digests;
+    }
+
+    /**
+     * Creates a new <code>MultiMessageDigest</code> with a new <code>MessageDigest</code> instance for each of the
+     * given algorithms.
+     *
+     * @param algorithms names of the algorithms, as accepted by <code>MessageDigest.getInstance</code>
+     * @return a new MultiMessageDigest
+     * @throws NoSuchAlgorithmException if one of the algorithms is not available
+     */
+    public static MultiMessageDigest getInstance(String... algorithms) throws NoSuchAlgorithmException {
+        MessageDigest digests[] = new MessageDigest[algorithms.length];
+        for (int i = 0; i < algorithms.length; i++) {
+            digests[i] = MessageDigest.getInstance(algorithms[i]);
+        }
+        return new MultiMessageDigest(digests);
+    }
+
+    /**
+     * Returns the digests data is fed to.
+     *
+     * @return the digests data is fed to
+     */
+    public MessageDigest[] getDigests() {
+        return digests;
+    }
+
+    /**
+     * Updates all digests with the given bytes.
+     *
+     * @param b the bytes to digest
+     * @param off offset of the first byte to digest
+     * @param len number of bytes to digest
+     */
+    public void update(byte b[], int off, int len) {
+        for (MessageDigest digest : digests) {
+            digest.update(b, off, len);
+        }
+    }
+
+    /**
+     * Updates all digests with the remaining bytes of the given buffer. When this method returns, the position of the
+     * buffer is equal to its limit.
+     *
+     * @param buffer the bytes to digest
+     */
+    public void update(ByteBuffer buffer) {
+        int position = buffer.position();
+        for (MessageDigest digest : digests) {
+            buffer.position(position);
+            digest.update(buffer);
+        }
+    }
+
+    /**
+     * Completes the calculation and returns the checksum of each digest as an hexadecimal string, in the order the
+     * digests were specified. The digests are reset afterwards.
+     *
+     * @return the checksums as hexadecimal strings
+     */
+    public String[] digestStrings() {
+        String checksums[] = new String[digests.length];
+        for (int i = 0; i < digests.length; i++) {
+            checksums[i] = ByteUtils.toHexString(digests[i].digest());
+            // ChecksumMessageDigest implementations are not reset by digest()
+            digests[i].reset();
+        }
+        return checksums;
+    }
+
+    /**
+     * Resets all digests.
+     */
+    public void reset() {
+        for (MessageDigest digest : digests) {
+            digest.reset();
+        }
+    }
+}
@@ -70,6 +70,7 @@ public enum MuPreference {
 	RIGHT_CUSTOM_FOLDER(MuPreferences.RIGHT_CUSTOM_FOLDER),
 	REFRESH_CHECK_PERIOD(MuPreferences.REFRESH_CHECK_PERIOD),
 	WAIT_AFTER_REFRESH(MuPreferences.WAIT_AFTER_REFRESH),
+	WATCH_LOCAL_FOLDERS(MuPreferences.WATCH_LOCAL_FOLDERS),
 	PROGRESS_DIALOG_EXPANDED(MuPreferences.PROGRESS_DIALOG_EXPANDED),
 	PROGRESS_DIALOG_CLOSE_WHEN_FINISHED(MuPreferences.PROGRESS_DIALOG_CLOSE_WHEN_FINISHED),
 	THEME_TYPE(MuPreferences.THEME_TYPE),
@@ -79,6 +80,21 @@ public enum MuPreference {
 	LIST_HIDDEN_FILES(MuPreferences.LIST_HIDDEN_FILES),
 	SMB_LM_COMPATIBILITY(MuPreferences.SMB_LM_COMPATIBILITY),
 	SMB_USE_EXTENDED_SECURITY(MuPreferences.SMB_USE_EXTENDED_SECURITY),
+	S3_MULTIPART_PART_SIZE(MuPreferences.S3_MULTIPART_PART_SIZE),
+	S3_MULTIPART_THREADS(MuPreferences.S3_MULTIPART_THREADS),
+	SFTP_PIPELINE_BLOCK_SIZE(MuPreferences.SFTP_PIPELINE_BLOCK_SIZE),
+	SFTP_PIPELINE_WINDOW(MuPreferences.SFTP_PIPELINE_WINDOW),
+	ARCHIVE_ENTRIES_CACHE_SIZE(MuPreferences.ARCHIVE_ENTRIES_CACHE_SIZE),
+	ARCHIVE_COMPRESSION_LEVEL(MuPreferences.ARCHIVE_COMPRESSION_LEVEL),
+	ARCHIVE_COMPRESSION_THREADS(MuPreferences.ARCHIVE_COMPRESSION_THREADS),
+	ARCHIVE_DECOMPRESSION_THREADS(MuPreferences.ARCHIVE_DECOMPRESSION_THREADS),
+	ARCHIVE_GZIP_INDEX_SPAN(MuPreferences.ARCHIVE_GZIP_INDEX_SPAN),
+	TRANSFER_THREADS(MuPreferences.TRANSFER_THREADS),
+	TRANSFER_THREADS_PER_LOCATION(MuPreferences.TRANSFER_THREADS_PER_LOCATION),
+	CHECKSUM_THREADS(MuPreferences.CHECKSUM_THREADS),
+	SEGMENTED_DOWNLOAD_SEGMENT_SIZE(MuPreferences.SEGMENTED_DOWNLOAD_SEGMENT_SIZE),
+	SEGMENTED_DOWNLOAD_CONCURRENCY(MuPreferences.SEGMENTED_DOWNLOAD_CONCURRENCY),
+	SEGMENTED_DOWNLOAD_RETRIES(MuPreferences.SEGMENTED_DOWNLOAD_RETRIES),
 	SHOW_TAB_HEADER(MuPreferences.SHOW_SINGLE_TAB_HEADER),
 	CALCULATE_FOLDER_SIZE_ON_MARK(MuPreferences.CALCULATE_FOLDER_SIZE_ON_MARK),
     FILE_GROUP_1_MASK(MuPreferences.FILE_GROUP_1_MASK),
@@ -100,7 +116,12 @@ public enum MuPreference {
 	FIND_FILE_ARCHIVES(MuPreferences.FIND_FILE_ARCHIVES),
 	FIND_FILE_IGNORE_HIDDEN(MuPreferences.FIND_FILE_IGNORE_HIDDEN),
 	FIND_FILE_CASE_SENSITIVE(MuPreferences.FIND_FILE_CASE_SENSITIVE),
-	FIND_FILE_SEARCH_HEX(MuPreferences.FIND_FILE_SEARCH_HEX);
+	FIND_FILE_SEARCH_HEX(MuPreferences.FIND_FILE_SEARCH_HEX),
+	FIND_FILE_THREADS(MuPreferences.FIND_FILE_THREADS),
+	FIND_FILE_USE_INDEX(MuPreferences.FIND_FILE_USE_INDEX),
+	FIND_FILE_INDEX_LOCATION(MuPreferences.FIND_FILE_INDEX_LOCATION),
+	FIND_FILE_INDEX_MAX_SIZE(MuPreferences.FIND_FILE_INDEX_MAX_SIZE),
+	FIND_FILE_INDEX_MAX_AGE(MuPreferences.FIND_FILE_INDEX_MAX_AGE);
 
 
 
@@ -317,6 +317,10 @@ public class MuPreferences implements MuPreferencesAPI {
 	public static final String WAIT_AFTER_REFRESH                 = REFRESH_SECTION + '.' + "wait_after_refresh";
 	/** Default minimum amount of time between two refreshes. */
 	public static final long   DEFAULT_WAIT_AFTER_REFRESH         = 10000;
+	/** Whether local folders are watched for changes by the file system rather than checked periodically. */
+	public static final String WATCH_LOCAL_FOLDERS                = REFRESH_SECTION + '.' + "watch_local_folders";
+	/** Default value for local folders watching. */
+	public static final boolean DEFAULT_WATCH_LOCAL_FOLDERS       = true;
 
 
 	// - Quick search variables -----------------------------------------
@@ -409,6 +413,104 @@ public class MuPreferences implements MuPreferencesAPI {
 	/** Default value for {@link #SMB_USE_EXTENDED_SECURITY}. */
 	public static final boolean DEFAULT_SMB_USE_EXTENDED_SECURITY = false;
 
+
+	// - Variables used for S3 -----------------------------------------------
+	// -----------------------------------------------------------------------
+	/** Section containing all S3 variables. */
+	public static final String S3_SECTION                         = "s3";
+	/** Size in megabytes of the parts of multipart uploads, used to upload files whose length is not known in advance. */
+	public static final String S3_MULTIPART_PART_SIZE             = S3_SECTION + '.' + "multipart_part_size";
+	/** Default value for {@link #S3_MULTIPART_PART_SIZE}. */
+	public static final int DEFAULT_S3_MULTIPART_PART_SIZE        = 16;
+	/** Number of parts of a multipart upload that are uploaded at the same time. */
+	public static final String S3_MULTIPART_THREADS               = S3_SECTION + '.' + "multipart_threads";
+	/** Default value for {@link #S3_MULTIPART_THREADS}. */
+	public static final int DEFAULT_S3_MULTIPART_THREADS          = 4;
+
+
+	// - SFTP variables ------------------------------------------------------
+	// -----------------------------------------------------------------------
+	/** Section containing all SFTP variables. */
+	public static final String SFTP_SECTION                       = "sftp";
+	/** Size in kilobytes of the blocks asked or sent by each SFTP read or write request. */
+	public static final String SFTP_PIPELINE_BLOCK_SIZE           = SFTP_SECTION + '.' + "pipeline_block_size";
+	/** Default value for {@link #SFTP_PIPELINE_BLOCK_SIZE}. */
+	public static final int DEFAULT_SFTP_PIPELINE_BLOCK_SIZE      = 32;
+	/** Number of SFTP read or write requests outstanding at the same time per transferred file, <code>1</code> disables pipelining. */
+	public static final String SFTP_PIPELINE_WINDOW               = SFTP_SECTION + '.' + "pipeline_window";
+	/** Default value for {@link #SFTP_PIPELINE_WINDOW}. */
+	public static final int DEFAULT_SFTP_PIPELINE_WINDOW          = 128;
+
+
+	// - Variables used for archives -----------------------------------------
+	// -----------------------------------------------------------------------
+	/** Section containing all archive variables. */
+	public static final String ARCHIVE_SECTION                    = "archive";
+	/** Maximum size in megabytes of the persistent cache of archive entries, <code>0</code> disables the cache. */
+	public static final String ARCHIVE_ENTRIES_CACHE_SIZE         = ARCHIVE_SECTION + '.' + "entries_cache_size";
+	/** Default value for {@link #ARCHIVE_ENTRIES_CACHE_SIZE}. */
+	public static final int DEFAULT_ARCHIVE_ENTRIES_CACHE_SIZE    = 64;
+	/** Compression level of created zip, gzip and bzip2 archives, from 1 to 9, <code>-1</code> for the default level. */
+	public static final String ARCHIVE_COMPRESSION_LEVEL          = ARCHIVE_SECTION + '.' + "compression_level";
+	/** Default value for {@link #ARCHIVE_COMPRESSION_LEVEL}. */
+	public static final int DEFAULT_ARCHIVE_COMPRESSION_LEVEL     = -1;
+	/** Number of threads compressing zip, gzip and bzip2 archives, <code>0</code> for the number of processors. */
+	public static final String ARCHIVE_COMPRESSION_THREADS        = ARCHIVE_SECTION + '.' + "compression_threads";
+	/** Default value for {@link #ARCHIVE_COMPRESSION_THREADS}. */
+	public static final int DEFAULT_ARCHIVE_COMPRESSION_THREADS   = 0;
+	/** Number of threads decompressing bzip2 archives, <code>0</code> for the number of processors. */
+	public static final String ARCHIVE_DECOMPRESSION_THREADS      = ARCHIVE_SECTION + '.' + "decompression_threads";
+	/** Default value for {@link #ARCHIVE_DECOMPRESSION_THREADS}. */
+	public static final int DEFAULT_ARCHIVE_DECOMPRESSION_THREADS = 0;
+	/** Minimum distance in megabytes between the checkpoints of the index of tar.gz archives, <code>0</code> disables the index. */
+	public static final String ARCHIVE_GZIP_INDEX_SPAN            = ARCHIVE_SECTION + '.' + "gzip_index_span";
+	/** Default value for {@link #ARCHIVE_GZIP_INDEX_SPAN}. */
+	public static final int DEFAULT_ARCHIVE_GZIP_INDEX_SPAN       = 16;
+
+
+	// - Variables used for file transfers -----------------------------------
+	// -----------------------------------------------------------------------
+	/** Section containing all file transfer variables. */
+	public static final String TRANSFER_SECTION                   = "transfer";
+	/** Number of files that copy and move operations transfer at the same time, <code>1</code> to transfer files one after the other. */
+	public static final String TRANSFER_THREADS                   = TRANSFER_SECTION + '.' + "threads";
+	/** Default value for {@link #TRANSFER_THREADS}. */
+	public static final int DEFAULT_TRANSFER_THREADS              = 1;
+	/** Number of files that copy and move operations transfer at the same time from or to a given server or volume. */
+	public static final String TRANSFER_THREADS_PER_LOCATION      = TRANSFER_SECTION + '.' + "threads_per_location";
+	/** Default value for {@link #TRANSFER_THREADS_PER_LOCATION}, matches the number of connections opened per server. */
+	public static final int DEFAULT_TRANSFER_THREADS_PER_LOCATION = 4;
+	/** Number of files whose checksums are calculated at the same time, <code>0</code> for the number of processors. */
+	public static final String CHECKSUM_THREADS                   = TRANSFER_SECTION + '.' + "checksum_threads";
+	/** Default value for {@link #CHECKSUM_THREADS}. */
+	public static final int DEFAULT_CHECKSUM_THREADS              = 0;
+	/** Size in megabytes of the segments of HTTP and S3 files downloaded with several concurrent range requests. */
+	public static final String SEGMENTED_DOWNLOAD_SEGMENT_SIZE    = TRANSFER_SECTION + '.' + "segmented_download_segment_size";
+	/** Default value for {@link #SEGMENTED_DOWNLOAD_SEGMENT_SIZE}. */
+	public static final int DEFAULT_SEGMENTED_DOWNLOAD_SEGMENT_SIZE = 8;
+	/** Number of concurrent range requests of segmented downloads, <code>1</code> disables segmented downloads. */
+	public static final String SEGMENTED_DOWNLOAD_CONCURRENCY     = TRANSFER_SECTION + '.' + "segmented_download_concurrency";
+	/** Default value for {@link #SEGMENTED_DOWNLOAD_CONCURRENCY}. */
+	public static final int DEFAULT_SEGMENTED_DOWNLOAD_CONCURRENCY = 4;
+	/** Number of times a segment that could not be downloaded is requested again. */
+	public static final String SEGMENTED_DOWNLOAD_RETRIES         = TRANSFER_SECTION + '.' + "segmented_download_retries";
+	/** Default value for {@link #SEGMENTED_DOWNLOAD_RETRIES}. */
+	public static final int DEFAULT_SEGMENTED_DOWNLOAD_RETRIES    = 3;
+
+
+	// - Variables used for the folder listing cache -------------------------
+	// -----------------------------------------------------------------------
+	/** Section containing the settings of the remote folder listing cache, in a subsection per protocol, e.g. <code>listing_cache.sftp.ttl</code>. */
+	public static final String LISTING_CACHE_SECTION              = "listing_cache";
+	/** Time in seconds a cached folder listing is served, <code>0</code> disables the cache for the protocol. */
+	public static final String LISTING_CACHE_TTL                  = "ttl";
+	/** Default value for {@link #LISTING_CACHE_TTL}. */
+	public static final int DEFAULT_LISTING_CACHE_TTL             = 600;
+	/** Maximum memory in kilobytes used by the cached folder listings of the protocol, <code>0</code> disables the cache for the protocol. */
+	public static final String LISTING_CACHE_MAX_SIZE             = "max_size";
+	/** Default value for {@link #LISTING_CACHE_MAX_SIZE}. */
+	public static final int DEFAULT_LISTING_CACHE_MAX_SIZE        = 4096;
+
     // - File group masks ----------------------------------------------------
     // -----------------------------------------------------------------------
     static final String FILE_GROUP_SECTION                 = "file_groups";
@@ -432,6 +534,24 @@ public class MuPreferences implements MuPreferencesAPI {
 	static final String FIND_FILE_IGNORE_HIDDEN            = FIND_FILE_SECTION + ".ignore_hidden";
 	static final String FIND_FILE_CASE_SENSITIVE           = FIND_FILE_SECTION + ".case_sensitive";
 	static final String FIND_FILE_SEARCH_HEX               = FIND_FILE_SECTION + ".search_hex";
+	/** Number of threads used to search files, <code>1</code> disables the parallel search. */
+	static final String FIND_FILE_THREADS                  = FIND_FILE_SECTION + ".threads";
+	/** Default value for {@link #FIND_FILE_THREADS}. */
+	public static final int DEFAULT_FIND_FILE_THREADS      = Runtime.getRuntime().availableProcessors();
+	/** Controls whether file search uses the persistent content index. */
+	static final String FIND_FILE_USE_INDEX                = FIND_FILE_SECTION + ".use_index";
+	/** Folder containing the content index, an empty value stands for the preferences folder. */
+	static final String FIND_FILE_INDEX_LOCATION           = FIND_FILE_SECTION + ".index.location";
+	/** Default value for {@link #FIND_FILE_INDEX_LOCATION}. */
+	public static final String DEFAULT_FIND_FILE_INDEX_LOCATION = "";
+	/** Maximum size of the content index in megabytes, least recently used entries are evicted above it. */
+	static final String FIND_FILE_INDEX_MAX_SIZE           = FIND_FILE_SECTION + ".index.max_size";
+	/** Default value for {@link #FIND_FILE_INDEX_MAX_SIZE}. */
+	public static final int DEFAULT_FIND_FILE_INDEX_MAX_SIZE = 64;
+	/** Number of days after which unused entries are evicted from the content index. */
+	static final String FIND_FILE_INDEX_MAX_AGE            = FIND_FILE_SECTION + ".index.max_age";
+	/** Default value for {@link #FIND_FILE_INDEX_MAX_AGE}. */
+	public static final int DEFAULT_FIND_FILE_INDEX_MAX_AGE = 30;
 	
 	private static final String ROOT_ELEMENT = "preferences";
 
@@ -621,6 +741,10 @@ public class MuPreferences implements MuPreferencesAPI {
 	public String  getVariable(String name) {
 		return configuration.getVariable(name);
 	}
+
+	public int getVariable(String name, int value) {
+		return configuration.getVariable(name, value);
+	}
 	
 	public boolean isVariableSet(MuPreference preference) {
 		return configuration.isVariableSet(preference.toString());
@@ -44,6 +44,9 @@ public interface MuPreferencesAPI {
 	long getVariable(MuPreference preference, long value);
 	double getVariable(MuPreference preference, double value);
 	ValueList getListVariable(MuPreference preference, String separator);
+
+	// Variables whose name depends on a protocol, see MuPreferences#LISTING_CACHE_SECTION
+	int getVariable(String name, int value);
 	
 	// TODO: remove those methods
 	boolean getBooleanVariable(String name);
@@ -20,18 +20,30 @@ package com.mucommander.core;
 
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Vector;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.mucommander.commons.file.AbstractArchiveFile;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.FileProtocols;
 import com.mucommander.commons.file.filter.AbstractFileFilter;
 import com.mucommander.commons.file.filter.FileFilter;
 import com.mucommander.commons.file.filter.OrFileFilter;
+import com.mucommander.commons.file.impl.local.LocalFile;
 import com.mucommander.conf.MuConfigurations;
 import com.mucommander.conf.MuPreference;
 import com.mucommander.conf.MuPreferences;
@@ -47,6 +59,11 @@ import com.mucommander.ui.main.FolderPanel;
  * <p>If the MainFrame which contains the monitored FolderPanel becomes inactive (lies in the background), monitoring
  * on will be not happen until the MainFrame becomes active again.
  *
+ * <p>Local folders are watched using a {@link WatchService} rather than checked periodically: the names of the
+ * children that have been created, deleted or modified are collected, and only these rows of the file table are
+ * updated instead of reloading the whole folder. Other folders, and local folders that can't be watched, fall back
+ * to checking the folder's date.
+ *
  * <p>Implementation note: the monitoring is done in one single thread for all folders, each folder being monitored
  * one after another. Current folder refreshes are performed in a separate thread.
  *
@@ -83,6 +100,18 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
     /** Number of checks in current folder */
     private int nbSamples = 0;
 
+    /** Watches the current folder if it is a local folder, created on first use */
+    private WatchService watchService;
+
+    /** Key of the current folder in {@link #watchService}, <code>null</code> if the current folder is not watched */
+    private WatchKey watchKey;
+
+    /** Names of the current folder's children that changed since the file table was last updated */
+    private final Set<String> changedFileNames = new HashSet<>();
+
+    /** True if the changes couldn't be tracked file by file, in which case the whole folder must be refreshed */
+    private boolean changesOverflowed;
+
     /**
      * If not null then refresh folder that contains this files
      */
@@ -111,12 +140,19 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
     /** Granularity of the thread check (number of milliseconds to sleep before next loop) */
     private final static int TICK = 300;
 
+    /** Above this number of changed files, the whole folder is refreshed rather than the changed rows only */
+    private final static int MAX_PATCHED_FILES = 500;
+
+    /** True if local folders are watched for changes rather than checked periodically */
+    private static boolean watchLocalFolders;
+
     static {
         instances = new Vector<>();
 
         // Retrieve configuration values
         checkPeriod = MuConfigurations.getPreferences().getVariable(MuPreference.REFRESH_CHECK_PERIOD, MuPreferences.DEFAULT_REFRESH_CHECK_PERIOD);
         waitAfterRefresh = MuConfigurations.getPreferences().getVariable(MuPreference.WAIT_AFTER_REFRESH, MuPreferences.DEFAULT_WAIT_AFTER_REFRESH);
+        watchLocalFolders = MuConfigurations.getPreferences().getVariable(MuPreference.WATCH_LOCAL_FOLDERS, MuPreferences.DEFAULT_WATCH_LOCAL_FOLDERS);
 
         disableAutoRefreshFilter.addFileFilter(new AbstractFileFilter() {
             public boolean accept(AbstractFile file) {
@@ -145,6 +181,7 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
 
         this.currentFolder = folderPanel.getCurrentFolder();
         this.currentFolderDate = currentFolder.getLastModifiedDate();
+        watchFolder(currentFolder);
 
         // Folder contents is up-to-date let's wait before checking it for changes
         this.lastCheckTimestamp = System.currentTimeMillis();
@@ -201,6 +238,8 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
         // - MainFrame is in the foreground
         // - monitor is not paused
         // - current folder is not being changed
+        // Watch events are collected in any case, so that they're not lost while the monitor is paused
+        monitor.pollWatchEvents();
         if (!monitor.folderPanel.getMainFrame().isForegroundActive() || monitor.folderChanging || monitor.paused) {
             return;
         }
@@ -209,6 +248,11 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
             monitor.waitBeforeCheckTime = checkPeriod;
             return;
         }
+        // Watched folders are cheap to check, there is no need to wait between two checks
+        if (monitor.isWatched()) {
+            monitor.checkAndRefresh();
+            return;
+        }
         // By checking FolderPanel.getLastFolderChangeTime(), we ensure that we don't check right after
         // the folder has been refreshed.
         if (System.currentTimeMillis() - Math.max(monitor.lastCheckTimestamp, monitor.folderPanel.getLastFolderChangeTime())>monitor.waitBeforeCheckTime) {
@@ -257,11 +301,113 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
     private void updateFolderInfo(AbstractFile folder) {
         this.currentFolder = folder;
         this.currentFolderDate = currentFolder.getLastModifiedDate();
+        watchFolder(folder);
 
         // Reset time average
         totalCheckTime = 0;
         nbSamples = 0;
     }
+
+
+    /**
+     * Starts watching the given folder for changes if it is a local folder, and stops watching the previous one.
+     * Folders that can't be watched will be checked periodically.
+     *
+     * @param folder the new current folder
+     */
+    private synchronized void watchFolder(AbstractFile folder) {
+        // The changes collected so far are reflected by the folder's new contents
+        changedFileNames.clear();
+        changesOverflowed = false;
+
+        boolean watchable = watchLocalFolders && checkPeriod >= 0 && folder.getTopAncestor() instanceof LocalFile
+                && !folder.hasAncestor(AbstractArchiveFile.class);
+        Path path = watchable ? ((File)folder.getTopAncestor().getUnderlyingFileObject()).toPath() : null;
+
+        // Keep the same key when the folder is refreshed, so that no change is missed while it is listed
+        if (watchKey != null) {
+            if (watchKey.isValid() && watchKey.watchable().equals(path)) {
+                return;
+            }
+            watchKey.cancel();
+            watchKey = null;
+        }
+        if (path == null) {
+            return;
+        }
+        try {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+            }
+            watchKey = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("Could not watch " + folder.getAbsolutePath() + ", falling back to periodic checks", e);
+        }
+    }
+
+
+    /**
+     * Returns <code>true</code> if the current folder is watched for changes rather than checked periodically.
+     *
+     * @return <code>true</code> if the current folder is watched for changes
+     */
+    private synchronized boolean isWatched() {
+        return watchKey != null;
+    }
+
+
+    /**
+     * Collects the names of the current folder's children that have been reported as changed by the watch service
+     * since the last call. This method doesn't block.
+     */
+    private synchronized void pollWatchEvents() {
+        if (watchService == null) {
+            return;
+        }
+        WatchKey key;
+        while ((key = watchService.poll()) != null) {
+            List<WatchEvent<?>> events = key.pollEvents();
+            // Ignore the remaining events of a previous folder, its key has already been cancelled
+            if (key != watchKey) {
+                continue;
+            }
+            for (WatchEvent<?> event : events) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW || changedFileNames.size() >= MAX_PATCHED_FILES) {
+                    changesOverflowed = true;
+                } else {
+                    changedFileNames.add(event.context().toString());
+                }
+            }
+            // The key becomes invalid if the folder is no longer accessible, the refresh will take care of that
+            if (!key.reset()) {
+                changesOverflowed = true;
+            }
+        }
+    }
+
+
+    /**
+     * Updates the file table with the changes collected by {@link #pollWatchEvents()}: only the changed rows are
+     * updated, unless too many files have changed in which case the whole folder is refreshed.
+     *
+     * @return <code>true</code> if the file table was updated
+     */
+    private boolean applyWatchedChanges() {
+        if (changesOverflowed) {
+            LOGGER.debug(this+" ("+currentFolder.getName()+") Too many changes in current folder, refreshing table!");
+            // The changes will be discarded when the folder has been refreshed, or retried if a folder change is underway
+            return folderPanel.tryRefreshCurrentFolder() != null;
+        }
+        if (changedFileNames.isEmpty()) {
+            return false;
+        }
+        LOGGER.debug(this+" ("+currentFolder.getName()+") Detected "+changedFileNames.size()+" changed files in current folder, updating table");
+        List<String> names = new ArrayList<>(changedFileNames);
+        changedFileNames.clear();
+        folderPanel.getLocationManager().applyFolderChanges(currentFolder, names);
+        return true;
+    }
 	
 	
     /**
@@ -275,6 +421,10 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
 //            return false;
 //        }
 
+        if (watchKey != null) {
+            return applyWatchedChanges() | checkForcedRefresh();
+        }
+
         // Update time average next loop
         long timeStamp = System.currentTimeMillis();
 		
@@ -296,6 +446,16 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
             result = true;
         }
 
+        return checkForcedRefresh() || result;
+    }
+
+
+    /**
+     * Refreshes the current folder if it contains a file that was added with {@link #addFileToRefresh(String)}.
+     *
+     * @return <code>true</code> if the folder was refreshed.
+     */
+    private boolean checkForcedRefresh() {
         if (!forceRefreshFilePath.isEmpty()) {
             synchronized (forceRefreshFilePath) {
                 String folderPath = currentFolder.getAbsolutePath();
@@ -303,14 +463,12 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
                     if (path.startsWith(folderPath)) {
                         forceRefreshFilePath.remove(path);
                         folderPanel.tryRefreshCurrentFolder();
-                        result = true;
-                        break;
+                        return true;
                     }
                 }
             }
         }
-		
-        return result;
+        return false;
     }
 
 
@@ -358,6 +516,18 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
         // Remove the MainFrame from the list of monitored instances
         instances.remove(this);
         LOGGER.debug("nbInstances="+instances.size());
+
+        synchronized (this) {
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException ex) {
+                    LOGGER.debug("Could not close watch service", ex);
+                }
+                watchService = null;
+                watchKey = null;
+            }
+        }
     }
 
     /**
@@ -0,0 +1,303 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2017 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.core;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileURL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Caches the listings of remote folders, so that navigating back to a folder or switching to a tab presenting it
+ * doesn't wait for the folder to be listed again.
+ *
+ * <p>Listings are cached per protocol: each protocol that has been enabled with {@link #setLimits(String, long, long)}
+ * has its own time-to-live and memory budget. A cached listing is served as long as it hasn't expired, and is meant
+ * to be revalidated in the background with {@link #revalidate(Runnable)}: the folder is listed again and the
+ * differences found by {@link Listing#getChangedNames(AbstractFile[])} are applied to the presented children.
+ * When the memory budget of a protocol is exceeded, the least recently used listings are removed.
+ *
+ * <p>Along with the children, a listing keeps a snapshot of their size, date and type taken when it was cached, so
+ * that changes can be detected even if the children refresh their attributes.
+ *
+ * @author Oleg Trifonov
+ */
+public class FolderListingCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FolderListingCache.class);
+
+    /** Approximate memory used by a cached child, in bytes */
+    private static final int ESTIMATED_CHILD_SIZE = 512;
+
+    /** Caches of the protocols that have been enabled, keyed by protocol */
+    private static final Map<String, ProtocolCache> caches = new HashMap<>();
+
+    /** Lists folders in the background to revalidate cached listings */
+    private static final ExecutorService revalidationExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "FolderListingCache revalidation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+
+    /**
+     * Enables the cache for the given protocol, or disables it if <code>timeToLive</code> or <code>maxSize</code>
+     * is <code>0</code>.
+     *
+     * @param protocol the protocol, e.g. <code>sftp</code>
+     * @param timeToLive the time in milliseconds a listing is served after it has been cached
+     * @param maxSize the maximum memory in bytes used by the listings of the protocol
+     */
+    public static synchronized void setLimits(String protocol, long timeToLive, long maxSize) {
+        if (timeToLive <= 0 || maxSize <= 0) {
+            caches.remove(protocol);
+            return;
+        }
+        ProtocolCache cache = caches.get(protocol);
+        if (cache == null) {
+            caches.put(protocol, new ProtocolCache(timeToLive, maxSize));
+        } else {
+            cache.timeToLive = timeToLive;
+            cache.maxSize = maxSize;
+            cache.trim();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if listings of the given folder can be cached.
+     *
+     * @param folder the folder to test
+     * @return <code>true</code> if the folder's protocol has been enabled
+     */
+    public static synchronized boolean isCacheable(AbstractFile folder) {
+        return caches.containsKey(folder.getURL().getScheme());
+    }
+
+    /**
+     * Returns the cached listing of the given folder, <code>null</code> if it isn't cached or has expired.
+     *
+     * @param folder the folder to look up
+     * @return the cached listing of the folder, <code>null</code> if it is not available
+     */
+    public static synchronized Listing get(AbstractFile folder) {
+        FileURL url = folder.getURL();
+        ProtocolCache cache = caches.get(url.getScheme());
+        return cache == null ? null : cache.get(url);
+    }
+
+    /**
+     * Stores the children of the given folder, does nothing if the folder's protocol hasn't been enabled.
+     *
+     * @param folder the listed folder
+     * @param children all the children of the folder, not filtered
+     */
+    public static synchronized void put(AbstractFile folder, AbstractFile children[]) {
+        FileURL url = folder.getURL();
+        ProtocolCache cache = caches.get(url.getScheme());
+        if (cache != null) {
+            cache.put(url, children);
+        }
+    }
+
+    /**
+     * Removes the listing of the given folder from the cache.
+     *
+     * @param folder the folder whose listing should not be served anymore
+     */
+    public static synchronized void invalidate(AbstractFile folder) {
+        FileURL url = folder.getURL();
+        ProtocolCache cache = caches.get(url.getScheme());
+        if (cache != null) {
+            cache.remove(url);
+        }
+    }
+
+    /**
+     * Removes all the cached listings.
+     */
+    public static synchronized void clear() {
+        for (ProtocolCache cache : caches.values()) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Runs the given task in the background thread revalidating cached listings.
+     *
+     * @param task the task listing a folder again
+     */
+    public static void revalidate(Runnable task) {
+        revalidationExecutor.execute(task);
+    }
+
+    /**
+     * Returns a description of the cache of each protocol with its hit and miss counts, for debugging purposes.
+     *
+     * @return one line per enabled protocol
+     */
+    public static synchronized List<String> getStatistics() {
+        List<String> statistics = new ArrayList<>();
+        for (Map.Entry<String, ProtocolCache> entry : caches.entrySet()) {
+            ProtocolCache cache = entry.getValue();
+            statistics.add(entry.getKey() + ": folders=" + cache.listings.size() + " size=" + cache.size + "/" + cache.maxSize +
+                    " hits=" + cache.nbHits + " misses=" + cache.nbMisses);
+        }
+        return statistics;
+    }
+
+
+    /**
+     * A cached listing: the children of a folder and a snapshot of their attributes.
+     */
+    public static class Listing {
+        private final AbstractFile children[];
+        private final long sizes[];
+        private final long dates[];
+        private final boolean directories[];
+        private final long expirationDate;
+        private final long memorySize;
+
+        Listing(AbstractFile children[], long expirationDate) {
+            int nbChildren = children.length;
+            this.children = children;
+            this.sizes = new long[nbChildren];
+            this.dates = new long[nbChildren];
+            this.directories = new boolean[nbChildren];
+            for (int i = 0; i < nbChildren; i++) {
+                sizes[i] = children[i].getSize();
+                dates[i] = children[i].getLastModifiedDate();
+                directories[i] = children[i].isDirectory();
+            }
+            this.expirationDate = expirationDate;
+            this.memorySize = (long)(nbChildren + 1) * ESTIMATED_CHILD_SIZE;
+        }
+
+        /**
+         * Returns the cached children, not filtered.
+         *
+         * @return the cached children
+         */
+        public AbstractFile[] getChildren() {
+            return children;
+        }
+
+        /**
+         * Returns the names of the children that have been created, deleted or modified since this listing was
+         * cached. A child is considered modified if its size, date or type has changed.
+         *
+         * @param newChildren the children of the folder listed again
+         * @return the names of the changed children
+         */
+        public Collection<String> getChangedNames(AbstractFile newChildren[]) {
+            Map<String, Integer> oldIndexes = new HashMap<>(children.length * 2);
+            for (int i = 0; i < children.length; i++) {
+                oldIndexes.put(children[i].getName(), i);
+            }
+            List<String> changedNames = new ArrayList<>();
+            for (AbstractFile file : newChildren) {
+                String name = file.getName();
+                Integer index = oldIndexes.remove(name);
+                if (index == null || directories[index] != file.isDirectory() || sizes[index] != file.getSize()
+                        || dates[index] != file.getLastModifiedDate()) {
+                    changedNames.add(name);
+                }
+            }
+            changedNames.addAll(oldIndexes.keySet());
+            return changedNames;
+        }
+    }
+
+    /**
+     * The listings of a protocol, the least recently used first.
+     */
+    private static class ProtocolCache {
+        private final LinkedHashMap<FileURL, Listing> listings = new LinkedHashMap<>(16, 0.75f, true);
+        private long timeToLive;
+        private long maxSize;
+        private long size;
+        private int nbHits;
+        private int nbMisses;
+
+        ProtocolCache(long timeToLive, long maxSize) {
+            this.timeToLive = timeToLive;
+            this.maxSize = maxSize;
+        }
+
+        Listing get(FileURL url) {
+            Listing listing = listings.get(url);
+            if (listing != null && listing.expirationDate < System.currentTimeMillis()) {
+                remove(url);
+                listing = null;
+            }
+            if (listing == null) {
+                nbMisses++;
+                return null;
+            }
+            nbHits++;
+            return listing;
+        }
+
+        void put(FileURL url, AbstractFile children[]) {
+            remove(url);
+            Listing listing = new Listing(children, System.currentTimeMillis() + timeToLive);
+            if (listing.memorySize > maxSize) {
+                LOGGER.debug("Listing of " + url + " exceeds the cache size, not caching it");
+                return;
+            }
+            listings.put(url, listing);
+            size += listing.memorySize;
+            trim();
+        }
+
+        void remove(FileURL url) {
+            Listing listing = listings.remove(url);
+            if (listing != null) {
+                size -= listing.memorySize;
+            }
+        }
+
+        void clear() {
+            listings.clear();
+            size = 0;
+        }
+
+        /**
+         * Removes the expired listings, then the least recently used ones until the cache fits its memory budget.
+         */
+        void trim() {
+            long now = System.currentTimeMillis();
+            Iterator<Listing> iterator = listings.values().iterator();
+            while (iterator.hasNext()) {
+                Listing listing = iterator.next();
+                if (size > maxSize || listing.expirationDate < now) {
+                    iterator.remove();
+                    size -= listing.memorySize;
+                }
+            }
+        }
+    }
+}
@@ -21,6 +21,7 @@ package com.mucommander.core;
 import java.awt.Cursor;
 import java.awt.EventQueue;
 import java.net.MalformedURLException;
+import java.util.function.BooleanSupplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -325,13 +326,14 @@ public class LocationChanger {
      * @param folder folder to be made current folder
      * @param fileToSelect file to be selected after the folder has been refreshed (if it exists in the folder), can be null in which case FileTable rules will be used to select current file
      * @param changeLockedTab - flag that indicates whether to change the presented folder in the currently selected tab although it's locked
+     * @param listingCancelled tells whether the listing of the folder has been cancelled
      */
-    private void setCurrentFolder(AbstractFile folder, AbstractFile fileToSelect, boolean changeLockedTab) {
+    private void setCurrentFolder(AbstractFile folder, AbstractFile fileToSelect, boolean changeLockedTab, BooleanSupplier listingCancelled) {
     	// Update the timestamp right before the folder is set in case FolderChangeMonitor checks the timestamp
         // while FileTable#setCurrentFolder is being called. 
         lastFolderChangeTime = System.currentTimeMillis();
         
-    	locationManager.setCurrentFolder(folder, fileToSelect, changeLockedTab);
+    	locationManager.setCurrentFolder(folder, fileToSelect, changeLockedTab, listingCancelled);
     }
 
     /**
@@ -477,6 +479,10 @@ public class LocationChanger {
 		private boolean killedByStop;
 		/** True if it is unsafe to kill this thread */
 		private boolean doNotKill;
+		/** True while the folder is being listed, after it has become unsafe to kill this thread */
+		private boolean listing;
+		/** True if the listing of the folder has been stopped by #tryKill */
+		private volatile boolean listingCancelled;
 
 		private boolean disposed;
 
@@ -562,6 +568,12 @@ public class LocationChanger {
 				}
 
 				if (doNotKill) {
+					// The folder can still be presented with the children that have been listed so far
+					if (listing && !listingCancelled) {
+						LOGGER.debug("Stopping the folder listing");
+						listingCancelled = true;
+						return true;
+					}
 					LOGGER.debug("Can't kill thread now, it's too late, returning");
 					return false;
 				}
@@ -820,8 +832,10 @@ public class LocationChanger {
 								LOGGER.debug("this thread has been killed, returning");
 								break;
 							}
-							// From now on, thread cannot be killed (would comprise table integrity)
+							// From now on, thread cannot be killed (would comprise table integrity), only the listing
+							// of the folder can be stopped
 							doNotKill = true;
+							listing = true;
 						}
 
 						// files listed -> 75% complete
@@ -830,7 +844,10 @@ public class LocationChanger {
 						LOGGER.trace("calling setCurrentFolder");
 
 						// Change the file table's current folder and select the specified file (if any)
-						setCurrentFolder(folder, fileToSelect, changeLockedTab);
+						setCurrentFolder(folder, fileToSelect, changeLockedTab, () -> listingCancelled);
+						synchronized(KILL_LOCK) {
+							listing = false;
+						}
 
 						// folder set -> 95% complete
 						folderPanel.setProgressValue(95);
@@ -20,14 +20,25 @@ package com.mucommander.job;
 
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.AbstractRWArchiveFile;
+import com.mucommander.commons.file.FileOperation;
 import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.commons.io.FileTransferException;
+import com.mucommander.job.utils.TransferScheduler;
 import com.mucommander.utils.text.Translator;
 import com.mucommander.ui.dialog.file.FileCollisionDialog;
 import com.mucommander.ui.dialog.file.FileCollisionRenameDialog;
 import com.mucommander.ui.dialog.file.ProgressDialog;
 import com.mucommander.ui.main.MainFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * This class is the parent class of {@link com.mucommander.job.CopyJob} and {@link com.mucommander.job.MoveJob} and
@@ -38,6 +49,7 @@ import java.io.IOException;
  * @see com.mucommander.job.MoveJob
  */
 public abstract class AbstractCopyJob extends TransferFileJob {
+	private static final Logger LOGGER = LoggerFactory.getLogger(AbstractCopyJob.class);
     
     /** Base destination folder */
     protected AbstractFile baseDestFolder;
@@ -59,6 +71,24 @@ public abstract class AbstractCopyJob extends TransferFileJob {
     /** True when an archive is being optimized */
     protected boolean isOptimizingArchive;
 
+    /** Number of files that can be transferred at the same time, see {@link #setConcurrentTransfers(int, int)} */
+    private int nbConcurrentTransfers = 1;
+
+    /** Number of files that can be transferred at the same time from or to a given location */
+    private int maxConcurrentTransfersPerLocation = 1;
+
+    /** Schedules concurrent file transfers, <code>null</code> when files are transferred one after the other */
+    private TransferScheduler scheduler;
+
+    /** Transfers that failed in a worker thread and are to be retried in the job's thread */
+    private final Queue<FileTransfer> failedTransfers = new ConcurrentLinkedQueue<>();
+
+    /** Paths of the source files that could not be transferred concurrently, even after being retried */
+    private final Set<String> untransferredFiles = ConcurrentHashMap.newKeySet();
+
+    /** Folders whose completion is deferred until their files have been transferred, in the order they were completed */
+    private final List<PendingFolder> pendingFolders = new ArrayList<>();
+
 
     /**
      * Creates a new <code>AbstractCopyJob</code>.
@@ -79,6 +109,185 @@ public abstract class AbstractCopyJob extends TransferFileJob {
         this.defaultFileExistsAction = fileExistsAction;
     }
 
+    /**
+     * Allows this job to transfer several files at the same time: files are handed over to a pool of worker threads,
+     * while this job's thread keeps on walking through folders, creating them in the destination and resolving
+     * collisions. This reduces the impact of latency when transferring many small files to or from a remote location.
+     *
+     * <p>Transfers are performed one after the other if integrity check is enabled, if the destination files are
+     * located inside an archive, or if a source file can't be {@link #isConcurrentSource(AbstractFile) read
+     * concurrently}. This method must be called before the job is started.</p>
+     *
+     * @param nbThreads number of files that can be transferred at the same time, <code>1</code> to transfer files one
+     * after the other
+     * @param maxPerLocation number of files that can be transferred at the same time from or to a given server or volume
+     */
+    public void setConcurrentTransfers(int nbThreads, int maxPerLocation) {
+        this.nbConcurrentTransfers = nbThreads;
+        this.maxConcurrentTransfersPerLocation = maxPerLocation;
+    }
+
+    /**
+     * Transfers the given regular file to the destination, either right away in the job's thread with
+     * {@link #tryCopyFile(AbstractFile, AbstractFile, boolean, String)} followed by {@link #tryCompleteFileTransfer(AbstractFile)},
+     * or by scheduling it in a worker thread if concurrent transfers are enabled. In the latter case, errors are
+     * reported once the file has been retried in the job's thread.
+     *
+     * @param file the source file
+     * @param destFile the destination file
+     * @param append true to resume the transfer
+     * @return true if the file was transferred or scheduled, false if the transfer failed or was interrupted
+     */
+    protected boolean transferFile(AbstractFile file, AbstractFile destFile, boolean append) {
+        if (scheduler == null || !canCopyFileConcurrently(file, destFile)) {
+            return tryCopyFile(file, destFile, append, errorDialogTitle) && getState() != State.INTERRUPTED
+                    && tryCompleteFileTransfer(file);
+        }
+
+        // Report the failures of previous transfers before going any further
+        retryFailedTransfers();
+
+        FileTransfer transfer = new FileTransfer(file, destFile, append);
+        try {
+            return scheduler.submit(() -> transferFileConcurrently(transfer), file, destFile);
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Transfers a file scheduled by {@link #transferFile(AbstractFile, AbstractFile, boolean)}, in a worker thread.
+     */
+    private void transferFileConcurrently(FileTransfer transfer) {
+        if (getState() == State.INTERRUPTED) {
+            return;
+        }
+
+        TransferByteCounter byteCounter = createTransferByteCounter();
+        TransferByteCounter skippedByteCounter = createTransferSkippedByteCounter();
+        try {
+            if (!copyFileConcurrently(transfer.sourceFile, transfer.destFile, transfer.append, byteCounter, skippedByteCounter)) {
+                // The file was skipped or the job was interrupted
+                untransferredFiles.add(transfer.sourceFile.getAbsolutePath());
+                return;
+            }
+        } catch (FileTransferException e) {
+            LOGGER.debug("Concurrent transfer of "+transfer.sourceFile+" failed, retrying in the job's thread", e);
+            // The file is copied again from the start, the bytes it has transferred so far must not be counted twice
+            byteCounter.cancel();
+            skippedByteCounter.cancel();
+            failedTransfers.add(transfer);
+            return;
+        }
+
+        transfer.copied = true;
+        try {
+            completeFileTransfer(transfer.sourceFile);
+        } catch (IOException e) {
+            LOGGER.debug("Failed to complete the transfer of "+transfer.sourceFile+", retrying in the job's thread", e);
+            failedTransfers.add(transfer);
+        }
+    }
+
+    /**
+     * Retries the transfers that failed in worker threads, showing error dialogs if they fail again.
+     */
+    private void retryFailedTransfers() {
+        FileTransfer transfer;
+        while (getState() != State.INTERRUPTED && (transfer = failedTransfers.poll()) != null) {
+            nextFile(transfer.sourceFile);
+            boolean transferred = (transfer.copied || tryCopyFile(transfer.sourceFile, transfer.destFile, transfer.append, errorDialogTitle))
+                    && getState() != State.INTERRUPTED
+                    && tryCompleteFileTransfer(transfer.sourceFile);
+            if (!transferred) {
+                untransferredFiles.add(transfer.sourceFile.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Completes the transfer of a regular file once it has been copied, called from a worker thread when files are
+     * transferred concurrently. This method implementation does nothing, it can be overridden by subclasses, for
+     * instance to delete the source file.
+     *
+     * @param file the source file
+     * @throws IOException if the transfer could not be completed, in which case
+     * {@link #tryCompleteFileTransfer(AbstractFile)} will be called from the job's thread
+     */
+    protected void completeFileTransfer(AbstractFile file) throws IOException {
+    }
+
+    /**
+     * Completes the transfer of a regular file once it has been copied, in the job's thread: unlike
+     * {@link #completeFileTransfer(AbstractFile)}, this method may ask the user what to do if an error occurs.
+     * This method implementation does nothing and returns <code>true</code>.
+     *
+     * @param file the source file
+     * @return true if the transfer was completed
+     */
+    protected boolean tryCompleteFileTransfer(AbstractFile file) {
+        return true;
+    }
+
+    /**
+     * Completes the transfer of a folder whose files have all been processed by calling
+     * {@link #tryCompleteFolder(AbstractFile, AbstractFile, boolean)}, either right away, or once the folder's files
+     * have actually been transferred when files are transferred concurrently.
+     *
+     * @param folder the source folder
+     * @param destFolder the destination folder
+     * @param allFilesTransferred true if all the folder's files have been transferred (or scheduled) successfully
+     * @return the value returned by {@link #tryCompleteFolder(AbstractFile, AbstractFile, boolean)}, or
+     * <code>allFilesTransferred</code> if the folder's completion is deferred
+     */
+    protected boolean completeFolder(AbstractFile folder, AbstractFile destFolder, boolean allFilesTransferred) {
+        if (scheduler == null) {
+            return tryCompleteFolder(folder, destFolder, allFilesTransferred);
+        }
+
+        pendingFolders.add(new PendingFolder(folder, destFolder, allFilesTransferred));
+        return allFilesTransferred;
+    }
+
+    /**
+     * Completes the transfer of a folder once all its files have been transferred. This method implementation sets
+     * the destination folder's date to match the source folder's one and returns <code>allFilesTransferred</code>.
+     *
+     * @param folder the source folder
+     * @param destFolder the destination folder
+     * @param allFilesTransferred true if all the folder's files have been transferred successfully
+     * @return true if the folder has been transferred completely
+     */
+    protected boolean tryCompleteFolder(AbstractFile folder, AbstractFile destFolder, boolean allFilesTransferred) {
+        if (destFolder.isFileOperationSupported(FileOperation.CHANGE_DATE)) {
+            try {
+                destFolder.setLastModifiedDate(folder.getLastModifiedDate());
+            } catch (IOException e) {
+                LOGGER.debug("failed to change the date of "+destFolder, e);
+                // Fail silently
+            }
+        }
+
+        return allFilesTransferred;
+    }
+
+    /**
+     * Returns <code>true</code> if a file located inside the given folder could not be transferred concurrently.
+     */
+    private boolean hasUntransferredFiles(AbstractFile folder) {
+        if (untransferredFiles.isEmpty()) {
+            return false;
+        }
+
+        String folderPath = folder.getAbsolutePath(true);
+        for (String path : untransferredFiles) {
+            if (path.startsWith(folderPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Creates a destination file given a destination folder and a new file name.
      * @param destFolder a destination folder
@@ -223,4 +432,135 @@ public abstract class AbstractCopyJob extends TransferFileJob {
         isOptimizingArchive = false;
     }
 
+
+    /**
+     * Returns <code>true</code> if files can be transferred concurrently: the destination files may not be located
+     * inside an archive, as archives can't be written from several threads, and all the source files must be
+     * {@link #isConcurrentSource(AbstractFile) readable concurrently}.
+     */
+    private boolean isConcurrentTransferPossible() {
+        if (nbConcurrentTransfers <= 1 || isIntegrityCheckEnabled() || baseDestFolder.getParentArchive() != null) {
+            return false;
+        }
+
+        for (AbstractFile file : files) {
+            if (!isConcurrentSource(file)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns <code>true</code> if the given source file, and the files it contains, can be read from several threads
+     * at the same time. This implementation returns <code>true</code> unless the file is located inside an archive.
+     *
+     * @param file one of the files this job was created with
+     * @return true if the file can be read concurrently
+     */
+    protected boolean isConcurrentSource(AbstractFile file) {
+        return file.getParentArchive() == null;
+    }
+
+    /**
+     * Returns <code>true</code> if {@link #transferFile(AbstractFile, AbstractFile, boolean)} hands files over to
+     * worker threads, i.e. if concurrent transfers were enabled and are possible for this job's files.
+     *
+     * @return true if files are transferred concurrently
+     */
+    protected boolean isTransferringConcurrently() {
+        return scheduler != null;
+    }
+
+
+    ////////////////////////
+    // Overridden methods //
+    ////////////////////////
+
+    @Override
+    protected void jobStarted() {
+        super.jobStarted();
+
+        if (isConcurrentTransferPossible()) {
+            scheduler = new TransferScheduler(getClass().getSimpleName(), nbConcurrentTransfers, maxConcurrentTransfersPerLocation);
+        }
+    }
+
+    /**
+     * Waits for the files scheduled in worker threads to be transferred, retries those that failed and completes the
+     * folders whose completion was deferred.
+     */
+    @Override
+    protected void processPendingFiles() {
+        super.processPendingFiles();
+
+        if (scheduler == null) {
+            return;
+        }
+
+        try {
+            while (!scheduler.awaitCompletion(100)) {
+                // Transfers that are still running when the job is stopped may take a while to notice it
+                if (getState() == State.INTERRUPTED) {
+                    return;
+                }
+                retryFailedTransfers();
+            }
+        } catch (InterruptedException e) {
+            LOGGER.debug("Interrupted while waiting for transfers to complete", e);
+            return;
+        }
+        retryFailedTransfers();
+
+        for (PendingFolder pendingFolder : pendingFolders) {
+            if (getState() == State.INTERRUPTED) {
+                break;
+            }
+            tryCompleteFolder(pendingFolder.folder, pendingFolder.destFolder,
+                    pendingFolder.allFilesScheduled && !hasUntransferredFiles(pendingFolder.folder));
+        }
+        pendingFolders.clear();
+    }
+
+    @Override
+    protected void jobStopped() {
+        super.jobStopped();
+
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+
+    /**
+     * A file (or folder) being transferred concurrently.
+     */
+    private static class FileTransfer {
+        private final AbstractFile sourceFile;
+        private final AbstractFile destFile;
+        private final boolean append;
+        /** True once the file has been copied */
+        private volatile boolean copied;
+
+        private FileTransfer(AbstractFile sourceFile, AbstractFile destFile, boolean append) {
+            this.sourceFile = sourceFile;
+            this.destFile = destFile;
+            this.append = append;
+        }
+    }
+
+    /**
+     * A folder whose completion is deferred until its files have been transferred.
+     */
+    private static class PendingFolder {
+        private final AbstractFile folder;
+        private final AbstractFile destFolder;
+        private final boolean allFilesScheduled;
+
+        private PendingFolder(AbstractFile folder, AbstractFile destFolder, boolean allFilesScheduled) {
+            this.folder = folder;
+            this.destFolder = destFolder;
+            this.allFilesScheduled = allFilesScheduled;
+        }
+    }
 }
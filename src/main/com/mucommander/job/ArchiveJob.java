@@ -60,6 +60,12 @@ public class ArchiveJob extends TransferFileJob {
     /** Optional archive comment */
     private String archiveComment;
 	
+    /** Compression level of zip, gzip and bzip2 data */
+    private int compressionLevel = Archiver.DEFAULT_COMPRESSION_LEVEL;
+
+    /** Number of threads compressing zip, gzip and bzip2 data */
+    private int compressionThreads = 1;
+
     /** Lock to avoid Archiver.close() to be called while data is being written */
     private final Object ioLock = new Object();
 
@@ -191,7 +197,7 @@ public class ArchiveJob extends TransferFileJob {
         do {
             try {
                 // Tries to get an Archiver instance.
-                this.archiver = Archiver.getArchiver(destFile, archiveFormat);
+                this.archiver = Archiver.getArchiver(destFile, archiveFormat, compressionLevel, compressionThreads);
                 this.archiver.setComment(archiveComment);
 
                 break;
@@ -266,4 +272,23 @@ public class ArchiveJob extends TransferFileJob {
         }
         return result;
     }
+
+    /**
+     * Sets the compression level of zip, gzip and bzip2 archives.
+     *
+     * @param compressionLevel level from <code>1</code> (fastest) to <code>9</code> (best),
+     * {@link Archiver#DEFAULT_COMPRESSION_LEVEL} selects the default level of the format
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Sets the number of threads compressing zip, gzip and bzip2 archives.
+     *
+     * @param compressionThreads number of threads, values lower than <code>2</code> select the single-threaded compressor
+     */
+    public void setCompressionThreads(int compressionThreads) {
+        this.compressionThreads = compressionThreads;
+    }
 }
@@ -19,15 +19,21 @@
 package com.mucommander.job;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.commons.io.security.MultiMessageDigest;
+import com.mucommander.job.utils.TransferScheduler;
 import com.mucommander.utils.text.Translator;
 import com.mucommander.ui.dialog.file.FileCollisionDialog;
 import com.mucommander.ui.dialog.file.ProgressDialog;
@@ -57,36 +63,89 @@ import com.mucommander.ui.viewer.ViewerRegistrar;
  * ...
  * </pre>
  *
+ * <p>Several algorithms can be used at once, in which case each file is read only once and a checksum file is
+ * written for each algorithm. Files can also be read by several threads at the same time, see
+ * {@link #setConcurrentFiles(int, int)}. Lines are always written in the order the files are walked through, so the
+ * checksum files do not depend on the number of threads.
+ *
  * @author Maxence Bernard
  */
 public class CalculateChecksumJob extends TransferFileJob {
 	private static final Logger LOGGER = LoggerFactory.getLogger(CalculateChecksumJob.class);
 	
-    /** The checksum file where the checksum of each file is written */
-    private AbstractFile checksumFile;
-    /** The OutputStream of the checksum file */
-    private OutputStream checksumFileOut;
+    /** The checksum files where the checksum of each file is written, one per algorithm */
+    private AbstractFile checksumFiles[];
+    /** The OutputStreams of the checksum files */
+    private OutputStream checksumFileOuts[];
 
     /** The path to the base source folder, i.e. the folder which contains all the files this job operates on */
     private String baseSourcePath;
 
-    /** True if the SFV format is used rather than the default 'SUMS' format */
-    private boolean useSfvFormat;
+    /** True for the algorithms that use the SFV format rather than the default 'SUMS' format */
+    private boolean useSfvFormat[];
+
+    /** The MessageDigests that serve to calculate the checksums, used by the job's thread */
+    private MultiMessageDigest digest;
+
+    /** Names of the checksum algorithms, used to create the digests of worker threads */
+    private String algorithms[];
+
+    /** Number of files whose checksums can be calculated at the same time */
+    private int nbConcurrentFiles = 1;
+
+    /** Number of files that can be read at the same time from a given location */
+    private int maxConcurrentFilesPerLocation = 1;
 
-    /** The MessageDigest that serves to calculate the checksum */
-    private MessageDigest digest;
+    /** Schedules the files read by worker threads, <code>null</code> when files are read one after the other */
+    private TransferScheduler scheduler;
+
+    /** Files scheduled in worker threads whose checksums have not been written yet, in the order they were walked through */
+    private final Deque<FileChecksum> pendingChecksums = new ArrayDeque<>();
 
 
     public CalculateChecksumJob(ProgressDialog progressDialog, MainFrame mainFrame, FileSet files, AbstractFile checksumFile, MessageDigest digest) {
+        this(progressDialog, mainFrame, files, new AbstractFile[] {checksumFile}, new MessageDigest[] {digest});
+    }
+
+    /**
+     * Creates a new job calculating the checksums of several algorithms in a single pass over each file.
+     *
+     * @param progressDialog dialog which shows this job's progress
+     * @param mainFrame mainFrame this job has been triggered by
+     * @param files files whose checksums are calculated
+     * @param checksumFiles the checksum file of each algorithm
+     * @param digests the MessageDigest of each algorithm, in the order of the checksum files
+     */
+    public CalculateChecksumJob(ProgressDialog progressDialog, MainFrame mainFrame, FileSet files, AbstractFile checksumFiles[], MessageDigest digests[]) {
         super(progressDialog, mainFrame, files);
 
-        this.checksumFile = checksumFile;
-        this.digest = digest;
-        this.useSfvFormat = digest.getAlgorithm().equalsIgnoreCase("CRC32");
+        this.checksumFiles = checksumFiles;
+        this.checksumFileOuts = new OutputStream[checksumFiles.length];
+        this.digest = new MultiMessageDigest(digests);
+        this.algorithms = new String[digests.length];
+        this.useSfvFormat = new boolean[digests.length];
+        for (int i = 0; i < digests.length; i++) {
+            algorithms[i] = digests[i].getAlgorithm();
+            useSfvFormat[i] = algorithms[i].equalsIgnoreCase("CRC32");
+        }
 
         this.baseSourcePath = getBaseSourceFolder().getAbsolutePath(true);
     }
 
+    /**
+     * Allows this job to read several files at the same time: regular files are handed over to a pool of worker
+     * threads while this job's thread keeps on walking through folders. This method must be called before the job is
+     * started.
+     *
+     * @param nbThreads number of files whose checksums can be calculated at the same time, <code>1</code> to read
+     * files one after the other
+     * @param maxPerLocation number of files that can be read at the same time from a given server or volume
+     */
+    public void setConcurrentFiles(int nbThreads, int maxPerLocation) {
+        this.nbConcurrentFiles = nbThreads;
+        this.maxConcurrentFilesPerLocation = maxPerLocation;
+    }
+
 
     ////////////////////////////////////
     // TransferFileJob implementation //
@@ -120,34 +179,40 @@ public class CalculateChecksumJob extends TransferFileJob {
             } while(true);
         }
 
-        // Calculate the file's checksum
-        do {		// Loop for retry
+        // Determine the path relative to the base source folder
+        String relativePath = file.getAbsolutePath();
+        relativePath = relativePath.substring(baseSourcePath.length(), relativePath.length());
 
-            try {
-                // Determine the path relative to the base source folder
-                String relativePath = file.getAbsolutePath();
-                relativePath = relativePath.substring(baseSourcePath.length(), relativePath.length());
-
-                // Resets the digest before use
-                digest.reset();
-                String checksum;
-                try (InputStream is = setCurrentInputStream(file.getInputStream())) {
-                    checksum = AbstractFile.calculateChecksum(is, digest);
-                }
+        if (scheduler == null) {
+            return tryCalculateChecksums(file, relativePath);
+        }
 
-                // Write a new line in the checksum file, in the appropriate format
-                String line;
-                if (useSfvFormat) {
-                    // SFV format for CRC32 checksum
-                    line = relativePath + " " + checksum;     // 1 space character
-                } else {
-                    // 'SUMS' format for other checksum algorithms
-                    line = checksum + "  " + relativePath;    // 2 space characters, that's how the format is
-                }
+        // Write the checksums of the files that are done before scheduling more
+        writePendingChecksums(false);
+
+        FileChecksum checksum = new FileChecksum(file, relativePath);
+        pendingChecksums.add(checksum);
+        try {
+            return scheduler.submit(() -> calculateChecksumsConcurrently(checksum), file);
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
 
-                line += '\n';
+    /**
+     * Calculates the checksums of the given file in the job's thread and writes them to the checksum files, showing
+     * an error dialog if the file cannot be read.
+     *
+     * @param file the file to read
+     * @param relativePath the path of the file relative to the base source folder
+     * @return true if the checksums were written
+     */
+    private boolean tryCalculateChecksums(AbstractFile file, String relativePath) {
+        // Calculate the file's checksum
+        do {		// Loop for retry
 
-                checksumFileOut.write(line.getBytes("utf-8"));
+            try {
+                writeChecksums(relativePath, calculateChecksums(file, digest, false));
 
                 return true;
             } catch (IOException e) {
@@ -176,10 +241,94 @@ public class CalculateChecksumJob extends TransferFileJob {
         } while(true);
     }
 
+    /**
+     * Calculates the checksums of a file scheduled by {@link #processFile(AbstractFile, Object)}, in a worker thread.
+     * Errors are not reported here: the file is read again in the job's thread when its checksums are to be written.
+     */
+    private void calculateChecksumsConcurrently(FileChecksum checksum) {
+        try {
+            if (getState() != State.INTERRUPTED) {
+                checksum.checksums = calculateChecksums(checksum.file, MultiMessageDigest.getInstance(algorithms), true);
+            }
+        } catch (IOException | NoSuchAlgorithmException e) {
+            LOGGER.debug("Concurrent checksum calculation of "+checksum.file+" failed, retrying in the job's thread", e);
+            checksum.failed = true;
+        } finally {
+            checksum.done.countDown();
+        }
+    }
+
+    /**
+     * Writes the checksums of the files scheduled in worker threads, in the order the files were walked through.
+     * Files that could not be read by a worker are read again in the job's thread.
+     *
+     * @param wait if true, waits for all scheduled files to be done, otherwise stops at the first file that is not
+     */
+    private void writePendingChecksums(boolean wait) {
+        FileChecksum checksum;
+        while (getState() != State.INTERRUPTED && (checksum = pendingChecksums.peek()) != null) {
+            try {
+                if (!checksum.done.await(wait ? 100 : 0, TimeUnit.MILLISECONDS)) {
+                    if (wait) {
+                        continue;
+                    }
+                    return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            pendingChecksums.poll();
+
+            if (checksum.checksums != null) {
+                try {
+                    writeChecksums(checksum.relativePath, checksum.checksums);
+                    continue;
+                } catch (IOException e) {
+                    LOGGER.debug("Caught IOException", e);
+                }
+            } else if (!checksum.failed) {
+                // The file was skipped
+                continue;
+            }
+
+            nextFile(checksum.file);
+            tryCalculateChecksums(checksum.file, checksum.relativePath);
+        }
+    }
+
+    /**
+     * Writes a new line in each checksum file, in the appropriate format.
+     *
+     * @param relativePath the path of the file relative to the base source folder
+     * @param checksums the checksums of the file, in the order of the checksum files
+     * @throws IOException if a checksum file could not be written
+     */
+    private void writeChecksums(String relativePath, String checksums[]) throws IOException {
+        for (int i = 0; i < checksums.length; i++) {
+            String line;
+            if (useSfvFormat[i]) {
+                // SFV format for CRC32 checksum
+                line = relativePath + " " + checksums[i];     // 1 space character
+            } else {
+                // 'SUMS' format for other checksum algorithms
+                line = checksums[i] + "  " + relativePath;    // 2 space characters, that's how the format is
+            }
+
+            line += '\n';
+
+            checksumFileOuts[i].write(line.getBytes("utf-8"));
+        }
+    }
+
     @Override
     protected boolean hasFolderChanged(AbstractFile folder) {
-        // This job modifies the folder where the checksum file is
-        return folder.equalsCanonical(checksumFile.getParent());     // Note: parent may be null
+        // This job modifies the folders where the checksum files are
+        for (AbstractFile checksumFile : checksumFiles) {
+            if (folder.equalsCanonical(checksumFile.getParent())) {     // Note: parent may be null
+                return true;
+            }
+        }
+        return false;
     }
 
 
@@ -191,6 +340,26 @@ public class CalculateChecksumJob extends TransferFileJob {
     protected void jobStarted() {
         super.jobStarted();
 
+        for (int i = 0; i < checksumFiles.length; i++) {
+            if (!openChecksumFile(i)) {
+                return;
+            }
+        }
+
+        if (nbConcurrentFiles > 1) {
+            scheduler = new TransferScheduler(getClass().getSimpleName(), nbConcurrentFiles, maxConcurrentFilesPerLocation);
+        }
+    }
+
+    /**
+     * Opens the checksum file with the given index, asking the user what to do if it already exists.
+     *
+     * @param index index of the checksum file
+     * @return true if the checksum file was opened, false if the job has been interrupted
+     */
+    private boolean openChecksumFile(int index) {
+        AbstractFile checksumFile = checksumFiles[index];
+
         // Check for file collisions, i.e. if the file already exists in the destination
         int collision = FileCollisionChecker.checkForCollision(null, checksumFile);
         if (collision != FileCollisionChecker.NO_COLLOSION) {
@@ -205,7 +374,7 @@ public class CalculateChecksumJob extends TransferFileJob {
             // 'Cancel' or close dialog interrupts the job
             else {
                 interrupt();
-                return;
+                return false;
             }
         }
 
@@ -213,9 +382,9 @@ public class CalculateChecksumJob extends TransferFileJob {
         do {
             try {
                 // Tries to get an OutputStream on the destination file
-                this.checksumFileOut = checksumFile.getOutputStream();
+                this.checksumFileOuts[index] = checksumFile.getOutputStream();
 
-                break;
+                return true;
 
             } catch (Exception e) {
                 int choice = showErrorDialog(Translator.get("error"),
@@ -231,30 +400,70 @@ public class CalculateChecksumJob extends TransferFileJob {
 
                 // 'Cancel' or close dialog interrupts the job
                 interrupt();
-                return;
+                return false;
             }
         } while(true);
     }
 
+    /**
+     * Waits for the files scheduled in worker threads and writes their checksums.
+     */
+    @Override
+    protected void processPendingFiles() {
+        super.processPendingFiles();
+
+        if (scheduler != null) {
+            writePendingChecksums(true);
+        }
+    }
+
     @Override
     protected void jobCompleted() {
         super.jobCompleted();
 
-        // Open the checksum file in a viewer
-        ViewerRegistrar.createViewerFrame(getMainFrame(), checksumFile, IconManager.getImageIcon(checksumFile.getIcon()).getImage());
+        // Open the checksum files in a viewer
+        for (AbstractFile checksumFile : checksumFiles) {
+            ViewerRegistrar.createViewerFrame(getMainFrame(), checksumFile, IconManager.getImageIcon(checksumFile.getIcon()).getImage());
+        }
     }
 
     @Override
     protected void jobStopped() {
         super.jobStopped();
-        
-        // Close the checksum file's OutputStream
-        if (checksumFileOut != null) {
-            try {
-                checksumFileOut.close();
-            } catch (IOException ignore) {
-                // No need to inform the user
+
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+
+        // Close the checksum files' OutputStreams
+        for (OutputStream checksumFileOut : checksumFileOuts) {
+            if (checksumFileOut != null) {
+                try {
+                    checksumFileOut.close();
+                } catch (IOException ignore) {
+                    // No need to inform the user
+                }
             }
         }
     }
+
+
+    /**
+     * A file whose checksums are calculated in a worker thread.
+     */
+    private static class FileChecksum {
+        private final AbstractFile file;
+        private final String relativePath;
+        /** The checksums of the file, <code>null</code> if the file could not be read */
+        private volatile String checksums[];
+        /** True if the file could not be read and must be read again in the job's thread */
+        private volatile boolean failed;
+        /** Released once the worker is done with the file */
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private FileChecksum(AbstractFile file, String relativePath) {
+            this.file = file;
+            this.relativePath = relativePath;
+        }
+    }
 }
@@ -192,14 +192,7 @@ public class CopyJob extends AbstractCopyJob {
                     currentDestFile = destFile;
 
                     // Only when finished with folder, set destination folder's date to match the original folder one
-                    if (destFile.isFileOperationSupported(FileOperation.CHANGE_DATE)) {
-                        try {
-                            destFile.setLastModifiedDate(file.getLastModifiedDate());
-                        } catch (IOException e) {
-                            LOGGER.debug("failed to change the date of "+destFile, e);
-                            // Fail silently
-                        }
-                    }
+                    completeFolder(file, destFile, true);
 
                     return true;
                 } catch (IOException e) {
@@ -217,7 +210,7 @@ public class CopyJob extends AbstractCopyJob {
         // File is a regular file, copy it
         else  {
             // Copy the file
-            return tryCopyFile(file, destFile, append, errorDialogTitle);
+            return transferFile(file, destFile, append);
         }
     }
 
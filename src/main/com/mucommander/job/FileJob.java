@@ -540,6 +540,17 @@ public abstract class FileJob implements Runnable {
     }
 	
 
+    /**
+     * This method is called after the last call to {@link #processFile(AbstractFile,Object)} is made, before the job
+     * completes. This method implementation does nothing but it can be overridden by subclasses that process files
+     * asynchronously, to wait for them to be processed.
+     *
+     * <p>Note that this method will NOT be called if a call to {@link #interrupt()} was made before all files were processed.
+     */
+    protected void processPendingFiles() {
+    }
+
+
     /**
      * This method is called when this job has completed normal execution : all files have been processed without any interruption
      * (without any call to {@link #interrupt()}).
@@ -873,6 +884,11 @@ public abstract class FileJob implements Runnable {
             // If last file was reached without any user interruption, all files have been processed with or
             // without errors, switch to FINISHED state and notify listeners
             if (currentFileIndex >= nbFiles-1 && getState() != FileJob.State.INTERRUPTED) {
+                // Finish processing files that are still pending
+                processPendingFiles();
+                if (getState() == State.INTERRUPTED)
+                    break;
+
                 currentFileIndex++;
                 stop();
                 jobCompleted();
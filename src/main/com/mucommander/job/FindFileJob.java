@@ -17,7 +17,9 @@
  */
 package com.mucommander.job;
 
+import com.mucommander.cache.ContentIndex;
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.impl.local.LocalFile;
 import com.mucommander.commons.file.util.FileSet;
 import com.mucommander.commons.runtime.OsFamily;
 import com.mucommander.ui.main.MainFrame;
@@ -26,30 +28,58 @@ import org.apache.commons.io.filefilter.AbstractFileFilter;
 import org.apache.commons.io.filefilter.IOFileFilter;
 import org.apache.commons.io.filefilter.OrFileFilter;
 import org.apache.commons.io.filefilter.WildcardFileFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import ru.trolsoft.utils.search.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Job for directory scanning
  */
 public class FindFileJob extends FileJob {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FindFileJob.class);
 
     private AbstractFile startDirectory;
     private String fileContent;
     private boolean searchSubdirectories;
     private boolean searchArchives;
     private boolean ignoreHidden;
-    private SearchPattern searchPattern;
+    private BlockMatcher matcher;
 
     private AbstractFileFilter fileFilter;
 
+    /** Number of worker threads used for the search, <code>1</code> for the single-threaded walk */
+    private int parallelism = 1;
+
+    /** Work-stealing pool used when the search runs in parallel mode, <code>null</code> otherwise */
+    private volatile ForkJoinPool pool;
+
     private final List<AbstractFile> list = new ArrayList<>();
 
+    /** If true, the persistent content index is used to skip files that can't contain the searched data */
+    private boolean useIndex;
+
+    /** Trigrams of the searched data looked up in the content index, <code>null</code> if they can't be used */
+    private int[] indexQuery;
+
+    private ContentIndex contentIndex;
+
+    /** Local files smaller than this size are read through a stream, bigger ones are mapped in memory */
+    private static final long MAP_THRESHOLD = 1024 * 1024;
+
     public FindFileJob(MainFrame mainFrame) {
         super(mainFrame);
         setAutoUnmark(false);
@@ -63,6 +93,58 @@ public class FindFileJob extends FileJob {
 
     @Override
     protected boolean processFile(AbstractFile file, Object recurseParams) {
+        if (useIndex && indexQuery != null) {
+            try {
+                contentIndex = ContentIndex.getInstance();
+            } catch (Exception e) {
+                LOGGER.info("Can't open the content index, searching without it", e);
+                contentIndex = null;
+            }
+        }
+        try {
+            if (parallelism > 1) {
+                return processFileParallel(file);
+            }
+            return processFileSequential(file);
+        } finally {
+            if (contentIndex != null) {
+                contentIndex.save();
+            }
+        }
+    }
+
+    @Override
+    protected void jobStopped() {
+        super.jobStopped();
+        // Cancel pending tasks and wake up workers blocked in interruptible I/O
+        ForkJoinPool pool = this.pool;
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Walks the directory tree on a work-stealing pool: directory listing, name filtering and content scanning
+     * of each file are performed by a separate task. Matches are added to the results list as soon as they're found.
+     */
+    private boolean processFileParallel(AbstractFile file) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        this.pool = pool;
+        try {
+            // The job may have been interrupted before the pool was published
+            if (getState() != State.INTERRUPTED) {
+                pool.invoke(new SearchTask(file));
+            }
+        } catch (CancellationException | RejectedExecutionException e) {
+            // Job has been interrupted
+        } finally {
+            pool.shutdownNow();
+            this.pool = null;
+        }
+        return true;
+    }
+
+    private boolean processFileSequential(AbstractFile file) {
         // Stop if interrupted
         if (getState() == State.INTERRUPTED) {
             return false;
@@ -81,7 +163,7 @@ public class FindFileJob extends FileJob {
                     }
                     // Notify job that we're starting to process this file (needed for recursive calls to processFile)
                     nextFile(subFiles[i]);
-                    processFile(subFiles[i], null);
+                    processFileSequential(subFiles[i]);
                 }
             } catch(Throwable e) {
                 // Should we tell the user?
@@ -101,7 +183,7 @@ public class FindFileJob extends FileJob {
                     }
                     // Notify job that we're starting to process this file (needed for recursive calls to processFile)
                     nextFile(subFiles[i]);
-                    processFile(subFiles[i], null);
+                    processFileSequential(subFiles[i]);
                 }
             } catch(Throwable e) {
                 // Should we tell the user?
@@ -126,15 +208,44 @@ public class FindFileJob extends FileJob {
         if (fileContent == null || fileContent.isEmpty()) {
             return true;
         }
-        if (f.isDirectory()) {
+        if (f.isDirectory() || matcher == null) {
             return false;
         }
+        ContentIndex.Indexer indexer = null;
+        if (contentIndex != null) {
+            if (!contentIndex.mayContain(f, indexQuery)) {
+                return false;
+            }
+            indexer = contentIndex.createIndexer(f);
+        }
+        if (indexer != null) {
+            // The file is indexed from the bytes scanned by the matcher, so that it is read only once
+            try (InputStream in = indexer.wrap(f.getInputStream())) {
+                return SearchUtils.indexOf(in, matcher) >= 0;
+            } catch (IOException e) {
+                LOGGER.debug("Can't search " + f, e);
+                return false;
+            } finally {
+                indexer.finish();
+            }
+        }
 
-        try (SearchSourceStream source = new InputStreamSource(f.getInputStream())) {
-            long pos = SearchUtils.indexOf(source, searchPattern);
+        LocalFile localFile = f.getAncestor(LocalFile.class);
+        if (localFile != null && f.getSize() >= MAP_THRESHOLD) {
+            File file = (File)localFile.getUnderlyingFileObject();
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                return SearchUtils.indexOf(channel, matcher) >= 0;
+            } catch (IOException e) {
+                // The file couldn't be mapped (e.g. address space exhausted), fall back to plain reads
+            } catch (InternalError e) {
+                // Accessing a mapped region of a file truncated in the meantime faults (SIGBUS), fall back to plain reads
+            }
+        }
+        try (InputStream in = f.getInputStream()) {
+            long pos = SearchUtils.indexOf(in, matcher);
             //Profiler.stop("check_new");
             return pos >= 0;
-        } catch (IOException | SearchException e) {
+        } catch (IOException e) {
             e.printStackTrace();
             return false;
         }
@@ -143,10 +254,81 @@ public class FindFileJob extends FileJob {
 
 
 
+    /**
+     * Task processing a single file of the parallel search, sub-tasks are forked for directory and archive children.
+     */
+    private class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final AbstractFile file;
+
+        SearchTask(AbstractFile file) {
+            this.file = file;
+        }
+
+        @Override
+        protected void compute() {
+            if (getState() == State.INTERRUPTED) {
+                return;
+            }
+            nextFile(file);
+            if (file.isDirectory() && (!file.isSymlink() || file.equals(startDirectory))) {
+                searchInFile(file);
+                if (searchSubdirectories || file.equals(startDirectory)) {
+                    forkChildren(file);
+                }
+            } else if (!ignoreHidden || !file.isHidden()) {
+                searchInFile(file);
+            }
+            if (file.isArchive() && searchArchives) {
+                forkChildren(file);
+            }
+        }
+
+        private void forkChildren(AbstractFile folder) {
+            if (ignoreHidden && folder.isHidden()) {
+                return;
+            }
+            AbstractFile subFiles[];
+            try {
+                subFiles = folder.ls();
+            } catch (Throwable e) {
+                // Should we tell the user?
+                return;
+            }
+            List<SearchTask> tasks = new ArrayList<>(subFiles.length);
+            for (AbstractFile subFile : subFiles) {
+                tasks.add(new SearchTask(subFile));
+            }
+            if (getState() != State.INTERRUPTED) {
+                invokeAll(tasks);
+            }
+        }
+    }
+
+
     public List<AbstractFile> getResults() {
         return list;
     }
 
+    /**
+     * Sets the number of threads used to search files.
+     *
+     * @param parallelism number of worker threads, values lower than <code>2</code> select the single-threaded search
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Specifies whether the persistent content index should be used to skip files that can't contain the searched data.
+     *
+     * @param useIndex <code>true</code> to use the content index
+     */
+    public void setUseIndex(boolean useIndex) {
+        this.useIndex = useIndex;
+    }
+
     public void setStartDirectory(AbstractFile startDirectory) {
         this.startDirectory = startDirectory;
         FileSet fs = new FileSet();
@@ -178,6 +360,7 @@ public class FindFileJob extends FileJob {
             fileFilter = new WildcardFileFilter(fileMask, filterCase);
         }
 
+        SearchPattern searchPattern = null;
         if (hexMode) {
             searchPattern = new BytesSearchPattern(bytes);
         } else {
@@ -189,6 +372,29 @@ public class FindFileJob extends FileJob {
                 e.printStackTrace();
             }
         }
+        matcher = searchPattern == null ? null : searchPattern.createMatcher();
+        indexQuery = ContentIndex.getTrigrams(getIndexedBytes(fileContent, caseSensitive, encoding, hexMode, bytes));
+    }
+
+    /**
+     * Returns the data that can be looked up in the content index, <code>null</code> if the index can't be used
+     * for this search.
+     */
+    private static byte[] getIndexedBytes(String fileContent, boolean caseSensitive, String encoding, boolean hexMode, byte[] bytes) {
+        if (hexMode) {
+            return bytes;
+        }
+        try {
+            if (caseSensitive) {
+                return fileContent.getBytes(encoding);
+            }
+            // The index folds ASCII letters only, so other letters must be encoded the same way in both cases
+            byte[] lowerCase = fileContent.toLowerCase().getBytes(encoding);
+            byte[] upperCase = fileContent.toUpperCase().getBytes(encoding);
+            return Arrays.equals(ContentIndex.getTrigrams(lowerCase), ContentIndex.getTrigrams(upperCase)) ? lowerCase : null;
+        } catch (UnsupportedEncodingException e) {
+            return null;
+        }
 
     }
 
@@ -184,20 +184,8 @@ public class MoveJob extends AbstractCopyJob {
                     }
 
                     // Only when finished with folder, set destination folder's date to match the original folder one
-                    if (destFile.isFileOperationSupported(FileOperation.CHANGE_DATE)) {
-                        try {
-                            destFile.setLastModifiedDate(file.getLastModifiedDate());
-                        }
-                        catch (IOException e) {
-                            LOGGER.debug("failed to change the date of "+destFile, e);
-                            // Fail silently
-                        }
-                    }
-
-                    // If one file failed to be moved, return false (failure) since this folder could not be moved totally
-                    if (!isFolderEmpty) {
-                        return false;
-                    }
+                    // and delete the folder if it is empty
+                    return completeFolder(file, destFile, isFolderEmpty);
                 } catch (IOException e) {
                     // file.ls() failed
                     int ret = showErrorDialog(errorDialogTitle, Translator.get("cannot_read_folder", file.getName()));
@@ -207,56 +195,77 @@ public class MoveJob extends AbstractCopyJob {
                     // Cancel, skip or close dialog returns false
                     return false;
                 }
-                break;
-            } while(true);
-
-            // Return now if the job was interrupted, so that we do not attempt to delete this folder
-            if (getState() == State.INTERRUPTED) {
-                return false;
-            }
-
-            // finally, delete the empty folder
-            do {		// Loop for retry
-                try  {
-                    file.delete();
-                    return true;
-                } catch(IOException e) {
-                    int ret = showErrorDialog(errorDialogTitle, Translator.get("cannot_delete_folder", file.getAbsolutePath()));
-                    // Retry loops
-                    if (ret == RETRY_ACTION)
-                        continue;
-                    // Cancel, skip or close dialog returns false
-                    return false;
-                }
             } while(true);
         }
         // File is a regular file, move it by copying it to the destination and then deleting it
         else  {
             // if renameTo() was not supported or failed, or if it wasn't possible because of 'append',
             // try the hard way by copying the file first, and then deleting the source file.
-            if (tryCopyFile(file, destFile, append, errorDialogTitle) && getState() != State.INTERRUPTED) {
-                // Delete the source file
-                do {		// Loop for retry
-                    try  {
-                        file.delete();
-                        // All OK
-                        return true;
-                    } catch(IOException e) {
-                        LOGGER.debug("IOException caught", e);
+            return transferFile(file, destFile, append);
+        }
+    }
 
-                        int ret = showErrorDialog(errorDialogTitle, Translator.get("cannot_delete_file", file.getAbsolutePath()));
-                        // Retry loops
-                        if (ret == RETRY_ACTION) {
-                            continue;
-                        }
-                        // Cancel, skip or close dialog returns false
-                        return false;
-                    }
-                } while(true);
+    /**
+     * Deletes the source file once it has been copied to the destination.
+     */
+    @Override
+    protected void completeFileTransfer(AbstractFile file) throws IOException {
+        file.delete();
+    }
+
+    /**
+     * Deletes the source file once it has been copied to the destination, asking the user what to do if it fails.
+     */
+    @Override
+    protected boolean tryCompleteFileTransfer(AbstractFile file) {
+        do {		// Loop for retry
+            try  {
+                file.delete();
+                // All OK
+                return true;
+            } catch(IOException e) {
+                LOGGER.debug("IOException caught", e);
+
+                int ret = showErrorDialog(errorDialogTitle, Translator.get("cannot_delete_file", file.getAbsolutePath()));
+                // Retry loops
+                if (ret == RETRY_ACTION) {
+                    continue;
+                }
+                // Cancel, skip or close dialog returns false
+                return false;
             }
+        } while(true);
+    }
+
+    /**
+     * Sets the destination folder's date and deletes the source folder, if all its files have been moved.
+     */
+    @Override
+    protected boolean tryCompleteFolder(AbstractFile folder, AbstractFile destFolder, boolean allFilesTransferred) {
+        // If one file failed to be moved, return false (failure) since this folder could not be moved totally
+        if (!super.tryCompleteFolder(folder, destFolder, allFilesTransferred)) {
+            return false;
+        }
 
+        // Return now if the job was interrupted, so that we do not attempt to delete this folder
+        if (getState() == State.INTERRUPTED) {
             return false;
         }
+
+        // finally, delete the empty folder
+        do {		// Loop for retry
+            try  {
+                folder.delete();
+                return true;
+            } catch(IOException e) {
+                int ret = showErrorDialog(errorDialogTitle, Translator.get("cannot_delete_folder", folder.getAbsolutePath()));
+                // Retry loops
+                if (ret == RETRY_ACTION)
+                    continue;
+                // Cancel, skip or close dialog returns false
+                return false;
+            }
+        } while(true);
     }
 
     // This job modifies baseDestFolder and its subfolders
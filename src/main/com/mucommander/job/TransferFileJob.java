@@ -22,10 +22,16 @@ package com.mucommander.job;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.mucommander.commons.file.*;
 import com.mucommander.commons.file.impl.adb.AdbFile;
@@ -40,7 +46,9 @@ import com.mucommander.commons.io.ChecksumInputStream;
 import com.mucommander.commons.io.CounterInputStream;
 import com.mucommander.commons.io.FileTransferException;
 import com.mucommander.commons.io.ThroughputLimitInputStream;
+import com.mucommander.commons.io.BufferPool;
 import com.mucommander.commons.io.security.MuProvider;
+import com.mucommander.commons.io.security.MultiMessageDigest;
 import com.mucommander.commons.runtime.OsFamily;
 import com.mucommander.utils.text.Translator;
 import com.mucommander.ui.dialog.file.ProgressDialog;
@@ -79,6 +87,15 @@ public abstract class TransferFileJob extends FileJob {
     /** Has the file currently being processed been skipped ? */
     private boolean currentFileSkipped;
 
+    /** InputStreams of the files being transferred concurrently, see {@link #copyFileConcurrently(AbstractFile, AbstractFile, boolean, TransferByteCounter, TransferByteCounter)} */
+    private final Set<ThroughputLimitInputStream> concurrentStreams = ConcurrentHashMap.newKeySet();
+
+    /** Concurrent InputStreams that have been closed as a result of {@link #skipCurrentFile()} */
+    private final Set<ThroughputLimitInputStream> skippedConcurrentStreams = ConcurrentHashMap.newKeySet();
+
+    /** True while this job is paused, read by threads that register concurrent InputStreams */
+    private volatile boolean concurrentStreamsPaused;
+
     /** If true, all transfers will be checked for integrity: the checksum of the source and destination file will
      *  be calculated and compared to verify they match. */
     private boolean integrityCheckEnabled;
@@ -90,6 +107,15 @@ public abstract class TransferFileJob extends FileJob {
      * possible (to have the minimum impact on transfer speed) and does not need to have a good resitance to collision. */
     private final static String CHECKSUM_VERIFICATION_ALGORITHM = "Adler32";
 
+    /** Local files at least this large are memory-mapped to calculate their checksums */
+    private final static long CHECKSUM_MMAP_THRESHOLD = 4 * 1024 * 1024;
+
+    /** Size of the regions of local files that are memory-mapped at once to calculate their checksums */
+    private final static long CHECKSUM_MMAP_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    /** Size of the buffer used to read files whose checksums are calculated */
+    private final static int CHECKSUM_BUFFER_SIZE = 1024 * 1024;
+
     /**
      * If user changed "Overwrite all readonly" in the question dialog
      */
@@ -153,8 +179,13 @@ public abstract class TransferFileJob extends FileJob {
         // Some file protocols do not provide a getOutputStream() method and require the use of copyRemotelyTo(). Some other
         // may also offer server to server copy which is more efficient than stream copy.
 
+        // Local to local copies are performed by the kernel, using FileChannel#transferTo. This takes precedence over
+        // LocalFile#copyRemotelyTo() which does the same but doesn't report progress.
         boolean copied = false;
-        if (sourceFile.isFileOperationSupported(FileOperation.COPY_REMOTELY)) {
+        if (isLocalTransfer(sourceFile, destFile)) {
+            copyLocalFile(sourceFile, destFile, append);
+            copied = true;
+        } else if (sourceFile.isFileOperationSupported(FileOperation.COPY_REMOTELY)) {
             try {
                 sourceFile.copyRemotelyTo(destFile);
                 copied = true;
@@ -217,6 +248,55 @@ public abstract class TransferFileJob extends FileJob {
             }
         }
 
+        preserveFileAttributes(sourceFile, destFile);
+
+        // This block is executed only if integrity check has been enabled (disabled by default)
+        if (integrityCheckEnabled) {
+            // Indicate that integrity is being checked, the value is reset when the next file starts
+            isCheckingIntegrity = true;
+
+            String sourceChecksum;
+            if (in != null && (in instanceof ChecksumInputStream)) {
+                // The file was copied with a ChecksumInputStream, the checksum is already calculated, simply
+                // retrieve it
+                sourceChecksum = ((ChecksumInputStream)in).getChecksumString();
+            } else {
+                // The file was copied using AbstractFile#copyRemotelyTo(), or the transfer was resumed:
+                // we have to calculate the source file's checksum from scratch.
+                try {
+                    sourceChecksum = calculateChecksum(sourceFile);
+                } catch (Exception e) {
+                    throw new FileTransferException(FileTransferException.READING_SOURCE);
+                }
+            }
+
+            LOGGER.debug("Source checksum= "+sourceChecksum);
+
+            // Calculate the destination file's checksum
+            String destinationChecksum;
+            try {
+                destinationChecksum = calculateChecksum(destFile);
+            } catch(Exception e) {
+                throw new FileTransferException(FileTransferException.READING_DESTINATION);
+            }
+
+            LOGGER.debug("Destination checksum= "+destinationChecksum);
+
+            // Compare both checksums and throw an exception if they don't match
+            if (!sourceChecksum.equals(destinationChecksum)) {
+                throw new FileTransferException(FileTransferException.CHECKSUM_MISMATCH);
+            }
+        }
+    }
+
+    /**
+     * Preserves the source file's date, permissions and, under Mac OS X, its type and creator, as much as the
+     * destination file's protocol allows.
+     *
+     * @param sourceFile source file
+     * @param destFile destination file the source file has been copied to
+     */
+    private void preserveFileAttributes(AbstractFile sourceFile, AbstractFile destFile) {
         // Preserve source file's date
         if (destFile.isFileOperationSupported(FileOperation.CHANGE_DATE)) {
             try {
@@ -249,54 +329,382 @@ public abstract class TransferFileJob extends FileJob {
                 LOGGER.debug("Error while setting Mac OS X file type and creator on destination", e);
             }
         }
+    }
 
-        // This block is executed only if integrity check has been enabled (disabled by default)
-        if (integrityCheckEnabled) {
-            // Indicate that integrity is being checked, the value is reset when the next file starts
-            isCheckingIntegrity = true;
+    /**
+     * Returns <code>true</code> if both the source and destination files are plain local files, i.e. neither archive
+     * entries nor files of another protocol, in which case {@link #copyLocalFile(AbstractFile, AbstractFile, boolean)}
+     * can be used.
+     */
+    private static boolean isLocalTransfer(AbstractFile sourceFile, AbstractFile destFile) {
+        return sourceFile.getTopAncestor() instanceof LocalFile && destFile.getTopAncestor() instanceof LocalFile;
+    }
 
-            String sourceChecksum;
-            if (in != null && (in instanceof ChecksumInputStream)) {
-                // The file was copied with a ChecksumInputStream, the checksum is already calculated, simply
-                // retrieve it
-                sourceChecksum = ((ChecksumInputStream)in).getChecksumString();
-            } else {
-                // The file was copied using AbstractFile#copyRemotelyTo(), or the transfer was resumed:
-                // we have to calculate the source file's checksum from scratch.
-                try {
-                    sourceChecksum = calculateChecksum(sourceFile);
-                } catch (Exception e) {
-                    throw new FileTransferException(FileTransferException.READING_SOURCE);
+    /**
+     * Copies a local file to another local file using {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * which has the kernel move the data without copying it through the Java heap, see
+     * {@link #transferLocalFile(FileChannel, AbstractFile, boolean, ThroughputLimitInputStream, ByteCounter, ByteCounter)}.
+     * The source channel is registered as the current InputStream, so that skipping the file or stopping the job closes
+     * it and interrupts the transfer.
+     *
+     * @param sourceFile local source file
+     * @param destFile local destination file
+     * @param append true to resume the transfer from the current end of the destination file
+     * @throws FileTransferException on transfer error
+     */
+    private void copyLocalFile(AbstractFile sourceFile, AbstractFile destFile, boolean append) throws FileTransferException {
+        FileChannel in = openLocalFileChannel(sourceFile);
+        ThroughputLimitInputStream limiter = (ThroughputLimitInputStream)setCurrentInputStream(Channels.newInputStream(in));
+        try {
+            transferLocalFile(in, destFile, append, limiter, currentFileByteCounter, currentFileSkippedByteCounter);
+        } finally {
+            // Closes the source channel
+            closeCurrentInputStream();
+        }
+    }
+
+    /**
+     * Opens a channel for reading the given local file.
+     *
+     * @param sourceFile local source file
+     * @return a channel to read the file
+     * @throws FileTransferException if the file could not be opened
+     */
+    private static FileChannel openLocalFileChannel(AbstractFile sourceFile) throws FileTransferException {
+        Path sourcePath = ((File)sourceFile.getTopAncestor().getUnderlyingFileObject()).toPath();
+        try {
+            return FileChannel.open(sourcePath, StandardOpenOption.READ);
+        } catch(IOException e) {
+            LOGGER.debug("IOException caught, throwing FileTransferException", e);
+            throw new FileTransferException(FileTransferException.OPENING_SOURCE, e);
+        }
+    }
+
+    /**
+     * Transfers the contents of the given source channel to a local file, in chunks of
+     * {@link LocalFile#CHANNEL_TRANSFER_CHUNK_SIZE} bytes at most. Between chunks, the byte counter is updated and the
+     * given {@link ThroughputLimitInputStream} is consulted, which blocks when the job is paused or when the throughput
+     * limit has been reached.
+     *
+     * @param in channel of the local source file
+     * @param destFile local destination file
+     * @param append true to resume the transfer from the current end of the destination file
+     * @param limiter the InputStream registered for the source channel
+     * @param byteCounter counter increased by the number of bytes transferred
+     * @param skippedByteCounter counter increased by the number of bytes skipped when resuming the transfer
+     * @throws FileTransferException on transfer error
+     */
+    static void transferLocalFile(FileChannel in, AbstractFile destFile, boolean append, ThroughputLimitInputStream limiter,
+                                          ByteCounter byteCounter, ByteCounter skippedByteCounter) throws FileTransferException {
+        Path destPath = ((File)destFile.getTopAncestor().getUnderlyingFileObject()).toPath();
+
+        FileChannel out;
+        try {
+            out = append
+                    ? FileChannel.open(destPath, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+                    : FileChannel.open(destPath, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch(IOException e) {
+            throw new FileTransferException(FileTransferException.OPENING_DESTINATION, e);
+        }
+
+        long position = 0;
+        try {
+            long size = in.size();
+            if (append) {
+                position = out.size();
+                // Increase byte counters by the number of bytes skipped
+                byteCounter.add(position);
+                skippedByteCounter.add(position);
+            }
+
+            while (position < size) {
+                long count = limiter.acquire(Math.min(LocalFile.CHANNEL_TRANSFER_CHUNK_SIZE, size - position));
+                long transferred = in.transferTo(position, count, out);
+                // The source file has been truncated in the meantime
+                if (transferred <= 0) {
+                    break;
                 }
+                position += transferred;
+                byteCounter.add(transferred);
+            }
+        } catch(IOException e) {
+            throw new FileTransferException(FileTransferException.WRITING_DESTINATION, position, e);
+        } finally {
+            // Close channel even if the transfer threw an IOException
+            try {
+                out.close();
+            } catch(IOException e) {
+                throw new FileTransferException(FileTransferException.CLOSING_DESTINATION, e);
             }
+        }
+    }
 
-            LOGGER.debug("Source checksum= "+sourceChecksum);
+    /**
+     * Returns <code>true</code> if {@link #copyFileConcurrently(AbstractFile, AbstractFile, boolean, TransferByteCounter, TransferByteCounter)} can be used to
+     * copy the given file, i.e. if the copy doesn't need any of the features only available to the job's thread:
+     * integrity check and Android devices.
+     *
+     * @param sourceFile source file
+     * @param destFile destination file
+     * @return true if the file can be copied concurrently
+     */
+    boolean canCopyFileConcurrently(AbstractFile sourceFile, AbstractFile destFile) {
+        return !integrityCheckEnabled && !(destFile.getTopAncestor() instanceof AdbFile);
+    }
 
-            // Calculate the destination file's checksum
-            String destinationChecksum;
-            try {
-                destinationChecksum = calculateChecksum(destFile);
-            } catch(Exception e) {
-                throw new FileTransferException(FileTransferException.READING_DESTINATION);
+    /**
+     * Copies the given source file to the specified destination file like {@link #copyFile(AbstractFile, AbstractFile, boolean)}
+     * does, but in a way that allows several files to be copied at the same time by other threads than the job's.
+     * Instead of being accounted in the current file's byte counters, the bytes that are transferred are added to the
+     * given {@link TransferByteCounter}s, which also add them to the {@link #getTotalByteCounter() total byte counters}. The InputStream used by the transfer is paused,
+     * limited and closed along with the job; its throughput limit is the job's limit divided by the number of
+     * transfers going on.
+     *
+     * <p>This method doesn't show any dialog, errors are reported to the caller which can retry the copy in the
+     * job's thread with {@link #tryCopyFile(AbstractFile, AbstractFile, boolean, String)}.</p>
+     *
+     * @param sourceFile source file
+     * @param destFile destination file
+     * @param append append or overwrite
+     * @param byteCounter counter of the bytes transferred, created with {@link #createTransferByteCounter()}
+     * @param skippedByteCounter counter of the bytes skipped when resuming the transfer, created with
+     * {@link #createTransferSkippedByteCounter()}
+     * @return <code>true</code> if the file was copied, <code>false</code> if the transfer was interrupted by the user,
+     * either by stopping the job or by skipping the current file(s)
+     * @throws FileTransferException on transfer error
+     */
+    boolean copyFileConcurrently(AbstractFile sourceFile, AbstractFile destFile, boolean append,
+                                 TransferByteCounter byteCounter, TransferByteCounter skippedByteCounter) throws FileTransferException {
+        if (sourceFile.equalsCanonical(destFile)) {
+            throw new FileTransferException(FileTransferException.SOURCE_AND_DESTINATION_IDENTICAL);
+        }
+
+        ThroughputLimitInputStream in = null;
+        try {
+            if (isLocalTransfer(sourceFile, destFile)) {
+                FileChannel channel = openLocalFileChannel(sourceFile);
+                in = registerConcurrentStream(Channels.newInputStream(channel));
+                transferLocalFile(channel, destFile, append, in, byteCounter, skippedByteCounter);
+            } else {
+                boolean copied = false;
+                if (sourceFile.isFileOperationSupported(FileOperation.COPY_REMOTELY)) {
+                    try {
+                        sourceFile.copyRemotelyTo(destFile);
+                        copied = true;
+                    } catch(IOException e) {
+                        // The file will be copied manually
+                    }
+                }
+
+                if (!copied) {
+                    long inLength = sourceFile.getSize();
+                    try {
+                        long destFileSize = destFile.getSize();
+                        InputStream sourceIn;
+                        if (append && destFileSize > 0) {
+                            sourceIn = sourceFile.getInputStream(destFileSize);
+                            inLength -= destFileSize;
+                            byteCounter.add(destFileSize);
+                            skippedByteCounter.add(destFileSize);
+                        } else {
+                            sourceIn = sourceFile.getInputStream();
+                        }
+                        in = registerConcurrentStream(new CounterInputStream(sourceIn, byteCounter));
+                    } catch(IOException e) {
+                        LOGGER.debug("IOException caught, throwing FileTransferException", e);
+                        throw new FileTransferException(FileTransferException.OPENING_SOURCE, e);
+                    }
+
+                    destFile.copyStream(in, append, inLength);
+                }
             }
+        } catch(FileTransferException e) {
+            if (getState() == State.INTERRUPTED || (in != null && skippedConcurrentStreams.contains(in))) {
+                return false;
+            }
+            throw e;
+        } finally {
+            if (in != null) {
+                unregisterConcurrentStream(in);
+            }
+        }
 
-            LOGGER.debug("Destination checksum= "+destinationChecksum);
+        preserveFileAttributes(sourceFile, destFile);
 
-            // Compare both checksums and throw an exception if they don't match
-            if (!sourceChecksum.equals(destinationChecksum)) {
-                throw new FileTransferException(FileTransferException.CHECKSUM_MISMATCH);
+        return true;
+    }
+
+    /**
+     * Returns a counter for the bytes transferred by {@link #copyFileConcurrently(AbstractFile, AbstractFile, boolean, TransferByteCounter, TransferByteCounter)},
+     * which adds them to the {@link #getTotalByteCounter() total byte counter}.
+     *
+     * @return a new byte counter for a file transferred concurrently
+     */
+    TransferByteCounter createTransferByteCounter() {
+        return new TransferByteCounter(totalByteCounter);
+    }
+
+    /**
+     * Returns a counter for the bytes skipped by {@link #copyFileConcurrently(AbstractFile, AbstractFile, boolean, TransferByteCounter, TransferByteCounter)},
+     * which adds them to the {@link #getTotalSkippedByteCounter() total skipped byte counter}.
+     *
+     * @return a new skipped byte counter for a file transferred concurrently
+     */
+    TransferByteCounter createTransferSkippedByteCounter() {
+        return new TransferByteCounter(totalSkippedByteCounter);
+    }
+
+    /**
+     * Byte counter of a file transferred concurrently, which also adds the bytes it accounts for to one of the job's
+     * total byte counters. The bytes can be removed from the total if the file has to be transferred again.
+     */
+    static class TransferByteCounter extends ByteCounter {
+        private final ByteCounter totalCounter;
+
+        TransferByteCounter(ByteCounter totalCounter) {
+            this.totalCounter = totalCounter;
+        }
+
+        @Override
+        public synchronized void add(long nbBytes) {
+            super.add(nbBytes);
+            totalCounter.add(nbBytes);
+        }
+
+        /**
+         * Removes the bytes accounted for so far from the total byte counter and resets this counter, so that they're
+         * not counted twice when the file is transferred again.
+         */
+        synchronized void cancel() {
+            totalCounter.subtract(getByteCount());
+            reset();
+        }
+    }
+
+    /**
+     * Registers an InputStream used by {@link #copyFileConcurrently(AbstractFile, AbstractFile, boolean, TransferByteCounter, TransferByteCounter)}.
+     *
+     * @param in the InputStream to be used
+     * @return the 'augmented' InputStream using the given stream as the underlying InputStream
+     */
+    private ThroughputLimitInputStream registerConcurrentStream(InputStream in) {
+        ThroughputLimitInputStream stream = new ThroughputLimitInputStream(in, 0);
+        concurrentStreams.add(stream);
+        updateConcurrentStreamsLimit();
+        return stream;
+    }
+
+    /**
+     * Closes and unregisters an InputStream registered with {@link #registerConcurrentStream(InputStream)}.
+     *
+     * @param stream the stream to unregister
+     */
+    private void unregisterConcurrentStream(ThroughputLimitInputStream stream) {
+        concurrentStreams.remove(stream);
+        skippedConcurrentStreams.remove(stream);
+        try {
+            stream.close();
+        } catch(IOException e) {
+            LOGGER.debug("failed to close "+stream, e);
+        }
+        updateConcurrentStreamsLimit();
+    }
+
+    /**
+     * Shares the throughput limit among the concurrent InputStreams, or blocks them if the job is paused.
+     */
+    private void updateConcurrentStreamsLimit() {
+        // Serialized so that the last update always reflects the current paused state
+        synchronized(concurrentStreams) {
+            long limit;
+            if (concurrentStreamsPaused) {
+                limit = 0;
+            } else if (throughputLimit <= 0) {
+                limit = -1;
+            } else {
+                limit = Math.max(1, throughputLimit / Math.max(1, concurrentStreams.size()));
+            }
+
+            for (ThroughputLimitInputStream stream : concurrentStreams) {
+                stream.setThroughputLimit(limit);
             }
         }
     }
 
     private String calculateChecksum(AbstractFile file) throws IOException, NoSuchAlgorithmException {
         currentFileByteCounter.reset();
-        InputStream in = setCurrentInputStream(file.getInputStream());
+        return calculateChecksums(file, MultiMessageDigest.getInstance(CHECKSUM_VERIFICATION_ALGORITHM), false)[0];
+    }
+
+    /**
+     * Calculates the checksums of the given file, reading it only once whatever the number of digests. Local files of
+     * at least {@link #CHECKSUM_MMAP_THRESHOLD} bytes are memory-mapped in chunks, other files are read with a large
+     * buffer.
+     *
+     * <p>If <code>concurrent</code> is <code>false</code>, the file is read as the current file of the job. Otherwise,
+     * the file may be read in another thread than the job's, in the same way as
+     * {@link #copyFileConcurrently(AbstractFile, AbstractFile, boolean, TransferByteCounter, TransferByteCounter)}: the bytes are directly added to the
+     * {@link #getTotalByteCounter() total byte counter}, and reading is paused, limited and interrupted along with the
+     * job.</p>
+     *
+     * @param file the file to read
+     * @param digest the digests to update, reset before use
+     * @param concurrent true if the file is read in a worker thread
+     * @return the checksums of the file as hexadecimal strings, in the order of the digests, <code>null</code> if the
+     * file was read concurrently and was skipped or the job was interrupted
+     * @throws IOException if the file could not be read
+     */
+    String[] calculateChecksums(AbstractFile file, MultiMessageDigest digest, boolean concurrent) throws IOException {
+        digest.reset();
+
+        ThroughputLimitInputStream in = null;
         try {
-            return AbstractFile.calculateChecksum(in, MessageDigest.getInstance(CHECKSUM_VERIFICATION_ALGORITHM));
+            if (file.getTopAncestor() instanceof LocalFile && file.getSize() >= CHECKSUM_MMAP_THRESHOLD) {
+                FileChannel channel = openLocalFileChannel(file);
+                in = concurrent ? registerConcurrentStream(Channels.newInputStream(channel))
+                        : (ThroughputLimitInputStream)setCurrentInputStream(Channels.newInputStream(channel));
+                ByteCounter byteCounter = concurrent ? totalByteCounter : currentFileByteCounter;
+
+                long size = channel.size();
+                long position = 0;
+                while (position < size) {
+                    long count = in.acquire(Math.min(CHECKSUM_MMAP_CHUNK_SIZE, size - position));
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, count);
+                    digest.update(buffer);
+                    position += count;
+                    byteCounter.add(count);
+                }
+            } else {
+                InputStream fileIn = file.getInputStream();
+                in = concurrent ? registerConcurrentStream(new CounterInputStream(fileIn, totalByteCounter))
+                        : (ThroughputLimitInputStream)setCurrentInputStream(fileIn);
+
+                byte buffer[] = BufferPool.getByteArray(CHECKSUM_BUFFER_SIZE);
+                try {
+                    int nbRead;
+                    while ((nbRead = in.read(buffer)) != -1) {
+                        digest.update(buffer, 0, nbRead);
+                    }
+                } finally {
+                    BufferPool.releaseByteArray(buffer);
+                }
+            }
+        } catch(IOException e) {
+            if (concurrent && (getState() == State.INTERRUPTED || (in != null && skippedConcurrentStreams.contains(in)))) {
+                return null;
+            }
+            throw e;
         } finally {
-            closeCurrentInputStream();
+            if (concurrent) {
+                if (in != null) {
+                    unregisterConcurrentStream(in);
+                }
+            } else {
+                closeCurrentInputStream();
+            }
         }
+
+        return digest.digestStrings();
     }
 
     /**
@@ -480,6 +888,16 @@ public abstract class TransferFileJob extends FileJob {
             closeCurrentInputStream();
         }
 
+        // Interrupt the files being transferred concurrently
+        for (ThroughputLimitInputStream stream : concurrentStreams) {
+            skippedConcurrentStreams.add(stream);
+            try {
+                stream.close();
+            } catch(IOException e) {
+                LOGGER.debug("failed to close "+stream, e);
+            }
+        }
+
         // Resume job if currently paused 
         if (getState() == State.PAUSED) {
             setPaused(false);
@@ -576,6 +994,8 @@ public abstract class TransferFileJob extends FileJob {
                 tlin.setThroughputLimit(throughputLimit);
             }
         }
+
+        updateConcurrentStreamsLimit();
     }
 
     /**
@@ -607,6 +1027,14 @@ public abstract class TransferFileJob extends FileJob {
                 closeCurrentInputStream();
             }
         }
+
+        for (ThroughputLimitInputStream stream : concurrentStreams) {
+            try {
+                stream.close();
+            } catch(IOException e) {
+                LOGGER.debug("failed to close "+stream, e);
+            }
+        }
     }
 
 
@@ -622,6 +1050,9 @@ public abstract class TransferFileJob extends FileJob {
             if (tlin != null)
                 tlin.setThroughputLimit(0);
         }
+
+        concurrentStreamsPaused = true;
+        updateConcurrentStreamsLimit();
     }
 
 
@@ -639,6 +1070,9 @@ public abstract class TransferFileJob extends FileJob {
                 tlin.setThroughputLimit(throughputLimit);
             }
         }
+
+        concurrentStreamsPaused = false;
+        updateConcurrentStreamsLimit();
     }
 
 
@@ -40,6 +40,11 @@ import java.util.List;
  * order using {@link com.mucommander.commons.file.AbstractArchiveFile#getEntryIterator()}, to traverse the archive only once
  * and achieve optimal performance.
  *
+ * <p>When concurrent transfers are enabled, the entries of archives that provide random access to them
+ * ({@link AbstractArchiveFile#isConcurrentEntryAccessSupported()}) are decompressed and written by several worker
+ * threads. The job's thread still walks the entries in their natural order, creating folders and resolving collisions
+ * before handing regular files over to the workers.</p>
+ *
  * @author Maxence Bernard
  */
 public class UnpackJob extends AbstractCopyJob {
@@ -182,6 +187,7 @@ public class UnpackJob extends AbstractCopyJob {
         // 'Cast' the file as an archive file
         AbstractArchiveFile archiveFile = file.getAncestor(AbstractArchiveFile.class);
         ArchiveEntryIterator iterator = null;
+        boolean concurrent = isTransferringConcurrently() && isConcurrentArchive(archiveFile);
 
 
         // calculate total size and files count
@@ -313,9 +319,17 @@ System.out.println(file.getAbsolutePath() + " -> " + file.getCanonicalPath());
                     // The entry is wrapped in a ProxyFile to override #getInputStream() and delegate it to
                     // ArchiveFile#getEntryInputStream in order to take advantage of the ArchiveEntryIterator, which for
                     // some archive file implementations (such as TAR) can speed things by an order of magnitude.
-                    if (!tryCopyFile(new ProxiedEntryFile(entryFile, entry, archiveFile, iterator), destFile, append, errorDialogTitle)) {
-                        // !!! we don't need to break the process in this case
-//                        return false;
+                    if (!concurrent) {
+                        if (!tryCopyFile(new ProxiedEntryFile(entryFile, entry, archiveFile, iterator), destFile, append, errorDialogTitle)) {
+                            // !!! we don't need to break the process in this case
+//                            return false;
+                        }
+                    }
+                    // Entries of random access archives are read without the iterator, which only the job's thread
+                    // may use. Scheduling blocks until a worker is available, so the progress, which accounts for the
+                    // entries as they are scheduled, is ahead by the number of workers at most.
+                    else {
+                        transferFile(new ProxiedEntryFile(entryFile, entry, archiveFile, null), destFile, append);
                     }
                 }
             }
@@ -337,6 +351,23 @@ System.out.println(file.getAbsolutePath() + " -> " + file.getCanonicalPath());
         return false;
     }
 
+    /**
+     * Returns <code>true</code> if the entries of the given archive can be extracted concurrently: the archive must
+     * provide random access to its entries, and must not be located inside another archive.
+     */
+    private static boolean isConcurrentArchive(AbstractArchiveFile archiveFile) {
+        return archiveFile.isConcurrentEntryAccessSupported() && archiveFile.getProxiedFile().getParentArchive() == null;
+    }
+
+    /**
+     * Returns <code>true</code>: archives are read by the job's thread, worker threads only extract the entries of
+     * those that can be read concurrently, see {@link #isConcurrentArchive(AbstractArchiveFile)}.
+     */
+    @Override
+    protected boolean isConcurrentSource(AbstractFile file) {
+        return true;
+    }
+
     // This job modifies the base destination folder and its subfolders
     @Override
     protected boolean hasFolderChanged(AbstractFile folder) {
@@ -0,0 +1,213 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2017 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.job.utils;
+
+import com.mucommander.commons.file.AbstractFile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs file transfers on a fixed number of worker threads, limiting the number of transfers that run at the same time
+ * against a given location, i.e. a given {@link com.mucommander.commons.file.FileURL#getRealm() realm}: remote file
+ * protocols share a limited number of connections per server, and a single disk or server doesn't get any faster when
+ * it is hit by more transfers.
+ *
+ * <p>{@link #submit(Runnable, AbstractFile...)} blocks while all workers are busy, so that the thread scheduling the
+ * transfers never gets more than a few files ahead of the workers.</p>
+ */
+public class TransferScheduler {
+
+    private final ExecutorService executor;
+
+    /** Bounds the number of transfers that are running or waiting for a worker */
+    private final Semaphore slots;
+
+    private final int maxTransfersPerLocation;
+
+    /** Bounds the number of running transfers per location, keyed by realm URL */
+    private final Map<String, Semaphore> locationSlots = new ConcurrentHashMap<>();
+
+    /** Number of transfers that have been submitted and are not finished */
+    private final AtomicInteger nbPendingTransfers = new AtomicInteger();
+
+    private final Object completionLock = new Object();
+
+
+    /**
+     * Creates a new scheduler.
+     *
+     * @param name name of the worker threads
+     * @param nbThreads number of worker threads
+     * @param maxTransfersPerLocation maximum number of transfers running at the same time against a location
+     */
+    public TransferScheduler(String name, int nbThreads, int maxTransfersPerLocation) {
+        this(createExecutor(name, nbThreads), nbThreads, maxTransfersPerLocation);
+    }
+
+    /**
+     * Creates a new scheduler running transfers on the given executor.
+     *
+     * @param executor runs the transfers
+     * @param nbSlots number of transfers that can be running or waiting for a worker at the same time
+     * @param maxTransfersPerLocation maximum number of transfers running at the same time against a location
+     */
+    TransferScheduler(ExecutorService executor, int nbSlots, int maxTransfersPerLocation) {
+        this.executor = executor;
+        this.slots = new Semaphore(nbSlots);
+        this.maxTransfersPerLocation = Math.max(1, maxTransfersPerLocation);
+    }
+
+    private static ExecutorService createExecutor(String name, int nbThreads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(nbThreads, r -> {
+            Thread thread = new Thread(r, name + " #" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Schedules the given transfer, blocking until a worker and the locations of the given files are available.
+     *
+     * @param transfer the transfer to run
+     * @param files the files involved in the transfer, typically the source and destination files
+     * @return <code>true</code> if the transfer was scheduled, <code>false</code> if this scheduler has been shut down
+     * @throws InterruptedException if the calling thread was interrupted while waiting
+     */
+    public boolean submit(Runnable transfer, AbstractFile... files) throws InterruptedException {
+        List<Semaphore> acquired = new ArrayList<>(files.length + 1);
+        try {
+            slots.acquire();
+            acquired.add(slots);
+            // Transfers are submitted by a single thread, acquiring locations one after the other cannot deadlock
+            for (AbstractFile file : files) {
+                Semaphore location = getLocationSlots(file);
+                if (!acquired.contains(location)) {
+                    location.acquire();
+                    acquired.add(location);
+                }
+            }
+
+            nbPendingTransfers.incrementAndGet();
+            executor.execute(new ScheduledTransfer(transfer, acquired));
+            return true;
+        } catch (RejectedExecutionException e) {
+            transferFinished();
+            release(acquired);
+            return false;
+        } catch (InterruptedException e) {
+            release(acquired);
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for all submitted transfers to finish, for at most the given amount of time.
+     *
+     * @param timeout maximum time to wait, in milliseconds
+     * @return <code>true</code> if all transfers are finished, <code>false</code> if the timeout elapsed
+     * @throws InterruptedException if the calling thread was interrupted while waiting
+     */
+    public boolean awaitCompletion(long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (completionLock) {
+            long remaining;
+            while (nbPendingTransfers.get() > 0) {
+                remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                completionLock.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the worker threads, transfers that haven't started yet are discarded and no longer count as pending in
+     * {@link #awaitCompletion(long)}.
+     */
+    public void shutdown() {
+        for (Runnable discarded : executor.shutdownNow()) {
+            if (discarded instanceof ScheduledTransfer) {
+                ((ScheduledTransfer)discarded).finish();
+            }
+        }
+    }
+
+    private Semaphore getLocationSlots(AbstractFile file) {
+        return locationSlots.computeIfAbsent(file.getURL().getRealm().toString(false), k -> new Semaphore(maxTransfersPerLocation));
+    }
+
+    private void transferFinished() {
+        if (nbPendingTransfers.decrementAndGet() == 0) {
+            synchronized (completionLock) {
+                completionLock.notifyAll();
+            }
+        }
+    }
+
+    private static void release(List<Semaphore> semaphores) {
+        for (Semaphore semaphore : semaphores) {
+            semaphore.release();
+        }
+    }
+
+
+    /**
+     * A transfer handed over to the executor, holding the slots it acquired until it has run or has been discarded.
+     */
+    private class ScheduledTransfer implements Runnable {
+        private final Runnable transfer;
+        private final List<Semaphore> acquired;
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        ScheduledTransfer(Runnable transfer, List<Semaphore> acquired) {
+            this.transfer = transfer;
+            this.acquired = acquired;
+        }
+
+        @Override
+        public void run() {
+            try {
+                transfer.run();
+            } finally {
+                finish();
+            }
+        }
+
+        /**
+         * Releases the slots and accounts the transfer as finished, only the first time this method is called.
+         */
+        void finish() {
+            if (finished.compareAndSet(false, true)) {
+                release(acquired);
+                transferFinished();
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2017 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.ui.action;
+
+import com.mucommander.commons.runtime.OsFamily;
+import com.mucommander.ui.main.MainFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.ImageIcon;
+import javax.swing.KeyStroke;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the built-in actions, generated at build time by {@link #main(String[])} from
+ * {@link ActionManager#getBuiltinActionDescriptors()}. For each action, the index holds the properties needed to
+ * register it: id, category, default keystrokes, whether it is parameterized and the class name of its descriptor.
+ * Registering actions from the index spares loading the descriptor classes at startup: a descriptor, and its action
+ * class, is only loaded the first time the action's label, icon or instance is requested.
+ *
+ * <p>Default keystrokes differ on Mac OS X, which has an index of its own: the build runs the generator a second time
+ * with the <code>os.name</code> system property set to <code>Mac OS X</code>.</p>
+ *
+ * <p>The index is a UTF-8 text file with one action per line and tab-separated fields, <code>-</code> standing for
+ * a missing value. Keystrokes are stored in the format parsed by {@link KeyStroke#getKeyStroke(String)}.</p>
+ *
+ * @author Oleg Trifonov
+ */
+public final class ActionIndex {
+
+    /** Name of the index resource, relative to this class */
+    static final String INDEX_NAME = "action_index.txt";
+    /** Name of the index resource for Mac OS X, relative to this class */
+    static final String MAC_OS_X_INDEX_NAME = "action_index_macosx.txt";
+
+    private static final String NONE = "-";
+    private static final int NB_FIELDS = 6;
+
+    private static Logger logger;
+
+    private ActionIndex() {
+    }
+
+    /**
+     * Returns the name of the index resource for the current OS.
+     */
+    static String getIndexName() {
+        return OsFamily.getCurrent() == OsFamily.MAC_OS_X ? MAC_OS_X_INDEX_NAME : INDEX_NAME;
+    }
+
+    /**
+     * Reads the index of the current OS and returns descriptors that load the actual descriptors only when they're
+     * needed. Returns <code>null</code> if there is no index, which is the case when running classes that were not
+     * compiled by the build, or if it can't be read.
+     *
+     * @return the descriptors of the built-in actions, <code>null</code> if the index is not available
+     */
+    static List<ActionDescriptor> read() {
+        InputStream in = ActionIndex.class.getResourceAsStream(getIndexName());
+        if (in == null) {
+            return null;
+        }
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return read(reader);
+        } catch (IOException | RuntimeException e) {
+            getLogger().warn("Failed to read the action index, actions are registered from their descriptors", e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #write(List, Writer)}.
+     *
+     * @param reader the index
+     * @return the descriptors of the indexed actions
+     * @throws IOException if the index could not be read or is malformed
+     */
+    static List<ActionDescriptor> read(Reader reader) throws IOException {
+        List<ActionDescriptor> descriptors = new ArrayList<>(200);
+        BufferedReader in = new BufferedReader(reader);
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String fields[] = line.split("\t");
+            if (fields.length != NB_FIELDS) {
+                throw new IOException("Malformed action index line: " + line);
+            }
+            descriptors.add(new IndexedActionDescriptor(
+                    fields[0],
+                    NONE.equals(fields[1]) ? null : ActionCategory.valueOf(fields[1]),
+                    parseKeyStroke(fields[2]),
+                    parseKeyStroke(fields[3]),
+                    Boolean.parseBoolean(fields[4]),
+                    fields[5]));
+        }
+        return descriptors;
+    }
+
+    /**
+     * Writes the index of the given descriptors, whose classes must have a public no-arg constructor.
+     *
+     * @param descriptors the descriptors to index
+     * @param writer where to write the index
+     * @throws IOException if the index could not be written
+     */
+    static void write(List<ActionDescriptor> descriptors, Writer writer) throws IOException {
+        writer.write("# Generated at build time by " + ActionIndex.class.getName() + ", do not edit\n");
+        for (ActionDescriptor descriptor : descriptors) {
+            ActionCategory category = descriptor.getCategory();
+            writer.write(descriptor.getId() + '\t'
+                    + (category == null ? NONE : category.name()) + '\t'
+                    + formatKeyStroke(descriptor.getDefaultKeyStroke()) + '\t'
+                    + formatKeyStroke(descriptor.getDefaultAltKeyStroke()) + '\t'
+                    + descriptor.isParameterized() + '\t'
+                    + descriptor.getClass().getName() + '\n');
+        }
+    }
+
+    private static String formatKeyStroke(KeyStroke keyStroke) {
+        return keyStroke == null ? NONE : keyStroke.toString();
+    }
+
+    private static KeyStroke parseKeyStroke(String value) throws IOException {
+        if (NONE.equals(value)) {
+            return null;
+        }
+        KeyStroke keyStroke = KeyStroke.getKeyStroke(value);
+        if (keyStroke == null) {
+            throw new IOException("Malformed keystroke in the action index: " + value);
+        }
+        return keyStroke;
+    }
+
+    /**
+     * Generates the index of the built-in actions for the current OS.
+     *
+     * @param args the directory of the compiled classes, where the index is written
+     * @throws IOException if the index could not be written
+     */
+    public static void main(String args[]) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: ActionIndex <classes directory>");
+            System.exit(1);
+        }
+        File folder = new File(args[0], ActionIndex.class.getPackage().getName().replace('.', File.separatorChar));
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Could not create " + folder);
+        }
+        File file = new File(folder, getIndexName());
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            write(ActionManager.getBuiltinActionDescriptors(), writer);
+        }
+        System.out.println("Action index written to " + file);
+    }
+
+    private static Logger getLogger() {
+        if (logger == null) {
+            logger = LoggerFactory.getLogger(ActionIndex.class);
+        }
+        return logger;
+    }
+
+
+    /**
+     * Descriptor of an indexed action, which loads the actual descriptor the first time a property that isn't indexed
+     * or the action itself is requested.
+     */
+    private static class IndexedActionDescriptor implements ActionDescriptor {
+        private final String id;
+        private final ActionCategory category;
+        private final KeyStroke defaultKeyStroke;
+        private final KeyStroke defaultAltKeyStroke;
+        private final boolean parameterized;
+        private final String className;
+
+        private volatile ActionDescriptor descriptor;
+
+        IndexedActionDescriptor(String id, ActionCategory category, KeyStroke defaultKeyStroke,
+                                KeyStroke defaultAltKeyStroke, boolean parameterized, String className) {
+            this.id = id;
+            this.category = category;
+            this.defaultKeyStroke = defaultKeyStroke;
+            this.defaultAltKeyStroke = defaultAltKeyStroke;
+            this.parameterized = parameterized;
+            this.className = className;
+        }
+
+        private ActionDescriptor getDescriptor() {
+            ActionDescriptor result = descriptor;
+            if (result == null) {
+                try {
+                    result = Class.forName(className).asSubclass(ActionDescriptor.class).getConstructor().newInstance();
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("couldn't load the descriptor of action: " + id, e);
+                }
+                descriptor = result;
+            }
+            return result;
+        }
+
+        public String getId() { return id; }
+
+        public ActionCategory getCategory() { return category; }
+
+        public KeyStroke getDefaultKeyStroke() { return defaultKeyStroke; }
+
+        public KeyStroke getDefaultAltKeyStroke() { return defaultAltKeyStroke; }
+
+        public boolean isParameterized() { return parameterized; }
+
+        public String getDescription() { return getDescriptor().getDescription(); }
+
+        public String getLabel() { return getDescriptor().getLabel(); }
+
+        public String getLabelKey() { return getDescriptor().getLabelKey(); }
+
+        public ImageIcon getIcon() { return getDescriptor().getIcon(); }
+
+        public String getTooltip() { return getDescriptor().getTooltip(); }
+
+        public MuAction createAction(MainFrame mainFrame, Map<String, Object> properties) {
+            return getDescriptor().createAction(mainFrame, properties);
+        }
+    }
+}
@@ -18,15 +18,25 @@
 
 package com.mucommander.ui.action;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.KeyStroke;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.helpers.DefaultHandler;
 
 import com.mucommander.PlatformManager;
+import com.mucommander.cache.StartupCache;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.FileFactory;
 
@@ -60,6 +70,9 @@ public abstract class ActionKeymapIO extends DefaultHandler  {
     protected static boolean wereActionsModified;
     
     private static ActionKeymapWriter writer = new ActionKeymapWriter();
+
+    /** Key of the parsed keymap in the {@link StartupCache} */
+    private final static String CACHE_KEY = "action_keymap";
     
 	/**
      * Sets the path to the user actions file to be loaded when calling {@link #loadActionKeymap()}.
@@ -143,20 +156,87 @@ public abstract class ActionKeymapIO extends DefaultHandler  {
      * keyboard mapping, but the keyboard mappings customized by the user in the user's action keymap will override
      * the ones from the JAR action keymap.
      *
+     * <p>The user's file is parsed only if it has changed since it was stored in the {@link StartupCache}.
+     *
      * <p>This method must be called before requesting and registering any action.
      */
     public static void loadActionKeymap() throws Exception {
     	// Load user's file if exist
     	AbstractFile actionKeymapFile = getActionsFile();
     	if (actionKeymapFile != null && actionKeymapFile.exists()) {
+    		if (loadCachedActionKeymap(actionKeymapFile)) {
+    			return;
+    		}
+    		StartupCache.Signature signature = StartupCache.sign(CACHE_KEY, actionKeymapFile);
     		ActionKeymapReader reader = new ActionKeymapReader(actionKeymapFile);
     		ActionKeymap.registerActions(reader.getPrimaryActionsKeymap(), reader.getAlternateActionsKeymap());
+    		storeCachedActionKeymap(signature, reader.getPrimaryActionsKeymap(), reader.getAlternateActionsKeymap());
     	} else {
     		createEmptyFile();
     		getLogger().debug(DEFAULT_ACTIONS_FILE_NAME + " was not found, created empty file");
     	}
     }
 
+    /**
+     * Registers the keymap of the given file from the {@link StartupCache}, returns <code>false</code> if it is not
+     * cached or has changed since.
+     */
+    private static boolean loadCachedActionKeymap(AbstractFile file) {
+    	byte[] data = StartupCache.get(CACHE_KEY, file);
+    	if (data == null) {
+    		return false;
+    	}
+    	Map<String, KeyStroke> primary = new LinkedHashMap<>();
+    	Map<String, KeyStroke> alternate = new HashMap<>();
+    	boolean modified;
+    	try {
+    		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+    		modified = in.readBoolean();
+    		int nbActions = in.readInt();
+    		for (int i = 0; i < nbActions; i++) {
+    			String actionId = in.readUTF();
+    			KeyStroke primaryKeyStroke = StartupCache.readKeyStroke(in);
+    			KeyStroke alternateKeyStroke = StartupCache.readKeyStroke(in);
+    			// Actions are registered when the keymap is parsed, an action may have been removed since
+    			if (ActionManager.isActionExist(actionId)) {
+    				primary.put(actionId, primaryKeyStroke);
+    				alternate.put(actionId, alternateKeyStroke);
+    			}
+    		}
+    	} catch (IOException e) {
+    		getLogger().info("Failed to read the cached action keymap", e);
+    		return false;
+    	}
+    	if (modified) {
+    		setModified();
+    	}
+    	ActionKeymap.registerActions(primary, alternate);
+    	return true;
+    }
+
+    /**
+     * Stores the keymap parsed from the user's file in the {@link StartupCache}.
+     *
+     * @param signature the signature of the user's file, taken before parsing it
+     */
+    private static void storeCachedActionKeymap(StartupCache.Signature signature, Map<String, KeyStroke> primary, Map<String, KeyStroke> alternate) {
+    	try {
+    		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    		DataOutputStream out = new DataOutputStream(bout);
+    		out.writeBoolean(wereActionsModified);
+    		out.writeInt(primary.size());
+    		for (Map.Entry<String, KeyStroke> entry : primary.entrySet()) {
+    			out.writeUTF(entry.getKey());
+    			StartupCache.writeKeyStroke(out, entry.getValue());
+    			StartupCache.writeKeyStroke(out, alternate.get(entry.getKey()));
+    		}
+    		out.flush();
+    		StartupCache.put(CACHE_KEY, bout.toByteArray(), signature);
+    	} catch (IOException e) {
+    		getLogger().info("Failed to cache the action keymap", e);
+    	}
+    }
+
 
     private static Logger getLogger() {
         if (logger == null) {
@@ -59,193 +59,214 @@ public class ActionManager {
     /** Pattern to resolve the action ID from action class path */
     private final static Pattern PATTERN = Pattern.compile(".*\\.(.*)?Action");
 
+    /**
+     * Registers the built-in actions. They are registered from the {@link ActionIndex} generated at build time if it
+     * is available, which spares loading their descriptor classes until they're used.
+     */
     public static void registerActions() {
-    	registerAction(new AddBookmarkAction.Descriptor());
-    	registerAction(new AddTabAction.Descriptor());
-    	registerAction(new BatchRenameAction.Descriptor());
-    	registerAction(new BringAllToFrontAction.Descriptor());
-    	registerAction(new CalculateChecksumAction.Descriptor());
-    	registerAction(new ChangeDateAction.Descriptor());
-		registerAction(new ChangeReplicationAction.Descriptor());
-    	registerAction(new ChangeLocationAction.Descriptor());
-    	registerAction(new ChangePermissionsAction.Descriptor());
-    	registerAction(new CheckForUpdatesAction.Descriptor());
-    	registerAction(new CloneTabToOtherPanelAction.Descriptor());
-    	registerAction(new CloseDuplicateTabsAction.Descriptor());
-    	registerAction(new CloseOtherTabsAction.Descriptor());
-    	registerAction(new CloseWindowAction.Descriptor());
-    	registerAction(new CloseTabAction.Descriptor());
-//    	registerAction(new CommandAction.Descriptor());
-    	registerAction(new CompareFoldersAction.Descriptor());
-		registerAction(new CompareFolderFilesAction.Descriptor());
-    	registerAction(new ConnectToServerAction.Descriptor());
-    	registerAction(new CopyAction.Descriptor());
-    	registerAction(new CopyFileBaseNamesAction.Descriptor());
-    	registerAction(new CopyFileNamesAction.Descriptor());
-    	registerAction(new CopyFilePathsAction.Descriptor());
-    	registerAction(new CopyFilesToClipboardAction.Descriptor());
-    	registerAction(new FocusPreviousAction.Descriptor());
-    	registerAction(new FocusNextAction.Descriptor());
-    	registerAction(new DeleteAction.Descriptor());
-    	registerAction(new DonateAction.Descriptor());
-    	registerAction(new DuplicateTabAction.Descriptor());
-    	registerAction(new EditAction.Descriptor());
-    	registerAction(new EditBookmarksAction.Descriptor());
-    	registerAction(new EditCredentialsAction.Descriptor());
-    	registerAction(new EmailAction.Descriptor());
-    	registerAction(new EmptyTrashAction.Descriptor());
-    	registerAction(new ExploreBookmarksAction.Descriptor());
-//    	registerAction(new GarbageCollectAction.Descriptor());
-    	registerAction(new GoBackAction.Descriptor());
-    	registerAction(new GoForwardAction.Descriptor());
-    	registerAction(new GoToDocumentationAction.Descriptor());
-    	registerAction(new GoToForumsAction.Descriptor());
-    	registerAction(new GoToHomeAction.Descriptor());
-    	registerAction(new GoToParentAction.Descriptor());
-    	registerAction(new GoToParentInBothPanelsAction.Descriptor());
-    	registerAction(new GoToParentInOtherPanelAction.Descriptor());
-    	registerAction(new GoToRootAction.Descriptor());
-    	registerAction(new GoToWebsiteAction.Descriptor());
-    	registerAction(new InternalEditAction.Descriptor());
-    	registerAction(new InternalViewAction.Descriptor());
-    	registerAction(new InvertSelectionAction.Descriptor());
-    	registerAction(new LocalCopyAction.Descriptor());
-    	registerAction(new MarkAllAction.Descriptor());
-    	registerAction(new MarkExtensionAction.Descriptor());
-    	registerAction(new MarkGroupAction.Descriptor());
-        registerAction(new MarkNextBlockAction.Descriptor());
-    	registerAction(new MarkNextPageAction.Descriptor());
-        registerAction(new MarkNextRowAction.Descriptor());
-        registerAction(new MarkPreviousBlockAction.Descriptor());
-    	registerAction(new MarkPreviousPageAction.Descriptor());
-        registerAction(new MarkPreviousRowAction.Descriptor());
-    	registerAction(new MarkSelectedFileAction.Descriptor());
-    	registerAction(new MarkToFirstRowAction.Descriptor());
-    	registerAction(new MarkToLastRowAction.Descriptor());
-    	registerAction(new MaximizeWindowAction.Descriptor());
-    	registerAction(new CombineFilesAction.Descriptor());
-    	registerAction(new MinimizeWindowAction.Descriptor());
-    	registerAction(new MkdirAction.Descriptor());
-		registerAction(new MkfileAction.Descriptor());
-    	registerAction(new MoveAction.Descriptor());
-    	registerAction(new MoveTabToOtherPanelAction.Descriptor());
-    	registerAction(new NewWindowAction.Descriptor());
-    	registerAction(new NextTabAction.Descriptor());
-    	registerAction(new OpenAction.Descriptor());
-    	registerAction(new OpenInBothPanelsAction.Descriptor());
-    	registerAction(new OpenInNewTabAction.Descriptor());
-    	registerAction(new OpenInOtherPanelAction.Descriptor());
-        registerAction(new OpenLeftInRightPanelAction.Descriptor());
-        registerAction(new OpenRightInLeftPanelAction.Descriptor());
-//    	registerAction(new OpenLocationAction.Descriptor());
-    	registerAction(new OpenNativelyAction.Descriptor());
-    	registerAction(new OpenTrashAction.Descriptor());
-    	registerAction(new OpenURLInBrowserAction.Descriptor());
-    	registerAction(new PackAction.Descriptor());
-    	registerAction(new PasteClipboardFilesAction.Descriptor());
-    	registerAction(new PermanentDeleteAction.Descriptor());
-    	registerAction(new PopupLeftDriveButtonAction.Descriptor());
-    	registerAction(new PopupRightDriveButtonAction.Descriptor());
-    	registerAction(new PreviousTabAction.Descriptor());
-    	registerAction(new QuitAction.Descriptor());
-    	registerAction(new RecallNextWindowAction.Descriptor());
-    	registerAction(new RecallPreviousWindowAction.Descriptor());
-    	registerAction(new RecallWindow10Action.Descriptor());
-    	registerAction(new RecallWindow1Action.Descriptor());
-    	registerAction(new RecallWindow2Action.Descriptor());
-    	registerAction(new RecallWindow3Action.Descriptor());
-    	registerAction(new RecallWindow4Action.Descriptor());
-    	registerAction(new RecallWindow5Action.Descriptor());
-    	registerAction(new RecallWindow6Action.Descriptor());
-    	registerAction(new RecallWindow7Action.Descriptor());
-    	registerAction(new RecallWindow8Action.Descriptor());
-    	registerAction(new RecallWindow9Action.Descriptor());
-    	registerAction(new RecallWindowAction.Descriptor());
-    	registerAction(new RefreshAction.Descriptor());
-    	registerAction(new RenameAction.Descriptor());
-    	registerAction(new ReportBugAction.Descriptor());
-    	registerAction(new RevealInDesktopAction.Descriptor());
-    	registerAction(new ReverseSortOrderAction.Descriptor());
-    	registerAction(new RunCommandAction.Descriptor());
-        registerAction(new SelectPreviousBlockAction.Descriptor());
-        registerAction(new SelectPreviousPageAction.Descriptor());
-        registerAction(new SelectPreviousRowAction.Descriptor());
-        registerAction(new SelectNextBlockAction.Descriptor());
-        registerAction(new SelectNextPageAction.Descriptor());
-        registerAction(new SelectNextRowAction.Descriptor());
-    	registerAction(new SelectFirstRowAction.Descriptor());
-    	registerAction(new SelectLastRowAction.Descriptor());
-		registerAction(new LeftArrowAction.Descriptor());
-		registerAction(new RightArrowAction.Descriptor());
-    	registerAction(new SetSameFolderAction.Descriptor());
-    	registerAction(new SetTabTitleAction.Descriptor());
-    	registerAction(new ShowAboutAction.Descriptor());
-    	registerAction(new ShowBookmarksQLAction.Descriptor());
-    	registerAction(new CustomizeCommandBarAction.Descriptor());
-        registerAction(new ShowDebugConsoleAction.Descriptor());
-        registerAction(new ShowFilePropertiesAction.Descriptor());
-        registerAction(new ShowFilePopupMenuAction.Descriptor());
-    	registerAction(new ShowKeyboardShortcutsAction.Descriptor());
-    	registerAction(new ShowParentFoldersQLAction.Descriptor());
-    	registerAction(new ShowPreferencesAction.Descriptor());
-    	registerAction(new ShowRecentExecutedFilesQLAction.Descriptor());
-    	registerAction(new ShowRecentLocationsQLAction.Descriptor());
-    	registerAction(new ShowRootFoldersQLAction.Descriptor());
-        registerAction(new ShowRecentViewedFilesQLAction.Descriptor());
-        registerAction(new ShowRecentEditedFilesQLAction.Descriptor());
-    	registerAction(new ShowServerConnectionsAction.Descriptor());
-    	registerAction(new ShowTabsQLAction.Descriptor());
-    	registerAction(new SortByDateAction.Descriptor());
-    	registerAction(new SortByExtensionAction.Descriptor());
-    	registerAction(new SortByGroupAction.Descriptor());
-    	registerAction(new SortByNameAction.Descriptor());
-    	registerAction(new SortByOwnerAction.Descriptor());
-    	registerAction(new SortByPermissionsAction.Descriptor());
-    	registerAction(new SortBySizeAction.Descriptor());
-    	registerAction(new SplitEquallyAction.Descriptor());
-    	registerAction(new SplitFileAction.Descriptor());
-    	registerAction(new SplitHorizontallyAction.Descriptor());
-    	registerAction(new SplitVerticallyAction.Descriptor());
-    	registerAction(new StopAction.Descriptor());
-		registerAction(new ToggleSinglePanelAction.Descriptor());
-    	registerAction(new SwapFoldersAction.Descriptor());
-    	registerAction(new SwitchActiveTableAction.Descriptor());
-    	registerAction(new ToggleAutoSizeAction.Descriptor());
-//    	registerAction(new ToggleColumnAction.Descriptor());
-    	registerAction(new ToggleCommandBarAction.Descriptor());
-    	registerAction(new ToggleDateColumnAction.Descriptor());
-    	registerAction(new ToggleExtensionColumnAction.Descriptor());
-    	registerAction(new ToggleGroupColumnAction.Descriptor());
-    	registerAction(new ToggleHiddenFilesAction.Descriptor());
-    	registerAction(new ToggleLockTabAction.Descriptor());
-    	registerAction(new ToggleOwnerColumnAction.Descriptor());
-    	registerAction(new TogglePermissionsColumnAction.Descriptor());
-    	registerAction(new ToggleShowFoldersFirstAction.Descriptor());
-    	registerAction(new ToggleFoldersAlwaysAlphabeticalAction.Descriptor());
-    	registerAction(new ToggleSizeColumnAction.Descriptor());
-    	registerAction(new ToggleStatusBarAction.Descriptor());
-    	registerAction(new ToggleToolBarAction.Descriptor());
-    	registerAction(new ToggleTreeAction.Descriptor());
-    	registerAction(new UnmarkAllAction.Descriptor());
-    	registerAction(new UnmarkGroupAction.Descriptor());
-    	registerAction(new UnpackAction.Descriptor());
-    	registerAction(new ViewAction.Descriptor());
-        registerAction(new ViewAsAction.Descriptor());
-        registerAction(new TerminalAction.Descriptor());
-        registerAction(new FindFileAction.Descriptor());
-        registerAction(new CalculatorAction.Descriptor());
-        registerAction(new CreateSymlinkAction.Descriptor());
-        registerAction(new LocateSymlinkAction.Descriptor());
-        registerAction(new EditCommandsAction.Descriptor());
-        registerAction(new TerminalPanelAction.Descriptor());
-        registerAction(new ShowFoldersSizeAction.Descriptor());
-		registerAction(new ToggleTableViewModeFullAction.Descriptor());
-		registerAction(new ToggleTableViewModeCompactAction.Descriptor());
-		registerAction(new ToggleTableViewModeShortAction.Descriptor());
-		registerAction(new EjectDriveAction.Descriptor());
-		registerAction(new CompareFilesAction.Descriptor());
-		registerAction(new TogglePanelPreviewModeAction.Descriptor());
-		registerAction(new TextEditorsListAction.Descriptor());
+        List<ActionDescriptor> descriptors = ActionIndex.read();
+        if (descriptors == null) {
+            descriptors = getBuiltinActionDescriptors();
+        }
+        for (ActionDescriptor descriptor : descriptors) {
+            registerAction(descriptor);
+        }
+    }
+
+    /**
+     * Returns the descriptors of the built-in actions, {@link ActionIndex} is generated from this list.
+     *
+     * @return the descriptors of the built-in actions
+     */
+    static List<ActionDescriptor> getBuiltinActionDescriptors() {
+        List<ActionDescriptor> descriptors = new ArrayList<>(200);
+    	descriptors.add(new AddBookmarkAction.Descriptor());
+    	descriptors.add(new AddTabAction.Descriptor());
+    	descriptors.add(new BatchRenameAction.Descriptor());
+    	descriptors.add(new BringAllToFrontAction.Descriptor());
+    	descriptors.add(new CalculateChecksumAction.Descriptor());
+    	descriptors.add(new ChangeDateAction.Descriptor());
+		descriptors.add(new ChangeReplicationAction.Descriptor());
+    	descriptors.add(new ChangeLocationAction.Descriptor());
+    	descriptors.add(new ChangePermissionsAction.Descriptor());
+    	descriptors.add(new CheckForUpdatesAction.Descriptor());
+    	descriptors.add(new CloneTabToOtherPanelAction.Descriptor());
+    	descriptors.add(new CloseDuplicateTabsAction.Descriptor());
+    	descriptors.add(new CloseOtherTabsAction.Descriptor());
+    	descriptors.add(new CloseWindowAction.Descriptor());
+    	descriptors.add(new CloseTabAction.Descriptor());
+//    	descriptors.add(new CommandAction.Descriptor());
+    	descriptors.add(new CompareFoldersAction.Descriptor());
+		descriptors.add(new CompareFolderFilesAction.Descriptor());
+    	descriptors.add(new ConnectToServerAction.Descriptor());
+    	descriptors.add(new CopyAction.Descriptor());
+    	descriptors.add(new CopyFileBaseNamesAction.Descriptor());
+    	descriptors.add(new CopyFileNamesAction.Descriptor());
+    	descriptors.add(new CopyFilePathsAction.Descriptor());
+    	descriptors.add(new CopyFilesToClipboardAction.Descriptor());
+    	descriptors.add(new FocusPreviousAction.Descriptor());
+    	descriptors.add(new FocusNextAction.Descriptor());
+    	descriptors.add(new DeleteAction.Descriptor());
+    	descriptors.add(new DonateAction.Descriptor());
+    	descriptors.add(new DuplicateTabAction.Descriptor());
+    	descriptors.add(new EditAction.Descriptor());
+    	descriptors.add(new EditBookmarksAction.Descriptor());
+    	descriptors.add(new EditCredentialsAction.Descriptor());
+    	descriptors.add(new EmailAction.Descriptor());
+    	descriptors.add(new EmptyTrashAction.Descriptor());
+    	descriptors.add(new ExploreBookmarksAction.Descriptor());
+//    	descriptors.add(new GarbageCollectAction.Descriptor());
+    	descriptors.add(new GoBackAction.Descriptor());
+    	descriptors.add(new GoForwardAction.Descriptor());
+    	descriptors.add(new GoToDocumentationAction.Descriptor());
+    	descriptors.add(new GoToForumsAction.Descriptor());
+    	descriptors.add(new GoToHomeAction.Descriptor());
+    	descriptors.add(new GoToParentAction.Descriptor());
+    	descriptors.add(new GoToParentInBothPanelsAction.Descriptor());
+    	descriptors.add(new GoToParentInOtherPanelAction.Descriptor());
+    	descriptors.add(new GoToRootAction.Descriptor());
+    	descriptors.add(new GoToWebsiteAction.Descriptor());
+    	descriptors.add(new InternalEditAction.Descriptor());
+    	descriptors.add(new InternalViewAction.Descriptor());
+    	descriptors.add(new InvertSelectionAction.Descriptor());
+    	descriptors.add(new LocalCopyAction.Descriptor());
+    	descriptors.add(new MarkAllAction.Descriptor());
+    	descriptors.add(new MarkExtensionAction.Descriptor());
+    	descriptors.add(new MarkGroupAction.Descriptor());
+        descriptors.add(new MarkNextBlockAction.Descriptor());
+    	descriptors.add(new MarkNextPageAction.Descriptor());
+        descriptors.add(new MarkNextRowAction.Descriptor());
+        descriptors.add(new MarkPreviousBlockAction.Descriptor());
+    	descriptors.add(new MarkPreviousPageAction.Descriptor());
+        descriptors.add(new MarkPreviousRowAction.Descriptor());
+    	descriptors.add(new MarkSelectedFileAction.Descriptor());
+    	descriptors.add(new MarkToFirstRowAction.Descriptor());
+    	descriptors.add(new MarkToLastRowAction.Descriptor());
+    	descriptors.add(new MaximizeWindowAction.Descriptor());
+    	descriptors.add(new CombineFilesAction.Descriptor());
+    	descriptors.add(new MinimizeWindowAction.Descriptor());
+    	descriptors.add(new MkdirAction.Descriptor());
+		descriptors.add(new MkfileAction.Descriptor());
+    	descriptors.add(new MoveAction.Descriptor());
+    	descriptors.add(new MoveTabToOtherPanelAction.Descriptor());
+    	descriptors.add(new NewWindowAction.Descriptor());
+    	descriptors.add(new NextTabAction.Descriptor());
+    	descriptors.add(new OpenAction.Descriptor());
+    	descriptors.add(new OpenInBothPanelsAction.Descriptor());
+    	descriptors.add(new OpenInNewTabAction.Descriptor());
+    	descriptors.add(new OpenInOtherPanelAction.Descriptor());
+        descriptors.add(new OpenLeftInRightPanelAction.Descriptor());
+        descriptors.add(new OpenRightInLeftPanelAction.Descriptor());
+//    	descriptors.add(new OpenLocationAction.Descriptor());
+    	descriptors.add(new OpenNativelyAction.Descriptor());
+    	descriptors.add(new OpenTrashAction.Descriptor());
+    	descriptors.add(new OpenURLInBrowserAction.Descriptor());
+    	descriptors.add(new PackAction.Descriptor());
+    	descriptors.add(new PasteClipboardFilesAction.Descriptor());
+    	descriptors.add(new PermanentDeleteAction.Descriptor());
+    	descriptors.add(new PopupLeftDriveButtonAction.Descriptor());
+    	descriptors.add(new PopupRightDriveButtonAction.Descriptor());
+    	descriptors.add(new PreviousTabAction.Descriptor());
+    	descriptors.add(new QuitAction.Descriptor());
+    	descriptors.add(new RecallNextWindowAction.Descriptor());
+    	descriptors.add(new RecallPreviousWindowAction.Descriptor());
+    	descriptors.add(new RecallWindow10Action.Descriptor());
+    	descriptors.add(new RecallWindow1Action.Descriptor());
+    	descriptors.add(new RecallWindow2Action.Descriptor());
+    	descriptors.add(new RecallWindow3Action.Descriptor());
+    	descriptors.add(new RecallWindow4Action.Descriptor());
+    	descriptors.add(new RecallWindow5Action.Descriptor());
+    	descriptors.add(new RecallWindow6Action.Descriptor());
+    	descriptors.add(new RecallWindow7Action.Descriptor());
+    	descriptors.add(new RecallWindow8Action.Descriptor());
+    	descriptors.add(new RecallWindow9Action.Descriptor());
+    	descriptors.add(new RecallWindowAction.Descriptor());
+    	descriptors.add(new RefreshAction.Descriptor());
+    	descriptors.add(new RenameAction.Descriptor());
+    	descriptors.add(new ReportBugAction.Descriptor());
+    	descriptors.add(new RevealInDesktopAction.Descriptor());
+    	descriptors.add(new ReverseSortOrderAction.Descriptor());
+    	descriptors.add(new RunCommandAction.Descriptor());
+        descriptors.add(new SelectPreviousBlockAction.Descriptor());
+        descriptors.add(new SelectPreviousPageAction.Descriptor());
+        descriptors.add(new SelectPreviousRowAction.Descriptor());
+        descriptors.add(new SelectNextBlockAction.Descriptor());
+        descriptors.add(new SelectNextPageAction.Descriptor());
+        descriptors.add(new SelectNextRowAction.Descriptor());
+    	descriptors.add(new SelectFirstRowAction.Descriptor());
+    	descriptors.add(new SelectLastRowAction.Descriptor());
+		descriptors.add(new LeftArrowAction.Descriptor());
+		descriptors.add(new RightArrowAction.Descriptor());
+    	descriptors.add(new SetSameFolderAction.Descriptor());
+    	descriptors.add(new SetTabTitleAction.Descriptor());
+    	descriptors.add(new ShowAboutAction.Descriptor());
+    	descriptors.add(new ShowBookmarksQLAction.Descriptor());
+    	descriptors.add(new CustomizeCommandBarAction.Descriptor());
+        descriptors.add(new ShowDebugConsoleAction.Descriptor());
+        descriptors.add(new ShowFilePropertiesAction.Descriptor());
+        descriptors.add(new ShowFilePopupMenuAction.Descriptor());
+    	descriptors.add(new ShowKeyboardShortcutsAction.Descriptor());
+    	descriptors.add(new ShowParentFoldersQLAction.Descriptor());
+    	descriptors.add(new ShowPreferencesAction.Descriptor());
+    	descriptors.add(new ShowRecentExecutedFilesQLAction.Descriptor());
+    	descriptors.add(new ShowRecentLocationsQLAction.Descriptor());
+    	descriptors.add(new ShowRootFoldersQLAction.Descriptor());
+        descriptors.add(new ShowRecentViewedFilesQLAction.Descriptor());
+        descriptors.add(new ShowRecentEditedFilesQLAction.Descriptor());
+    	descriptors.add(new ShowServerConnectionsAction.Descriptor());
+    	descriptors.add(new ShowTabsQLAction.Descriptor());
+    	descriptors.add(new SortByDateAction.Descriptor());
+    	descriptors.add(new SortByExtensionAction.Descriptor());
+    	descriptors.add(new SortByGroupAction.Descriptor());
+    	descriptors.add(new SortByNameAction.Descriptor());
+    	descriptors.add(new SortByOwnerAction.Descriptor());
+    	descriptors.add(new SortByPermissionsAction.Descriptor());
+    	descriptors.add(new SortBySizeAction.Descriptor());
+    	descriptors.add(new SplitEquallyAction.Descriptor());
+    	descriptors.add(new SplitFileAction.Descriptor());
+    	descriptors.add(new SplitHorizontallyAction.Descriptor());
+    	descriptors.add(new SplitVerticallyAction.Descriptor());
+    	descriptors.add(new StopAction.Descriptor());
+		descriptors.add(new ToggleSinglePanelAction.Descriptor());
+    	descriptors.add(new SwapFoldersAction.Descriptor());
+    	descriptors.add(new SwitchActiveTableAction.Descriptor());
+    	descriptors.add(new ToggleAutoSizeAction.Descriptor());
+//    	descriptors.add(new ToggleColumnAction.Descriptor());
+    	descriptors.add(new ToggleCommandBarAction.Descriptor());
+    	descriptors.add(new ToggleDateColumnAction.Descriptor());
+    	descriptors.add(new ToggleExtensionColumnAction.Descriptor());
+    	descriptors.add(new ToggleGroupColumnAction.Descriptor());
+    	descriptors.add(new ToggleHiddenFilesAction.Descriptor());
+    	descriptors.add(new ToggleLockTabAction.Descriptor());
+    	descriptors.add(new ToggleOwnerColumnAction.Descriptor());
+    	descriptors.add(new TogglePermissionsColumnAction.Descriptor());
+    	descriptors.add(new ToggleShowFoldersFirstAction.Descriptor());
+    	descriptors.add(new ToggleFoldersAlwaysAlphabeticalAction.Descriptor());
+    	descriptors.add(new ToggleSizeColumnAction.Descriptor());
+    	descriptors.add(new ToggleStatusBarAction.Descriptor());
+    	descriptors.add(new ToggleToolBarAction.Descriptor());
+    	descriptors.add(new ToggleTreeAction.Descriptor());
+    	descriptors.add(new UnmarkAllAction.Descriptor());
+    	descriptors.add(new UnmarkGroupAction.Descriptor());
+    	descriptors.add(new UnpackAction.Descriptor());
+    	descriptors.add(new ViewAction.Descriptor());
+        descriptors.add(new ViewAsAction.Descriptor());
+        descriptors.add(new TerminalAction.Descriptor());
+        descriptors.add(new FindFileAction.Descriptor());
+        descriptors.add(new CalculatorAction.Descriptor());
+        descriptors.add(new CreateSymlinkAction.Descriptor());
+        descriptors.add(new LocateSymlinkAction.Descriptor());
+        descriptors.add(new EditCommandsAction.Descriptor());
+        descriptors.add(new TerminalPanelAction.Descriptor());
+        descriptors.add(new ShowFoldersSizeAction.Descriptor());
+		descriptors.add(new ToggleTableViewModeFullAction.Descriptor());
+		descriptors.add(new ToggleTableViewModeCompactAction.Descriptor());
+		descriptors.add(new ToggleTableViewModeShortAction.Descriptor());
+		descriptors.add(new EjectDriveAction.Descriptor());
+		descriptors.add(new CompareFilesAction.Descriptor());
+		descriptors.add(new TogglePanelPreviewModeAction.Descriptor());
+		descriptors.add(new TextEditorsListAction.Descriptor());
+        return descriptors;
     }
 
 	public static void registerCommandsActions() {
@@ -18,7 +18,11 @@
 
 package com.mucommander.ui.action.impl;
 
+import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.runtime.OsFamily;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
 import com.mucommander.ui.action.AbstractActionDescriptor;
 import com.mucommander.ui.action.ActionCategory;
 import com.mucommander.ui.action.ActionDescriptor;
@@ -57,6 +61,16 @@ public class MarkAllAction extends MuAction {
         for (int i=tableModel.getFirstMarkableIndex(); i < nbFiles; i++) {
             tableModel.setFileMarked(i, mark);
         }
+
+        // The size of all the marked folders is calculated at the same time
+        if (mark && MuConfigurations.getPreferences().getVariable(MuPreference.CALCULATE_FOLDER_SIZE_ON_MARK, MuPreferences.DEFAULT_CALCULATE_FOLDER_SIZE_ON_MARK)) {
+            for (int i=tableModel.getFirstMarkableIndex(); i < nbFiles; i++) {
+                AbstractFile file = tableModel.getCachedFileAt(i);
+                if (file.isDirectory()) {
+                    tableModel.startDirectorySizeCalculation(fileTable, file);
+                }
+            }
+        }
         fileTable.repaint();
 
         // Notify registered listeners that currently marked files have changed on the FileTable
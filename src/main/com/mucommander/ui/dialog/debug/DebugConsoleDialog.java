@@ -42,6 +42,7 @@ import javax.swing.ListCellRenderer;
 import javax.swing.ListSelectionModel;
 import javax.swing.SwingUtilities;
 
+import com.mucommander.core.FolderListingCache;
 import com.mucommander.ui.combobox.MuComboBox;
 import com.mucommander.utils.MuLogging;
 import com.mucommander.utils.MuLogging.LogLevel;
@@ -81,6 +82,9 @@ public class DebugConsoleDialog extends FocusDialog implements ActionListener, I
     /** Show active threads tree */
     private JButton activeThreadsButton;
 
+    /** Show cache statistics */
+    private JButton cachesButton;
+
     /** Dialog size constraints */
     private final static Dimension MINIMUM_DIALOG_DIMENSION = new Dimension(600, 400);
 
@@ -119,6 +123,10 @@ public class DebugConsoleDialog extends FocusDialog implements ActionListener, I
         activeThreadsButton.addActionListener(this);
         buttonPanel.add(activeThreadsButton);
 
+        cachesButton = new JButton(i18n("debug_console_dialog.caches"));
+        cachesButton.addActionListener(this);
+        buttonPanel.add(cachesButton);
+
         refreshButton = new JButton(new RefreshAction.Descriptor().getLabel());
         refreshButton.addActionListener(this);
         buttonPanel.add(refreshButton);
@@ -205,7 +213,18 @@ public class DebugConsoleDialog extends FocusDialog implements ActionListener, I
             printThreads(false);
         } else if (source == activeThreadsButton) {
             printThreads(true);
+        } else if (source == cachesButton) {
+            printCaches();
+        }
+    }
+
+    private void printCaches() {
+        DefaultListModel<LoggingEvent> model = (DefaultListModel<LoggingEvent>)loggingEventsList.getModel();
+        model.addElement(buildStringEvent(LogLevel.INFO, "Folder listing cache"));
+        for (String line : FolderListingCache.getStatistics()) {
+            model.addElement(buildStringEvent(LogLevel.FINEST, "     " + line));
         }
+        loggingEventsList.ensureIndexIsVisible(model.getSize() - 1);
     }
 
     private void printThreads(boolean onlyActive) {
@@ -23,16 +23,21 @@ import com.mucommander.commons.file.FileFactory;
 import com.mucommander.commons.file.util.FileSet;
 import com.mucommander.commons.file.util.PathUtils;
 import com.mucommander.commons.io.security.MuProvider;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
+import com.mucommander.conf.MuPreferencesAPI;
 import com.mucommander.job.CalculateChecksumJob;
 import com.mucommander.ui.action.ActionProperties;
 import com.mucommander.ui.action.impl.CalculateChecksumAction;
-import com.mucommander.ui.combobox.MuComboBox;
 import com.mucommander.ui.dialog.DialogToolkit;
 import com.mucommander.ui.layout.YBoxPanel;
 import com.mucommander.ui.main.MainFrame;
 import com.mucommander.ui.text.FilePathField;
 
 import javax.swing.*;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
@@ -44,19 +49,23 @@ import java.io.IOException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.Security;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
 /**
- * This dialog prepares a {@link com.mucommander.job.CalculateChecksumJob} and lets the user choose a checksum
- * algorithm, and a destination for the checksum file.
+ * This dialog prepares a {@link com.mucommander.job.CalculateChecksumJob} and lets the user choose one or several
+ * checksum algorithms, and a destination for the checksum file. When several algorithms are chosen, the checksum file
+ * of each additional algorithm is created next to the first one, with the standard name of the algorithm.
  *
  * @author Maxence Bernard
  */
-public class CalculateChecksumDialog extends JobDialog implements ActionListener, ItemListener {
+public class CalculateChecksumDialog extends JobDialog implements ActionListener, ItemListener, ListSelectionListener {
 
-    private MuComboBox<String> algorithmComboBox = new MuComboBox<>();
+    private JList<String> algorithmList;
     private JRadioButton specificLocationRadioButton;
     private JTextField specificLocationTextField;
     private JButton okButton;
@@ -67,8 +76,11 @@ public class CalculateChecksumDialog extends JobDialog implements ActionListener
     /** Default checksum algorithm (most commonly used) */
     private final static String DEFAULT_ALGORITHM = "MD5";
 
-    /** Last algorithm used, saved after validation of this dialog */
-    private static String lastUsedAlgorithm = DEFAULT_ALGORITHM;
+    /** Last algorithms used, saved after validation of this dialog */
+    private static List<String> lastUsedAlgorithms = Collections.singletonList(DEFAULT_ALGORITHM);
+
+    /** Number of algorithms visible in the list without scrolling */
+    private final static int VISIBLE_ALGORITHMS = 6;
 
     /** Dialog size constraints */
     private final static Dimension MINIMUM_DIALOG_DIMENSION = new Dimension(320,0);
@@ -103,19 +115,30 @@ public class CalculateChecksumDialog extends JobDialog implements ActionListener
         messageDigests = new MessageDigest[algorithmSortedSet.size()];
         algorithmSortedSet.toArray(messageDigests);
 
-        // Add the sorted list of algorithms to a combo box to let the user choose one
-        for (MessageDigest messageDigest : messageDigests) {
-            algorithmComboBox.addItem(messageDigest.getAlgorithm());
+        // Add the sorted list of algorithms to a list to let the user choose one or several of them
+        String algorithms[] = new String[messageDigests.length];
+        for (int i = 0; i < messageDigests.length; i++) {
+            algorithms[i] = messageDigests[i].getAlgorithm();
         }
-
-        // Select the last used algorithm (if any), or the default algorithm
-        algorithmComboBox.setSelectedItem(lastUsedAlgorithm);
-        algorithmComboBox.addItemListener(this);
+        algorithmList = new JList<>(algorithms);
+        algorithmList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        algorithmList.setVisibleRowCount(VISIBLE_ALGORITHMS);
+
+        // Select the last used algorithms (if any), or the default algorithm
+        for (String algorithm : lastUsedAlgorithms) {
+            for (int i = 0; i < algorithms.length; i++) {
+                if (algorithms[i].equals(algorithm)) {
+                    algorithmList.addSelectionInterval(i, i);
+                }
+            }
+        }
+        algorithmList.ensureIndexIsVisible(Math.max(0, algorithmList.getMinSelectionIndex()));
+        algorithmList.addListSelectionListener(this);
 
         FlowLayout flowLayout = new FlowLayout(FlowLayout.LEADING, 0, 0);
         JPanel tempPanel = new JPanel(flowLayout);
         tempPanel.add(new JLabel(i18n("calculate_checksum_dialog.checksum_algorithm")+" : "));
-        tempPanel.add(algorithmComboBox);
+        tempPanel.add(new JScrollPane(algorithmList));
 
         mainPanel.add(tempPanel);
         mainPanel.addSpace(10);
@@ -134,7 +157,7 @@ public class CalculateChecksumDialog extends JobDialog implements ActionListener
         specificLocationRadioButton.addItemListener(this);
         
         // create a path field with auto-completion capabilities
-        specificLocationTextField = new FilePathField(getChecksumFilename(lastUsedAlgorithm));
+        specificLocationTextField = new FilePathField(getChecksumFilename(lastUsedAlgorithms.get(0)));
         specificLocationTextField.setEnabled(false);
         tempPanel.add(specificLocationTextField, BorderLayout.CENTER);
 
@@ -165,7 +188,7 @@ public class CalculateChecksumDialog extends JobDialog implements ActionListener
         getContentPane().add(mainPanel);
 
         // Give initial keyboard focus to the 'Delete' button
-        setInitialFocusComponent(algorithmComboBox);
+        setInitialFocusComponent(algorithmList);
 
         // Call dispose() when dialog is closed
         setDefaultCloseOperation(DISPOSE_ON_CLOSE);
@@ -176,12 +199,17 @@ public class CalculateChecksumDialog extends JobDialog implements ActionListener
     }
 
     /**
-     * Returns the MessageDigest instance corresponding to the currently selected algorithm.
+     * Returns the MessageDigest instances corresponding to the currently selected algorithms.
      *
-     * @return the MessageDigest instance corresponding to the currently selected algorithm.
+     * @return the MessageDigest instances corresponding to the currently selected algorithms.
      */
-    private MessageDigest getSelectedMessageDigest() {
-        return messageDigests[algorithmComboBox.getSelectedIndex()];
+    private MessageDigest[] getSelectedMessageDigests() {
+        int indices[] = algorithmList.getSelectedIndices();
+        MessageDigest digests[] = new MessageDigest[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            digests[i] = messageDigests[indices[i]];
+        }
+        return digests;
     }
 
     /**
@@ -226,9 +254,12 @@ public class CalculateChecksumDialog extends JobDialog implements ActionListener
         if (e.getSource() != okButton) {
             return;
         }
+        MessageDigest digests[] = getSelectedMessageDigests();
+        if (digests.length == 0) {
+            return;
+        }
         try {
-            MessageDigest digest = getSelectedMessageDigest();
-            String algorithm = digest.getAlgorithm();
+            String algorithm = digests[0].getAlgorithm();
             AbstractFile checksumFile;
 
             // Resolve the destination checksum file
@@ -253,12 +284,28 @@ public class CalculateChecksumDialog extends JobDialog implements ActionListener
                 checksumFile = FileFactory.getTemporaryFile(getChecksumFilename(algorithm), true);
             }
 
-            // Save the algorithm that was used for the next time this dialog is invoked
-            lastUsedAlgorithm = algorithm;
+            // The checksum files of the other algorithms are created next to the first one
+            AbstractFile checksumFiles[] = new AbstractFile[digests.length];
+            checksumFiles[0] = checksumFile;
+            List<String> algorithms = new ArrayList<>();
+            algorithms.add(algorithm);
+            for (int i = 1; i < digests.length; i++) {
+                String filename = getChecksumFilename(digests[i].getAlgorithm());
+                AbstractFile folder = specificLocationRadioButton.isSelected() ? checksumFile.getParent() : null;
+                checksumFiles[i] = folder != null ? folder.getDirectChild(filename) : FileFactory.getTemporaryFile(filename, true);
+                algorithms.add(digests[i].getAlgorithm());
+            }
+
+            // Save the algorithms that were used for the next time this dialog is invoked
+            lastUsedAlgorithms = algorithms;
 
             // Start processing files
             ProgressDialog progressDialog = new ProgressDialog(mainFrame, i18n("properties_dialog.calculating"));
-            CalculateChecksumJob job = new CalculateChecksumJob(progressDialog, mainFrame, files, checksumFile, digest);
+            CalculateChecksumJob job = new CalculateChecksumJob(progressDialog, mainFrame, files, checksumFiles, digests);
+            MuPreferencesAPI preferences = MuConfigurations.getPreferences();
+            int threads = preferences.getVariable(MuPreference.CHECKSUM_THREADS, MuPreferences.DEFAULT_CHECKSUM_THREADS);
+            job.setConcurrentFiles(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+                    preferences.getVariable(MuPreference.TRANSFER_THREADS_PER_LOCATION, MuPreferences.DEFAULT_TRANSFER_THREADS_PER_LOCATION));
             progressDialog.start(job);
         } catch (IOException ex) {
             // Note: FileFactory.getTemporaryFile() should never throw an IOException
@@ -279,8 +326,20 @@ public class CalculateChecksumDialog extends JobDialog implements ActionListener
             // Enables/disables the text field when the corresponding radio button's selected state has changed.
             specificLocationTextField.setEnabled(specificLocationRadioButton.isSelected());
             specificLocationTextField.requestFocus();
-        } else if (source == algorithmComboBox) {
-            specificLocationTextField.setText(getChecksumFilename(getSelectedMessageDigest().getAlgorithm()));
         }
     }
+
+
+    //////////////////////////////////////////
+    // ListSelectionListener implementation //
+    //////////////////////////////////////////
+
+    public void valueChanged(ListSelectionEvent e) {
+        // The checksum file name follows the first selected algorithm
+        String algorithm = algorithmList.getSelectedValue();
+        if (algorithm != null) {
+            specificLocationTextField.setText(getChecksumFilename(algorithm));
+        }
+        okButton.setEnabled(algorithm != null);
+    }
 }
@@ -24,6 +24,7 @@ import com.mucommander.commons.file.FileFactory;
 import com.mucommander.commons.file.util.FileSet;
 import com.mucommander.conf.MuConfigurations;
 import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
 import com.mucommander.conf.MuPreferencesAPI;
 import com.mucommander.job.FileJob;
 import com.mucommander.job.FindFileJob;
@@ -88,6 +89,7 @@ public class FindFileDialog extends FocusDialog implements ActionListener, Docum
     private JCheckBox cbIgnoreHidden;
     private JCheckBox cbCaseSensitive;
     private JCheckBox cbSearchHex;
+    private JCheckBox cbUseIndex;
     private JComboBox<String> cbEncoding;
 
     private DefaultListModel<AbstractFile> listModel = new DefaultListModel<>();
@@ -199,6 +201,7 @@ public class FindFileDialog extends FocusDialog implements ActionListener, Docum
         this.cbCaseSensitive = new JCheckBox(i18n("find_dialog.case_sensitive"));
         this.cbIgnoreHidden = new JCheckBox(i18n("find_dialog.ignore_hidden"));
         this.cbSearchHex = new JCheckBox(i18n("find_dialog.search_hex"));
+        this.cbUseIndex = new JCheckBox(i18n("find_dialog.use_index"));
 
         MuPreferencesAPI prefs = MuConfigurations.getPreferences();
         cbSearchSubdirectories.setSelected(prefs.getVariable(MuPreference.FIND_FILE_SUBDIRECTORIES, true));
@@ -206,6 +209,7 @@ public class FindFileDialog extends FocusDialog implements ActionListener, Docum
         cbCaseSensitive.setSelected(prefs.getVariable(MuPreference.FIND_FILE_CASE_SENSITIVE, false));
         cbIgnoreHidden.setSelected(prefs.getVariable(MuPreference.FIND_FILE_IGNORE_HIDDEN, false));
         cbSearchHex.setSelected(prefs.getVariable(MuPreference.FIND_FILE_SEARCH_HEX, false));
+        cbUseIndex.setSelected(prefs.getVariable(MuPreference.FIND_FILE_USE_INDEX, false));
         cbEncoding.setSelectedItem(prefs.getVariable(MuPreference.FIND_FILE_ENCODING, "UTF-8"));
 
         cbSearchHex.addActionListener(e -> setHexMode(cbSearchHex.isSelected()));
@@ -216,6 +220,7 @@ public class FindFileDialog extends FocusDialog implements ActionListener, Docum
         gridPanel.add(cbIgnoreHidden);
         gridPanel.add(cbCaseSensitive);
         gridPanel.add(cbSearchHex);
+        gridPanel.add(cbUseIndex);
 
         compPanel.addRow(gridPanel, 0);
 
@@ -384,6 +389,9 @@ public class FindFileDialog extends FocusDialog implements ActionListener, Docum
         job.setup(edtFileName.getText(), edtText.getText(), cbSearchSubdirectories.isSelected(), cbSearchArchives.isSelected(),
                 cbCaseSensitive.isSelected(), cbIgnoreHidden.isSelected(), cbEncoding.getSelectedItem().toString(),
                 cbSearchHex.isSelected(), cbSearchHex.isSelected() ? edtText.getBytes() : null);
+        job.setParallelism(MuConfigurations.getPreferences().getVariable(MuPreference.FIND_FILE_THREADS,
+                MuPreferences.DEFAULT_FIND_FILE_THREADS));
+        job.setUseIndex(cbUseIndex.isSelected());
         updateResultLabel();
         job.start();
         updateButtons();
@@ -473,6 +481,7 @@ public class FindFileDialog extends FocusDialog implements ActionListener, Docum
         prefs.setVariable(MuPreference.FIND_FILE_IGNORE_HIDDEN, cbIgnoreHidden.isSelected());
         prefs.setVariable(MuPreference.FIND_FILE_SEARCH_HEX, cbSearchHex.isSelected());
         prefs.setVariable(MuPreference.FIND_FILE_SUBDIRECTORIES, cbSearchSubdirectories.isSelected());
+        prefs.setVariable(MuPreference.FIND_FILE_USE_INDEX, cbUseIndex.isSelected());
         prefs.setVariable(MuPreference.FIND_FILE_ENCODING, cbEncoding.getSelectedItem().toString());
 
         super.cancel();
@@ -30,6 +30,10 @@ import com.mucommander.commons.file.archiver.ArchiveFormat;
 import com.mucommander.commons.file.archiver.Archiver;
 import com.mucommander.commons.file.util.FileSet;
 import com.mucommander.commons.file.util.PathUtils;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
+import com.mucommander.conf.MuPreferencesAPI;
 import com.mucommander.desktop.DesktopManager;
 import com.mucommander.job.ArchiveJob;
 import com.mucommander.job.TransferFileJob;
@@ -142,7 +146,12 @@ public class PackDialog extends TransferDestinationDialog implements ItemListene
         // Remember last format used, for next time this dialog is invoked
         lastFormat = formats[formatsComboBox.getSelectedIndex()];
 
-        return new ArchiveJob(progressDialog, mainFrame, files, resolvedDest.getDestinationFile(), lastFormat, Archiver.formatSupportsComment(lastFormat)?commentArea.getText():null);
+        ArchiveJob job = new ArchiveJob(progressDialog, mainFrame, files, resolvedDest.getDestinationFile(), lastFormat, Archiver.formatSupportsComment(lastFormat)?commentArea.getText():null);
+        MuPreferencesAPI preferences = MuConfigurations.getPreferences();
+        int threads = preferences.getVariable(MuPreference.ARCHIVE_COMPRESSION_THREADS, MuPreferences.DEFAULT_ARCHIVE_COMPRESSION_THREADS);
+        job.setCompressionLevel(preferences.getVariable(MuPreference.ARCHIVE_COMPRESSION_LEVEL, MuPreferences.DEFAULT_ARCHIVE_COMPRESSION_LEVEL));
+        job.setCompressionThreads(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        return job;
     }
 
     @Override
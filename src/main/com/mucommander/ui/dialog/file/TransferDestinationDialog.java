@@ -42,6 +42,10 @@ import org.slf4j.LoggerFactory;
 
 import com.mucommander.commons.file.util.FileSet;
 import com.mucommander.commons.file.util.PathUtils;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
+import com.mucommander.job.AbstractCopyJob;
 import com.mucommander.job.TransferFileJob;
 import com.mucommander.ui.dialog.DialogToolkit;
 import com.mucommander.ui.icon.SpinningDial;
@@ -323,6 +327,11 @@ public abstract class TransferDestinationDialog extends JobDialog implements Act
         if (job != null) {
             job.setAutoSkipErrors(skipErrors);
             job.setIntegrityCheckEnabled(verifyIntegrity);
+            if (job instanceof AbstractCopyJob) {
+                ((AbstractCopyJob)job).setConcurrentTransfers(
+                        MuConfigurations.getPreferences().getVariable(MuPreference.TRANSFER_THREADS, MuPreferences.DEFAULT_TRANSFER_THREADS),
+                        MuConfigurations.getPreferences().getVariable(MuPreference.TRANSFER_THREADS_PER_LOCATION, MuPreferences.DEFAULT_TRANSFER_THREADS_PER_LOCATION));
+            }
             progressDialog.start(job);
         }
     }
@@ -18,14 +18,25 @@
 
 package com.mucommander.ui.event;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.function.BooleanSupplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileListingListener;
 import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.file.impl.local.LocalFile;
 import com.mucommander.core.FolderChangeMonitor;
+import com.mucommander.core.FolderListingCache;
 import com.mucommander.core.GlobalLocationHistory;
 import com.mucommander.ui.main.ConfigurableFolderFilter;
 import com.mucommander.ui.main.FolderPanel;
@@ -36,6 +47,9 @@ import com.mucommander.ui.main.FolderPanel;
 public class LocationManager {
 	private static final Logger LOGGER = LoggerFactory.getLogger(LocationManager.class);
 
+    /** Time in milliseconds after which the children of a remote folder are presented while it is still being listed */
+    private static final long PROGRESSIVE_LISTING_DELAY = 250;
+
     /** Contains all registered location listeners, stored as weak references */
     private final WeakHashMap<LocationListener, ?> locationListeners = new WeakHashMap<>();
 
@@ -43,7 +57,7 @@ public class LocationManager {
     private final FolderPanel folderPanel;
 
     /** Current location presented in the FolderPanel */
-    private AbstractFile currentFolder;
+    private volatile AbstractFile currentFolder;
 
     /** Filters out unwanted files when listing folder contents */
 	private final ConfigurableFolderFilter configurableFolderFilter = new ConfigurableFolderFilter();
@@ -69,28 +83,180 @@ public class LocationManager {
      * @param folder the {@link AbstractFile} that is going to be presented in the {@link FolderPanel}
      */
     public void setCurrentFolder(AbstractFile folder, AbstractFile fileToSelect, boolean changeLockedTab) {
+        setCurrentFolder(folder, fileToSelect, changeLockedTab, () -> false);
+    }
+
+    /**
+     * Set the given {@link AbstractFile} as the folder presented in the {@link FolderPanel}.
+     * Remote folders are listed progressively: if the listing takes longer than {@link #PROGRESSIVE_LISTING_DELAY},
+     * the children listed so far are presented and the following ones are added to the table as they are received.
+     * The listing stops as soon as <code>listingCancelled</code> returns <code>true</code>, in which case the children
+     * listed so far are presented.
+     *
+     * <p>When navigating to a remote folder whose listing is in the {@link FolderListingCache}, the cached children
+     * are presented at once and the folder is listed again in the background, the changes being applied to the
+     * file table afterwards.
+     *
+     * @param folder the {@link AbstractFile} that is going to be presented in the {@link FolderPanel}
+     * @param fileToSelect the file to select, <code>null</code> for the default selection
+     * @param changeLockedTab whether to change the presented folder in the currently selected tab although it's locked
+     * @param listingCancelled tells whether the listing of the folder has been cancelled
+     */
+    public void setCurrentFolder(AbstractFile folder, AbstractFile fileToSelect, boolean changeLockedTab, BooleanSupplier listingCancelled) {
     	LOGGER.trace("calling ls()");
+    	ProgressiveListing listing = null;
+    	// Refreshing the current folder always lists it again
+    	FolderListingCache.Listing cachedListing = folder.equals(currentFolder) ? null : FolderListingCache.get(folder);
     	AbstractFile[] children;
 		try {
-			children = folder.ls(configurableFolderFilter);
+			// Local folders are listed along with the attributes of their children, read in one pass
+			if (folder instanceof LocalFile) {
+				children = ((LocalFile)folder).lsWithAttributes(configurableFolderFilter);
+			} else if (cachedListing != null) {
+				children = configurableFolderFilter.filter(cachedListing.getChildren());
+			} else {
+				listing = new ProgressiveListing(folder, fileToSelect, changeLockedTab, listingCancelled);
+				folder.lsStreaming(listing);
+				children = listing.getChildren();
+				if (!listingCancelled.getAsBoolean() && FolderListingCache.isCacheable(folder)) {
+					FolderListingCache.put(folder, listing.getAllChildren());
+				}
+			}
 		} catch (Exception e) {
 			LOGGER.debug("Couldn't ls children of " + folder.getAbsolutePath() + ", error: " + e.getMessage());
-			children = new AbstractFile[0];
+			children = listing == null ? new AbstractFile[0] : listing.getChildren();
 		}
 
-    	folderPanel.setCurrentFolder(folder, children, fileToSelect, changeLockedTab);
+		// Children that have been presented while listing the folder don't need to be presented again
+		if (listing == null || !listing.isPresented()) {
+			folderPanel.setCurrentFolder(folder, children, fileToSelect, changeLockedTab);
+		}
 
     	this.currentFolder = folder;
 
     	// Notify listeners that the location has changed
     	fireLocationChanged(folder.getURL());
 
+    	if (cachedListing != null) {
+    		revalidate(folder, cachedListing);
+    	}
+
     	// After the initial folder is set, initialize the monitoring thread
     	if (folderChangeMonitor == null) {
             folderChangeMonitor = new FolderChangeMonitor(folderPanel);
         }
     }
 
+    /**
+     * Updates the rows of the given children of the presented folder, rather than listing the whole folder again.
+     * The children are read and filtered as they would be by {@link #setCurrentFolder(AbstractFile, AbstractFile, boolean)},
+     * then patched into the {@link FolderPanel}'s file table. This method is only supported for local folders.
+     *
+     * @param folder the presented folder, must be a local folder
+     * @param changedNames names of the children that have been created, deleted or modified
+     */
+    public void applyFolderChanges(AbstractFile folder, Collection<String> changedNames) {
+        AbstractFile[] changedFiles = ((LocalFile)folder.getTopAncestor()).lsWithAttributes(changedNames, configurableFolderFilter);
+        folderPanel.getFileTable().applyFolderChanges(folder, changedNames, changedFiles);
+    }
+
+    /**
+     * Lists the given folder again in the background, stores the listing in the {@link FolderListingCache} and
+     * applies the differences with the cached listing to the {@link FolderPanel}'s file table, if the folder is still
+     * presented.
+     *
+     * @param folder the presented folder
+     * @param cachedListing the cached listing that has been presented
+     */
+    private void revalidate(AbstractFile folder, FolderListingCache.Listing cachedListing) {
+        FolderListingCache.revalidate(() -> {
+            if (!folder.equals(currentFolder)) {
+                return;
+            }
+            AbstractFile[] children;
+            try {
+                children = folder.ls();
+            } catch (Exception e) {
+                LOGGER.debug("Couldn't revalidate the listing of " + folder.getAbsolutePath() + ", error: " + e.getMessage());
+                FolderListingCache.invalidate(folder);
+                return;
+            }
+            FolderListingCache.put(folder, children);
+
+            Collection<String> changedNames = cachedListing.getChangedNames(children);
+            if (changedNames.isEmpty()) {
+                return;
+            }
+            LOGGER.debug(changedNames.size() + " children of " + folder.getAbsolutePath() + " have changed since they were cached");
+            Set<String> names = new HashSet<>(changedNames);
+            List<AbstractFile> changedFiles = new ArrayList<>();
+            for (AbstractFile child : children) {
+                if (names.contains(child.getName()) && configurableFolderFilter.accept(child)) {
+                    changedFiles.add(child);
+                }
+            }
+            folderPanel.getFileTable().applyFolderChanges(folder, changedNames, changedFiles.toArray(new AbstractFile[changedFiles.size()]));
+        });
+    }
+
+    /**
+     * Presents the children of a remote folder in the {@link FolderPanel} while they are being listed. Children are
+     * collected until the listing has taken longer than {@link #PROGRESSIVE_LISTING_DELAY}, so that fast listings
+     * are presented at once like local ones, then each batch is added to the file table as soon as it is received.
+     */
+    private class ProgressiveListing implements FileListingListener {
+        private final AbstractFile folder;
+        private final boolean changeLockedTab;
+        private final BooleanSupplier cancelled;
+        private final long startTime = System.currentTimeMillis();
+        private final List<AbstractFile> children = new ArrayList<>();
+        /** All the children listed so far, not filtered */
+        private final List<AbstractFile> allChildren = new ArrayList<>();
+        /** The file to select once it has been listed, null if it has been or doesn't need to be */
+        private AbstractFile fileToSelect;
+        private boolean presented;
+
+        ProgressiveListing(AbstractFile folder, AbstractFile fileToSelect, boolean changeLockedTab, BooleanSupplier cancelled) {
+            this.folder = folder;
+            this.fileToSelect = fileToSelect;
+            this.changeLockedTab = changeLockedTab;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public boolean childrenListed(AbstractFile batch[]) {
+            Collections.addAll(allChildren, batch);
+            batch = configurableFolderFilter.filter(batch);
+            Collections.addAll(children, batch);
+            if (presented) {
+                folderPanel.getFileTable().addFolderChildren(folder, batch, fileToSelect);
+                if (fileToSelect != null && Arrays.asList(batch).contains(fileToSelect)) {
+                    fileToSelect = null;
+                }
+            } else if (System.currentTimeMillis() - startTime >= PROGRESSIVE_LISTING_DELAY) {
+                AbstractFile currentChildren[] = getChildren();
+                folderPanel.setCurrentFolder(folder, currentChildren, fileToSelect, changeLockedTab);
+                if (fileToSelect != null && Arrays.asList(currentChildren).contains(fileToSelect)) {
+                    fileToSelect = null;
+                }
+                presented = true;
+            }
+            return !cancelled.getAsBoolean();
+        }
+
+        AbstractFile[] getChildren() {
+            return children.toArray(new AbstractFile[children.size()]);
+        }
+
+        AbstractFile[] getAllChildren() {
+            return allChildren.toArray(new AbstractFile[allChildren.size()]);
+        }
+
+        boolean isPresented() {
+            return presented;
+        }
+    }
+
     /**
      * Return the folder presented in the {@link FolderPanel}
      * 
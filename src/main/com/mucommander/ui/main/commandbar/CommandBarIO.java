@@ -18,17 +18,27 @@
 
 package com.mucommander.ui.main.commandbar;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.KeyStroke;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.helpers.DefaultHandler;
 
 import com.mucommander.PlatformManager;
+import com.mucommander.cache.StartupCache;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.FileFactory;
+import com.mucommander.ui.action.ActionManager;
 
 /**
  * This class contains the common things for reading and writing the command-bar actions and modifier.
@@ -69,10 +79,14 @@ public abstract class CommandBarIO extends DefaultHandler {
 	
 	/** Whether the command-bar has been modified and should be saved */
     protected static boolean wasCommandBarModified;
+
+	/** Key of the parsed description file in the {@link StartupCache} */
+	private static final String CACHE_KEY = "command_bar";
 	
 	/**
      * Parses the XML file describing the command bar's buttons and associated actions.
      * If the file doesn't exist yet, it is copied from the default resource file within the JAR.
+     * The file is parsed only if it has changed since it was stored in the {@link StartupCache}.
      *
      * This method must be called before instantiating CommandBar for the first time.
      */
@@ -80,8 +94,12 @@ public abstract class CommandBarIO extends DefaultHandler {
     	// Load user's file if exist
     	AbstractFile commandBarFile = getDescriptionFile();
     	if (commandBarFile != null && commandBarFile.exists()) {
-    		CommandBarReader reader = new CommandBarReader(commandBarFile);
-    		CommandBarAttributes.setAttributes(reader.getActionsRead(), reader.getAlternateActionsRead(), reader.getModifierRead());
+    		if (!loadCachedCommandBar(commandBarFile)) {
+    			StartupCache.Signature signature = StartupCache.sign(CACHE_KEY, commandBarFile);
+    			CommandBarReader reader = new CommandBarReader(commandBarFile);
+    			CommandBarAttributes.setAttributes(reader.getActionsRead(), reader.getAlternateActionsRead(), reader.getModifierRead());
+    			storeCachedCommandBar(signature, reader.getActionsRead(), reader.getAlternateActionsRead(), reader.getModifierRead());
+    		}
     	} else {
     		CommandBarAttributes.restoreDefault();
     		getLogger().debug(DEFAULT_COMMAND_BAR_FILE_NAME + " was not found, using defaults");
@@ -90,6 +108,68 @@ public abstract class CommandBarIO extends DefaultHandler {
     	// initialize the writer after setting the command-bar initial attributes:
     	commandBarWriter = CommandBarWriter.create();
     }
+
+    /**
+     * Sets the command bar attributes of the given file from the {@link StartupCache}, returns <code>false</code> if
+     * they're not cached or the file has changed since.
+     */
+    private static boolean loadCachedCommandBar(AbstractFile file) {
+    	byte[] data = StartupCache.get(CACHE_KEY, file);
+    	if (data == null) {
+    		return false;
+    	}
+    	List<String> actionIds = new ArrayList<>();
+    	List<String> alternateActionIds = new ArrayList<>();
+    	KeyStroke modifier;
+    	boolean modified;
+    	try {
+    		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+    		modified = in.readBoolean();
+    		modifier = StartupCache.readKeyStroke(in);
+    		int nbActions = in.readInt();
+    		for (int i = 0; i < nbActions; i++) {
+    			String actionId = in.readUTF();
+    			String alternateActionId = StartupCache.readString(in);
+    			// An action may have been removed since the file was parsed
+    			if (ActionManager.isActionExist(actionId)) {
+    				actionIds.add(actionId);
+    				alternateActionIds.add(ActionManager.isActionExist(alternateActionId) ? alternateActionId : null);
+    			}
+    		}
+    	} catch (IOException e) {
+    		getLogger().info("Failed to read the cached command bar description", e);
+    		return false;
+    	}
+    	if (modified) {
+    		setModified();
+    	}
+    	CommandBarAttributes.setAttributes(actionIds.toArray(new String[actionIds.size()]),
+    			alternateActionIds.toArray(new String[alternateActionIds.size()]), modifier);
+    	return true;
+    }
+
+    /**
+     * Stores the command bar attributes parsed from the description file in the {@link StartupCache}.
+     *
+     * @param signature the signature of the description file, taken before parsing it
+     */
+    private static void storeCachedCommandBar(StartupCache.Signature signature, String[] actionIds, String[] alternateActionIds, KeyStroke modifier) {
+    	try {
+    		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    		DataOutputStream out = new DataOutputStream(bout);
+    		out.writeBoolean(wasCommandBarModified);
+    		StartupCache.writeKeyStroke(out, modifier);
+    		out.writeInt(actionIds.length);
+    		for (int i = 0; i < actionIds.length; i++) {
+    			out.writeUTF(actionIds[i]);
+    			StartupCache.writeString(out, alternateActionIds[i]);
+    		}
+    		out.flush();
+    		StartupCache.put(CACHE_KEY, bout.toByteArray(), signature);
+    	} catch (IOException e) {
+    		getLogger().info("Failed to cache the command bar description", e);
+    	}
+    }
     
     /**
      * Mark that actions were modified and therefore should be saved.
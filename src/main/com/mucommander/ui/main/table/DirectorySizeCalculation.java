@@ -0,0 +1,88 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2016 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.ui.main.table;
+
+import com.mucommander.commons.file.AbstractFile;
+
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Calculates the size of a directory with {@link DirectorySizeCalculator}. The calculation doesn't hold any thread
+ * while the directory is walked on the calculator's shared pool: its progress is polled by the table model, which
+ * reports the size accounted for so far.
+ *
+ * @author Oleg Trifonov
+ * Created on 09/01/14.
+ */
+public class DirectorySizeCalculation {
+
+    private final AbstractFile path;
+    private final AtomicLong progress = new AtomicLong();
+    private volatile boolean cancelled;
+    private ForkJoinTask<Long> task;
+
+    public DirectorySizeCalculation(AbstractFile path) {
+        this.path = path;
+    }
+
+    /**
+     * Submits the calculation to the calculator's pool.
+     */
+    public void start() {
+        task = DirectorySizeCalculator.submit(path, progress, () -> cancelled);
+    }
+
+    /**
+     * Stops the calculation, the tasks walking the directory stop by themselves.
+     */
+    public void cancel() {
+        cancelled = true;
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Returns <code>true</code> once the size of the directory has been calculated, or the calculation has failed
+     * or been cancelled.
+     *
+     * @return true if the calculation is over
+     */
+    public boolean isDone() {
+        return task.isDone();
+    }
+
+    /**
+     * Returns the size of the directory if the calculation is over, <code>-1</code> if it failed, or the size
+     * accounted for so far otherwise.
+     *
+     * @return the size of the directory
+     */
+    public long getSize() {
+        if (!task.isDone()) {
+            return progress.get();
+        }
+        return task.isCompletedNormally() ? task.join() : -1;
+    }
+
+    public AbstractFile getFile() {
+        return path;
+    }
+
+}
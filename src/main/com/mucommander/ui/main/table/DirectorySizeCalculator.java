@@ -0,0 +1,232 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2017 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.ui.main.table;
+
+import com.mucommander.cache.FastLRUCache;
+import com.mucommander.cache.LRUCache;
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.impl.local.LocalFile;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Calculates the size of directories on a work-stealing pool shared by all the calculations, each sub-directory
+ * being walked by a separate task.
+ *
+ * <p>Local directories are listed with their children's attributes read along, and the result of each directory
+ * is cached: the combined size of its files and the names of its sub-directories. A cached result is used as long
+ * as the date of the directory hasn't changed, so calculating the size of a tree again only costs a read of the
+ * attributes of each directory. Files that are modified in place don't change the date of their directory and are
+ * accounted for with the size they had when the directory was cached.
+ *
+ * <p>Remote directories are listed with {@link AbstractFile#ls()}, the listing of a directory providing the size of
+ * its files, and are not cached.
+ *
+ * @author Oleg Trifonov
+ */
+public class DirectorySizeCalculator {
+
+    /** Maximum number of local directories whose results are cached */
+    private static final int CACHE_CAPACITY = 100000;
+
+    /** Number of directories walked at the same time, directory walks are mostly waiting for I/O */
+    private static final int PARALLELISM = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    /** Results of local directories, keyed by path */
+    private static final LRUCache<String, DirectoryEntry> cache = new FastLRUCache<>(CACHE_CAPACITY);
+
+    private static final ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+
+
+    /**
+     * Starts calculating the size of the given directory and returns the task computing it. Symbolic links found
+     * inside the directory are not followed.
+     *
+     * @param directory the directory to size
+     * @param progress incremented with the size of the files as they are accounted for
+     * @param cancelled tells whether the calculation should stop
+     * @return the task computing the size of the directory
+     */
+    public static ForkJoinTask<Long> submit(AbstractFile directory, AtomicLong progress, BooleanSupplier cancelled) {
+        LocalFile localFile = directory.getAncestor(LocalFile.class);
+        if (localFile != null && localFile.getURL().equals(directory.getURL())) {
+            return pool.submit(new LocalDirectoryTask(Paths.get(localFile.getAbsolutePath()), true, progress, cancelled));
+        }
+        return pool.submit(new DirectoryTask(directory, true, progress, cancelled));
+    }
+
+    /**
+     * Removes all the cached results.
+     */
+    public static void clearCache() {
+        cache.clearAll();
+    }
+
+
+    /**
+     * Cached result of a local directory.
+     */
+    private static class DirectoryEntry {
+        private final long date;
+        private final long filesSize;
+        private final String subdirectories[];
+
+        DirectoryEntry(long date, long filesSize, String subdirectories[]) {
+            this.date = date;
+            this.filesSize = filesSize;
+            this.subdirectories = subdirectories;
+        }
+    }
+
+    /**
+     * Computes the size of a local directory and forks a task for each of its sub-directories.
+     */
+    private static class LocalDirectoryTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final boolean followLinks;
+        private final AtomicLong progress;
+        private final BooleanSupplier cancelled;
+
+        LocalDirectoryTask(Path directory, boolean followLinks, AtomicLong progress, BooleanSupplier cancelled) {
+            this.directory = directory;
+            this.followLinks = followLinks;
+            this.progress = progress;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected Long compute() {
+            if (cancelled.getAsBoolean()) {
+                return 0L;
+            }
+            DirectoryEntry entry;
+            try {
+                entry = getEntry();
+            } catch (IOException | DirectoryIteratorException e) {
+                return 0L;
+            }
+            progress.addAndGet(entry.filesSize);
+
+            List<LocalDirectoryTask> tasks = new ArrayList<>(entry.subdirectories.length);
+            for (String name : entry.subdirectories) {
+                tasks.add(new LocalDirectoryTask(directory.resolve(name), false, progress, cancelled));
+            }
+            long size = entry.filesSize;
+            for (LocalDirectoryTask task : invokeAll(tasks)) {
+                size += task.join();
+            }
+            return size;
+        }
+
+        /**
+         * Returns the cached result of the directory if its date hasn't changed, lists the directory otherwise.
+         */
+        private DirectoryEntry getEntry() throws IOException {
+            LinkOption options[] = followLinks ? new LinkOption[0] : new LinkOption[] {LinkOption.NOFOLLOW_LINKS};
+            long date = Files.readAttributes(directory, BasicFileAttributes.class, options).lastModifiedTime().toMillis();
+            String key = directory.toString();
+            DirectoryEntry entry = cache.get(key);
+            if (entry != null && entry.date == date) {
+                return entry;
+            }
+
+            long filesSize = 0;
+            List<String> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path child : stream) {
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        subdirectories.add(child.getFileName().toString());
+                    } else if (!attributes.isSymbolicLink()) {
+                        filesSize += attributes.size();
+                    }
+                }
+            }
+            entry = new DirectoryEntry(date, filesSize, subdirectories.toArray(new String[subdirectories.size()]));
+            cache.add(key, entry);
+            return entry;
+        }
+    }
+
+    /**
+     * Computes the size of a directory of any file system and forks a task for each of its sub-directories.
+     */
+    private static class DirectoryTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final AbstractFile directory;
+        private final boolean followLinks;
+        private final AtomicLong progress;
+        private final BooleanSupplier cancelled;
+
+        DirectoryTask(AbstractFile directory, boolean followLinks, AtomicLong progress, BooleanSupplier cancelled) {
+            this.directory = directory;
+            this.followLinks = followLinks;
+            this.progress = progress;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected Long compute() {
+            if (cancelled.getAsBoolean() || (!followLinks && directory.isSymlink())) {
+                return 0L;
+            }
+            AbstractFile children[];
+            try {
+                children = directory.ls();
+            } catch (IOException e) {
+                return 0L;
+            }
+            long size = 0;
+            List<DirectoryTask> tasks = new ArrayList<>();
+            for (AbstractFile child : children) {
+                if (child.isDirectory()) {
+                    tasks.add(new DirectoryTask(child, false, progress, cancelled));
+                } else if (!child.isSymlink()) {
+                    size += child.getSize();
+                }
+            }
+            progress.addAndGet(size);
+            for (DirectoryTask task : invokeAll(tasks)) {
+                size += task.join();
+            }
+            return size;
+        }
+    }
+}
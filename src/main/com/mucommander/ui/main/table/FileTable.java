@@ -20,6 +20,8 @@ package com.mucommander.ui.main.table;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.WeakHashMap;
 
@@ -651,6 +653,105 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
         }
     }
 
+    /**
+     * Updates the rows of the given children of the current folder, without reloading the whole folder: rows of
+     * deleted files are removed, rows of created files are inserted at their sorted position and rows of modified
+     * files are updated. The selected file, marked files and scroll position remain the same, unless the selected
+     * file has been deleted in which case the row at the same position is selected.
+     *
+     * <p>The table is updated in the event dispatch thread and this method returns immediately. The changes are
+     * ignored if the current folder has been changed in the meantime.
+     *
+     * @param folder the folder the changes apply to
+     * @param changedNames names of the children that have been created, deleted or modified
+     * @param changedFiles the changed children that currently exist in the folder
+     */
+    public void applyFolderChanges(final AbstractFile folder, final Collection<String> changedNames, final AbstractFile changedFiles[]) {
+        // Attributes of remote files are read in the calling thread rather than in the event dispatch thread
+        final AbstractFile cachedFiles[] = BaseFileTableModel.createCachedFiles(changedFiles);
+        SwingUtilities.invokeLater(() -> {
+            if (!folder.equals(folderPanel.getCurrentFolder())) {
+                return;
+            }
+            // Rows can't be moved while a filename is being edited, reload the folder like it has always been done
+            if (isEditing()) {
+                folderPanel.tryRefreshCurrentFolder();
+                return;
+            }
+            try {
+                AbstractFile selectedFile = getSelectedFile();
+                int selectedIndex = tableModel.getFileIndexAt(currentRow, currentColumn);
+                int nbMarkedFiles = tableModel.getNbMarkedFiles();
+                Rectangle visibleRect = getVisibleRect();
+
+                tableModel.applyFolderChanges(changedNames, cachedFiles);
+
+                int indexToSelect = selectedFile == null ? -1 : tableModel.getFileIndex(selectedFile);
+                if (indexToSelect < 0) {
+                    indexToSelect = Math.min(selectedIndex, tableModel.getFilesCount() - 1);
+                }
+                resizeAndRepaint();
+                scrollRectToVisible(visibleRect);
+                selectFile(indexToSelect);
+
+                AbstractFile newSelectedFile = tableModel.getFileAt(indexToSelect);
+                if (newSelectedFile == null || !newSelectedFile.equals(selectedFile) || changedNames.contains(newSelectedFile.getName())) {
+                    fireSelectedFileChangedEvent();
+                }
+                if (nbMarkedFiles != tableModel.getNbMarkedFiles()) {
+                    fireMarkedFilesChangedEvent();
+                }
+            } catch (Throwable e) {
+                // Never let an exception reach the event dispatch thread, reload the whole folder instead
+                getLogger().warn("Caught exception while updating folder, refreshing it", e);
+                folderPanel.tryRefreshCurrentFolder();
+            }
+        });
+    }
+
+    /**
+     * Adds the given children to the current folder while it is still being listed. The new rows are inserted at
+     * their sorted position, the selected file and marked files remain the same.
+     *
+     * <p>The table is updated in the event dispatch thread and this method returns immediately. The children are
+     * ignored if the current folder has been changed in the meantime.
+     *
+     * @param folder the folder the children belong to
+     * @param children the children that have just been listed
+     * @param fileToSelect the file to select if it is one of the given children, <code>null</code> for none
+     */
+    public void addFolderChildren(final AbstractFile folder, final AbstractFile children[], final AbstractFile fileToSelect) {
+        // Attributes of remote files are read in the calling thread rather than in the event dispatch thread
+        final AbstractFile cachedChildren[] = BaseFileTableModel.createCachedFiles(children);
+        SwingUtilities.invokeLater(() -> {
+            if (!folder.equals(tableModel.getCurrentFolder())) {
+                return;
+            }
+            // Rows can't be moved while a filename is being edited
+            if (isEditing()) {
+                getCellEditor().cancelCellEditing();
+            }
+            try {
+                AbstractFile selectedFile = fileToSelect != null && Arrays.asList(children).contains(fileToSelect) ? fileToSelect : getSelectedFile();
+                Rectangle visibleRect = getVisibleRect();
+
+                tableModel.addFiles(cachedChildren);
+
+                resizeAndRepaint();
+                scrollRectToVisible(visibleRect);
+                if (selectedFile != null) {
+                    selectFile(selectedFile);
+                    if (selectedFile == fileToSelect) {
+                        fireSelectedFileChangedEvent();
+                    }
+                }
+            } catch (Throwable e) {
+                // Never let an exception reach the event dispatch thread
+                getLogger().warn("Caught exception while adding folder children", e);
+            }
+        });
+    }
+
     /**
      * Sets row height based on current cell's font and border, revalidates and repaints this JTable.
      */
@@ -2355,7 +2456,11 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
         }
     }
 
-    void updateSelectedFilesStatusBar() {
+    /**
+     * Updates the status bar's information about the marked files, for instance when the size of marked directories
+     * has changed.
+     */
+    public void updateSelectedFilesStatusBar() {
         mainFrame.getStatusBar().updateSelectedFilesInfo();
     }
 
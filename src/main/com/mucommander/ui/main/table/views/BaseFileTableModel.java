@@ -27,11 +27,12 @@ import com.mucommander.conf.MuConfigurations;
 import com.mucommander.conf.MuPreference;
 import com.mucommander.conf.MuPreferences;
 import com.mucommander.utils.text.SizeFormat;
-import com.mucommander.ui.main.table.CalculateDirectorySizeWorker;
+import com.mucommander.ui.main.table.DirectorySizeCalculation;
 import com.mucommander.ui.main.table.FileTable;
 import com.mucommander.ui.main.table.SortInfo;
 import com.mucommander.ui.quicksearch.QuickSearch;
 
+import javax.swing.Timer;
 import javax.swing.table.AbstractTableModel;
 import java.awt.Cursor;
 import java.util.*;
@@ -44,6 +45,9 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
 
     private static final Cursor WAIT_CURSOR = new Cursor(Cursor.WAIT_CURSOR);
 
+    /** Rate at which the sizes of the directories being calculated are refreshed, in milliseconds */
+    private static final int DIRECTORY_SIZE_REFRESH_RATE_MS = 300;
+
     /** String used as size information for directories */
     public static final String DIRECTORY_SIZE_STRING = "<DIR>";
 
@@ -90,11 +94,17 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
     private boolean fileMarked[];
 
 
-    /** Tasks queue for directory size calculate */
+    /** Directories whose size is being calculated */
     protected final List<AbstractFile> calculateSizeQueue = new LinkedList<>();
 
-    /** Worker to calculate directories sizes */
-    private CalculateDirectorySizeWorker calculateDirectorySizeWorker;
+    /** Calculations of the size of directories, keyed by directory */
+    private final Map<AbstractFile, DirectorySizeCalculation> directorySizeCalculations = new HashMap<>();
+
+    /** Polls the directory size calculations on the event dispatch thread while there are some */
+    private Timer directorySizeTimer;
+
+    /** Tables showing the wait cursor until all directory size calculations have finished */
+    private final Set<FileTable> directorySizeTables = new HashSet<>();
 
     /** True if the table has directories with calculated size */
     protected boolean hasCalculatedDirectories;
@@ -130,6 +140,12 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
      */
     protected abstract void initCellValuesCache();
 
+    /**
+     * Grows the cell cache after files have been added at the end of the cached files, keeping the cached values of
+     * the existing files.
+     */
+    protected abstract void growCellValuesCache();
+
     /**
      * Returns index of file in directory (index of '..' == 0)
      * @param row table row
@@ -207,6 +223,28 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
         }
     }
 
+    /**
+     * Wraps the given files into CachedFile instances, pre-fetching the attributes used by the table renderer unless
+     * the files are local. As reading the attributes of remote files may block, this method must be called before the
+     * files are handed over to the event dispatch thread, and to {@link #addFiles(AbstractFile[])} or
+     * {@link #applyFolderChanges(Collection, AbstractFile[])}.
+     *
+     * @param files the files to wrap
+     * @return the cached files, in the same order
+     */
+    public static AbstractFile[] createCachedFiles(AbstractFile files[]) {
+        AbstractFile cachedFiles[] = new AbstractFile[files.length];
+        for (int i = 0; i < files.length; i++) {
+            AbstractFile file = files[i] instanceof CachedFile ? files[i] : new CachedFile(files[i], true);
+            // Local files are listed with their attributes, see #setCurrentFolder
+            if (!(files[i].getTopAncestor() instanceof LocalFile)) {
+                prefetchCachedFileAttributes(file);
+            }
+            cachedFiles[i] = file;
+        }
+        return cachedFiles;
+    }
+
 
     /**
      * Returns the file located at the given index, not including the parent file.
@@ -419,8 +457,9 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
         this.fileArrayIndex = new int[nbFiles];
 
         // we needn't prefetch local files for performance optimization purposes
-        // in the case of local files the lazy initialization will be enough
-        boolean needPrefetch = nbFiles > 0 && !(children[0] instanceof LocalFile);
+        // in the case of local files the lazy initialization will be enough, and files listed by
+        // LocalFile#lsWithAttributes already have their attributes set
+        boolean needPrefetch = nbFiles > 0 && !(children[0] instanceof LocalFile) && !(children[0] instanceof CachedFile && ((CachedFile)children[0]).getProxiedFile() instanceof LocalFile);
 
         for (int i = 0; i < nbFiles; i++) {
             AbstractFile child = children[i];
@@ -447,6 +486,149 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
         fillCellCache();
     }
 
+    /**
+     * Adds the given children to the current folder, typically while the folder is being listed. The new files are
+     * sorted among themselves and then merged with the rows already in the table, which is much cheaper than sorting
+     * the whole folder again each time a batch of files is added. Rows that are already in the table keep their
+     * marked state.
+     *
+     * @param files the children to add, created with {@link #createCachedFiles(AbstractFile[])}
+     */
+    public synchronized void addFiles(AbstractFile files[]) {
+        int nbAdded = files.length;
+        if (nbAdded == 0) {
+            return;
+        }
+        int nbFiles = cachedFiles.length;
+        int nbNewFiles = nbFiles + nbAdded;
+        AbstractFile newCachedFiles[] = Arrays.copyOf(cachedFiles, nbNewFiles);
+        int newArrayIndex[] = Arrays.copyOf(fileArrayIndex, nbNewFiles);
+
+        for (int i = 0; i < nbAdded; i++) {
+            AbstractFile file = files[i] instanceof CachedFile ? files[i] : new CachedFile(files[i], true);
+            newCachedFiles[nbFiles + i] = file;
+            newArrayIndex[nbFiles + i] = nbFiles + i;
+        }
+        this.cachedFiles = newCachedFiles;
+        this.fileArrayIndex = newArrayIndex;
+        this.fileMarked = Arrays.copyOf(fileMarked, nbNewFiles + (parent == null ? 0 : 1));
+
+        // Sort the new rows, then merge them with the rows that were already sorted
+        this.fileComparator = createFileComparator(sortInfo);
+        sort(nbFiles, nbNewFiles - 1);
+        int mergedArrayIndex[] = new int[nbNewFiles];
+        int i = 0;
+        int j = nbFiles;
+        int k = 0;
+        while (i < nbFiles && j < nbNewFiles) {
+            // Existing rows come first when equal, so that they don't move
+            mergedArrayIndex[k++] = compare(newArrayIndex[j], newArrayIndex[i]) < 0 ? newArrayIndex[j++] : newArrayIndex[i++];
+        }
+        while (i < nbFiles) {
+            mergedArrayIndex[k++] = newArrayIndex[i++];
+        }
+        while (j < nbNewFiles) {
+            mergedArrayIndex[k++] = newArrayIndex[j++];
+        }
+        this.fileComparator = null;
+        this.fileArrayIndex = mergedArrayIndex;
+
+        growCellValuesCache();
+    }
+
+    /**
+     * Patches the current folder's children in place rather than reloading and sorting the whole folder: the children
+     * whose name is in <code>changedNames</code> are removed, then <code>changedFiles</code> are inserted at their
+     * sorted position. The other rows keep their order and marked state, and a file that is removed and inserted
+     * again (i.e. modified) remains marked.
+     *
+     * @param changedNames names of the children that have been created, deleted or modified
+     * @param changedFiles the changed children that currently exist in the folder, created with
+     * {@link #createCachedFiles(AbstractFile[])}
+     */
+    public synchronized void applyFolderChanges(Collection<String> changedNames, AbstractFile changedFiles[]) {
+        Set<String> names = new HashSet<>(changedNames);
+        Set<String> markedNames = new HashSet<>();
+
+        // Compute the new slot of the files that are kept, and unmark the others
+        int nbFiles = cachedFiles.length;
+        int newSlots[] = new int[nbFiles];
+        int nbKept = 0;
+        for (int i = 0; i < nbFiles; i++) {
+            AbstractFile file = cachedFiles[i];
+            if (names.contains(file.getName())) {
+                newSlots[i] = -1;
+                if (fileMarked[i]) {
+                    markedNames.add(file.getName());
+                    updateMarkedTotals(file, false);
+                }
+                synchronized (directorySizes) {
+                    directorySizes.remove(file);
+                }
+                markedDirectories.remove(file);
+            } else {
+                newSlots[i] = nbKept++;
+            }
+        }
+
+        int nbNewFiles = nbKept + changedFiles.length;
+        AbstractFile newCachedFiles[] = new AbstractFile[nbNewFiles];
+        boolean newFileMarked[] = new boolean[nbNewFiles + (parent == null ? 0 : 1)];
+        for (int i = 0; i < nbFiles; i++) {
+            int slot = newSlots[i];
+            if (slot >= 0) {
+                newCachedFiles[slot] = cachedFiles[i];
+                newFileMarked[slot] = fileMarked[i];
+            }
+        }
+
+        // Kept rows remain in the same order, only the slots they point to have changed
+        int newArrayIndex[] = new int[nbNewFiles];
+        int nbSorted = 0;
+        for (int index : fileArrayIndex) {
+            int slot = newSlots[index];
+            if (slot >= 0) {
+                newArrayIndex[nbSorted++] = slot;
+            }
+        }
+
+        this.cachedFiles = newCachedFiles;
+        this.fileMarked = newFileMarked;
+
+        // Insert new files using a binary search for their position, rather than sorting the whole table again
+        FileComparator comparator = createFileComparator(sortInfo);
+        int slot = nbKept;
+        for (AbstractFile child : changedFiles) {
+            AbstractFile file = child instanceof CachedFile ? child : new CachedFile(child, true);
+            cachedFiles[slot] = file;
+
+            int left = 0;
+            int right = nbSorted;
+            while (left < right) {
+                int mid = (left + right) >>> 1;
+                if (comparator.compare(cachedFiles[newArrayIndex[mid]], file) <= 0) {
+                    left = mid + 1;
+                } else {
+                    right = mid;
+                }
+            }
+            System.arraycopy(newArrayIndex, left, newArrayIndex, left + 1, nbSorted - left);
+            newArrayIndex[left] = slot;
+            nbSorted++;
+
+            if (markedNames.contains(file.getName())) {
+                fileMarked[slot] = true;
+                updateMarkedTotals(file, true);
+            }
+            slot++;
+        }
+        this.fileArrayIndex = newArrayIndex;
+
+        // Cell caches are indexed by slot and filled lazily, so they're simply reset
+        initCellValuesCache();
+        fillCellCache();
+    }
+
     /**
      * Returns the date of the current folder, when it was set using {@link #setCurrentFolder(com.mucommander.commons.file.AbstractFile, com.mucommander.commons.file.AbstractFile[])}.
      * In other words, the returned date is a snapshot of the current folder's date which is never updated.
@@ -752,8 +934,18 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
             return;
         }
 
-        AbstractFile file = getCachedFileAt(index);
+        updateMarkedTotals(getCachedFileAt(index), marked);
+
+        fileMarked[fileIndex] = marked;
+    }
 
+    /**
+     * Updates the number and combined size of marked files after the given file has been marked or unmarked.
+     *
+     * @param file the file that has been marked or unmarked
+     * @param marked <code>true</code> if the file has been marked, <code>false</code> if it has been unmarked
+     */
+    private void updateMarkedTotals(AbstractFile file, boolean marked) {
         // Do not call getSize() on directories, it's unnecessary and the value is most likely not cached by CachedFile yet
         long fileSize;
 
@@ -781,8 +973,6 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
 
             nbFilesMarked--;
         }
-
-        fileMarked[fileIndex] = marked;
     }
 
 
@@ -811,7 +1001,9 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
 
 
     /**
-     * Add directory to size calculation and start calculation worker if it doesn't busy
+     * Starts calculating the size of the given directory, along with the directories whose size is already being
+     * calculated.
+     *
      * @param table file table
      * @param file directory to add
      */
@@ -831,56 +1023,84 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
             }
             calculateSizeQueue.add(file);
         }
-        if (calculateDirectorySizeWorker == null) {
-            processNextQueuedFile(table);
+        DirectorySizeCalculation calculation = new DirectorySizeCalculation(file);
+        synchronized (directorySizeCalculations) {
+            directorySizeCalculations.put(file, calculation);
+        }
+        table.getParent().setCursor(WAIT_CURSOR);
+        directorySizeTables.add(table);
+        calculation.start();
+        if (directorySizeTimer == null) {
+            directorySizeTimer = new Timer(DIRECTORY_SIZE_REFRESH_RATE_MS, e -> refreshDirectorySizes());
         }
+        directorySizeTimer.start();
     }
 
-
-
     /**
-     * Takes a first ask for queue and starts calculation worker
-     * @param table file table
+     * Called by the refresh timer on the event dispatch thread. Updates the map of directory sizes with the progress
+     * of the calculations, repaints the tables and stops the timer once all calculations have finished.
      */
-    private void processNextQueuedFile(FileTable table) {
-        AbstractFile nextFile;
-        synchronized (calculateSizeQueue) {
-            nextFile = calculateSizeQueue.isEmpty() ? null : calculateSizeQueue.remove(0);
+    private void refreshDirectorySizes() {
+        List<DirectorySizeCalculation> calculations;
+        synchronized (directorySizeCalculations) {
+            calculations = new ArrayList<>(directorySizeCalculations.values());
+        }
+        for (DirectorySizeCalculation calculation : calculations) {
+            boolean finish = calculation.isDone();
+            addProcessedDirectory(calculation, calculation.getSize(), finish);
+        }
+
+        boolean allFinished;
+        synchronized (directorySizeCalculations) {
+            allFinished = directorySizeCalculations.isEmpty();
+        }
+        if (!calculations.isEmpty()) {
+            fillCellCache();
+        }
+        for (FileTable table : directorySizeTables) {
+            table.repaint();
+            table.updateSelectedFilesStatusBar();
+            if (allFinished) {
+                table.getParent().setCursor(Cursor.getDefaultCursor());
             }
-        if (nextFile == null) {
-            calculateDirectorySizeWorker = null;
-            table.getParent().setCursor(Cursor.getDefaultCursor());
-        } else {
-            calculateDirectorySizeWorker = new CalculateDirectorySizeWorker(this, table, nextFile);
-            table.getParent().setCursor(WAIT_CURSOR);
-            calculateDirectorySizeWorker.execute();
+        }
+        if (allFinished) {
+            directorySizeTables.clear();
+            directorySizeTimer.stop();
         }
     }
 
     /**
-     * Called from size-calculation worker after it finish or requests to repaint table.
-     * Updates map of directory sizes and starts next task if worker finished
+     * Updates the map of directory sizes with the size calculated so far for the given directory.
      *
-     * @param path directory to process
-     * @param table file table
+     * @param calculation the calculation of the directory size
      * @param size calculated directory size
-     * @param finish true if worker completely finish task, false if it will just repaint table
+     * @param finish true if the calculation is over
      */
-    public void addProcessedDirectory(AbstractFile path, FileTable table, long size, boolean finish) {
+    private void addProcessedDirectory(DirectorySizeCalculation calculation, long size, boolean finish) {
+        AbstractFile path = calculation.getFile();
+        synchronized (directorySizeCalculations) {
+            // Sizes of calculations that have been stopped are ignored
+            if (directorySizeCalculations.get(path) != calculation) {
+                return;
+            }
+            if (finish) {
+                directorySizeCalculations.remove(path);
+            }
+        }
         synchronized (directorySizes) {
             directorySizes.put(path, size);
         }
-        synchronized (calculateSizeQueue) {
-            calculateSizeQueue.remove(path);
-        }
         if (finish) {
-            processNextQueuedFile(table);
+            synchronized (calculateSizeQueue) {
+                calculateSizeQueue.remove(path);
+            }
         }
     }
 
 
     /**
-     * Stops directory calculation, clears calculated size ant tasks queue, interrupts currently executed worker if exists
+     * Stops directory calculation, clears calculated size ant tasks queue, cancels the calculations being executed
      */
     private void stopSizeCalculation() {
         synchronized (directorySizes) {
@@ -889,11 +1109,11 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
         synchronized (calculateSizeQueue) {
             calculateSizeQueue.clear();
         }
-        if (calculateDirectorySizeWorker != null) {
-            try {
-                calculateDirectorySizeWorker.cancel(true);
-            } catch (Exception ignore) { }
-            calculateDirectorySizeWorker = null;
+        synchronized (directorySizeCalculations) {
+            for (DirectorySizeCalculation calculation : directorySizeCalculations.values()) {
+                calculation.cancel();
+            }
+            directorySizeCalculations.clear();
         }
         synchronized (this) {
             markedDirectories.clear();
@@ -934,11 +1154,16 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
 //    }
 
 
-    public AbstractFile getCurrentCalculatedSizeDirectory() {
-        if (calculateDirectorySizeWorker != null) {
-            return calculateDirectorySizeWorker.getFile();
+    /**
+     * Returns <code>true</code> if the size of the given directory is being calculated.
+     *
+     * @param file the directory to test
+     * @return <code>true</code> if the size of the directory is being calculated
+     */
+    public boolean isDirectorySizeCalculated(AbstractFile file) {
+        synchronized (directorySizeCalculations) {
+            return directorySizeCalculations.containsKey(file);
         }
-        return null;
     }
 
 
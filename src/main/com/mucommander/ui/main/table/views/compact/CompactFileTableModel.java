@@ -20,6 +20,8 @@ package com.mucommander.ui.main.table.views.compact;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.ui.main.table.views.BaseFileTableModel;
 
+import java.util.Arrays;
+
 
 /**
  * @author Oleg Trifonov
@@ -106,6 +108,11 @@ public class CompactFileTableModel extends BaseFileTableModel {
         this.cellValuesCache = new String[getFileCount()];
     }
 
+    @Override
+    protected void growCellValuesCache() {
+        this.cellValuesCache = Arrays.copyOf(cellValuesCache, getFileCount());
+    }
+
     @Override
     public int getRowCount() {
         return visibleRows;
@@ -107,7 +107,7 @@ public class FileTableCellRenderer extends BaseCellRenderer {
             debug("tableModel.getCachedFileAtRow( " + row + ") RETURNED NULL !");
             return null;
         }
-        boolean isCalculatedSizeDir = file.isDirectory() && tableModel.getCurrentCalculatedSizeDirectory() == file;
+        boolean isCalculatedSizeDir = file.isDirectory() && tableModel.isDirectorySizeCalculated(file);
 
         final QuickSearch search = this.table.getQuickSearch();
 
@@ -24,6 +24,8 @@ import com.mucommander.utils.text.SizeFormat;
 import com.mucommander.ui.main.table.Column;
 import com.mucommander.ui.main.table.views.BaseFileTableModel;
 
+import java.util.Arrays;
+
 
 /**
  * This class maps table cells onto file attributes.
@@ -60,6 +62,15 @@ public class FileTableModel extends BaseFileTableModel {
         this.cellValuesCache = new Object[getRowCount()][Column.values().length-1];
     }
 
+    @Override
+    protected void growCellValuesCache() {
+        int oldLength = cellValuesCache.length;
+        this.cellValuesCache = Arrays.copyOf(cellValuesCache, getRowCount());
+        for (int i = oldLength; i < cellValuesCache.length; i++) {
+            cellValuesCache[i] = new Object[Column.values().length-1];
+        }
+    }
+
 
     /**
      * Retrieves all cell values and stores them in an array for fast access.
@@ -19,16 +19,24 @@
 package com.mucommander.ui.main.toolbar;
 
 import com.mucommander.PlatformManager;
+import com.mucommander.cache.StartupCache;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.FileFactory;
+import com.mucommander.ui.action.ActionManager;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.helpers.DefaultHandler;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 
@@ -62,22 +70,85 @@ public abstract class ToolBarIO extends DefaultHandler {
     
     /** Whether the command-bar has been modified and should be saved */
     static boolean wasToolBarModified;
+
+    /** Key of the parsed description file in the {@link StartupCache} */
+    private static final String CACHE_KEY = "toolbar";
     
     /**
-     * Parses the XML file describing the toolbar's buttons and associated actions.
+     * Parses the XML file describing the toolbar's buttons and associated actions, unless it hasn't changed since
+     * it was stored in the {@link StartupCache}.
      * If the file doesn't exist, default toolbar elements will be used.
      */
     public static void loadDescriptionFile() throws Exception {
     	AbstractFile descriptionFile = getDescriptionFile();
         if (descriptionFile != null && descriptionFile.exists()) {
-        	ToolBarReader reader = new ToolBarReader(descriptionFile);
-        	ToolBarAttributes.setActions(reader.getActionsRead());
+            String[] actionIds = loadCachedActions(descriptionFile);
+            if (actionIds == null) {
+                StartupCache.Signature signature = StartupCache.sign(CACHE_KEY, descriptionFile);
+                ToolBarReader reader = new ToolBarReader(descriptionFile);
+                actionIds = reader.getActionsRead();
+                storeCachedActions(signature, actionIds);
+            }
+        	ToolBarAttributes.setActions(actionIds);
         } else {
             getLogger().debug("User toolbar.xml was not found, using default toolbar");
         }
         
         toolBarWriter = ToolBarWriter.create();
     }
+
+    /**
+     * Returns the actions of the given description file from the {@link StartupCache}, <code>null</code> if they're
+     * not cached or the file has changed since.
+     */
+    private static String[] loadCachedActions(AbstractFile file) {
+        byte[] data = StartupCache.get(CACHE_KEY, file);
+        if (data == null) {
+            return null;
+        }
+        List<String> actionIds = new ArrayList<>();
+        boolean modified;
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            modified = in.readBoolean();
+            int nbActions = in.readInt();
+            for (int i = 0; i < nbActions; i++) {
+                String actionId = StartupCache.readString(in);
+                // Separators are null, an action may have been removed since the file was parsed
+                if (actionId == null || ActionManager.isActionExist(actionId)) {
+                    actionIds.add(actionId);
+                }
+            }
+        } catch (IOException e) {
+            getLogger().info("Failed to read the cached toolbar description", e);
+            return null;
+        }
+        if (modified) {
+            setModified();
+        }
+        return actionIds.toArray(new String[actionIds.size()]);
+    }
+
+    /**
+     * Stores the actions parsed from the description file in the {@link StartupCache}.
+     *
+     * @param signature the signature of the description file, taken before parsing it
+     */
+    private static void storeCachedActions(StartupCache.Signature signature, String[] actionIds) {
+        try {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bout);
+            out.writeBoolean(wasToolBarModified);
+            out.writeInt(actionIds.length);
+            for (String actionId : actionIds) {
+                StartupCache.writeString(out, actionId);
+            }
+            out.flush();
+            StartupCache.put(CACHE_KEY, bout.toByteArray(), signature);
+        } catch (IOException e) {
+            getLogger().info("Failed to cache the toolbar description", e);
+        }
+    }
     
     /**
      * Writes the current tool bar to the user's tool bar file.
@@ -23,6 +23,9 @@ import org.fife.ui.rtextarea.RTextArea;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.WeakHashMap;
@@ -579,6 +582,63 @@ public class ThemeData implements ThemeId {
         fonts[id] = font;
     }
 
+    /**
+     * Writes the colors and fonts that are set, to be restored by {@link #readValues(DataInputStream)}.
+     *
+     * @param  out         where to write the values.
+     * @throws IOException if an I/O error occurs.
+     */
+    synchronized void writeValues(DataOutputStream out) throws IOException {
+        out.writeInt(COLOR_COUNT);
+        for (Color color : colors) {
+            out.writeBoolean(color != null);
+            if (color != null) {
+                out.writeInt(color.getRGB());
+            }
+        }
+        out.writeInt(FONT_COUNT);
+        for (Font font : fonts) {
+            out.writeBoolean(font != null);
+            if (font != null) {
+                out.writeUTF(font.getName());
+                out.writeInt(font.getStyle());
+                out.writeInt(font.getSize());
+            }
+        }
+    }
+
+    /**
+     * Sets the colors and fonts written by {@link #writeValues(DataOutputStream)}, without triggering any event.
+     * <p>
+     * As when the theme is parsed by {@link ThemeReader}, fonts whose family is not installed on the system are not
+     * set, so that their default value is used.
+     *
+     * @param  in          where to read the values from.
+     * @throws IOException if an I/O error occurs or if the values were written by a different version.
+     */
+    synchronized void readValues(DataInputStream in) throws IOException {
+        if (in.readInt() != COLOR_COUNT) {
+            throw new IOException("Color count mismatch");
+        }
+        for (int i = 0; i < COLOR_COUNT; i++) {
+            colors[i] = in.readBoolean() ? new Color(in.readInt(), true) : null;
+        }
+        if (in.readInt() != FONT_COUNT) {
+            throw new IOException("Font count mismatch");
+        }
+        for (int i = 0; i < FONT_COUNT; i++) {
+            fonts[i] = null;
+            if (in.readBoolean()) {
+                String family = in.readUTF();
+                int style = in.readInt();
+                int size = in.readInt();
+                if (ThemeReader.isFontAvailable(family)) {
+                    fonts[i] = new Font(family, style, size);
+                }
+            }
+        }
+    }
+
 
     // - Items retrieval -----------------------------------------------------------------------------------------------
     // -----------------------------------------------------------------------------------------------------------------
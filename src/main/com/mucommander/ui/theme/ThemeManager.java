@@ -29,6 +29,7 @@ import org.slf4j.LoggerFactory;
 
 import com.mucommander.PlatformManager;
 import com.mucommander.RuntimeConstants;
+import com.mucommander.cache.StartupCache;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.FileFactory;
 import com.mucommander.commons.file.filter.ExtensionFilenameFilter;
@@ -122,7 +123,7 @@ public class ThemeManager {
         // If the current theme couldn't be loaded, uses the default theme as defined in the configuration.
         currentTheme = null;
         try {
-            currentTheme = readTheme(type, name);
+            currentTheme = readCachedTheme(type, name);
         } catch(Exception e1) {
             e1.printStackTrace();
             type = getThemeTypeFromLabel(MuPreferences.DEFAULT_THEME_TYPE);
@@ -809,6 +810,46 @@ public class ThemeManager {
         }
     }
 
+    /**
+     * Returns the requested theme from the {@link StartupCache} if its file hasn't changed since it was stored,
+     * reads it and stores it otherwise.
+     * @param  type type of theme to retrieve.
+     * @param  name name of the theme to retrieve.
+     * @return the requested theme.
+     */
+    private static Theme readCachedTheme(Theme.Type type, String name) throws Exception {
+        // Predefined themes are stored in the JAR file, which changes with every release
+        AbstractFile source = type == Theme.Type.PREDEFINED ?
+                ResourceLoader.getResourceContainerAsFile(RuntimeConstants.THEMES_PATH + "/" + name + ".xml") : getFile(type, name);
+        if (source == null || !source.exists()) {
+            return readTheme(type, name);
+        }
+
+        String key = "theme." + type + '.' + name;
+        byte[] cached = StartupCache.get(key, source);
+        if (cached != null) {
+            try {
+                ThemeData data = new ThemeData();
+                data.readValues(new DataInputStream(new ByteArrayInputStream(cached)));
+                return new Theme(listener, data, type, name);
+            } catch (IOException e) {
+                getLogger().info("Failed to read cached theme " + name, e);
+            }
+        }
+
+        StartupCache.Signature signature = StartupCache.sign(key, source);
+        ThemeData data;
+        try (InputStream in = getInputStream(type, name)) {
+            data = readThemeData(in);
+        }
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bout);
+        data.writeValues(out);
+        out.flush();
+        StartupCache.put(key, bout.toByteArray(), signature);
+        return new Theme(listener, data, type, name);
+    }
+
     /**
      * Return the requested theme for file viewer/editor
      * @param name name ot the theme
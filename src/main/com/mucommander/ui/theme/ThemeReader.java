@@ -913,7 +913,7 @@ class ThemeReader extends DefaultHandler implements ThemeXmlConstants, ThemeId {
      * @param  font name of the font to check for.
      * @return <code>true</code> if the font is available, <code>false</code> otherwise.
      */
-    private static boolean isFontAvailable(String font)  {
+    static boolean isFontAvailable(String font)  {
         // Looks for the specified font.
         // TODO very slow operation (for first execution) !!!!
         String[] availableFonts = GraphicsEnvironment.getLocalGraphicsEnvironment().getAvailableFontFamilyNames();
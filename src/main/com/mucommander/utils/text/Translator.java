@@ -26,6 +26,9 @@ import java.util.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.mucommander.cache.StartupCache;
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.util.ResourceLoader;
 import com.mucommander.conf.MuConfigurations;
 import com.mucommander.conf.MuPreference;
 
@@ -50,6 +53,9 @@ public class Translator {
     private static Locale language;
 
     private static ResourceBundle bundle;
+
+    /** Base name of the dictionary bundles */
+    private static final String DICTIONARY_NAME = "dictionary";
     /**
      * Prevents instance creation.
      */
@@ -159,15 +165,17 @@ public class Translator {
         Locale locale = matchLocale(loadLocale());
 
         // Determines if language is one of the languages declared as available
+        Locale bundleLocale;
         if (availableLanguages.contains(locale)) {
             // Language is available
-            bundle = ResourceBundle.getBundle("dictionary", locale, new UTF8Control());
+            bundleLocale = locale;
             getLogger().debug("Language " + locale + " is available.");
         } else {
             // Language is not available, fall back to default language
-            bundle = ResourceBundle.getBundle("dictionary", new UTF8Control());
+            bundleLocale = Locale.getDefault();
             getLogger().debug("Language " + locale + " is not available, falling back to English");
         }
+        bundle = loadBundle(bundleLocale);
         // Set preferred language in configuration file
         MuConfigurations.getPreferences().setVariable(MuPreference.LANGUAGE, locale.toLanguageTag());
 
@@ -175,6 +183,58 @@ public class Translator {
         getLogger().debug("Current language has been set to " + Translator.language);
     }
 
+    /**
+     * Returns the dictionary of the given locale from the {@link StartupCache} if the files it's loaded from haven't
+     * changed since it was stored, loads it and stores it otherwise.
+     *
+     * @param locale the locale of the dictionary
+     * @return the dictionary
+     */
+    private static ResourceBundle loadBundle(Locale locale) {
+        List<AbstractFile> sources = new ArrayList<>();
+        for (String name : new String[] {DICTIONARY_NAME + ".properties", DICTIONARY_NAME + '_' + locale + ".properties"}) {
+            AbstractFile source = ResourceLoader.getResourceContainerAsFile(name);
+            if (source != null && !sources.contains(source)) {
+                sources.add(source);
+            }
+        }
+        AbstractFile[] sourcesArray = sources.toArray(new AbstractFile[sources.size()]);
+
+        String key = DICTIONARY_NAME + '.' + locale;
+        byte[] cached = StartupCache.get(key, sourcesArray);
+        if (cached != null) {
+            try {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(cached));
+                int nbEntries = in.readInt();
+                Map<String, String> entries = new HashMap<>(nbEntries * 2);
+                for (int i = 0; i < nbEntries; i++) {
+                    entries.put(in.readUTF(), in.readUTF());
+                }
+                return new CachedBundle(entries);
+            } catch (IOException e) {
+                getLogger().info("Failed to read the cached dictionary", e);
+            }
+        }
+
+        StartupCache.Signature signature = StartupCache.sign(key, sourcesArray);
+        ResourceBundle bundle = ResourceBundle.getBundle(DICTIONARY_NAME, locale, new UTF8Control());
+        try {
+            Set<String> keys = bundle.keySet();
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bout);
+            out.writeInt(keys.size());
+            for (String entryKey : keys) {
+                out.writeUTF(entryKey);
+                out.writeUTF(bundle.getString(entryKey));
+            }
+            out.flush();
+            StartupCache.put(key, bout.toByteArray(), signature);
+        } catch (IOException e) {
+            getLogger().info("Failed to cache the dictionary", e);
+        }
+        return bundle;
+    }
+
     /**
      * Returns the current language as a language code ("EN", "FR", "pt_BR", ...).
      *
@@ -251,6 +311,32 @@ public class Translator {
 
 
 
+    /**
+     * Dictionary restored from the {@link StartupCache}, with the entries of all the bundles it was loaded from.
+     */
+    private static class CachedBundle extends ResourceBundle {
+        private final Map<String, String> entries;
+
+        CachedBundle(Map<String, String> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        protected Object handleGetObject(String key) {
+            return entries.get(key);
+        }
+
+        @Override
+        protected Set<String> handleKeySet() {
+            return entries.keySet();
+        }
+
+        @Override
+        public Enumeration<String> getKeys() {
+            return Collections.enumeration(entries.keySet());
+        }
+    }
+
     public static class UTF8Control extends ResourceBundle.Control {
         public ResourceBundle newBundle
                 (String baseName, Locale locale, String format, ClassLoader loader, boolean reload)
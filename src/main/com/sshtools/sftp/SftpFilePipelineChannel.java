@@ -0,0 +1,116 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2016 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sshtools.sftp;
+
+import com.sshtools.ssh.SshException;
+import com.sshtools.ssh.SshIOException;
+import com.sshtools.util.UnsignedInteger32;
+
+import java.io.IOException;
+
+/**
+ * {@link SftpPipelineChannel} of a file opened with a {@link SftpSubsystemChannel}. This class lives in the J2SSH
+ * package to read the responses the same way as <code>SftpFileInputStream</code>, the method doing so not being
+ * public.
+ *
+ * @author Oleg Trifonov
+ */
+public class SftpFilePipelineChannel implements SftpPipelineChannel {
+
+    private final SftpFile file;
+    private final SftpSubsystemChannel sftp;
+
+    public SftpFilePipelineChannel(SftpFile file) {
+        this.file = file;
+        this.sftp = file.getSFTPChannel();
+    }
+
+    @Override
+    public UnsignedInteger32 postReadRequest(long offset, int len) throws IOException {
+        try {
+            return sftp.postReadRequest(file.getHandle(), offset, len);
+        } catch (SshException e) {
+            throw new SshIOException(e);
+        } catch (SftpStatusException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    @Override
+    public int getReadResponse(UnsignedInteger32 requestId, byte b[], int off) throws IOException {
+        SftpMessage msg;
+        try {
+            msg = sftp.getResponse(requestId);
+        } catch (SshException e) {
+            throw new SshIOException(e);
+        }
+
+        if (msg.getType() == SftpSubsystemChannel.SSH_FXP_DATA) {
+            int len = (int)msg.readInt();
+            if (len > b.length - off) {
+                throw new IOException("The server returned more data than requested: " + len + " bytes");
+            }
+            System.arraycopy(msg.array(), msg.getPosition(), b, off, len);
+            return len;
+        }
+        if (msg.getType() == SftpSubsystemChannel.SSH_FXP_STATUS) {
+            int status = (int)msg.readInt();
+            if (status == SftpStatusException.SSH_FX_EOF) {
+                return -1;
+            }
+            if (sftp.getVersion() >= 3) {
+                throw new IOException(msg.readString().trim());
+            }
+            throw new IOException("Unexpected status " + status);
+        }
+        throw new IOException("The server responded with an unexpected SFTP protocol message! type=" + msg.getType());
+    }
+
+    @Override
+    public UnsignedInteger32 postWriteRequest(long offset, byte b[], int off, int len) throws IOException {
+        try {
+            return sftp.postWriteRequest(file.getHandle(), offset, b, off, len);
+        } catch (SshException e) {
+            throw new SshIOException(e);
+        } catch (SftpStatusException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    @Override
+    public void getWriteResponse(UnsignedInteger32 requestId) throws IOException {
+        try {
+            sftp.getOKRequestStatus(requestId);
+        } catch (SshException e) {
+            throw new SshIOException(e);
+        } catch (SftpStatusException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            file.close();
+        } catch (SshException e) {
+            throw new SshIOException(e);
+        } catch (SftpStatusException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2016 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sshtools.sftp;
+
+import com.sshtools.util.UnsignedInteger32;
+
+import java.io.IOException;
+
+/**
+ * The read and write requests of an open SFTP file, split into posting a request and waiting for its response so
+ * that several requests can be outstanding at the same time. Responses may be waited for in any order.
+ *
+ * @see SftpPipelinedInputStream
+ * @see SftpPipelinedOutputStream
+ * @author Oleg Trifonov
+ */
+public interface SftpPipelineChannel {
+
+    /**
+     * Sends a request to read <code>len</code> bytes at <code>offset</code>, without waiting for the response.
+     *
+     * @param offset offset of the first byte to read
+     * @param len number of bytes to read
+     * @return the id of the request
+     * @throws IOException if the request could not be sent
+     */
+    UnsignedInteger32 postReadRequest(long offset, int len) throws IOException;
+
+    /**
+     * Waits for the response of a read request and copies the data it holds to the given array. The server may return
+     * less data than requested, not necessarily because the end of the file was reached.
+     *
+     * @param requestId id of the request
+     * @param b the array to copy the data to, large enough to hold the requested length
+     * @param off offset in the array
+     * @return the number of bytes read, <code>-1</code> if the offset of the request is at or past the end of the file
+     * @throws IOException if the server reported an error
+     */
+    int getReadResponse(UnsignedInteger32 requestId, byte b[], int off) throws IOException;
+
+    /**
+     * Sends a request to write <code>len</code> bytes at <code>offset</code>, without waiting for the response. The
+     * data is copied before this method returns.
+     *
+     * @param offset offset of the first byte to write
+     * @param b the data to write
+     * @param off offset of the data in the array
+     * @param len number of bytes to write
+     * @return the id of the request
+     * @throws IOException if the request could not be sent
+     */
+    UnsignedInteger32 postWriteRequest(long offset, byte b[], int off, int len) throws IOException;
+
+    /**
+     * Waits for the response of a write request.
+     *
+     * @param requestId id of the request
+     * @throws IOException if the server reported an error
+     */
+    void getWriteResponse(UnsignedInteger32 requestId) throws IOException;
+
+    /**
+     * Closes the file handle.
+     *
+     * @throws IOException if the handle could not be closed
+     */
+    void close() throws IOException;
+}
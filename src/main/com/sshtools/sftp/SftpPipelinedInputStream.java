@@ -0,0 +1,231 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2016 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sshtools.sftp;
+
+import com.sshtools.util.UnsignedInteger32;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Reads an SFTP file with several read requests outstanding at the same time, so that the transfer rate is not
+ * bounded by one block per round-trip. Blocks are requested ahead of the reader and returned in file order.
+ *
+ * <p>Unlike <code>SftpFileInputStream</code>, whose window is fixed to 100 requests of 32 KB, the block size and the
+ * number of outstanding requests are set by the caller. The window starts small and doubles with every block read, so
+ * that reading a small file does not post requests far past its end.
+ *
+ * <p>{@link #setPosition(long)} moves within the current block without any request, and otherwise drops the
+ * outstanding requests before reading from the new position.
+ *
+ * @author Oleg Trifonov
+ */
+public class SftpPipelinedInputStream extends InputStream {
+
+    /** Number of requests posted before the first block is read */
+    private final static int INITIAL_WINDOW = 4;
+
+    private final SftpPipelineChannel channel;
+    private final int blockSize;
+    private final int window;
+
+    /** Number of requests kept outstanding, grows up to <code>window</code> */
+    private int currentWindow;
+
+    /** Read requests in file order */
+    private final Deque<Request> outstanding = new ArrayDeque<>();
+
+    /** Offset of the next block to request */
+    private long nextRequestOffset;
+
+    /** Block being read */
+    private final byte buffer[];
+    /** Offset in the file of the first byte of the buffer */
+    private long bufferOffset;
+    private int bufferLength;
+    private int bufferPos;
+
+    private boolean eof;
+    private boolean closed;
+
+    /**
+     * Creates a new stream reading from the given position.
+     *
+     * @param channel the channel of the open file, closed with the stream
+     * @param position offset of the first byte to read
+     * @param blockSize number of bytes asked by each read request
+     * @param window maximum number of read requests outstanding at the same time
+     */
+    public SftpPipelinedInputStream(SftpPipelineChannel channel, long position, int blockSize, int window) {
+        this.channel = channel;
+        this.blockSize = blockSize;
+        this.window = Math.max(window, 1);
+        this.buffer = new byte[blockSize];
+        this.bufferOffset = position;
+        this.nextRequestOffset = position;
+        this.currentWindow = Math.min(INITIAL_WINDOW, this.window);
+    }
+
+    /**
+     * Posts read requests for the next blocks until the window is full.
+     */
+    private void postRequests() throws IOException {
+        while (outstanding.size() < currentWindow) {
+            outstanding.add(new Request(channel.postReadRequest(nextRequestOffset, blockSize), nextRequestOffset, blockSize));
+            nextRequestOffset += blockSize;
+        }
+    }
+
+    /**
+     * Reads the response of the oldest request into the buffer, waiting for it if needed.
+     *
+     * @return <code>false</code> if the end of the file was reached
+     */
+    private boolean fill() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        bufferOffset += bufferLength;
+        bufferLength = 0;
+        bufferPos = 0;
+
+        while (!eof) {
+            postRequests();
+            Request request = outstanding.poll();
+            int n = channel.getReadResponse(request.id, buffer, 0);
+            if (n == -1) {
+                eof = true;
+                discardRequests();
+                break;
+            }
+            if (n < request.length) {
+                // The server may return less than asked, request the rest before the blocks already posted
+                long offset = request.offset + n;
+                int length = request.length - n;
+                outstanding.addFirst(new Request(channel.postReadRequest(offset, length), offset, length));
+            }
+            currentWindow = Math.min(currentWindow * 2, window);
+            if (n > 0) {
+                bufferOffset = request.offset;
+                bufferLength = n;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Waits for the responses of the outstanding requests and drops them.
+     */
+    private void discardRequests() {
+        while (!outstanding.isEmpty()) {
+            try {
+                channel.getReadResponse(outstanding.poll().id, buffer, 0);
+            } catch (IOException e) {
+                // Errors of requests whose data is not needed are irrelevant
+            }
+        }
+        bufferLength = 0;
+        bufferPos = 0;
+    }
+
+    /**
+     * Returns the offset in the file of the next byte to read.
+     *
+     * @return the offset of the next byte to read
+     */
+    public long getPosition() {
+        return bufferOffset + bufferPos;
+    }
+
+    /**
+     * Moves to the given offset in the file.
+     *
+     * @param position offset of the next byte to read
+     * @throws IOException if the stream is closed
+     */
+    public void setPosition(long position) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (position >= bufferOffset && position <= bufferOffset + bufferLength) {
+            bufferPos = (int)(position - bufferOffset);
+            return;
+        }
+        discardRequests();
+        bufferOffset = position;
+        nextRequestOffset = position;
+        eof = false;
+        currentWindow = Math.min(INITIAL_WINDOW, window);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (bufferPos == bufferLength && !fill()) {
+            return -1;
+        }
+        return buffer[bufferPos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte b[], int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (bufferPos == bufferLength && !fill()) {
+            return -1;
+        }
+        int n = Math.min(len, bufferLength - bufferPos);
+        System.arraycopy(buffer, bufferPos, b, off, n);
+        bufferPos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return bufferLength - bufferPos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        discardRequests();
+        channel.close();
+    }
+
+
+    /**
+     * An outstanding read request.
+     */
+    private static class Request {
+        private final UnsignedInteger32 id;
+        private final long offset;
+        private final int length;
+
+        private Request(UnsignedInteger32 id, long offset, int length) {
+            this.id = id;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
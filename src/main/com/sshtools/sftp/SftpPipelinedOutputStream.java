@@ -0,0 +1,153 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2016 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sshtools.sftp;
+
+import com.sshtools.util.UnsignedInteger32;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Writes an SFTP file with several write requests outstanding at the same time. The written data is gathered into
+ * blocks, each sent with a write request at its offset in the file; once <code>window</code> requests are outstanding,
+ * the oldest response is waited for before the next block is sent.
+ *
+ * <p>An error reported by the server for a block is thrown by a later <code>write</code>, or by <code>flush</code>
+ * or <code>close</code>, which wait for all the outstanding requests.
+ *
+ * @author Oleg Trifonov
+ */
+public class SftpPipelinedOutputStream extends OutputStream {
+
+    private final SftpPipelineChannel channel;
+    private final int window;
+
+    /** Write requests in the order they were sent */
+    private final Deque<UnsignedInteger32> outstanding = new ArrayDeque<>();
+
+    /** Block being gathered */
+    private final byte buffer[];
+    private int bufferLength;
+
+    /** Offset in the file of the first byte of the buffer */
+    private long position;
+
+    private boolean closed;
+
+    /**
+     * Creates a new stream writing from the given position.
+     *
+     * @param channel the channel of the open file, closed with the stream
+     * @param position offset of the first byte to write
+     * @param blockSize number of bytes sent by each write request
+     * @param window maximum number of write requests outstanding at the same time
+     */
+    public SftpPipelinedOutputStream(SftpPipelineChannel channel, long position, int blockSize, int window) {
+        this.channel = channel;
+        this.position = position;
+        this.window = Math.max(window, 1);
+        this.buffer = new byte[blockSize];
+    }
+
+    /**
+     * Sends a write request for the given data, after waiting for the oldest response if the window is full.
+     */
+    private void post(byte b[], int off, int len) throws IOException {
+        while (outstanding.size() >= window) {
+            channel.getWriteResponse(outstanding.poll());
+        }
+        outstanding.add(channel.postWriteRequest(position, b, off, len));
+        position += len;
+    }
+
+    /**
+     * Sends the gathered block, if any.
+     */
+    private void postBuffer() throws IOException {
+        if (bufferLength > 0) {
+            post(buffer, 0, bufferLength);
+            bufferLength = 0;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (bufferLength == buffer.length) {
+            postBuffer();
+        }
+        buffer[bufferLength++] = (byte)b;
+    }
+
+    @Override
+    public void write(byte b[], int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (len > 0) {
+            if (bufferLength == buffer.length) {
+                postBuffer();
+            }
+            int n;
+            if (bufferLength == 0 && len >= buffer.length) {
+                // Whole blocks are sent straight from the caller's array, the channel copies them
+                n = buffer.length;
+                post(b, off, n);
+            } else {
+                n = Math.min(len, buffer.length - bufferLength);
+                System.arraycopy(b, off, buffer, bufferLength, n);
+                bufferLength += n;
+            }
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Sends the gathered data and waits for all the outstanding requests.
+     *
+     * @throws IOException if the server failed to write a block
+     */
+    @Override
+    public void flush() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        postBuffer();
+        while (!outstanding.isEmpty()) {
+            channel.getWriteResponse(outstanding.poll());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            channel.close();
+        }
+    }
+}
@@ -98,6 +98,39 @@ public abstract class AbstractByteBuffer {
     }
 
 
+    /**
+     * Loads the buffer with data at the given position (using the current cache strategy) and returns the index
+     * of that position in the buffer. The buffer data is valid up to {@link #getSize()}.
+     *
+     * @param fileOffset position in the file
+     * @return index of the position in the array returned by {@link #getBuffer()}
+     * @throws IOException if an I/O error occurs
+     * @throws IndexOutOfBoundsException if the position is outside of the file
+     */
+    public int fetch(long fileOffset) throws IOException {
+        getByte(fileOffset);
+        return (int)(fileOffset - offset);
+    }
+
+
+    /**
+     *
+     * @return cached data, see {@link #fetch(long)}
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+
+    /**
+     *
+     * @return number of bytes in buffer
+     */
+    public int getSize() {
+        return size;
+    }
+
+
     private long calcOffset(long fileOffset, boolean randomAccessStream) {
         if (randomAccessStream) {
             switch (cacheStrategy) {
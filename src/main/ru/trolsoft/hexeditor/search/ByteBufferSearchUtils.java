@@ -18,6 +18,9 @@
 package ru.trolsoft.hexeditor.search;
 
 import ru.trolsoft.hexeditor.data.AbstractByteBuffer;
+import ru.trolsoft.utils.search.AhoCorasickMatcher;
+import ru.trolsoft.utils.search.BlockMatcher;
+import ru.trolsoft.utils.search.HorspoolMatcher;
 
 import java.io.IOException;
 
@@ -35,63 +38,75 @@ public class ByteBufferSearchUtils {
      * @return the offset of the first occurrence of the specified data, at the specified offset, or -1 if there is no such occurrence
      */
     public static long indexOf(AbstractByteBuffer data, byte[] pattern, long fromOffset) throws IOException {
-        long fileSize = data.getFileSize();
-        if (fileSize <= 0 || pattern.length == 0) {
+        if (pattern.length == 0) {
             return -1;
         }
-        int[] failure = computeFailure(pattern);
-        AbstractByteBuffer.CacheStrategy cacheStrategy = data.getCacheStrategy();
-        data.setCacheStrategy(AbstractByteBuffer.CacheStrategy.FORWARD);
+        return indexOf(data, new HorspoolMatcher(pattern), fromOffset);
+    }
 
-        int j = 0;
-        for (long i = fromOffset; i < fileSize; i++) {
-            while (j > 0 && pattern[j] != data.getByte(i)) {
-                j = failure[j - 1];
-            }
-            if (pattern[j] == data.getByte(i)) {
-                j++;
-            }
-            if (j == pattern.length) {
-                data.setCacheStrategy(cacheStrategy);
-                return i - pattern.length + 1;
-            }
+    /**
+     * Returns the offset within the ByteBuffer of the first occurrence of any of the specified patterns,
+     * starting at the specified offset.
+     *
+     * @param data buffer for search
+     * @param patterns the data to search for
+     * @param fromOffset the offset from which to start the search
+     * @return the offset of the first occurrence of any pattern, or -1 if there is no such occurrence
+     */
+    public static long indexOf(AbstractByteBuffer data, byte[][] patterns, long fromOffset) throws IOException {
+        if (patterns.length == 0) {
+            return -1;
         }
-        data.setCacheStrategy(cacheStrategy);
-        return -1;
+        return indexOf(data, new AhoCorasickMatcher(patterns), fromOffset);
     }
 
-    public static long indexOf(AbstractByteBuffer data, byte[][] patterns, long fromOffset) throws IOException {
+    /**
+     * Scans the buffer window by window, every window is searched as a whole block by the matcher.
+     * Occurrences crossing the window boundary are searched in a small bridge made of the tail of the previous
+     * window and the head of the next one.
+     */
+    private static long indexOf(AbstractByteBuffer data, BlockMatcher matcher, long fromOffset) throws IOException {
         long fileSize = data.getFileSize();
-        if (fileSize <= 0 || patterns.length == 0) {
+        int overlap = matcher.maxLength() - 1;
+        if (fileSize <= 0 || overlap < 0 || fromOffset < 0) {
             return -1;
         }
-        int[][] failures = new int[patterns.length][];
-        for (int i = 0; i < patterns.length; i++) {
-            failures[i] = computeFailure(patterns[i]);
-        }
         AbstractByteBuffer.CacheStrategy cacheStrategy = data.getCacheStrategy();
         data.setCacheStrategy(AbstractByteBuffer.CacheStrategy.FORWARD);
-
-        int[] j = new int[patterns.length];
-        for (int i = 0; i < j.length; i++) {
-            j[i] = 0;
-        }
-/*
-        for (long i = fromOffset; i < fileSize; i++) {
-            while (j > 0 && pattern[j] != data.getByte(i)) {
-                j = failure[j - 1];
-            }
-            if (pattern[j] == data.getByte(i)) {
-                j++;
-            }
-            if (j == pattern.length) {
-                data.setCacheStrategy(cacheStrategy);
-                return i - pattern.length + 1;
+        try {
+            byte[] tail = new byte[0];
+            long pos = fromOffset;
+            while (pos < fileSize) {
+                int from = data.fetch(pos);
+                int to = data.getSize();
+                byte[] buffer = data.getBuffer();
+                if (tail.length > 0) {
+                    int head = Math.min(overlap, to - from);
+                    byte[] bridge = new byte[tail.length + head];
+                    System.arraycopy(tail, 0, bridge, 0, tail.length);
+                    System.arraycopy(buffer, from, bridge, tail.length, head);
+                    int index = matcher.indexOf(bridge, 0, bridge.length);
+                    if (index >= 0) {
+                        return pos - tail.length + index;
+                    }
+                }
+                int index = matcher.indexOf(buffer, from, to);
+                if (index >= 0) {
+                    return data.getOffset() + index;
+                }
+                // Keep the last bytes which may contain the beginning of an occurrence
+                int keep = Math.min(overlap, tail.length + to - from);
+                byte[] newTail = new byte[keep];
+                int fromWindow = Math.min(keep, to - from);
+                System.arraycopy(tail, tail.length - (keep - fromWindow), newTail, 0, keep - fromWindow);
+                System.arraycopy(buffer, to - fromWindow, newTail, keep - fromWindow, fromWindow);
+                tail = newTail;
+                pos = data.getOffset() + to;
             }
+            return -1;
+        } finally {
+            data.setCacheStrategy(cacheStrategy);
         }
-        */
-        data.setCacheStrategy(cacheStrategy);
-        return -1;
     }
 
 
@@ -0,0 +1,183 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2017 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ru.trolsoft.utils.search;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Aho-Corasick matcher searching several patterns in a single pass.
+ * The automaton is compiled into a full transition table, so every input byte costs one array lookup.
+ * Optionally, ASCII letters are compared case-insensitively through a byte folding table.
+ */
+public class AhoCorasickMatcher implements BlockMatcher {
+
+    private static final int ALPHABET = 256;
+
+    /** Folding table applied to both patterns and input bytes */
+    private final int[] fold = new int[ALPHABET];
+
+    /** Transition table, state * ALPHABET + byte -> next state */
+    private final int[] transitions;
+
+    /** Length of a pattern ending in each state, 0 if no pattern ends there */
+    private final int[] matchLengths;
+
+    private final int maxLength;
+
+    public AhoCorasickMatcher(byte[][] patterns) {
+        this(patterns, false);
+    }
+
+    /**
+     *
+     * @param patterns patterns to search for
+     * @param ignoreAsciiCase if true, ASCII letters match regardless of their case
+     */
+    public AhoCorasickMatcher(byte[][] patterns, boolean ignoreAsciiCase) {
+        for (int i = 0; i < ALPHABET; i++) {
+            fold[i] = ignoreAsciiCase && i >= 'A' && i <= 'Z' ? i + ('a' - 'A') : i;
+        }
+
+        // Build the trie
+        List<int[]> trie = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        trie.add(newNode());
+        lengths.add(0);
+        int longest = 0;
+        for (byte[] pattern : patterns) {
+            if (pattern.length == 0) {
+                continue;
+            }
+            longest = Math.max(longest, pattern.length);
+            int state = 0;
+            for (byte b : pattern) {
+                int c = fold[b & 0xff];
+                int next = trie.get(state)[c];
+                if (next < 0) {
+                    next = trie.size();
+                    trie.add(newNode());
+                    lengths.add(0);
+                    trie.get(state)[c] = next;
+                }
+                state = next;
+            }
+            int len = lengths.get(state);
+            if (len == 0 || pattern.length < len) {
+                lengths.set(state, pattern.length);
+            }
+        }
+        this.maxLength = longest;
+
+        // Compute failure links breadth-first and turn the trie into a complete automaton
+        int states = trie.size();
+        transitions = new int[states * ALPHABET];
+        matchLengths = new int[states];
+        int[] failure = new int[states];
+        int[] queue = new int[states];
+        int head = 0, tail = 0;
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = trie.get(0)[c];
+            if (next < 0) {
+                transitions[c] = 0;
+            } else {
+                transitions[c] = next;
+                failure[next] = 0;
+                queue[tail++] = next;
+            }
+        }
+        for (int s = 0; s < states; s++) {
+            matchLengths[s] = lengths.get(s);
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            int fail = failure[state];
+            if (matchLengths[state] == 0) {
+                matchLengths[state] = matchLengths[fail];
+            }
+            int[] node = trie.get(state);
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = node[c];
+                if (next < 0) {
+                    transitions[state * ALPHABET + c] = transitions[fail * ALPHABET + c];
+                } else {
+                    transitions[state * ALPHABET + c] = next;
+                    failure[next] = transitions[fail * ALPHABET + c];
+                    queue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    private static int[] newNode() {
+        int[] node = new int[ALPHABET];
+        for (int i = 0; i < ALPHABET; i++) {
+            node[i] = -1;
+        }
+        return node;
+    }
+
+    @Override
+    public int maxLength() {
+        return maxLength;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Occurrences are reported in the order they end, so for overlapping patterns the returned occurrence is the one
+     * that ends first.
+     */
+    @Override
+    public int indexOf(byte[] data, int from, int to) {
+        if (maxLength == 0) {
+            return -1;
+        }
+        int state = 0;
+        for (int i = from; i < to; i++) {
+            state = transitions[state * ALPHABET + fold[data[i] & 0xff]];
+            int len = matchLengths[state];
+            if (len > 0) {
+                return i - len + 1;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int indexOf(ByteBuffer data, int from, int to) {
+        if (data.hasArray()) {
+            int offset = data.arrayOffset();
+            int result = indexOf(data.array(), from + offset, to + offset);
+            return result < 0 ? -1 : result - offset;
+        }
+        if (maxLength == 0) {
+            return -1;
+        }
+        int state = 0;
+        for (int i = from; i < to; i++) {
+            state = transitions[state * ALPHABET + fold[data.get(i) & 0xff]];
+            int len = matchLengths[state];
+            if (len > 0) {
+                return i - len + 1;
+            }
+        }
+        return -1;
+    }
+
+}
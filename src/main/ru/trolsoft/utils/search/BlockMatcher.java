@@ -0,0 +1,55 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2017 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ru.trolsoft.utils.search;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Searches a pattern in blocks of data instead of feeding bytes one by one through {@link SearchSourceStream}.
+ * When data is scanned block by block, the last <code>maxLength() - 1</code> bytes of a block have to be scanned
+ * again with the next block to find occurrences crossing the block boundary.
+ */
+public interface BlockMatcher {
+
+    /**
+     *
+     * @return length of the longest pattern that can be matched
+     */
+    int maxLength();
+
+    /**
+     * Searches the first occurrence of the pattern that is entirely contained in the given range of a byte array.
+     *
+     * @param data data to search in
+     * @param from start index (inclusive)
+     * @param to end index (exclusive)
+     * @return start index of the occurrence or -1 if there is no such occurrence
+     */
+    int indexOf(byte[] data, int from, int to);
+
+    /**
+     * Searches the first occurrence of the pattern that is entirely contained in the given range of a buffer.
+     * The position and limit of the buffer are not modified.
+     *
+     * @param data data to search in
+     * @param from start index (inclusive)
+     * @param to end index (exclusive)
+     * @return start index of the occurrence or -1 if there is no such occurrence
+     */
+    int indexOf(ByteBuffer data, int from, int to);
+}
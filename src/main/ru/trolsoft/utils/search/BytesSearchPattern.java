@@ -42,4 +42,9 @@ public class BytesSearchPattern implements SearchPattern {
     public boolean checkSelf(int index1, int index2) {
         return bytes[index1] == bytes[index2];
     }
+
+    @Override
+    public BlockMatcher createMatcher() {
+        return new HorspoolMatcher(bytes);
+    }
 }
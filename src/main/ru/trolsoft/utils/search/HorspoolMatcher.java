@@ -0,0 +1,126 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2017 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ru.trolsoft.utils.search;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Boyer-Moore-Horspool matcher for a single pattern.
+ * Every position of the pattern may accept an alternative byte, which is used for case-insensitive search
+ * when lower and upper case forms of the searched string are encoded with the same number of bytes.
+ */
+public class HorspoolMatcher implements BlockMatcher {
+
+    private final byte[] pattern;
+    private final byte[] patternAlt;
+    private final int[] shifts = new int[256];
+
+    public HorspoolMatcher(byte[] pattern) {
+        this(pattern, pattern);
+    }
+
+    /**
+     *
+     * @param pattern pattern bytes
+     * @param patternAlt alternative bytes accepted at the same positions, must have the same length as pattern
+     */
+    public HorspoolMatcher(byte[] pattern, byte[] patternAlt) {
+        if (pattern.length != patternAlt.length) {
+            throw new IllegalArgumentException("Pattern lengths mismatch: " + pattern.length + " != " + patternAlt.length);
+        }
+        this.pattern = pattern;
+        this.patternAlt = patternAlt;
+        int last = pattern.length - 1;
+        for (int i = 0; i < shifts.length; i++) {
+            shifts[i] = pattern.length;
+        }
+        for (int i = 0; i < last; i++) {
+            shifts[pattern[i] & 0xff] = last - i;
+            shifts[patternAlt[i] & 0xff] = last - i;
+        }
+    }
+
+    @Override
+    public int maxLength() {
+        return pattern.length;
+    }
+
+    @Override
+    public int indexOf(byte[] data, int from, int to) {
+        final int last = pattern.length - 1;
+        if (last < 0) {
+            return -1;
+        }
+        final byte lastByte = pattern[last];
+        final byte lastByteAlt = patternAlt[last];
+        int pos = from;
+        while (pos + last < to) {
+            byte b = data[pos + last];
+            if ((b == lastByte || b == lastByteAlt) && matchesAt(data, pos, last)) {
+                return pos;
+            }
+            pos += shifts[b & 0xff];
+        }
+        return -1;
+    }
+
+    private boolean matchesAt(byte[] data, int pos, int last) {
+        for (int i = 0; i < last; i++) {
+            byte b = data[pos + i];
+            if (b != pattern[i] && b != patternAlt[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int indexOf(ByteBuffer data, int from, int to) {
+        if (data.hasArray()) {
+            int offset = data.arrayOffset();
+            int result = indexOf(data.array(), from + offset, to + offset);
+            return result < 0 ? -1 : result - offset;
+        }
+        final int last = pattern.length - 1;
+        if (last < 0) {
+            return -1;
+        }
+        final byte lastByte = pattern[last];
+        final byte lastByteAlt = patternAlt[last];
+        int pos = from;
+        while (pos + last < to) {
+            byte b = data.get(pos + last);
+            if ((b == lastByte || b == lastByteAlt) && matchesAt(data, pos, last)) {
+                return pos;
+            }
+            pos += shifts[b & 0xff];
+        }
+        return -1;
+    }
+
+    private boolean matchesAt(ByteBuffer data, int pos, int last) {
+        for (int i = 0; i < last; i++) {
+            byte b = data.get(pos + i);
+            if (b != pattern[i] && b != patternAlt[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
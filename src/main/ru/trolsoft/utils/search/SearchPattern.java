@@ -39,4 +39,10 @@ public interface SearchPattern {
 
 
     boolean checkSelf(int index1, int index2);
+
+    /**
+     *
+     * @return matcher searching this pattern in blocks of data
+     */
+    BlockMatcher createMatcher();
 }
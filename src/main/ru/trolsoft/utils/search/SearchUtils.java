@@ -17,6 +17,12 @@
  */
 package ru.trolsoft.utils.search;
 
+import com.mucommander.commons.io.BufferPool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * @author Oleg Trifonov
@@ -24,6 +30,98 @@ package ru.trolsoft.utils.search;
  */
 public class SearchUtils {
 
+    /** Size of the blocks read from streams by {@link #indexOf(InputStream, BlockMatcher)} */
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    /** Size of the file regions mapped by {@link #indexOf(FileChannel, BlockMatcher)} */
+    private static final int MAP_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Searches the stream block by block with the given matcher. The stream is not closed by this method.
+     *
+     * @param in stream to search in
+     * @param matcher pattern matcher
+     * @return offset of the first occurrence in the stream or -1 if there is no such occurrence
+     * @throws IOException if an I/O error occurs while reading the stream
+     */
+    public static long indexOf(InputStream in, BlockMatcher matcher) throws IOException {
+        int overlap = matcher.maxLength() - 1;
+        if (overlap < 0) {
+            return -1;
+        }
+        byte[] buffer = BufferPool.getByteArray(Math.max(BLOCK_SIZE, 2 * matcher.maxLength()));
+        try {
+            // offset in the stream of buffer[0]
+            long bufferOffset = 0;
+            int size = 0;
+            int read;
+            while ((read = in.read(buffer, size, buffer.length - size)) >= 0) {
+                size += read;
+                if (size < buffer.length) {
+                    // Fill the buffer before scanning it
+                    continue;
+                }
+                int index = matcher.indexOf(buffer, 0, size);
+                if (index >= 0) {
+                    return bufferOffset + index;
+                }
+                // Keep the tail which may contain the beginning of an occurrence
+                System.arraycopy(buffer, size - overlap, buffer, 0, overlap);
+                bufferOffset += size - overlap;
+                size = overlap;
+            }
+            int index = matcher.indexOf(buffer, 0, size);
+            return index >= 0 ? bufferOffset + index : -1;
+        } finally {
+            BufferPool.releaseByteArray(buffer);
+        }
+    }
+
+    /**
+     * Searches a file without copying its data: the file is mapped in memory window by window and the matcher
+     * runs directly on the mapped buffers. The channel is not closed by this method.
+     *
+     * @param channel channel of the file to search in
+     * @param matcher pattern matcher
+     * @return offset of the first occurrence in the file or -1 if there is no such occurrence
+     * @throws IOException if the file cannot be mapped
+     */
+    public static long indexOf(FileChannel channel, BlockMatcher matcher) throws IOException {
+        return indexOf(channel, matcher, MAP_WINDOW_SIZE);
+    }
+
+    /**
+     * Searches a file mapped in windows of the given size, consecutive windows overlap by the maximum length of
+     * an occurrence minus one byte.
+     *
+     * @param channel channel of the file to search in
+     * @param matcher pattern matcher
+     * @param mapWindowSize size of the mapped windows
+     * @return offset of the first occurrence in the file or -1 if there is no such occurrence
+     * @throws IOException if the file cannot be mapped
+     */
+    static long indexOf(FileChannel channel, BlockMatcher matcher, int mapWindowSize) throws IOException {
+        int overlap = matcher.maxLength() - 1;
+        if (overlap < 0) {
+            return -1;
+        }
+        long fileSize = channel.size();
+        int windowSize = Math.max(mapWindowSize, 2 * matcher.maxLength());
+        long pos = 0;
+        while (pos < fileSize) {
+            int length = (int)Math.min(windowSize, fileSize - pos);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+            int index = matcher.indexOf(buffer, 0, length);
+            if (index >= 0) {
+                return pos + index;
+            }
+            if (pos + length >= fileSize) {
+                break;
+            }
+            pos += length - overlap;
+        }
+        return -1;
+    }
 
     public static long indexOf(SearchSourceStream source, SearchPattern pattern) throws SearchException {
         if (!source.hasNext() || pattern.length() == 0) {
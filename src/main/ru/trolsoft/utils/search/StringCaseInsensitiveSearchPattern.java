@@ -27,10 +27,12 @@ import java.io.UnsupportedEncodingException;
 public class StringCaseInsensitiveSearchPattern implements SearchPattern {
     private final byte[] data;
     private final byte[] dataAlt;
+    private final byte[] original;
 
     public StringCaseInsensitiveSearchPattern(String s, String charset) throws UnsupportedEncodingException {
         this.data = s.toLowerCase().getBytes(charset);
         this.dataAlt = s.toUpperCase().getBytes(charset);
+        this.original = s.getBytes(charset);
     }
 
     @Override
@@ -47,4 +49,13 @@ public class StringCaseInsensitiveSearchPattern implements SearchPattern {
     public boolean checkSelf(int index1, int index2) {
         return data[index1] == data[index2] || dataAlt[index1] == dataAlt[index2] || data[index1] == dataAlt[index2] || dataAlt[index1] == data[index2];
     }
+
+    @Override
+    public BlockMatcher createMatcher() {
+        if (data.length == dataAlt.length) {
+            return new HorspoolMatcher(data, dataAlt);
+        }
+        // Some characters change their encoded length with the case, search all the variants at once
+        return new AhoCorasickMatcher(new byte[][] {data, dataAlt, original}, true);
+    }
 }
@@ -28,4 +28,9 @@ public class StringCaseSensitiveSearchPattern implements SearchPattern {
     public boolean checkSelf(int index1, int index2) {
         return data[index1] == data[index2];
     }
+
+    @Override
+    public BlockMatcher createMatcher() {
+        return new HorspoolMatcher(data);
+    }
 }
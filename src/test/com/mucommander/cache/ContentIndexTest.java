@@ -0,0 +1,165 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2017 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.cache;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.io.StreamUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This class is a TestNG test case for {@link ContentIndex}.
+ */
+public class ContentIndexTest {
+
+    private static final long MAX_SIZE = 1024 * 1024;
+    private static final long MAX_AGE = 24L * 60 * 60 * 1000;
+
+    private AbstractFile tempFolder;
+    private AbstractFile indexFile;
+    private AbstractFile file;
+    private ContentIndex index;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        tempFolder = FileFactory.getTemporaryFile(false);
+        tempFolder.mkdir();
+        indexFile = tempFolder.getChild("content_index.bin");
+        file = tempFolder.getChild("file.txt");
+        write(file, "The quick brown fox jumps over the lazy dog");
+        index = new ContentIndex(indexFile, MAX_SIZE, MAX_AGE);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        tempFolder.deleteRecursively();
+    }
+
+    private static void write(AbstractFile file, String content) throws IOException {
+        try (OutputStream out = file.getOutputStream()) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static int[] trigrams(String s) {
+        return ContentIndex.getTrigrams(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertTrigrams(String s, int... expected) {
+        Assert.assertEquals(Arrays.toString(trigrams(s)), Arrays.toString(expected));
+    }
+
+    /**
+     * Searches the file as FindFileJob does when it isn't indexed yet, reading it to the end.
+     */
+    private void indexFile(AbstractFile file) throws IOException {
+        ContentIndex.Indexer indexer = index.createIndexer(file);
+        Assert.assertNotNull(indexer);
+        try (InputStream in = indexer.wrap(file.getInputStream())) {
+            StreamUtils.readUntilEOF(in);
+        } finally {
+            indexer.finish();
+        }
+    }
+
+    @Test
+    public void testTrigrams() {
+        Assert.assertNull(ContentIndex.getTrigrams(null));
+        Assert.assertNull(trigrams("ab"));
+        assertTrigrams("abcd", 0x616263, 0x626364);
+        // Duplicates are removed and the result is sorted
+        assertTrigrams("bcdabcd", 0x616263, 0x626364, 0x636461, 0x646162);
+        // ASCII letters are folded to lower case, other bytes are kept as is
+        assertTrigrams("ABcD", trigrams("abcd"));
+        assertTrigrams("A-Z", 0x612d7a);
+        Assert.assertFalse(Arrays.equals(trigrams("ЖЖ"), trigrams("жж")));
+    }
+
+    @Test
+    public void testMayContain() throws IOException {
+        // Files are not indexed until they have been searched
+        Assert.assertTrue(index.mayContain(file, trigrams("xyz")));
+        indexFile(file);
+        Assert.assertNull(index.createIndexer(file));
+
+        Assert.assertTrue(index.mayContain(file, trigrams("lazy dog")));
+        Assert.assertTrue(index.mayContain(file, trigrams("QUICK")));
+        Assert.assertFalse(index.mayContain(file, trigrams("xyz")));
+        Assert.assertFalse(index.mayContain(file, trigrams("lazy cat")));
+    }
+
+    @Test
+    public void testPartialRead() throws IOException {
+        ContentIndex.Indexer indexer = index.createIndexer(file);
+        try (InputStream in = indexer.wrap(file.getInputStream())) {
+            Assert.assertEquals(in.read(new byte[10]), 10);
+        } finally {
+            indexer.finish();
+        }
+        // A search that stopped on a match doesn't index the file
+        Assert.assertNotNull(index.createIndexer(file));
+        Assert.assertTrue(index.mayContain(file, trigrams("xyz")));
+    }
+
+    @Test
+    public void testInvalidation() throws IOException {
+        indexFile(file);
+        Assert.assertFalse(index.mayContain(file, trigrams("xyz")));
+
+        // Same size, different date
+        file.setLastModifiedDate(file.getLastModifiedDate() - 10000);
+        Assert.assertTrue(index.mayContain(file, trigrams("xyz")));
+        indexFile(file);
+        Assert.assertFalse(index.mayContain(file, trigrams("xyz")));
+
+        // Different size
+        long date = file.getLastModifiedDate();
+        write(file, "xyz");
+        file.setLastModifiedDate(date);
+        Assert.assertTrue(index.mayContain(file, trigrams("xyz")));
+        Assert.assertNotNull(index.createIndexer(file));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        AbstractFile other = tempFolder.getChild("other.txt");
+        write(other, "xyz");
+        indexFile(file);
+        indexFile(other);
+        index.save();
+        Assert.assertTrue(indexFile.exists());
+
+        ContentIndex loaded = new ContentIndex(indexFile, MAX_SIZE, MAX_AGE);
+        loaded.load();
+        Assert.assertNull(loaded.createIndexer(file));
+        Assert.assertNull(loaded.createIndexer(other));
+        Assert.assertTrue(loaded.mayContain(file, trigrams("brown fox")));
+        Assert.assertFalse(loaded.mayContain(file, trigrams("xyz")));
+        Assert.assertTrue(loaded.mayContain(other, trigrams("xyz")));
+        Assert.assertFalse(loaded.mayContain(other, trigrams("fox")));
+    }
+}
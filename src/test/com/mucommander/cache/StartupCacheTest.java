@@ -0,0 +1,132 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2017 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.cache;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class is a TestNG test case for {@link StartupCache}.
+ */
+public class StartupCacheTest {
+
+    private static final byte[] DATA = {1, 2, 3, 4, 5};
+
+    private AbstractFile tempFolder;
+    private AbstractFile cacheFile;
+    private AbstractFile source;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        tempFolder = FileFactory.getTemporaryFile(false);
+        tempFolder.mkdir();
+        cacheFile = tempFolder.getChild("startup.cache");
+        source = tempFolder.getChild("source.xml");
+        write(source, "<source/>");
+        StartupCache.setCacheFile(cacheFile);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        StartupCache.setCacheFile(null);
+        tempFolder.deleteRecursively();
+    }
+
+    private static void write(AbstractFile file, String content) throws IOException {
+        try (OutputStream out = file.getOutputStream()) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Stores an entry, saves the cache and reads it back as the next session would.
+     */
+    private void storeAndReload() throws IOException {
+        StartupCache.put("key", DATA, StartupCache.sign("key", source));
+        StartupCache.save();
+        StartupCache.setCacheFile(cacheFile);
+    }
+
+    @Test
+    public void testReload() throws IOException {
+        storeAndReload();
+        Assert.assertEquals(StartupCache.get("key", source), DATA);
+        Assert.assertNull(StartupCache.get("other", source));
+    }
+
+    @Test
+    public void testModifiedSource() throws IOException {
+        storeAndReload();
+        write(source, "<modified/>");
+        Assert.assertNull(StartupCache.get("key", source));
+    }
+
+    @Test
+    public void testTouchedSource() throws IOException {
+        storeAndReload();
+        // Same contents, only the date has changed
+        source.setLastModifiedDate(source.getLastModifiedDate() - 10000);
+        Assert.assertEquals(StartupCache.get("key", source), DATA);
+    }
+
+    @Test
+    public void testOtherSource() throws IOException {
+        storeAndReload();
+        AbstractFile other = tempFolder.getChild("other.xml");
+        write(other, "<source/>");
+        Assert.assertNull(StartupCache.get("key", other));
+        Assert.assertNull(StartupCache.get("key", source));
+    }
+
+    @Test
+    public void testSourceModifiedWhileParsed() throws IOException {
+        // The data was parsed from the contents the source had when it was signed
+        StartupCache.Signature signature = StartupCache.sign("key", source);
+        write(source, "<modified/>");
+        StartupCache.put("key", DATA, signature);
+        StartupCache.save();
+        StartupCache.setCacheFile(cacheFile);
+        Assert.assertNull(StartupCache.get("key", source));
+    }
+
+    @Test
+    public void testUnsignedSource() throws IOException {
+        AbstractFile missing = tempFolder.getChild("missing.xml");
+        StartupCache.Signature signature = StartupCache.sign("key", missing);
+        Assert.assertNull(signature);
+        StartupCache.put("key", DATA, signature);
+        Assert.assertNull(StartupCache.get("key", missing));
+    }
+
+    @Test
+    public void testCorruptCache() throws IOException {
+        write(cacheFile, "not a cache");
+        Assert.assertNull(StartupCache.get("key", source));
+        // The corrupt file is replaced when the cache is saved
+        storeAndReload();
+        Assert.assertEquals(StartupCache.get("key", source), DATA);
+    }
+}
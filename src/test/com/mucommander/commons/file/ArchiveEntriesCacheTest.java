@@ -0,0 +1,107 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2010 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file;
+
+import com.mucommander.commons.file.impl.tar.TarArchiveFile;
+import com.mucommander.commons.file.impl.tar.provider.TarEntry;
+import com.mucommander.commons.file.impl.tar.provider.TarOutputStream;
+import com.mucommander.commons.io.StreamUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class is a TestNG test case for {@link ArchiveEntriesCache}.
+ */
+public class ArchiveEntriesCacheTest {
+
+    private AbstractFile tempFolder;
+    private AbstractFile tarFile;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        tempFolder = FileFactory.getTemporaryFile(false);
+        tempFolder.mkdir();
+        tarFile = tempFolder.getChild("test.tar");
+        try (TarOutputStream out = new TarOutputStream(tarFile.getOutputStream())) {
+            for (int i = 0; i < 10; i++) {
+                byte[] data = ("content of entry " + i).getBytes(StandardCharsets.UTF_8);
+                TarEntry entry = new TarEntry("dir" + (i % 2) + "/file" + i + ".txt");
+                entry.setSize(data.length);
+                out.putNextEntry(entry);
+                out.write(data);
+                out.closeEntry();
+            }
+        }
+        ArchiveEntriesCache.setCacheFolder(tempFolder.getChild("cache"));
+        ArchiveEntriesCache.setMaxSize(ArchiveEntriesCache.DEFAULT_MAX_SIZE);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        ArchiveEntriesCache.setCacheFolder(null);
+        tempFolder.deleteRecursively();
+    }
+
+    private static String readEntry(AbstractArchiveFile archive, String path) throws IOException {
+        AbstractFile entryFile = archive.getArchiveEntryFile(path);
+        Assert.assertNotNull(entryFile);
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (InputStream in = entryFile.getInputStream()) {
+            StreamUtils.copyStream(in, bout);
+        }
+        return new String(bout.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testListFromCache() throws IOException {
+        AbstractArchiveFile archive = new TarArchiveFile(tarFile);
+        Assert.assertEquals(archive.ls().length, 2);
+        Assert.assertEquals(ArchiveEntriesCache.getCacheFolder().ls().length, 1);
+
+        // A new instance lists the archive from the cache, restored entries can still be read
+        AbstractArchiveFile cached = new TarArchiveFile(tarFile);
+        Assert.assertNotNull(ArchiveEntriesCache.load(cached));
+        Assert.assertEquals(cached.ls().length, 2);
+        Assert.assertEquals(cached.getArchiveEntryFile("dir1").ls().length, 5);
+        Assert.assertEquals(readEntry(cached, "dir1/file7.txt"), "content of entry 7");
+        Assert.assertEquals(readEntry(cached, "dir0/file0.txt"), "content of entry 0");
+    }
+
+    @Test
+    public void testModifiedArchive() throws IOException {
+        new TarArchiveFile(tarFile).ls();
+        tarFile.setLastModifiedDate(tarFile.getLastModifiedDate() - 10000);
+        Assert.assertNull(ArchiveEntriesCache.load(new TarArchiveFile(tarFile)));
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        ArchiveEntriesCache.setMaxSize(1);
+        AbstractArchiveFile archive = new TarArchiveFile(tarFile);
+        Assert.assertEquals(archive.ls().length, 2);
+        Assert.assertEquals(ArchiveEntriesCache.getCacheFolder().ls().length, 0);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2010 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file;
+
+/**
+ * Measures the time needed to build an {@link ArchiveEntryTree} and to look up all its entries, for synthetic
+ * archives of 10k, 100k and 1M entries: flat ones (all entries in the root) and ones spread over a directory tree.
+ *
+ * <p>Run as a plain application: <code>java com.mucommander.commons.file.ArchiveEntryTreeBenchmark</code>
+ */
+public class ArchiveEntryTreeBenchmark {
+
+    private static final int[] SIZES = {10000, 100000, 1000000};
+
+    public static void main(String args[]) {
+        for (int size : SIZES) {
+            run("flat", createEntries(size, false));
+            run("nested", createEntries(size, true));
+        }
+    }
+
+    private static ArchiveEntry[] createEntries(int count, boolean nested) {
+        ArchiveEntry[] entries = new ArchiveEntry[count];
+        for (int i = 0; i < count; i++) {
+            String path = nested ? "dir" + (i % 100) + "/sub" + (i % 1000) + "/file" + i + ".txt" : "file" + i + ".txt";
+            entries[i] = new ArchiveEntry(path, false, 0, i, true);
+        }
+        return entries;
+    }
+
+    private static void run(String name, ArchiveEntry[] entries) {
+        long start = System.nanoTime();
+        ArchiveEntryTree tree = new ArchiveEntryTree();
+        for (ArchiveEntry entry : entries) {
+            tree.addArchiveEntry(entry);
+        }
+        long buildTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (ArchiveEntry entry : entries) {
+            if (tree.findEntryNode(entry.getPath()) == null) {
+                throw new IllegalStateException("Entry not found: " + entry.getPath());
+            }
+        }
+        long lookupTime = System.nanoTime() - start;
+
+        System.out.printf("%-7s %8d entries: build %7d ms, lookup %7d ms%n", name, entries.length,
+                buildTime / 1000000, lookupTime / 1000000);
+    }
+}
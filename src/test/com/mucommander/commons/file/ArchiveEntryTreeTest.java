@@ -0,0 +1,93 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2010 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * This class is a TestNG test case for {@link ArchiveEntryTree}.
+ */
+public class ArchiveEntryTreeTest {
+
+    private static ArchiveEntry entry(String path, boolean directory) {
+        return new ArchiveEntry(path, directory, 0, 0, true);
+    }
+
+    @Test
+    public void testAddAndFind() {
+        ArchiveEntryTree tree = new ArchiveEntryTree();
+        ArchiveEntry file = entry("dir1/dir2/file.txt", false);
+        tree.addArchiveEntry(file);
+
+        // Parent directories are created implicitly
+        ArchiveEntryNode dir1 = tree.findEntryNode("dir1");
+        Assert.assertNotNull(dir1);
+        Assert.assertTrue(dir1.getEntry().isDirectory());
+        Assert.assertEquals(dir1.getEntry().getPath(), "dir1/");
+        Assert.assertSame(dir1.getParent(), tree);
+
+        // Lookups are trailing separator insensitive
+        ArchiveEntryNode dir2 = tree.findEntryNode("dir1/dir2/");
+        Assert.assertNotNull(dir2);
+        Assert.assertSame(tree.findEntryNode("dir1/dir2"), dir2);
+        Assert.assertEquals(dir2.getChildCount(), 1);
+
+        ArchiveEntryNode fileNode = tree.findEntryNode("dir1/dir2/file.txt");
+        Assert.assertNotNull(fileNode);
+        Assert.assertSame(fileNode.getEntry(), file);
+        Assert.assertTrue(file.exists());
+        Assert.assertSame(fileNode.getParent(), dir2);
+
+        Assert.assertNull(tree.findEntryNode("dir1/file.txt"));
+        Assert.assertNull(tree.findEntryNode("dir1/dir2/file.txt/child"));
+        Assert.assertSame(tree.findEntryNode(""), tree);
+    }
+
+    @Test
+    public void testReplaceDirectory() {
+        ArchiveEntryTree tree = new ArchiveEntryTree();
+        tree.addArchiveEntry(entry("dir/a", false));
+        tree.addArchiveEntry(entry("dir/b", false));
+        ArchiveEntry dir = entry("dir/", true);
+        tree.addArchiveEntry(dir);
+
+        ArchiveEntryNode dirNode = tree.findEntryNode("dir");
+        Assert.assertSame(dirNode.getEntry(), dir);
+        Assert.assertEquals(dirNode.getChildCount(), 2);
+        Assert.assertEquals(tree.getChildCount(), 1);
+
+        // Children are kept in insertion order
+        String names = "";
+        for (ArchiveEntryNode child : dirNode.getChildren()) {
+            names += child.getName();
+        }
+        Assert.assertEquals(names, "ab");
+    }
+
+    @Test
+    public void testRemove() {
+        ArchiveEntryTree tree = new ArchiveEntryTree();
+        tree.addArchiveEntry(entry("dir/a", false));
+        ArchiveEntryNode node = tree.findEntryNode("dir/a");
+        node.getParent().remove(node);
+        Assert.assertNull(tree.findEntryNode("dir/a"));
+        Assert.assertEquals(tree.findEntryNode("dir").getChildCount(), 0);
+    }
+}
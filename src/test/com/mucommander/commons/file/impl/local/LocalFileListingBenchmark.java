@@ -0,0 +1,66 @@
+package com.mucommander.commons.file.impl.local;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.impl.CachedFile;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Measures the time needed to open a local folder of 10k and 100k files the way the file table does it: listing the
+ * folder, wrapping children in {@link CachedFile} instances and retrieving the attributes the table displays.
+ * The plain {@link LocalFile#ls()} path is compared with {@link LocalFile#lsWithAttributes}.
+ *
+ * <p>Run as a plain application: <code>java com.mucommander.commons.file.impl.local.LocalFileListingBenchmark</code>
+ */
+public class LocalFileListingBenchmark {
+
+    private static final int[] SIZES = {10000, 100000};
+
+    private static final int RUNS = 3;
+
+    public static void main(String args[]) throws IOException {
+        for (int size : SIZES) {
+            AbstractFile folder = createFolder(size);
+            try {
+                for (int run = 0; run < RUNS; run++) {
+                    long ls = measure((LocalFile)folder, false);
+                    long lsWithAttributes = measure((LocalFile)folder, true);
+                    System.out.printf("%7d files: ls %6d ms, lsWithAttributes %6d ms%n", size, ls, lsWithAttributes);
+                }
+            } finally {
+                folder.deleteRecursively();
+            }
+        }
+    }
+
+    private static AbstractFile createFolder(int nbFiles) throws IOException {
+        AbstractFile folder = FileFactory.getTemporaryFile(LocalFileListingBenchmark.class.getName(), false);
+        folder.mkdir();
+        File javaFolder = (File)folder.getUnderlyingFileObject();
+        for (int i = 0; i < nbFiles; i++) {
+            if (!new File(javaFolder, "file" + i + (i % 10 == 0 ? "" : ".txt")).createNewFile()) {
+                throw new IOException("Could not create file " + i);
+            }
+        }
+        return folder;
+    }
+
+    private static long measure(LocalFile folder, boolean withAttributes) throws IOException {
+        long start = System.nanoTime();
+        AbstractFile children[] = withAttributes ? folder.lsWithAttributes(null) : folder.ls();
+        long total = 0;
+        for (AbstractFile child : children) {
+            AbstractFile file = child instanceof CachedFile ? child : new CachedFile(child, true);
+            if (file.isDirectory() || file.isHidden() || file.isSymlink()) {
+                total++;
+            }
+            total += file.getSize() + file.getLastModifiedDate();
+        }
+        if (total == 0) {
+            System.out.println();
+        }
+        return (System.nanoTime() - start) / 1000000;
+    }
+}
@@ -4,6 +4,7 @@ import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.AbstractFileTest;
 import com.mucommander.commons.file.FileFactory;
 import com.mucommander.commons.file.FileOperation;
+import com.mucommander.commons.file.impl.CachedFile;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
@@ -75,6 +76,67 @@ public class LocalFileTest extends AbstractFileTest {
         assert !destFile.isSymlink();          // Leave me
     }
 
+    /**
+     * Asserts that {@link LocalFile#lsWithAttributes(com.mucommander.commons.file.filter.FileFilter)} returns the
+     * same children as {@link LocalFile#ls()}, with the same attribute values.
+     *
+     * @throws IOException should not happen
+     * @throws NoSuchAlgorithmException should not happen
+     */
+    @Test
+    public void testLsWithAttributes() throws IOException, NoSuchAlgorithmException {
+        tempFile.mkdir();
+        createFile(tempFile.getDirectChild("file"), 100);
+        createFile(tempFile.getDirectChild(".hidden"), 10);
+        tempFile.getDirectChild("folder").mkdir();
+
+        AbstractFile children[] = ((LocalFile)tempFile).lsWithAttributes(null);
+        assert children.length == 3;
+        for (AbstractFile child : children) {
+            assert child instanceof CachedFile;
+            AbstractFile file = ((CachedFile)child).getProxiedFile();
+            assert child.isDirectory() == file.isDirectory();
+            assert child.isHidden() == file.isHidden();
+            assert child.isSymlink() == file.isSymlink();
+            assert child.exists();
+            assert child.getSize() == file.getSize();
+            assert child.getLastModifiedDate() == file.getLastModifiedDate();
+            assert child.equals(file);
+        }
+    }
+
+    /**
+     * Asserts that {@link LocalFile#copyRemotelyTo(AbstractFile)} copies a file spanning several
+     * {@link LocalFile#CHANNEL_TRANSFER_CHUNK_SIZE transfer chunks}, and folders recursively.
+     *
+     * @throws IOException should not happen
+     * @throws NoSuchAlgorithmException should not happen
+     */
+    @Test
+    public void testCopyRemotelyToChunks() throws IOException, NoSuchAlgorithmException {
+        tempFile.mkdir();
+        AbstractFile sourceFile = tempFile.getDirectChild("file");
+        String md5 = createFile(sourceFile, 2 * LocalFile.CHANNEL_TRANSFER_CHUNK_SIZE + 12345);
+        AbstractFile destFile = tempFile.getDirectChild("copy");
+        // Existing contents are overwritten
+        createFile(destFile, 100);
+
+        sourceFile.copyRemotelyTo(destFile);
+        assert destFile.getSize() == sourceFile.getSize();
+        assert md5.equals(calculateMd5(destFile));
+
+        AbstractFile sourceFolder = tempFile.getDirectChild("folder");
+        sourceFolder.mkdir();
+        sourceFolder.getDirectChild("sub").mkdir();
+        md5 = createFile(sourceFolder.getDirectChild("sub").getDirectChild("file"), 1000);
+        AbstractFile destFolder = tempFile.getDirectChild("folder_copy");
+
+        sourceFolder.copyRemotelyTo(destFolder);
+        AbstractFile copiedFile = destFolder.getDirectChild("sub").getDirectChild("file");
+        assert copiedFile.exists();
+        assert md5.equals(calculateMd5(copiedFile));
+    }
+
     /**
      * Asserts that {@link com.mucommander.commons.file.impl.local.LocalFile#getUserHome()} returns a file that is not null,
      * is a directory, and exists, and that '~' can be resolved as the user home folder.
@@ -0,0 +1,276 @@
+package com.mucommander.commons.file.impl.s3;
+
+import com.mucommander.commons.io.StreamUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jets3t.service.security.AWSCredentials;
+import org.jets3t.service.utils.ServiceUtils;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests {@link S3MultipartOutputStream} against an in-memory stand-in for S3, and {@link RestS3MultipartClient}
+ * against a local HTTP server implementing the multipart upload requests.
+ *
+ * @author Oleg Trifonov
+ */
+public class S3MultipartOutputStreamTest {
+
+    private final static int PART_SIZE = S3MultipartOutputStream.MIN_PART_SIZE;
+
+    private static byte[] randomData(int length) {
+        byte data[] = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * The object must be assembled from the parts in order, with no more parts in flight than there are threads.
+     */
+    @Test
+    public void testUpload() throws IOException {
+        MemoryS3 s3 = new MemoryS3();
+        byte data[] = randomData(PART_SIZE * 5 + 12345);
+
+        S3MultipartOutputStream out = new S3MultipartOutputStream(s3, "bucket", "dir/file", PART_SIZE, 2);
+        // Write in chunks that do not match the part size
+        for (int off = 0; off < data.length; off += 100000) {
+            out.write(data, off, Math.min(100000, data.length - off));
+        }
+        out.close();
+
+        assertTrue(Arrays.equals(s3.objects.get("bucket/dir/file"), data));
+        assertEquals(s3.partCount.get(), 6);
+        assertTrue(s3.maxConcurrentParts <= 2, "max concurrent parts: "+s3.maxConcurrentParts);
+        assertTrue(s3.uploads.isEmpty());
+    }
+
+    /**
+     * An empty stream must create an empty object.
+     */
+    @Test
+    public void testEmptyUpload() throws IOException {
+        MemoryS3 s3 = new MemoryS3();
+        new S3MultipartOutputStream(s3, "bucket", "empty", PART_SIZE, 2).close();
+
+        assertEquals(s3.objects.get("bucket/empty").length, 0);
+    }
+
+    /**
+     * A failed part must abort the upload and be reported to the writer.
+     */
+    @Test
+    public void testFailedPart() {
+        MemoryS3 s3 = new MemoryS3();
+        s3.failingPart = 2;
+        S3MultipartOutputStream out = new S3MultipartOutputStream(s3, "bucket", "file", PART_SIZE, 1);
+        try {
+            out.write(randomData(PART_SIZE * 4));
+            out.close();
+            fail();
+        } catch(IOException e) {
+            // Expected
+        }
+
+        assertFalse(s3.objects.containsKey("bucket/file"));
+        assertTrue(s3.uploads.isEmpty());
+        assertEquals(s3.abortCount, 1);
+    }
+
+    /**
+     * Aborting the stream, as done when the transfer is cancelled, must discard the uploaded parts.
+     */
+    @Test
+    public void testAbort() throws IOException {
+        MemoryS3 s3 = new MemoryS3();
+        S3MultipartOutputStream out = new S3MultipartOutputStream(s3, "bucket", "file", PART_SIZE, 2);
+        out.write(randomData(PART_SIZE * 3));
+        out.abort();
+
+        assertFalse(s3.objects.containsKey("bucket/file"));
+        assertTrue(s3.uploads.isEmpty());
+        assertEquals(s3.abortCount, 1);
+    }
+
+    /**
+     * The REST client must send signed requests that a local S3-compatible server can assemble into the object.
+     */
+    @Test
+    public void testRestClient() throws IOException {
+        MemoryS3 s3 = new MemoryS3();
+        List<String> authorizations = new ArrayList<>();
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> handle(exchange, s3, authorizations));
+        server.start();
+        try {
+            AWSCredentials credentials = new AWSCredentials("access", "secret");
+            String endpoint = "http://127.0.0.1:"+server.getAddress().getPort();
+            S3MultipartClient client = new RestS3MultipartClient(endpoint, credentials);
+
+            byte data[] = randomData(PART_SIZE * 2 + 1);
+            try (S3MultipartOutputStream out = new S3MultipartOutputStream(client, "bucket", "dir/a file", PART_SIZE, 2)) {
+                out.write(data);
+            }
+
+            assertTrue(Arrays.equals(s3.objects.get("bucket/dir/a file"), data));
+            // Initiate, 3 parts and complete
+            assertEquals(authorizations.size(), 5);
+            for (String authorization : authorizations) {
+                assertTrue(authorization.startsWith("AWS access:"), authorization);
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Handles a multipart upload request in the local server, checking its signature.
+     */
+    private static void handle(HttpExchange exchange, MemoryS3 s3, List<String> authorizations) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getRawQuery();
+        String bucket = path.substring(1, path.indexOf('/', 1));
+        String key = path.substring(bucket.length() + 2);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        StreamUtils.copyStream(exchange.getRequestBody(), body);
+
+        String contentMD5 = exchange.getRequestHeaders().getFirst("Content-MD5");
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        String stringToSign = method+"\n"+(contentMD5==null?"":contentMD5)+"\n"+(contentType==null?"":contentType)+"\n"
+                +exchange.getRequestHeaders().getFirst("Date")+"\n"+exchange.getRequestURI().getRawPath()+"?"+query;
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        String expected;
+        try {
+            expected = "AWS access:"+ServiceUtils.signWithHmacSha1("secret", stringToSign);
+        } catch(Exception e) {
+            throw new IOException(e);
+        }
+        synchronized(authorizations) {
+            authorizations.add(authorization);
+        }
+        if (!expected.equals(authorization)) {
+            send(exchange, 403, "<Error><Code>SignatureDoesNotMatch</Code></Error>");
+            return;
+        }
+
+        Map<String, String> params = new TreeMap<>();
+        for (String param : query.split("&")) {
+            int eq = param.indexOf('=');
+            params.put(eq == -1 ? param : param.substring(0, eq), eq == -1 ? "" : param.substring(eq + 1));
+        }
+
+        if (method.equals("POST") && params.containsKey("uploads")) {
+            send(exchange, 200, "<InitiateMultipartUploadResult><UploadId>"+s3.initiate(bucket, key)+"</UploadId></InitiateMultipartUploadResult>");
+        } else if (method.equals("PUT")) {
+            byte part[] = body.toByteArray();
+            String etag = s3.uploadPart(bucket, key, params.get("uploadId"), Integer.parseInt(params.get("partNumber")), part, part.length);
+            exchange.getResponseHeaders().add("ETag", etag);
+            send(exchange, 200, "");
+        } else if (method.equals("POST")) {
+            String xml = new String(body.toByteArray(), StandardCharsets.UTF_8);
+            List<String> etags = new ArrayList<>();
+            for (String part : xml.split("<Part>")) {
+                String etag = RestS3MultipartClient.getElement(part, "ETag");
+                if (etag != null) {
+                    etags.add(etag);
+                }
+            }
+            s3.complete(bucket, key, params.get("uploadId"), etags);
+            send(exchange, 200, "<CompleteMultipartUploadResult/>");
+        } else {
+            s3.abort(bucket, key, params.get("uploadId"));
+            send(exchange, 204, null);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int code, String body) throws IOException {
+        byte bytes[] = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, body == null ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+
+    /**
+     * An in-memory stand-in for S3, which keeps track of the parts uploaded at the same time.
+     */
+    private static class MemoryS3 implements S3MultipartClient {
+        private final Map<String, byte[]> objects = new TreeMap<>();
+        private final Map<String, Map<Integer, byte[]>> uploads = new TreeMap<>();
+        private final AtomicInteger partCount = new AtomicInteger();
+        private int concurrentParts;
+        private int maxConcurrentParts;
+        private int abortCount;
+        /** Number of the part whose upload fails, 0 for none */
+        private int failingPart;
+
+        public synchronized String initiate(String bucketName, String key) {
+            String uploadId = "upload"+uploads.size();
+            uploads.put(uploadId, new TreeMap<>());
+            return uploadId;
+        }
+
+        public String uploadPart(String bucketName, String key, String uploadId, int partNumber, byte data[], int length) throws IOException {
+            synchronized(this) {
+                maxConcurrentParts = Math.max(maxConcurrentParts, ++concurrentParts);
+            }
+            try {
+                // Give other parts a chance to be uploaded at the same time
+                Thread.sleep(10);
+            } catch(InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                synchronized(this) {
+                    concurrentParts--;
+                }
+            }
+            if (partNumber == failingPart) {
+                throw new IOException("Part "+partNumber+" failed");
+            }
+            partCount.incrementAndGet();
+            synchronized(this) {
+                Map<Integer, byte[]> parts = uploads.get(uploadId);
+                assertNotNull(parts);
+                parts.put(partNumber, Arrays.copyOf(data, length));
+            }
+            return "\"etag"+partNumber+"\"";
+        }
+
+        public synchronized void complete(String bucketName, String key, String uploadId, List<String> etags) throws IOException {
+            Map<Integer, byte[]> parts = uploads.remove(uploadId);
+            ByteArrayOutputStream object = new ByteArrayOutputStream();
+            for (int i = 0; i < etags.size(); i++) {
+                assertEquals(etags.get(i), "\"etag"+(i+1)+"\"");
+                object.write(parts.get(i+1));
+            }
+            objects.put(bucketName+"/"+key, object.toByteArray());
+        }
+
+        public synchronized void abort(String bucketName, String key, String uploadId) {
+            uploads.remove(uploadId);
+            abortCount++;
+        }
+    }
+}
@@ -1,12 +1,26 @@
 package com.mucommander.commons.file.impl.zip;
 
 import com.mucommander.commons.file.*;
+import com.mucommander.commons.io.StreamUtils;
+import org.testng.annotations.AfterClass;
 import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * An {@link AbstractFileTest} implementation, which performs tests on {@link AbstractArchiveEntryFile}
@@ -23,6 +37,12 @@ public class ZipArchiveFileTest extends AbstractFileTest {
     /** id of the last temporary entry generated, to avoid collisions */
     private int entryNum;
 
+    /**
+     * Resolves the temporary '.zip' file as a {@link ZipArchiveFile}, archive formats are only registered by the
+     * application on startup
+     */
+    private static ArchiveFormatProvider zipFormatProvider;
+
 
     /////////////////////////////////////
     // AbstractFileTest implementation //
@@ -54,6 +74,17 @@ public class ZipArchiveFileTest extends AbstractFileTest {
     // Overridden methods //
     ////////////////////////
 
+    @BeforeClass
+    public static void registerZipFormat() {
+        zipFormatProvider = new ZipFormatProvider();
+        FileFactory.registerArchiveFormat(zipFormatProvider);
+    }
+
+    @AfterClass
+    public static void unregisterZipFormat() {
+        FileFactory.unregisterArchiveFormat(zipFormatProvider);
+    }
+
     /**
      * Overridden to create the archive file before each test.
      */
@@ -100,6 +131,62 @@ public class ZipArchiveFileTest extends AbstractFileTest {
         // the archive file is another instance which isn't aware of the change, because the file date hasn't changed (?).
     }
 
+    /**
+     * Asserts that entries can be read from several threads at the same time, as when they are extracted concurrently.
+     *
+     * @throws Exception should not happen
+     */
+    @Test
+    public void testConcurrentEntryAccess() throws Exception {
+        assert tempZipFile.isConcurrentEntryAccessSupported();
+
+        Random random = new Random(0);
+        Map<String, byte[]> contents = new HashMap<>();
+        for (int i = 0; i < 8; i++) {
+            byte data[] = new byte[100000 + random.nextInt(100000)];
+            for (int j = 0; j < data.length; j += 1 + random.nextInt(10)) {
+                data[j] = (byte)random.nextInt();
+            }
+            AbstractFile entryFile = getTemporaryFile();
+            try (OutputStream out = entryFile.getOutputStream()) {
+                out.write(data);
+            }
+            contents.put(entryFile.getName(), data);
+        }
+
+        List<ArchiveEntry> entries = new ArrayList<>();
+        ArchiveEntryIterator iterator = tempZipFile.getEntryIterator();
+        try {
+            ArchiveEntry entry;
+            while ((entry = iterator.nextEntry()) != null) {
+                entries.add(entry);
+            }
+        } finally {
+            iterator.close();
+        }
+        assert entries.size() == contents.size();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (ArchiveEntry entry : entries) {
+                results.add(executor.submit(() -> {
+                    byte expected[] = contents.get(entry.getName());
+                    byte data[] = new byte[expected.length];
+                    try (InputStream in = tempZipFile.getEntryInputStream(entry, null)) {
+                        StreamUtils.readFully(in, data);
+                        return Arrays.equals(data, expected) && in.read() == -1;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assert result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
 //    /**
 //     * Tests the Zip32 4GB limit by asserting two things:
 //     * <ul>
@@ -0,0 +1,339 @@
+package com.mucommander.commons.file.impl.zip.provider;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.io.StreamUtils;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests the concurrent compression of entries by {@link ZipOutputStream} and the Zip64 records it writes, using
+ * <code>java.util.zip</code> and {@link ZipFile} to read the archives back.
+ *
+ * @author Oleg Trifonov
+ */
+@Test
+public class ZipOutputStreamTest {
+
+    /**
+     * Returns entries of various sizes and compressibility, including one larger than
+     * {@link ZipOutputStream#MAX_SPOOLED_ENTRY_SIZE}.
+     */
+    private static Map<String, byte[]> createEntries() {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        Random random = new Random(0);
+        for (int i = 0; i < 50; i++) {
+            byte data[] = new byte[random.nextInt(200000)];
+            if (i % 3 == 0) {
+                random.nextBytes(data);
+            } else {
+                for (int j = 0; j < data.length; j++) {
+                    data[j] = (byte)('a' + (j / 7 + i) % 26);
+                }
+            }
+            entries.put("dir/entry" + i, data);
+        }
+        entries.put("empty", new byte[0]);
+        byte large[] = new byte[ZipOutputStream.MAX_SPOOLED_ENTRY_SIZE + 1000];
+        Arrays.fill(large, (byte)'x');
+        entries.put("large", large);
+        return entries;
+    }
+
+    /** Zip64 threshold used to test Zip64 sizes without writing 4 GB entries */
+    private static final long ZIP64_THRESHOLD = 100000;
+
+    private static byte[] writeZip(Map<String, byte[]> entries, int threads, boolean declareSizes) throws IOException {
+        return writeZip(entries, threads, declareSizes, ZipConstants.MAX_ZIP32_SIZE);
+    }
+
+    private static byte[] writeZip(Map<String, byte[]> entries, int threads, boolean declareSizes, long zip64Threshold)
+            throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        ZipOutputStream zos = new ZipOutputStream(bout);
+        zos.setZip64Threshold(zip64Threshold);
+        zos.setThreads(threads);
+        writeEntries(zos, entries, declareSizes);
+        return bout.toByteArray();
+    }
+
+    private static void writeEntries(ZipOutputStream zos, Map<String, byte[]> entries, boolean declareSizes)
+            throws IOException {
+        for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+            ZipEntry entry = new ZipEntry(e.getKey());
+            entry.setTime(1500000000000L);
+            if (declareSizes) {
+                entry.setSize(e.getValue().length);
+            }
+            zos.putNextEntry(entry);
+            // Write in small chunks as the archiver does
+            byte data[] = e.getValue();
+            for (int off = 0; off < data.length; off += 8192) {
+                zos.write(data, off, Math.min(8192, data.length - off));
+            }
+        }
+        zos.close();
+    }
+
+    private static void assertReadableByJavaUtilZip(byte zip[], Map<String, byte[]> entries) throws IOException {
+        // Streaming reader, which relies on local file headers and data descriptors
+        try (java.util.zip.ZipInputStream zis = new java.util.zip.ZipInputStream(new ByteArrayInputStream(zip))) {
+            int count = 0;
+            java.util.zip.ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                assertTrue(Arrays.equals(readFully(zis), entries.get(entry.getName())), entry.getName());
+                count++;
+            }
+            assertEquals(count, entries.size());
+        }
+
+        assertReadableByJavaUtilZipFile(zip, entries);
+    }
+
+    /**
+     * Reads the archive with the random access reader of <code>java.util.zip</code>, which relies on the central
+     * directory.
+     */
+    private static void assertReadableByJavaUtilZipFile(byte zip[], Map<String, byte[]> entries) throws IOException {
+        File file = File.createTempFile(ZipOutputStreamTest.class.getSimpleName(), ".zip");
+        try {
+            try (OutputStream out = new java.io.FileOutputStream(file)) {
+                out.write(zip);
+            }
+            try (java.util.zip.ZipFile zipFile = new java.util.zip.ZipFile(file)) {
+                assertEquals(zipFile.size(), entries.size());
+                for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+                    java.util.zip.ZipEntry entry = zipFile.getEntry(e.getKey());
+                    assertEquals(entry.getSize(), e.getValue().length);
+                    try (InputStream in = zipFile.getInputStream(entry)) {
+                        assertTrue(Arrays.equals(readFully(in), e.getValue()), e.getKey());
+                    }
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        StreamUtils.copyStream(in, bout);
+        return bout.toByteArray();
+    }
+
+    /**
+     * Entries compressed concurrently must be readable by <code>java.util.zip</code>.
+     */
+    @Test
+    public void testParallelEntries() throws IOException {
+        Map<String, byte[]> entries = createEntries();
+        assertReadableByJavaUtilZip(writeZip(entries, 4, true), entries);
+    }
+
+    /**
+     * The archive must not depend on the number of threads compressing entries.
+     */
+    @Test
+    public void testDeterministicOutput() throws IOException {
+        Map<String, byte[]> entries = createEntries();
+        assertTrue(Arrays.equals(writeZip(entries, 2, true), writeZip(entries, 8, true)));
+    }
+
+    /**
+     * Entries of unknown size are compressed inline, after the pending entries, and use a data descriptor.
+     */
+    @Test
+    public void testEntriesOfUnknownSize() throws IOException {
+        Map<String, byte[]> entries = createEntries();
+        assertReadableByJavaUtilZip(writeZip(entries, 4, false), entries);
+        assertReadableByJavaUtilZip(writeZip(entries, 1, true), entries);
+    }
+
+    /**
+     * Archives written concurrently must be readable by {@link ZipFile}.
+     */
+    @Test
+    public void testReadableByZipFile() throws IOException {
+        Map<String, byte[]> entries = createEntries();
+        assertReadableByZipFile(writeZip(entries, 4, true), entries);
+    }
+
+    private static void assertReadableByZipFile(byte zip[], Map<String, byte[]> entries) throws IOException {
+        AbstractFile file = FileFactory.getTemporaryFile(ZipOutputStreamTest.class.getName() + ".zip", true);
+        try {
+            try (OutputStream out = file.getOutputStream()) {
+                out.write(zip);
+            }
+            ZipFile zipFile = new ZipFile(file);
+            assertEquals(zipFile.getNbEntries(), entries.size());
+            for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+                try (InputStream in = zipFile.getInputStream(zipFile.getEntry(e.getKey()))) {
+                    assertTrue(Arrays.equals(readFully(in), e.getValue()), e.getKey());
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * More entries than the Zip32 format allows require Zip64 end of central directory records.
+     */
+    @Test
+    public void testZip64EntryCount() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        for (int i = 0; i < 70000; i++) {
+            entries.put("e" + i, i % 1000 == 0 ? new byte[] {(byte)i} : new byte[0]);
+        }
+        byte zip[] = writeZip(entries, 4, true);
+
+        File file = File.createTempFile(ZipOutputStreamTest.class.getSimpleName(), ".zip");
+        try {
+            try (OutputStream out = new java.io.FileOutputStream(file)) {
+                out.write(zip);
+            }
+            try (java.util.zip.ZipFile zipFile = new java.util.zip.ZipFile(file)) {
+                assertEquals(zipFile.size(), entries.size());
+                java.util.zip.ZipEntry entry = zipFile.getEntry("e69000");
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    assertTrue(Arrays.equals(readFully(in), entries.get("e69000")));
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Entries whose size exceeds the Zip64 threshold have a Zip64 extra field in their local file header, holding
+     * the sizes written in their 8-byte data descriptor.
+     */
+    @Test
+    public void testZip64DataDescriptor() throws IOException {
+        Map<String, byte[]> entries = createEntries();
+        byte zip[] = writeZip(entries, 1, true, ZIP64_THRESHOLD);
+        assertReadableByJavaUtilZipFile(zip, entries);
+        assertReadableByZipFile(zip, entries);
+
+        // Walk through the local file headers and data descriptors, the entries are written in order
+        int nbZip64 = 0;
+        int pos = 0;
+        try (java.util.zip.ZipFile zipFile = openJavaUtilZipFile(zip)) {
+            for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+                long size = e.getValue().length;
+                long compressedSize = zipFile.getEntry(e.getKey()).getCompressedSize();
+                boolean zip64 = size >= ZIP64_THRESHOLD;
+
+                assertEquals(readInt(zip, pos), 0x04034b50L);
+                assertEquals(readShort(zip, pos + 4), zip64 ? 45 : 20, e.getKey());
+                assertEquals(readShort(zip, pos + 6) & 8, 8);      // data descriptor flag
+                int nameLength = readShort(zip, pos + 26);
+                int extraLength = readShort(zip, pos + 28);
+                if (zip64) {
+                    nbZip64++;
+                    assertEquals(readInt(zip, pos + 18), ZipConstants.MAX_ZIP32_SIZE);
+                    assertEquals(readInt(zip, pos + 22), ZipConstants.MAX_ZIP32_SIZE);
+                    // The Zip64 extra field ends the header, its sizes are left to 0
+                    int extra = pos + 30 + nameLength + extraLength - 20;
+                    assertEquals(readShort(zip, extra), 0x0001);
+                    assertEquals(readShort(zip, extra + 2), 16);
+                    assertEquals(readLong(zip, extra + 4), 0);
+                    assertEquals(readLong(zip, extra + 12), 0);
+                } else {
+                    assertEquals(readInt(zip, pos + 18), 0);
+                    assertEquals(readInt(zip, pos + 22), 0);
+                }
+
+                int dd = (int)(pos + 30 + nameLength + extraLength + compressedSize);
+                assertEquals(readInt(zip, dd), 0x08074b50L);
+                if (zip64) {
+                    assertEquals(readLong(zip, dd + 8), compressedSize);
+                    assertEquals(readLong(zip, dd + 16), size);
+                    pos = dd + 24;
+                } else {
+                    assertEquals(readInt(zip, dd + 8), compressedSize);
+                    assertEquals(readInt(zip, dd + 12), size);
+                    pos = dd + 16;
+                }
+            }
+        }
+        assertTrue(nbZip64 > 0 && nbZip64 < entries.size());
+        // The central directory follows the last data descriptor
+        assertEquals(readInt(zip, pos), 0x02014b50L);
+    }
+
+    /**
+     * On a random access stream, entries of unknown size reserve a Zip64 extra field in their local file header, in
+     * which the sizes are written once known.
+     */
+    @Test
+    public void testZip64LocalFileHeader() throws IOException {
+        Map<String, byte[]> entries = createEntries();
+        AbstractFile file = FileFactory.getTemporaryFile(ZipOutputStreamTest.class.getName() + ".zip", true);
+        try {
+            ZipOutputStream zos = new ZipOutputStream(file.getRandomAccessOutputStream());
+            zos.setZip64Threshold(ZIP64_THRESHOLD);
+            writeEntries(zos, entries, false);
+
+            byte zip[];
+            try (InputStream in = file.getInputStream()) {
+                zip = readFully(in);
+            }
+            assertReadableByJavaUtilZip(zip, entries);
+            assertReadableByZipFile(zip, entries);
+            // No data descriptor is needed
+            assertEquals(readShort(zip, 6) & 8, 0);
+            assertEquals(readShort(zip, 4), 45);
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Entries compressed concurrently have their sizes in the Zip64 extra field of their local file header.
+     */
+    @Test
+    public void testZip64SpooledEntries() throws IOException {
+        Map<String, byte[]> entries = createEntries();
+        // Only keep spooled entries, which have no data descriptor
+        entries.remove("large");
+        byte zip[] = writeZip(entries, 4, true, ZIP64_THRESHOLD);
+        assertReadableByJavaUtilZip(zip, entries);
+        assertReadableByZipFile(zip, entries);
+        assertTrue(Arrays.equals(zip, writeZip(entries, 2, true, ZIP64_THRESHOLD)));
+    }
+
+    private static java.util.zip.ZipFile openJavaUtilZipFile(byte zip[]) throws IOException {
+        File file = File.createTempFile(ZipOutputStreamTest.class.getSimpleName(), ".zip");
+        file.deleteOnExit();
+        try (OutputStream out = new java.io.FileOutputStream(file)) {
+            out.write(zip);
+        }
+        return new java.util.zip.ZipFile(file, java.util.zip.ZipFile.OPEN_READ | java.util.zip.ZipFile.OPEN_DELETE);
+    }
+
+    private static int readShort(byte data[], int off) {
+        return (data[off] & 0xFF) | (data[off + 1] & 0xFF) << 8;
+    }
+
+    private static long readInt(byte data[], int off) {
+        return readShort(data, off) | (long)readShort(data, off + 2) << 16;
+    }
+
+    private static long readLong(byte data[], int off) {
+        return readInt(data, off) | readInt(data, off + 4) << 32;
+    }
+}
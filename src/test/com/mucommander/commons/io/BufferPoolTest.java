@@ -22,6 +22,11 @@ import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * This class is a TestNG test case for {@link BufferPool}.
  *
@@ -81,6 +86,62 @@ public class BufferPoolTest {
         testBuffer(new BufferPool.CharBufferFactory());
     }
 
+    /**
+     * Tests the hit, miss and allocation counters.
+     */
+    @Test
+    public void testStatistics() {
+        BufferPool.resetStatistics();
+        byte[] buffer = BufferPool.getByteArray(TEST_BUFFER_SIZE_1);
+        Assert.assertEquals(BufferPool.getMissCount(), 1);
+        Assert.assertEquals(BufferPool.getHitCount(), 0);
+        Assert.assertEquals(BufferPool.getAllocatedBytes(), TEST_BUFFER_SIZE_1);
+
+        BufferPool.releaseByteArray(buffer);
+        Assert.assertSame(BufferPool.getByteArray(TEST_BUFFER_SIZE_1), buffer);
+        Assert.assertEquals(BufferPool.getMissCount(), 1);
+        Assert.assertEquals(BufferPool.getHitCount(), 1);
+        Assert.assertEquals(BufferPool.getAllocatedBytes(), TEST_BUFFER_SIZE_1);
+    }
+
+    /**
+     * Asserts that concurrent threads never obtain the same buffer and leave the pool consistent.
+     */
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        final int nbThreads = 8;
+        final int nbIterations = 10000;
+        final Set<byte[]> inUse = Collections.newSetFromMap(new IdentityHashMap<>());
+        final AtomicBoolean failed = new AtomicBoolean();
+        Thread[] threads = new Thread[nbThreads];
+        for (int t = 0; t < nbThreads; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < nbIterations; i++) {
+                    byte[] buffer = BufferPool.getByteArray(TEST_BUFFER_SIZE_2 + i % 2);
+                    synchronized (inUse) {
+                        if (!inUse.add(buffer)) {
+                            failed.set(true);
+                        }
+                    }
+                    synchronized (inUse) {
+                        inUse.remove(buffer);
+                    }
+                    BufferPool.releaseByteArray(buffer);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertFalse(failed.get());
+        Assert.assertTrue(BufferPool.getBufferCount() <= 2 * nbThreads);
+        Assert.assertTrue(BufferPool.getPoolSize() <= BufferPool.getMaxPoolSize());
+        BufferPool.releaseAll();
+        Assert.assertEquals(BufferPool.getPoolSize(), 0);
+        Assert.assertEquals(BufferPool.getBufferCount(), 0);
+    }
+
     /**
      * Tests <code>BufferPool</code> with <code>ByteBuffer</code> buffers.
      *
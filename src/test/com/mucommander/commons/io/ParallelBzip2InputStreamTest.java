@@ -0,0 +1,273 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2010 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import org.apache.hadoop.io.compress.bzip2.CBZip2OutputStream;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests {@link ParallelBzip2InputStream} with the output of the single-threaded and multi-threaded compressors.
+ *
+ * @author Oleg Trifonov
+ */
+public class ParallelBzip2InputStreamTest {
+
+    private static final long BLOCK_MAGIC = 0x314159265359L;
+
+    private static final long END_OF_STREAM_MAGIC = 0x177245385090L;
+
+    /**
+     * Returns data that is partly random and partly repetitive.
+     */
+    private static byte[] createData(int length) {
+        Random random = new Random(length);
+        byte data[] = new byte[length];
+        int i = 0;
+        while (i < length) {
+            int n = Math.min(length - i, 1 + random.nextInt(5000));
+            if (random.nextBoolean()) {
+                for (int j = 0; j < n; j++) {
+                    data[i + j] = (byte)random.nextInt();
+                }
+            } else {
+                Arrays.fill(data, i, i + n, (byte)('a' + random.nextInt(4)));
+            }
+            i += n;
+        }
+        return data;
+    }
+
+    /**
+     * Compresses the given data with {@link CBZip2OutputStream}, which produces a single stream.
+     */
+    private static byte[] compress(byte data[], int level) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        // CBZip2OutputStream does not write the magic bytes
+        bout.write('B');
+        bout.write('Z');
+        try (CBZip2OutputStream out = new CBZip2OutputStream(bout, level)) {
+            out.write(data);
+        }
+        return bout.toByteArray();
+    }
+
+    private static byte[] decompress(byte compressed[], int threads) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (InputStream in = new ParallelBzip2InputStream(new ByteArrayInputStream(compressed), threads)) {
+            // Read in uneven chunks to cross block boundaries in the middle of reads
+            byte buffer[] = new byte[100000];
+            int chunk = 1;
+            int n;
+            while ((n = in.read(buffer, 0, chunk)) != -1) {
+                result.write(buffer, 0, n);
+                chunk = (chunk * 3 + 7) % buffer.length + 1;
+            }
+        }
+        return result.toByteArray();
+    }
+
+    @DataProvider(name = "lengths")
+    public Object[][] lengths() {
+        return new Object[][] {{1}, {1000}, {100000}, {3 * 1024 * 1024 + 17}};
+    }
+
+    @Test(dataProvider = "lengths")
+    public void testSingleThreadedCompressor(int length) throws IOException {
+        byte data[] = createData(length);
+        for (int level : new int[] {1, 9}) {
+            byte compressed[] = compress(data, level);
+            for (int threads : new int[] {1, 4}) {
+                assertTrue(Arrays.equals(decompress(compressed, threads), data));
+            }
+        }
+    }
+
+    @Test(dataProvider = "lengths")
+    public void testParallelCompressor(int length) throws IOException {
+        byte data[] = createData(length);
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (ParallelBzip2OutputStream out = new ParallelBzip2OutputStream(bout, 1, 4)) {
+            out.write(data);
+        }
+        assertTrue(Arrays.equals(decompress(bout.toByteArray(), 4), data));
+    }
+
+    /**
+     * Empty streams, and concatenated streams as written by pbzip2, must be supported.
+     */
+    @Test
+    public void testConcatenatedStreams() throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        // Empty stream
+        new ParallelBzip2OutputStream(bout, 9, 1).close();
+        assertTrue(Arrays.equals(decompress(bout.toByteArray(), 2), new byte[0]));
+
+        byte data[] = createData(500000);
+        bout.write(compress(Arrays.copyOfRange(data, 0, 200000), 1));
+        bout.write(compress(Arrays.copyOfRange(data, 200000, data.length), 5));
+        assertTrue(Arrays.equals(decompress(bout.toByteArray(), 2), data));
+    }
+
+    /**
+     * Blocks that decompress to more than {@link ParallelBzip2InputStream#MAX_BUFFERED_BLOCK_SIZE} bytes must be
+     * read entirely.
+     */
+    @Test
+    public void testLargeBlocks() throws IOException {
+        byte data[] = new byte[3 * ParallelBzip2InputStream.MAX_BUFFERED_BLOCK_SIZE + 1];
+        Arrays.fill(data, 1000, data.length, (byte)'x');
+        assertTrue(Arrays.equals(decompress(compress(data, 9), 2), data));
+    }
+
+    @Test
+    public void testCorruptData() throws IOException {
+        byte data[] = createData(1024 * 1024);
+        byte compressed[] = compress(data, 1);
+
+        // Not bzip2
+        try {
+            decompress(data, 2);
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+
+        // Truncated
+        try {
+            decompress(Arrays.copyOf(compressed, compressed.length / 2), 2);
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+
+        // Corrupt block
+        byte corrupt[] = compressed.clone();
+        corrupt[compressed.length / 2] ^= 0x10;
+        try {
+            decompress(corrupt, 2);
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+
+        // Corrupt combined CRC, in the last 4 bytes along with the padding
+        corrupt = compressed.clone();
+        corrupt[compressed.length - 2] ^= 0x10;
+        try {
+            decompress(corrupt, 2);
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Returns data whose compressed block contains the given magic number: the block header holds the 16 low-order
+     * bits of the origin pointer, which are the 16 high-order bits of the magic number, followed by the bitmap of the
+     * 16-byte ranges of the bytes in use and by the bitmap of the bytes in use in the first range.
+     */
+    private static byte[] createDataWithMagic(long magic) {
+        int origPtr = (int)(magic >>> 32);
+        int ranges = (int)(magic >>> 16) & 0xFFFF;
+        int firstRange = (int)magic & 0xFFFF;
+
+        List<Integer> values = new ArrayList<>();
+        for (int range = 0; range < 16; range++) {
+            if ((ranges & (0x8000 >>> range)) == 0) {
+                continue;
+            }
+            if (values.isEmpty()) {
+                for (int i = 0; i < 16; i++) {
+                    if ((firstRange & (0x8000 >>> i)) != 0) {
+                        values.add(range * 16 + i);
+                    }
+                }
+            } else {
+                values.add(range * 16);
+            }
+        }
+
+        // The greatest byte appears once, first: the original string is the last rotation in sorted order
+        byte data[] = new byte[origPtr + 1];
+        data[0] = (byte)(int)values.remove(values.size() - 1);
+        Random random = new Random(magic);
+        for (int i = 1; i < data.length; i++) {
+            // No runs of 4 bytes, which would be run-length encoded before the block is sorted
+            do {
+                data[i] = (byte)(int)values.get(random.nextInt(values.size()));
+            } while (i >= 3 && data[i] == data[i - 1] && data[i] == data[i - 2] && data[i] == data[i - 3]);
+        }
+        return data;
+    }
+
+    /**
+     * Returns the number of times the given magic number appears in the given compressed data, at any bit.
+     */
+    private static int countMagic(byte compressed[], long magic) {
+        int count = 0;
+        long bits = 0;
+        for (int i = 0; i < compressed.length * 8; i++) {
+            bits = (bits << 1) | ((compressed[i / 8] >>> (7 - i % 8)) & 1);
+            if (i >= 47 && (bits & 0xFFFFFFFFFFFFL) == magic) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Block and end of stream magic numbers that appear within compressed data must not be mistaken for the start
+     * of a block or for the end of a stream.
+     */
+    @Test
+    public void testFalseMagic() throws IOException {
+        ByteArrayOutputStream concatenated = new ByteArrayOutputStream();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (long magic : new long[] {BLOCK_MAGIC, END_OF_STREAM_MAGIC}) {
+            byte data[] = createDataWithMagic(magic);
+            byte compressed[] = compress(data, 1);
+            // The magic number that starts the block or ends the stream, and the one within the block
+            assertEquals(countMagic(compressed, magic), 2);
+            for (int threads : new int[] {1, 4}) {
+                assertTrue(Arrays.equals(decompress(compressed, threads), data));
+            }
+
+            concatenated.write(compressed);
+            expected.write(data);
+            data = createData(300000);
+            concatenated.write(compress(data, 1));
+            expected.write(data);
+        }
+        assertTrue(Arrays.equals(decompress(concatenated.toByteArray(), 2), expected.toByteArray()));
+    }
+}
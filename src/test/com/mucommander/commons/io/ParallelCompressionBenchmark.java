@@ -0,0 +1,119 @@
+package com.mucommander.commons.io;
+
+import org.apache.hadoop.io.compress.bzip2.CBZip2InputStream;
+import org.apache.hadoop.io.compress.bzip2.CBZip2OutputStream;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Measures the throughput of the single-threaded gzip and bzip2 compressors used by
+ * {@link com.mucommander.commons.file.archiver.Archiver} against {@link ParallelGzipOutputStream} and
+ * {@link ParallelBzip2OutputStream}. The compressed data is a mix of text-like and random bytes, and is written to
+ * a stream that discards it. The bzip2 decompressor used to read archives is measured against
+ * {@link ParallelBzip2InputStream} as well.
+ *
+ * <p>Run as a plain application: <code>java com.mucommander.commons.io.ParallelCompressionBenchmark</code>
+ */
+public class ParallelCompressionBenchmark {
+
+    private static final int SIZE = 64 * 1024 * 1024;
+
+    private static final int RUNS = 3;
+
+    private interface StreamFactory {
+        OutputStream create(OutputStream out) throws IOException;
+    }
+
+    private interface InputStreamFactory {
+        InputStream create(InputStream in) throws IOException;
+    }
+
+    public static void main(String args[]) throws IOException {
+        byte data[] = createData();
+        final int threads = Runtime.getRuntime().availableProcessors();
+        for (int run = 0; run < RUNS; run++) {
+            double gzip = measure(data, out -> new GZIPOutputStream(out));
+            double parallelGzip = measure(data, out -> new ParallelGzipOutputStream(out, -1, threads));
+            double bzip2 = measure(data, out -> new CBZip2OutputStream(out, 9));
+            double parallelBzip2 = measure(data, out -> new ParallelBzip2OutputStream(out, 9, threads));
+            System.out.printf("gzip %7.1f MB/s, parallel gzip %7.1f MB/s, bzip2 %7.1f MB/s, parallel bzip2 %7.1f MB/s (%d threads)%n",
+                    gzip, parallelGzip, bzip2, parallelBzip2, threads);
+        }
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (OutputStream out = new ParallelBzip2OutputStream(bout, 9, threads)) {
+            out.write(data);
+        }
+        byte compressed[] = bout.toByteArray();
+        for (int run = 0; run < RUNS; run++) {
+            double bunzip2 = measure(compressed, data.length, in -> {
+                // CBZip2InputStream expects the magic bytes to have been skipped
+                StreamUtils.skipFully(in, 2);
+                return new CBZip2InputStream(new BufferedInputStream(in));
+            });
+            double parallelBunzip2 = measure(compressed, data.length, in -> new ParallelBzip2InputStream(in, threads));
+            System.out.printf("bunzip2 %7.1f MB/s, parallel bunzip2 %7.1f MB/s (%d threads)%n",
+                    bunzip2, parallelBunzip2, threads);
+        }
+    }
+
+    private static byte[] createData() {
+        byte data[] = new byte[SIZE];
+        Random random = new Random(0);
+        String words[] = {"muCommander ", "archive ", "compression ", "block ", "stream ", "thread ", "\n"};
+        int pos = 0;
+        while (pos < SIZE) {
+            if (random.nextInt(8) == 0) {
+                int len = Math.min(SIZE - pos, 256);
+                for (int i = 0; i < len; i++) {
+                    data[pos++] = (byte)random.nextInt();
+                }
+            } else {
+                byte word[] = words[random.nextInt(words.length)].getBytes();
+                int len = Math.min(SIZE - pos, word.length);
+                System.arraycopy(word, 0, data, pos, len);
+                pos += len;
+            }
+        }
+        return data;
+    }
+
+    private static double measure(byte data[], StreamFactory factory) throws IOException {
+        long start = System.nanoTime();
+        try (OutputStream out = factory.create(new SinkOutputStream())) {
+            for (int pos = 0; pos < data.length; pos += 65536) {
+                out.write(data, pos, Math.min(65536, data.length - pos));
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return data.length / (1024.0 * 1024.0) / seconds;
+    }
+
+    private static double measure(byte compressed[], int length, InputStreamFactory factory) throws IOException {
+        long start = System.nanoTime();
+        byte buffer[] = new byte[65536];
+        try (InputStream in = factory.create(new ByteArrayInputStream(compressed))) {
+            while (in.read(buffer) != -1) {
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return length / (1024.0 * 1024.0) / seconds;
+    }
+
+    private static class SinkOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte b[], int off, int len) {
+        }
+    }
+}
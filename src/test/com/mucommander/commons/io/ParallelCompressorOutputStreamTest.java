@@ -0,0 +1,187 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2010 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import org.apache.hadoop.io.compress.bzip2.CBZip2InputStream;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests {@link ParallelGzipOutputStream} and {@link ParallelBzip2OutputStream} by decompressing their output with
+ * the single-threaded decompressors.
+ *
+ * @author Oleg Trifonov
+ */
+public class ParallelCompressorOutputStreamTest {
+
+    /**
+     * Returns data that is partly random and partly repetitive, so that both the literals and the matches of the
+     * compressors are exercised.
+     */
+    private static byte[] createData(int length) {
+        Random random = new Random(length);
+        byte data[] = new byte[length];
+        int i = 0;
+        while (i < length) {
+            int n = Math.min(length - i, 1 + random.nextInt(5000));
+            if (random.nextBoolean()) {
+                for (int j = 0; j < n; j++) {
+                    data[i + j] = (byte)('a' + random.nextInt(4));
+                }
+            } else if (i > 0) {
+                int from = random.nextInt(i);
+                for (int j = 0; j < n; j++) {
+                    data[i + j] = data[from + j % (i - from)];
+                }
+            }
+            i += n;
+        }
+        return data;
+    }
+
+    @DataProvider(name = "lengths")
+    public Object[][] lengths() {
+        return new Object[][] {{0}, {1}, {1000}, {ParallelGzipOutputStream.BLOCK_SIZE}, {ParallelGzipOutputStream.BLOCK_SIZE + 1}, {3 * 1024 * 1024 + 17}};
+    }
+
+    private static byte[] compress(OutputStream out, ByteArrayOutputStream bout, byte data[]) throws IOException {
+        // Write in uneven chunks to cross block boundaries in the middle of writes
+        int i = 0;
+        int chunk = 1;
+        while (i < data.length) {
+            int n = Math.min(data.length - i, chunk);
+            if (n == 1) {
+                out.write(data[i]);
+            } else {
+                out.write(data, i, n);
+            }
+            i += n;
+            chunk = chunk * 3 + 7;
+        }
+        out.close();
+        return bout.toByteArray();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte buffer[] = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            result.write(buffer, 0, n);
+        }
+        return result.toByteArray();
+    }
+
+    @Test(dataProvider = "lengths")
+    public void testGzip(int length) throws IOException {
+        byte data[] = createData(length);
+        for (int threads : new int[] {1, 4}) {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            byte compressed[] = compress(new ParallelGzipOutputStream(bout, Deflater.DEFAULT_COMPRESSION, threads), bout, data);
+            byte decompressed[] = readFully(new GZIPInputStream(new ByteArrayInputStream(compressed)));
+            assertTrue(Arrays.equals(decompressed, data));
+        }
+    }
+
+    @Test(dataProvider = "lengths")
+    public void testBzip2(int length) throws IOException {
+        byte data[] = createData(length);
+        for (int level : new int[] {1, 9}) {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            byte compressed[] = compress(new ParallelBzip2OutputStream(bout, level, 4), bout, data);
+            assertEquals(new String(compressed, 0, 4, "US-ASCII"), "BZh" + level);
+
+            // CBZip2InputStream expects the magic bytes to have been skipped
+            InputStream in = new ByteArrayInputStream(compressed, 2, compressed.length - 2);
+            byte decompressed[] = length == 0 ? new byte[0] : readFully(new CBZip2InputStream(new BufferedInputStream(in)));
+            assertTrue(Arrays.equals(decompressed, data));
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if a compression thread of the given stream class is alive.
+     */
+    private static boolean hasCompressionThreads(Class<?> streamClass) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().equals(streamClass.getSimpleName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The compression threads must be stopped when writing to the underlying stream fails, even if the stream is
+     * not closed afterwards.
+     */
+    @Test
+    public void testWriteError() throws InterruptedException {
+        OutputStream failingOut = new OutputStream() {
+            private int written;
+
+            @Override
+            public void write(int b) throws IOException {
+                // The header is written, not the first compressed block
+                if (++written > 100) {
+                    throw new IOException("Disk full");
+                }
+            }
+        };
+        OutputStream out = new ParallelGzipOutputStream(failingOut, Deflater.DEFAULT_COMPRESSION, 4);
+        byte data[] = createData(ParallelGzipOutputStream.BLOCK_SIZE);
+        try {
+            for (int i = 0; i < 20; i++) {
+                out.write(data);
+            }
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+
+        try {
+            out.write(data);
+            fail();
+        } catch (IOException e) {
+            // Expected, the stream can no longer be written
+        }
+
+        // Well below the time after which idle threads are stopped
+        long deadline = System.currentTimeMillis() + 2000;
+        while (hasCompressionThreads(ParallelGzipOutputStream.class) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(hasCompressionThreads(ParallelGzipOutputStream.class));
+    }
+}
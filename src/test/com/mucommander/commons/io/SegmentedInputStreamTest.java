@@ -0,0 +1,214 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2010 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests {@link SegmentedInputStream} with a stand-in for a remote file that serves ranges out of an array.
+ *
+ * @author Oleg Trifonov
+ */
+public class SegmentedInputStreamTest {
+
+    private final static int SEGMENT_SIZE = 64 * 1024;
+
+    /**
+     * Serves ranges of an array, failing the first request of some segments, and keeps track of the number of
+     * segments read at the same time and of the validators sent by the requests.
+     */
+    private static class ArrayStream extends SegmentedInputStream {
+        private final byte data[];
+        /** Offsets of the segments whose first request fails */
+        private final Set<Long> failingOffsets = new HashSet<>();
+        /** True if every request fails */
+        private final boolean alwaysFail;
+        private int concurrentReads;
+        private int maxConcurrentReads;
+        private int nbRequests;
+        /** Version of the array returned as the validator of the responses */
+        private volatile String version = "1";
+        /** Version changed to once the first segment has been served, <code>null</code> to keep the same version */
+        private String nextVersion;
+        /** Validators sent by the requests of the segments other than the first one */
+        private final Set<String> sentValidators = new HashSet<>();
+
+        private ArrayStream(byte data[], long offset, int concurrency, int retries, boolean alwaysFail) {
+            super(offset, data.length - offset, SEGMENT_SIZE, concurrency, retries);
+            this.data = data;
+            this.alwaysFail = alwaysFail;
+        }
+
+        @Override
+        protected int readSegment(long offset, byte b[], int len) throws IOException {
+            synchronized(this) {
+                nbRequests++;
+                maxConcurrentReads = Math.max(maxConcurrentReads, ++concurrentReads);
+            }
+            try {
+                Thread.sleep(2);
+                synchronized(this) {
+                    if (alwaysFail || failingOffsets.remove(offset)) {
+                        throw new IOException("Connection reset");
+                    }
+                    if (getValidator() != null) {
+                        sentValidators.add(getValidator());
+                    }
+                }
+                checkValidator(version);
+                if (nextVersion != null) {
+                    version = nextVersion;
+                }
+                System.arraycopy(data, (int)offset, b, 0, len);
+                return len;
+            } catch(InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                synchronized(this) {
+                    concurrentReads--;
+                }
+            }
+        }
+    }
+
+    private static byte[] createData(int length) {
+        byte data[] = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] readAll(SegmentedInputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // Mix single byte and array reads
+        out.write(in.read());
+        StreamUtils.copyStream(in, out, 10000);
+        in.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * Segments must be returned in order, with no more than <code>concurrency</code> of them read at the same time.
+     */
+    @Test
+    public void testRead() throws IOException {
+        byte data[] = createData(SEGMENT_SIZE * 10 + 123);
+        ArrayStream in = new ArrayStream(data, 0, 3, 0, false);
+
+        assertTrue(Arrays.equals(readAll(in), data));
+        assertEquals(in.nbRequests, 11);
+        assertTrue(in.maxConcurrentReads <= 3, "max concurrent reads: "+in.maxConcurrentReads);
+    }
+
+    /**
+     * Reading must start at the given offset.
+     */
+    @Test
+    public void testOffset() throws IOException {
+        byte data[] = createData(SEGMENT_SIZE * 3);
+        ArrayStream in = new ArrayStream(data, SEGMENT_SIZE / 2 + 7, 2, 0, false);
+
+        assertTrue(Arrays.equals(readAll(in), Arrays.copyOfRange(data, SEGMENT_SIZE / 2 + 7, data.length)));
+    }
+
+    /**
+     * Failed segments must be requested again.
+     */
+    @Test
+    public void testRetry() throws IOException {
+        byte data[] = createData(SEGMENT_SIZE * 4);
+        ArrayStream in = new ArrayStream(data, 0, 2, 1, false);
+        in.failingOffsets.add(0L);
+        in.failingOffsets.add((long)SEGMENT_SIZE * 2);
+
+        assertTrue(Arrays.equals(readAll(in), data));
+        assertEquals(in.nbRequests, 6);
+    }
+
+    /**
+     * The error must be reported once the retries are exhausted.
+     */
+    @Test
+    public void testFailure() throws IOException {
+        ArrayStream in = new ArrayStream(createData(SEGMENT_SIZE * 2), 0, 2, 2, true);
+        try {
+            in.read();
+            fail();
+        } catch(IOException e) {
+            // Expected
+        } finally {
+            in.close();
+        }
+        assertTrue(in.nbRequests >= 3);
+    }
+
+    /**
+     * An empty range must be read as an empty stream.
+     */
+    @Test
+    public void testEmpty() throws IOException {
+        ArrayStream in = new ArrayStream(new byte[10], 10, 2, 0, false);
+        assertEquals(in.read(), -1);
+        assertEquals(in.nbRequests, 0);
+        in.close();
+    }
+
+    /**
+     * The validator of the first segment must be sent along with the requests of the other segments.
+     */
+    @Test
+    public void testValidator() throws IOException {
+        byte data[] = createData(SEGMENT_SIZE * 5);
+        ArrayStream in = new ArrayStream(data, 0, 3, 0, false);
+
+        assertTrue(Arrays.equals(readAll(in), data));
+        assertEquals(in.sentValidators, new HashSet<>(Arrays.asList("1")));
+    }
+
+    /**
+     * A file that changes during the download must fail the stream, without requesting the segments again.
+     */
+    @Test
+    public void testResourceChanged() throws IOException {
+        ArrayStream in = new ArrayStream(createData(SEGMENT_SIZE * 5), 0, 3, 3, false);
+        in.nextVersion = "2";
+        try {
+            byte buffer[] = new byte[10000];
+            while (in.read(buffer) != -1) {
+                // Read the stream until it fails
+            }
+            fail();
+        } catch(SegmentedInputStream.ResourceChangedException e) {
+            // Expected
+        } finally {
+            in.close();
+        }
+        assertTrue(in.nbRequests <= 5, "requests: "+in.nbRequests);
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2010 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io.gzip;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests {@link IndexingGzipInputStream} and the resumption of decompression at the checkpoints of a {@link GzipIndex}.
+ *
+ * @author Oleg Trifonov
+ */
+public class GzipIndexTest {
+
+    private final static int SPAN = 256 * 1024;
+
+    /**
+     * Returns a mix of text-like data, which is compressed with dynamic blocks, and random data, which is stored.
+     */
+    private static byte[] createData(int length) {
+        byte data[] = new byte[length];
+        Random random = new Random(length);
+        String words[] = {"tar ", "gzip ", "index ", "checkpoint ", "window ", "block ", "\n"};
+        int pos = 0;
+        while (pos < length) {
+            if (random.nextInt(50) == 0) {
+                int len = Math.min(length - pos, 100000);
+                for (int i = 0; i < len; i++) {
+                    data[pos++] = (byte)random.nextInt();
+                }
+            } else {
+                byte word[] = words[random.nextInt(words.length)].getBytes();
+                int len = Math.min(length - pos, word.length);
+                System.arraycopy(word, 0, data, pos, len);
+                pos += len;
+            }
+        }
+        return data;
+    }
+
+    private static byte[] gzip(byte data[], int level) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bout) {{ def.setLevel(level); }}) {
+            out.write(data);
+        }
+        return bout.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte buffer[] = new byte[10000];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads the data at the given offset through the index, and checks it against the original data.
+     */
+    private static void assertResumedRead(GzipIndex index, byte gz[], byte data[], long offset) throws IOException {
+        GzipIndex.Checkpoint checkpoint = index.getCheckpoint(offset);
+        assertNotNull(checkpoint);
+        assertTrue(checkpoint.getUncompressedOffset() <= offset);
+
+        InputStream in = new ByteArrayInputStream(gz);
+        in.skip(checkpoint.getCompressedOffset());
+        in = index.getInputStream(in, checkpoint);
+        in.skip(offset - checkpoint.getUncompressedOffset());
+        byte expected[] = Arrays.copyOfRange(data, (int)offset, data.length);
+        assertTrue(Arrays.equals(readAll(in), expected), "resumed at " + checkpoint.getUncompressedOffset() + " for " + offset);
+    }
+
+    /**
+     * The stream must decompress the data like <code>GZIPInputStream</code>, and decompression must be resumable at
+     * every checkpoint.
+     */
+    @Test
+    public void testIndex() throws IOException {
+        for (int level : new int[] {Deflater.BEST_SPEED, Deflater.DEFAULT_COMPRESSION, Deflater.BEST_COMPRESSION}) {
+            byte data[] = createData(8 * 1024 * 1024 + 17);
+            byte gz[] = gzip(data, level);
+
+            IndexingGzipInputStream in = new IndexingGzipInputStream(new ByteArrayInputStream(gz), SPAN);
+            assertTrue(Arrays.equals(readAll(in), data));
+            in.close();
+
+            GzipIndex index = in.getIndex();
+            assertEquals(index.getLength(), data.length);
+            assertTrue(index.getCheckpoints().size() >= 8, "checkpoints: " + index.getCheckpoints().size());
+            long previous = 0;
+            for (GzipIndex.Checkpoint checkpoint : index.getCheckpoints()) {
+                assertTrue(checkpoint.getUncompressedOffset() - previous >= SPAN);
+                previous = checkpoint.getUncompressedOffset();
+                assertResumedRead(index, gz, data, checkpoint.getUncompressedOffset());
+            }
+            assertNull(index.getCheckpoint(SPAN - 1));
+            assertResumedRead(index, gz, data, data.length - 1000);
+        }
+    }
+
+    /**
+     * Concatenated members must be read as one stream, and resuming must carry on into the following members.
+     */
+    @Test
+    public void testMultipleMembers() throws IOException {
+        byte data[] = createData(3 * 1024 * 1024);
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        int third = data.length / 3;
+        bout.write(gzip(Arrays.copyOfRange(data, 0, third), Deflater.DEFAULT_COMPRESSION));
+        bout.write(gzip(Arrays.copyOfRange(data, third, 2 * third), Deflater.DEFAULT_COMPRESSION));
+        bout.write(gzip(Arrays.copyOfRange(data, 2 * third, data.length), Deflater.DEFAULT_COMPRESSION));
+        byte gz[] = bout.toByteArray();
+
+        IndexingGzipInputStream in = new IndexingGzipInputStream(new ByteArrayInputStream(gz), SPAN);
+        assertTrue(Arrays.equals(readAll(in), data));
+        GzipIndex index = in.getIndex();
+        assertResumedRead(index, gz, data, third + 10);
+        assertResumedRead(index, gz, data, 2 * third - 10);
+        assertResumedRead(index, gz, data, data.length - 10);
+    }
+
+    /**
+     * The number of checkpoints must stay within {@link GzipIndex#MAX_CHECKPOINTS}.
+     */
+    @Test
+    public void testMaxCheckpoints() throws IOException {
+        byte data[] = createData(16 * 1024 * 1024);
+        byte gz[] = gzip(data, Deflater.BEST_SPEED);
+
+        IndexingGzipInputStream in = new IndexingGzipInputStream(new ByteArrayInputStream(gz), 0);
+        in.skip(data.length);
+        GzipIndex index = in.getIndex();
+        assertTrue(index.getCheckpoints().size() <= GzipIndex.MAX_CHECKPOINTS);
+        assertTrue(index.getCheckpoints().size() > GzipIndex.MAX_CHECKPOINTS / 2);
+        assertResumedRead(index, gz, data, data.length / 2);
+    }
+
+    /**
+     * An index must read back the way it was written.
+     */
+    @Test
+    public void testSerialization() throws IOException {
+        byte data[] = createData(2 * 1024 * 1024);
+        byte gz[] = gzip(data, Deflater.DEFAULT_COMPRESSION);
+        IndexingGzipInputStream in = new IndexingGzipInputStream(new ByteArrayInputStream(gz), SPAN);
+        readAll(in);
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        in.getIndex().write(new DataOutputStream(bout));
+        GzipIndex index = GzipIndex.read(new DataInputStream(new ByteArrayInputStream(bout.toByteArray())));
+
+        assertEquals(index.getLength(), data.length);
+        assertEquals(index.getCheckpoints().size(), in.getIndex().getCheckpoints().size());
+        assertResumedRead(index, gz, data, data.length / 2);
+    }
+
+    /**
+     * Corrupt data must be reported.
+     */
+    @Test
+    public void testCorruptData() throws IOException {
+        byte data[] = createData(100000);
+        byte gz[] = gzip(data, Deflater.DEFAULT_COMPRESSION);
+
+        // Checksum
+        gz[gz.length - 6] ^= 1;
+        try {
+            readAll(new IndexingGzipInputStream(new ByteArrayInputStream(gz), SPAN));
+            fail();
+        } catch (ZipException e) {
+            // Expected
+        }
+
+        // Truncated
+        try {
+            readAll(new IndexingGzipInputStream(new ByteArrayInputStream(Arrays.copyOf(gz, gz.length / 2)), SPAN));
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+
+        // Not gzip
+        try {
+            new IndexingGzipInputStream(new ByteArrayInputStream(data), SPAN);
+            fail();
+        } catch (ZipException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.mucommander.commons.io.security;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+/**
+ * Measures the throughput of the checksum algorithms supported by the calculate checksum job, from heap arrays and
+ * from a direct buffer, and compares calculating all of them in a single pass with {@link MultiMessageDigest} against
+ * one pass per algorithm.
+ *
+ * <p>Run as a plain application: <code>java com.mucommander.commons.io.security.ChecksumBenchmark</code>
+ */
+public class ChecksumBenchmark {
+
+    private static final String ALGORITHMS[] = {"CRC32", "CRC32C", "Adler32", "MD5", "SHA-1", "SHA-256"};
+
+    private static final int SIZE = 256 * 1024 * 1024;
+
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    private static final int RUNS = 3;
+
+    public static void main(String args[]) throws NoSuchAlgorithmException {
+        MuProvider.registerProvider();
+
+        byte data[] = new byte[CHUNK_SIZE];
+        new Random(0).nextBytes(data);
+        ByteBuffer direct = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        direct.put(data);
+
+        for (int run = 0; run < RUNS; run++) {
+            for (String algorithm : ALGORITHMS) {
+                MultiMessageDigest digest = MultiMessageDigest.getInstance(algorithm);
+                System.out.printf("%-8s heap %7.1f MB/s, direct %7.1f MB/s%n", algorithm,
+                        measure(digest, data, null), measure(digest, null, direct));
+            }
+
+            String selected[] = {"CRC32C", "MD5", "SHA-1", "SHA-256"};
+            long separate = 0;
+            for (String algorithm : selected) {
+                separate += time(MultiMessageDigest.getInstance(algorithm), data, null);
+            }
+            long singlePass = time(MultiMessageDigest.getInstance(selected), data, null);
+            System.out.printf("CRC32C+MD5+SHA-1+SHA-256: one pass per algorithm %6d ms, single pass %6d ms%n%n",
+                    separate / 1000000, singlePass / 1000000);
+        }
+    }
+
+    private static double measure(MultiMessageDigest digest, byte data[], ByteBuffer buffer) {
+        return SIZE / (1024.0 * 1024.0) / (time(digest, data, buffer) / 1e9);
+    }
+
+    private static long time(MultiMessageDigest digest, byte data[], ByteBuffer buffer) {
+        long start = System.nanoTime();
+        for (int i = 0; i < SIZE / CHUNK_SIZE; i++) {
+            if (buffer != null) {
+                buffer.clear();
+                digest.update(buffer);
+            } else {
+                digest.update(data, 0, data.length);
+            }
+        }
+        String checksums[] = digest.digestStrings();
+        if (checksums.length == 0) {
+            System.out.println();
+        }
+        return System.nanoTime() - start;
+    }
+}
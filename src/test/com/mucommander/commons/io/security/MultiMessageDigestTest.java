@@ -0,0 +1,89 @@
+package com.mucommander.commons.io.security;
+
+import com.mucommander.commons.io.ByteUtils;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests {@link MultiMessageDigest} and the {@link CRC32C} checksum.
+ *
+ * @author Oleg Trifonov
+ */
+public class MultiMessageDigestTest {
+
+    private static final String ALGORITHMS[] = {"CRC32C", "MD5", "SHA-1", "SHA-256"};
+
+    @BeforeClass
+    public void registerProvider() {
+        MuProvider.registerProvider();
+    }
+
+    /**
+     * Checks the CRC32C value of the standard check string.
+     */
+    @Test
+    public void testCRC32CCheckValue() {
+        byte data[] = "123456789".getBytes(StandardCharsets.US_ASCII);
+        CRC32C crc = new CRC32C();
+        crc.update(data, 0, data.length);
+        assertEquals(crc.getValue(), 0xE3069283L);
+
+        // Byte per byte updates must give the same value
+        crc.reset();
+        for (byte b : data) {
+            crc.update(b);
+        }
+        assertEquals(crc.getValue(), 0xE3069283L);
+    }
+
+    /**
+     * The checksums calculated in one pass must match the ones calculated by each digest separately.
+     */
+    @Test
+    public void testSinglePass() throws NoSuchAlgorithmException {
+        byte data[] = new byte[1000003];
+        new Random(0).nextBytes(data);
+
+        MultiMessageDigest digest = MultiMessageDigest.getInstance(ALGORITHMS);
+        for (int off = 0; off < data.length; off += 65536) {
+            digest.update(data, off, Math.min(65536, data.length - off));
+        }
+        String checksums[] = digest.digestStrings();
+
+        for (int i = 0; i < ALGORITHMS.length; i++) {
+            assertEquals(checksums[i], ByteUtils.toHexString(MessageDigest.getInstance(ALGORITHMS[i]).digest(data)), ALGORITHMS[i]);
+        }
+
+        // Digests are reset after the checksums have been returned
+        digest.update(data, 0, data.length);
+        assertEquals(digest.digestStrings(), checksums);
+    }
+
+    /**
+     * Direct buffers must give the same checksums as arrays, and be entirely consumed.
+     */
+    @Test
+    public void testDirectBuffer() throws NoSuchAlgorithmException {
+        byte data[] = new byte[300000];
+        new Random(1).nextBytes(data);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data);
+        buffer.flip();
+
+        MultiMessageDigest digest = MultiMessageDigest.getInstance(ALGORITHMS);
+        digest.update(buffer);
+        assertEquals(buffer.remaining(), 0);
+
+        MultiMessageDigest expected = MultiMessageDigest.getInstance(ALGORITHMS);
+        expected.update(data, 0, data.length);
+        assertEquals(digest.digestStrings(), expected.digestStrings());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2017 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.core;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.FileProtocols;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests {@link FolderListingCache}, local folders being cached for the purpose of the tests.
+ */
+public class FolderListingCacheTest {
+
+    private Path folderPath;
+    private AbstractFile folder;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        folderPath = Files.createTempDirectory("FolderListingCacheTest");
+        for (String name : new String[] {"a", "b", "c"}) {
+            Files.createFile(folderPath.resolve(name));
+        }
+        folder = FileFactory.getFile(folderPath.toString());
+        FolderListingCache.setLimits(FileProtocols.FILE, 60 * 1000, 1024 * 1024);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        FolderListingCache.setLimits(FileProtocols.FILE, 0, 0);
+        folder.deleteRecursively();
+    }
+
+    @Test
+    public void testGetAndPut() throws IOException {
+        assertTrue(FolderListingCache.isCacheable(folder));
+        assertNull(FolderListingCache.get(folder));
+
+        AbstractFile children[] = folder.ls();
+        FolderListingCache.put(folder, children);
+        assertSame(FolderListingCache.get(folder).getChildren(), children);
+        assertTrue(FolderListingCache.getStatistics().get(0).endsWith("hits=1 misses=1"));
+
+        FolderListingCache.invalidate(folder);
+        assertNull(FolderListingCache.get(folder));
+    }
+
+    @Test
+    public void testDisabledProtocol() throws IOException {
+        FolderListingCache.setLimits(FileProtocols.FILE, 0, 0);
+        assertFalse(FolderListingCache.isCacheable(folder));
+        FolderListingCache.put(folder, folder.ls());
+        assertNull(FolderListingCache.get(folder));
+    }
+
+    @Test
+    public void testExpiration() throws IOException, InterruptedException {
+        FolderListingCache.setLimits(FileProtocols.FILE, 50, 1024 * 1024);
+        FolderListingCache.put(folder, folder.ls());
+        Thread.sleep(100);
+        assertNull(FolderListingCache.get(folder));
+    }
+
+    @Test
+    public void testMemoryBudget() throws IOException {
+        AbstractFile children[] = folder.ls();
+        AbstractFile subfolders[] = new AbstractFile[3];
+        for (int i = 0; i < subfolders.length; i++) {
+            subfolders[i] = folder.getChild("folder" + i);
+            subfolders[i].mkdir();
+        }
+        // Room for two listings of 3 children
+        FolderListingCache.setLimits(FileProtocols.FILE, 60 * 1000, 4096);
+        FolderListingCache.put(subfolders[0], children);
+        FolderListingCache.put(subfolders[1], children);
+        FolderListingCache.get(subfolders[0]);
+        FolderListingCache.put(subfolders[2], children);
+
+        // The least recently used listing has been removed
+        assertSame(FolderListingCache.get(subfolders[0]).getChildren(), children);
+        assertNull(FolderListingCache.get(subfolders[1]));
+        assertSame(FolderListingCache.get(subfolders[2]).getChildren(), children);
+    }
+
+    @Test
+    public void testChangedNames() throws IOException {
+        FolderListingCache.put(folder, folder.ls());
+        FolderListingCache.Listing listing = FolderListingCache.get(folder);
+
+        Files.delete(folderPath.resolve("a"));
+        Files.write(folderPath.resolve("b"), new byte[10]);
+        Files.createFile(folderPath.resolve("d"));
+        Collection<String> changedNames = listing.getChangedNames(folder.ls());
+
+        assertEquals(new HashSet<>(changedNames), new HashSet<>(Arrays.asList("a", "b", "d")));
+    }
+}
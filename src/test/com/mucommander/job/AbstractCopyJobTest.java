@@ -0,0 +1,142 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2017 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.job;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.ui.dialog.file.FileCollisionDialog;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is a TestNG test case for the concurrent transfers of {@link AbstractCopyJob}.
+ */
+public class AbstractCopyJobTest {
+
+    private AbstractFile sourceFolder;
+    private AbstractFile destFolder;
+
+    /**
+     * Copy job whose concurrent transfers are held until {@link #release} is counted down.
+     */
+    private static class BlockingCopyJob extends AbstractCopyJob {
+        private final CountDownLatch transfersStarted;
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        BlockingCopyJob(FileSet files, AbstractFile destFolder) {
+            super(null, null, files, destFolder, null, FileCollisionDialog.OVERWRITE_ACTION);
+            this.transfersStarted = new CountDownLatch(files.size());
+        }
+
+        @Override
+        protected void completeFileTransfer(AbstractFile file) {
+            transfersStarted.countDown();
+            // Ignore the interruptions of the scheduler's shutdown, like a transfer stuck in I/O
+            while (true) {
+                try {
+                    release.await();
+                    return;
+                } catch (InterruptedException e) {
+                    // Keep on waiting
+                }
+            }
+        }
+
+        @Override
+        protected boolean hasFolderChanged(AbstractFile folder) {
+            return false;
+        }
+
+        @Override
+        protected boolean processFile(AbstractFile file, Object recurseParams) {
+            return transferFile(file, destFolder(file), false);
+        }
+
+        AbstractFile destFolder(AbstractFile file) {
+            try {
+                return baseDestFolder.getDirectChild(file.getName());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        AbstractFile tempFolder = FileFactory.getTemporaryFile(getClass().getName(), false);
+        tempFolder.mkdir();
+        sourceFolder = tempFolder.getDirectChild("source");
+        sourceFolder.mkdir();
+        destFolder = tempFolder.getDirectChild("dest");
+        destFolder.mkdir();
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        sourceFolder.getParent().deleteRecursively();
+    }
+
+    private FileSet createSourceFiles(int nbFiles) throws IOException {
+        FileSet files = new FileSet(sourceFolder);
+        for (int i = 0; i < nbFiles; i++) {
+            AbstractFile file = sourceFolder.getDirectChild("file" + i);
+            try (OutputStream out = file.getOutputStream()) {
+                out.write(new byte[] {(byte)i});
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * Asserts that the job stops waiting for its pending transfers once it has been interrupted, even if the
+     * transfers don't return.
+     *
+     * @throws Exception should not happen
+     */
+    @Test(timeOut = 10000)
+    public void testInterruptWithPendingTransfers() throws Exception {
+        FileSet files = createSourceFiles(2);
+        BlockingCopyJob job = new BlockingCopyJob(files, destFolder);
+        job.setConcurrentTransfers(2, 2);
+        try {
+            job.jobStarted();
+            Assert.assertTrue(job.isTransferringConcurrently());
+            for (AbstractFile file : files) {
+                Assert.assertTrue(job.processFile(file, null));
+            }
+            Assert.assertTrue(job.transfersStarted.await(5, TimeUnit.SECONDS));
+
+            job.interrupt();
+            // The job has no thread, this is what interrupt() does once the job is started
+            job.jobStopped();
+
+            job.processPendingFiles();
+        } finally {
+            job.release.countDown();
+        }
+    }
+}
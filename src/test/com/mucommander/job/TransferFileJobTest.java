@@ -0,0 +1,222 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2017 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.job;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.impl.local.LocalFile;
+import com.mucommander.commons.io.ByteCounter;
+import com.mucommander.commons.io.ThroughputLimitInputStream;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class is a TestNG test case for the <code>FileChannel#transferTo</code> copy of local files performed by
+ * {@link TransferFileJob}.
+ */
+public class TransferFileJobTest {
+
+    private final static int CHUNK_SIZE = (int)LocalFile.CHANNEL_TRANSFER_CHUNK_SIZE;
+
+    private AbstractFile tempFolder;
+    private File sourceFile;
+    private AbstractFile destFile;
+
+    private final ByteCounter byteCounter = new ByteCounter();
+    private final ByteCounter skippedByteCounter = new ByteCounter();
+
+    /**
+     * Limiter recording the number of bytes allowed for each chunk.
+     */
+    private static class RecordingLimiter extends ThroughputLimitInputStream {
+        final List<Long> chunks = new ArrayList<>();
+
+        RecordingLimiter(FileChannel channel, long bytesPerSecond) {
+            super(Channels.newInputStream(channel), bytesPerSecond);
+        }
+
+        @Override
+        public long acquire(long len) {
+            long allowed = super.acquire(len);
+            chunks.add(allowed);
+            return allowed;
+        }
+    }
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        tempFolder = FileFactory.getTemporaryFile(getClass().getName(), false);
+        tempFolder.mkdir();
+        sourceFile = new File(tempFolder.getAbsolutePath(), "source");
+        destFile = tempFolder.getChild("dest");
+        byteCounter.reset();
+        skippedByteCounter.reset();
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        tempFolder.deleteRecursively();
+    }
+
+    private byte[] createSourceFile(int size) throws IOException {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        Files.write(sourceFile.toPath(), data);
+        return data;
+    }
+
+    private RecordingLimiter transfer(boolean append, long bytesPerSecond) throws IOException {
+        try (FileChannel in = FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ)) {
+            RecordingLimiter limiter = new RecordingLimiter(in, bytesPerSecond);
+            TransferFileJob.transferLocalFile(in, destFile, append, limiter, byteCounter, skippedByteCounter);
+            return limiter;
+        }
+    }
+
+    private byte[] readDestFile() throws IOException {
+        return Files.readAllBytes(new File(destFile.getAbsolutePath()).toPath());
+    }
+
+    /**
+     * Asserts that a file spanning several chunks is copied entirely, one chunk at a time.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testSeveralChunks() throws IOException {
+        byte[] data = createSourceFile(2 * CHUNK_SIZE + 12345);
+        // Existing contents are overwritten
+        Files.write(new File(destFile.getAbsolutePath()).toPath(), new byte[100]);
+
+        RecordingLimiter limiter = transfer(false, -1);
+
+        Assert.assertTrue(Arrays.equals(readDestFile(), data));
+        Assert.assertEquals(limiter.chunks.size(), 3);
+        Assert.assertEquals(limiter.chunks.get(0).longValue(), CHUNK_SIZE);
+        Assert.assertEquals(limiter.chunks.get(2).longValue(), 12345);
+        Assert.assertEquals(byteCounter.getByteCount(), data.length);
+        Assert.assertEquals(skippedByteCounter.getByteCount(), 0);
+    }
+
+    /**
+     * Asserts that a resumed transfer appends the missing part of the file and accounts for the skipped bytes.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testResume() throws IOException {
+        byte[] data = createSourceFile(2 * CHUNK_SIZE + 12345);
+        int copied = CHUNK_SIZE + 100;
+        Files.write(new File(destFile.getAbsolutePath()).toPath(), Arrays.copyOf(data, copied));
+
+        RecordingLimiter limiter = transfer(true, -1);
+
+        Assert.assertTrue(Arrays.equals(readDestFile(), data));
+        Assert.assertEquals(limiter.chunks.size(), 2);
+        Assert.assertEquals(byteCounter.getByteCount(), data.length);
+        Assert.assertEquals(skippedByteCounter.getByteCount(), copied);
+    }
+
+    /**
+     * Asserts that the byte counters add up over several transfers, as the job's total counters do.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testCounterTotals() throws IOException {
+        createSourceFile(CHUNK_SIZE + 1);
+        transfer(false, -1);
+        Assert.assertEquals(byteCounter.getByteCount(), CHUNK_SIZE + 1);
+
+        createSourceFile(1000);
+        transfer(false, -1);
+        createSourceFile(0);
+        transfer(false, -1);
+        Assert.assertEquals(byteCounter.getByteCount(), CHUNK_SIZE + 1 + 1000);
+        Assert.assertEquals(skippedByteCounter.getByteCount(), 0);
+        Assert.assertEquals(readDestFile().length, 0);
+    }
+
+    /**
+     * Asserts that a limited transfer doesn't exceed the throughput limit.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testThroughputLimit() throws IOException {
+        final int limit = 256 * 1024;
+        byte[] data = createSourceFile(2 * limit + 1);
+
+        long start = System.currentTimeMillis();
+        RecordingLimiter limiter = transfer(false, limit);
+        long elapsed = System.currentTimeMillis() - start;
+
+        Assert.assertTrue(Arrays.equals(readDestFile(), data));
+        Assert.assertEquals(byteCounter.getByteCount(), data.length);
+        // At most 'limit' bytes per second: the transfer spans at least 3 seconds, hence lasts more than 1 second
+        Assert.assertTrue(limiter.chunks.size() >= 3);
+        for (long chunk : limiter.chunks) {
+            Assert.assertTrue(chunk <= limit);
+        }
+        Assert.assertTrue(elapsed >= 1000, "elapsed=" + elapsed);
+    }
+
+    /**
+     * Asserts that the bytes of a concurrent transfer are added to the total counter as they're transferred, and
+     * removed from it when the transfer has to be done again.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testTransferByteCounterCancel() throws IOException {
+        byte[] data = createSourceFile(CHUNK_SIZE + 1000);
+        ByteCounter totalByteCounter = new ByteCounter();
+        ByteCounter totalSkippedByteCounter = new ByteCounter();
+        totalByteCounter.add(500);
+
+        TransferFileJob.TransferByteCounter transferCounter = new TransferFileJob.TransferByteCounter(totalByteCounter);
+        TransferFileJob.TransferByteCounter skippedCounter = new TransferFileJob.TransferByteCounter(totalSkippedByteCounter);
+        Files.write(new File(destFile.getAbsolutePath()).toPath(), Arrays.copyOf(data, 100));
+        try (FileChannel in = FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ)) {
+            TransferFileJob.transferLocalFile(in, destFile, true, new RecordingLimiter(in, -1), transferCounter, skippedCounter);
+        }
+        Assert.assertEquals(transferCounter.getByteCount(), data.length);
+        Assert.assertEquals(totalByteCounter.getByteCount(), 500 + data.length);
+        Assert.assertEquals(totalSkippedByteCounter.getByteCount(), 100);
+
+        // The transfer is retried from the start: only the bytes of the other transfers remain
+        transferCounter.cancel();
+        skippedCounter.cancel();
+        Assert.assertEquals(transferCounter.getByteCount(), 0);
+        Assert.assertEquals(totalByteCounter.getByteCount(), 500);
+        Assert.assertEquals(totalSkippedByteCounter.getByteCount(), 0);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2017 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.job.utils;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is a TestNG test case for {@link TransferScheduler}.
+ */
+public class TransferSchedulerTest {
+
+    private final static int NB_TRANSFERS = 50;
+
+    /**
+     * Asserts that all transfers are run and that the number of transfers running at the same time against a given
+     * location doesn't exceed the limit.
+     *
+     * @throws InterruptedException should not happen
+     */
+    @Test
+    public void testLocationLimit() throws InterruptedException {
+        String tmpDir = System.getProperty("java.io.tmpdir");
+        AbstractFile source = FileFactory.getFile(tmpDir + File.separator + "source");
+        AbstractFile dest = FileFactory.getFile(tmpDir + File.separator + "dest");
+
+        TransferScheduler scheduler = new TransferScheduler("test", 8, 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        try {
+            for (int i = 0; i < NB_TRANSFERS; i++) {
+                Assert.assertTrue(scheduler.submit(() -> {
+                    int nbRunning = running.incrementAndGet();
+                    maxRunning.accumulateAndGet(nbRunning, Math::max);
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException e) {
+                        // Fall through
+                    }
+                    running.decrementAndGet();
+                    completed.incrementAndGet();
+                }, source, dest));
+            }
+
+            Assert.assertTrue(scheduler.awaitCompletion(10000));
+        } finally {
+            scheduler.shutdown();
+        }
+
+        Assert.assertEquals(completed.get(), NB_TRANSFERS);
+        // Both files are local, they share the same location
+        Assert.assertTrue(maxRunning.get() <= 2);
+    }
+
+    /**
+     * Asserts that transfers are rejected once the scheduler has been shut down.
+     *
+     * @throws InterruptedException should not happen
+     */
+    @Test
+    public void testShutdown() throws InterruptedException {
+        AbstractFile file = FileFactory.getFile(System.getProperty("java.io.tmpdir"));
+
+        TransferScheduler scheduler = new TransferScheduler("test", 2, 2);
+        scheduler.shutdown();
+
+        Assert.assertFalse(scheduler.submit(() -> {}, file));
+        Assert.assertTrue(scheduler.awaitCompletion(1000));
+    }
+
+    /**
+     * Asserts that transfers waiting for a worker when the scheduler is shut down are discarded without being left
+     * pending, so that {@link TransferScheduler#awaitCompletion(long)} returns.
+     *
+     * @throws InterruptedException should not happen
+     */
+    @Test
+    public void testShutdownWithQueuedTransfers() throws InterruptedException {
+        AbstractFile file = FileFactory.getFile(System.getProperty("java.io.tmpdir"));
+
+        // A single worker with room for 4 transfers: the first one runs, the others are queued
+        TransferScheduler scheduler = new TransferScheduler(Executors.newSingleThreadExecutor(), 4, 4);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger completed = new AtomicInteger();
+
+        Assert.assertTrue(scheduler.submit(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                // Interrupted by the shutdown
+            }
+            completed.incrementAndGet();
+        }, file));
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(scheduler.submit(completed::incrementAndGet, file));
+        }
+        Assert.assertTrue(started.await(1, TimeUnit.SECONDS));
+        Assert.assertFalse(scheduler.awaitCompletion(10));
+
+        scheduler.shutdown();
+
+        Assert.assertTrue(scheduler.awaitCompletion(1000));
+        // Only the running transfer completed, the queued ones were discarded
+        Assert.assertEquals(completed.get(), 1);
+    }
+}
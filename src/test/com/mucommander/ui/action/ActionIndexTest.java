@@ -0,0 +1,64 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2017 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.ui.action;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests {@link ActionIndex}.
+ *
+ * @author Oleg Trifonov
+ */
+public class ActionIndexTest {
+
+    /**
+     * Indexes the built-in actions and checks that the descriptors read from the index match the actual ones.
+     */
+    @Test
+    public void testWriteRead() throws IOException {
+        List<ActionDescriptor> descriptors = ActionManager.getBuiltinActionDescriptors();
+        StringWriter writer = new StringWriter();
+        ActionIndex.write(descriptors, writer);
+        List<ActionDescriptor> indexed = ActionIndex.read(new StringReader(writer.toString()));
+
+        assertEquals(indexed.size(), descriptors.size());
+        for (int i = 0; i < descriptors.size(); i++) {
+            ActionDescriptor descriptor = descriptors.get(i);
+            ActionDescriptor indexedDescriptor = indexed.get(i);
+            assertEquals(indexedDescriptor.getId(), descriptor.getId());
+            assertEquals(indexedDescriptor.getCategory(), descriptor.getCategory());
+            assertEquals(indexedDescriptor.getDefaultKeyStroke(), descriptor.getDefaultKeyStroke());
+            assertEquals(indexedDescriptor.getDefaultAltKeyStroke(), descriptor.getDefaultAltKeyStroke());
+            assertEquals(indexedDescriptor.isParameterized(), descriptor.isParameterized());
+            // Not indexed, delegated to the actual descriptor
+            assertEquals(indexedDescriptor.getLabelKey(), descriptor.getLabelKey());
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testMalformedIndex() throws IOException {
+        ActionIndex.read(new StringReader("Copy\tFILES\tF5\n"));
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2017 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.ui.main.table;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.impl.local.LocalFile;
+import com.mucommander.ui.main.table.views.BaseFileTableModel;
+import com.mucommander.ui.main.table.views.full.FileTableModel;
+import com.mucommander.utils.text.CustomDateFormat;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests the incremental update of a {@link BaseFileTableModel} with {@link BaseFileTableModel#applyFolderChanges}
+ * and {@link BaseFileTableModel#addFiles}.
+ */
+public class BaseFileTableModelTest {
+
+    private Path folderPath;
+    private LocalFile folder;
+    private FileTableModel model;
+
+    @BeforeClass
+    public void init() {
+        CustomDateFormat.init();
+    }
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        folderPath = Files.createTempDirectory("BaseFileTableModelTest");
+        for (String name : new String[] {"e", "a", "c", "g"}) {
+            Files.createFile(folderPath.resolve(name));
+        }
+        folder = (LocalFile)FileFactory.getFile(folderPath.toString());
+
+        model = new FileTableModel();
+        model.setSortInfo(new SortInfo());
+        model.setCurrentFolder(folder, folder.lsWithAttributes(null));
+        model.sortRows();
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        folder.deleteRecursively();
+    }
+
+    private void applyChanges(String... names) {
+        Collection<String> changedNames = Arrays.asList(names);
+        model.applyFolderChanges(changedNames, folder.lsWithAttributes(changedNames, null));
+    }
+
+    private void assertRows(String... names) {
+        int offset = model.hasParentFolder() ? 1 : 0;
+        assertEquals(model.getFilesCount(), names.length + offset);
+        for (int i = 0; i < names.length; i++) {
+            assertEquals(model.getFileAt(i + offset).getName(), names[i]);
+        }
+    }
+
+    @Test
+    public void testInsertAndRemove() throws IOException {
+        assertRows("a", "c", "e", "g");
+
+        Files.createFile(folderPath.resolve("b"));
+        Files.createFile(folderPath.resolve("h"));
+        Files.delete(folderPath.resolve("e"));
+        applyChanges("b", "e", "h");
+        assertRows("a", "b", "c", "g", "h");
+
+        Files.delete(folderPath.resolve("a"));
+        Files.createFile(folderPath.resolve("0"));
+        applyChanges("a", "0");
+        assertRows("0", "b", "c", "g", "h");
+    }
+
+    @Test
+    public void testMarksArePreserved() throws IOException {
+        int offset = model.hasParentFolder() ? 1 : 0;
+        model.setFileMarked(offset + 1, true);     // c
+        model.setFileMarked(offset + 2, true);     // e
+        model.setFileMarked(offset + 3, true);     // g
+        assertEquals(model.getNbMarkedFiles(), 3);
+
+        // c is modified, e is deleted, d is created
+        Files.write(folderPath.resolve("c"), new byte[10]);
+        Files.delete(folderPath.resolve("e"));
+        Files.createFile(folderPath.resolve("d"));
+        applyChanges("c", "d", "e");
+
+        assertRows("a", "c", "d", "g");
+        assertFalse(model.isFileMarked(offset));
+        assertTrue(model.isFileMarked(offset + 1));
+        assertFalse(model.isFileMarked(offset + 2));
+        assertTrue(model.isFileMarked(offset + 3));
+        assertEquals(model.getNbMarkedFiles(), 2);
+        assertEquals(model.getTotalMarkedSize(), 10);
+        assertEquals(model.getFileAt(offset + 1).getSize(), 10);
+    }
+
+    @Test
+    public void testAddFiles() throws IOException {
+        int offset = model.hasParentFolder() ? 1 : 0;
+        model.setFileMarked(offset + 1, true);     // c
+
+        for (String name : new String[] {"f", "b", "0", "h"}) {
+            Files.createFile(folderPath.resolve(name));
+        }
+        model.addFiles(folder.lsWithAttributes(Arrays.asList("f", "b"), null));
+        assertRows("a", "b", "c", "e", "f", "g");
+        model.addFiles(folder.lsWithAttributes(Arrays.asList("0", "h"), null));
+        assertRows("0", "a", "b", "c", "e", "f", "g", "h");
+
+        assertEquals(model.getNbMarkedFiles(), 1);
+        assertTrue(model.isFileMarked(offset + 3));
+        for (int row = 0; row < model.getRowCount(); row++) {
+            model.getValueAt(row, Column.NAME.ordinal());
+        }
+    }
+}
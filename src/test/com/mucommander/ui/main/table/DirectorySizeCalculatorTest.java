@@ -0,0 +1,96 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2017 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.ui.main.table;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests {@link DirectorySizeCalculator} on a local directory tree.
+ */
+public class DirectorySizeCalculatorTest {
+
+    private Path rootPath;
+    private AbstractFile root;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        DirectorySizeCalculator.clearCache();
+        rootPath = Files.createTempDirectory("DirectorySizeCalculatorTest");
+        Files.write(rootPath.resolve("a"), new byte[10]);
+        for (int i = 0; i < 5; i++) {
+            Path folder = Files.createDirectories(rootPath.resolve("folder" + i).resolve("sub"));
+            Files.write(folder.resolve("b"), new byte[100]);
+            Files.write(folder.getParent().resolve("c"), new byte[1000]);
+        }
+        root = FileFactory.getFile(rootPath.toString());
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        root.deleteRecursively();
+    }
+
+    private long calculateSize(AtomicLong progress) throws ExecutionException, InterruptedException {
+        return DirectorySizeCalculator.submit(root, progress, () -> false).get();
+    }
+
+    @Test
+    public void testSize() throws ExecutionException, InterruptedException {
+        AtomicLong progress = new AtomicLong();
+        assertEquals(calculateSize(progress), 10 + 5 * 1100);
+        assertEquals(progress.get(), 10 + 5 * 1100);
+    }
+
+    @Test
+    public void testCacheInvalidatedByDate() throws IOException, ExecutionException, InterruptedException {
+        assertEquals(calculateSize(new AtomicLong()), 10 + 5 * 1100);
+
+        // A file modified in place doesn't change the date of its directory, the cached size is used
+        Path sub = rootPath.resolve("folder0").resolve("sub");
+        FileTime date = Files.getLastModifiedTime(sub);
+        Files.write(sub.resolve("b"), new byte[200]);
+        Files.setLastModifiedTime(sub, date);
+        assertEquals(calculateSize(new AtomicLong()), 10 + 5 * 1100);
+
+        // The directory is listed again once its date has changed
+        Files.setLastModifiedTime(sub, FileTime.fromMillis(date.toMillis() + 2000));
+        assertEquals(calculateSize(new AtomicLong()), 10 + 5 * 1100 + 100);
+
+        Files.write(sub.resolve("d"), new byte[5]);
+        Files.setLastModifiedTime(sub, FileTime.fromMillis(date.toMillis() + 4000));
+        assertEquals(calculateSize(new AtomicLong()), 10 + 5 * 1100 + 105);
+    }
+
+    @Test
+    public void testCancel() throws ExecutionException, InterruptedException {
+        assertEquals((long)DirectorySizeCalculator.submit(root, new AtomicLong(), () -> true).get(), 0);
+    }
+}
@@ -0,0 +1,130 @@
+package com.sshtools.sftp;
+
+import com.sshtools.util.UnsignedInteger32;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A stand-in for an SFTP server holding a single file in memory. Each response becomes available a fixed round-trip
+ * time after its request was posted, the way responses come back from a remote server, so that the time taken by a
+ * transfer depends on the number of outstanding requests.
+ *
+ * @author Oleg Trifonov
+ */
+class MemorySftpChannel implements SftpPipelineChannel {
+
+    /** Simulated round-trip time in nanoseconds */
+    private final long rttNanos;
+
+    /** Maximum number of bytes returned by a read request, like servers which cap the size of reads */
+    private final int maxReadLength;
+
+    byte data[];
+    int length;
+
+    private final Map<Long, Response> responses = new HashMap<>();
+    private long nextId;
+
+    int nbRequests;
+    int maxOutstanding;
+    boolean closed;
+    /** Offset at which write requests fail, <code>-1</code> for none */
+    long failingWriteOffset = -1;
+
+    MemorySftpChannel(byte data[], long rttMillis, int maxReadLength) {
+        this.data = data.clone();
+        this.length = data.length;
+        this.rttNanos = rttMillis * 1000000;
+        this.maxReadLength = maxReadLength;
+    }
+
+    byte[] getData() {
+        return Arrays.copyOf(data, length);
+    }
+
+    private UnsignedInteger32 post(Response response) {
+        nbRequests++;
+        response.due = System.nanoTime() + rttNanos;
+        long id = nextId++;
+        responses.put(id, response);
+        maxOutstanding = Math.max(maxOutstanding, responses.size());
+        return new UnsignedInteger32(id);
+    }
+
+    private Response getResponse(UnsignedInteger32 requestId) throws IOException {
+        Response response = responses.remove(requestId.longValue());
+        if (response == null) {
+            throw new IOException("Unknown request " + requestId);
+        }
+        long wait = response.due - System.nanoTime();
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait / 1000000, (int)(wait % 1000000));
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+        return response;
+    }
+
+    @Override
+    public UnsignedInteger32 postReadRequest(long offset, int len) {
+        Response response = new Response();
+        // The data is read when the request is received, as by a real server
+        if (offset < length) {
+            int n = (int)Math.min(Math.min(len, maxReadLength), length - offset);
+            response.data = Arrays.copyOfRange(data, (int)offset, (int)offset + n);
+        }
+        return post(response);
+    }
+
+    @Override
+    public int getReadResponse(UnsignedInteger32 requestId, byte b[], int off) throws IOException {
+        Response response = getResponse(requestId);
+        if (response.data == null) {
+            return -1;
+        }
+        System.arraycopy(response.data, 0, b, off, response.data.length);
+        return response.data.length;
+    }
+
+    @Override
+    public UnsignedInteger32 postWriteRequest(long offset, byte b[], int off, int len) {
+        Response response = new Response();
+        if (offset == failingWriteOffset) {
+            response.error = "Failure";
+        } else {
+            if (offset + len > data.length) {
+                data = Arrays.copyOf(data, (int)Math.max(offset + len, data.length * 2L));
+            }
+            System.arraycopy(b, off, data, (int)offset, len);
+            length = (int)Math.max(length, offset + len);
+        }
+        return post(response);
+    }
+
+    @Override
+    public void getWriteResponse(UnsignedInteger32 requestId) throws IOException {
+        Response response = getResponse(requestId);
+        if (response.error != null) {
+            throw new IOException(response.error);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+
+    private static class Response {
+        private long due;
+        /** Data of a read response, <code>null</code> for end of file */
+        private byte data[];
+        /** Error of a write response, <code>null</code> for success */
+        private String error;
+    }
+}
@@ -0,0 +1,50 @@
+package com.sshtools.sftp;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Measures the throughput of {@link SftpPipelinedInputStream} and {@link SftpPipelinedOutputStream} for several
+ * window sizes against an in-memory stand-in for an SFTP server with a simulated round-trip time of 100 ms. A window
+ * of 1 waits for every block before requesting the next one, 100 is the fixed window of J2SSH's own streams.
+ *
+ * <p>Run as a plain application: <code>java com.sshtools.sftp.SftpPipelineBenchmark</code>
+ */
+public class SftpPipelineBenchmark {
+
+    private static final int RTT = 100;
+
+    private static final int BLOCK_SIZE = 32 * 1024;
+
+    private static final int WINDOWS[] = {1, 16, 100, 128, 256};
+
+    public static void main(String args[]) throws IOException {
+        byte data[] = new byte[32 * 1024 * 1024];
+        new Random(0).nextBytes(data);
+        byte buffer[] = new byte[64 * 1024];
+
+        for (int window : WINDOWS) {
+            // Reading 32 MB one block per round-trip takes almost two minutes, read less with small windows
+            int size = Math.min(data.length, BLOCK_SIZE * window * 20);
+
+            MemorySftpChannel channel = new MemorySftpChannel(new byte[0], RTT, Integer.MAX_VALUE);
+            long start = System.nanoTime();
+            try (SftpPipelinedOutputStream out = new SftpPipelinedOutputStream(channel, 0, BLOCK_SIZE, window)) {
+                for (int pos = 0; pos < size; pos += buffer.length) {
+                    out.write(data, pos, Math.min(buffer.length, size - pos));
+                }
+            }
+            double write = size / (1024.0 * 1024.0) / ((System.nanoTime() - start) / 1e9);
+
+            start = System.nanoTime();
+            try (SftpPipelinedInputStream in = new SftpPipelinedInputStream(channel, 0, BLOCK_SIZE, window)) {
+                while (in.read(buffer) != -1) {
+                }
+            }
+            double read = size / (1024.0 * 1024.0) / ((System.nanoTime() - start) / 1e9);
+
+            System.out.printf("window %3d: read %7.1f MB/s, write %7.1f MB/s (%d KB blocks, %d ms RTT)%n",
+                    window, read, write, BLOCK_SIZE / 1024, RTT);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.sshtools.sftp;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests {@link SftpPipelinedInputStream} and {@link SftpPipelinedOutputStream} against an in-memory stand-in for an
+ * SFTP server.
+ *
+ * @author Oleg Trifonov
+ */
+public class SftpPipelinedStreamTest {
+
+    private final static int BLOCK_SIZE = 32 * 1024;
+
+    private static byte[] createData(int length) {
+        byte data[] = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] readAll(SftpPipelinedInputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // Mix single byte and array reads
+        int b = in.read();
+        if (b != -1) {
+            out.write(b);
+            byte buffer[] = new byte[10000];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Blocks must be returned in file order, with no more than <code>window</code> requests outstanding.
+     */
+    @Test
+    public void testRead() throws IOException {
+        byte data[] = createData(BLOCK_SIZE * 40 + 123);
+        MemorySftpChannel channel = new MemorySftpChannel(data, 0, Integer.MAX_VALUE);
+        SftpPipelinedInputStream in = new SftpPipelinedInputStream(channel, 0, BLOCK_SIZE, 16);
+
+        assertTrue(Arrays.equals(readAll(in), data));
+        assertEquals(in.getPosition(), data.length);
+        assertTrue(channel.maxOutstanding <= 16, "max outstanding: " + channel.maxOutstanding);
+        in.close();
+        assertTrue(channel.closed);
+    }
+
+    /**
+     * Reading must start at the given offset.
+     */
+    @Test
+    public void testOffset() throws IOException {
+        byte data[] = createData(BLOCK_SIZE * 3);
+        SftpPipelinedInputStream in = new SftpPipelinedInputStream(new MemorySftpChannel(data, 0, Integer.MAX_VALUE), 1000, BLOCK_SIZE, 4);
+
+        assertTrue(Arrays.equals(readAll(in), Arrays.copyOfRange(data, 1000, data.length)));
+        in.close();
+    }
+
+    /**
+     * Servers returning less data than asked must not leave holes in the stream.
+     */
+    @Test
+    public void testShortReads() throws IOException {
+        byte data[] = createData(BLOCK_SIZE * 10 + 7);
+        SftpPipelinedInputStream in = new SftpPipelinedInputStream(new MemorySftpChannel(data, 0, 10000), 0, BLOCK_SIZE, 8);
+
+        assertTrue(Arrays.equals(readAll(in), data));
+        in.close();
+    }
+
+    /**
+     * An empty file must be read as an empty stream.
+     */
+    @Test
+    public void testEmpty() throws IOException {
+        SftpPipelinedInputStream in = new SftpPipelinedInputStream(new MemorySftpChannel(new byte[0], 0, Integer.MAX_VALUE), 0, BLOCK_SIZE, 8);
+        assertEquals(in.read(), -1);
+        assertEquals(in.read(new byte[10], 0, 10), -1);
+        in.close();
+    }
+
+    /**
+     * Data read after a seek must come from the new position, not from the requests outstanding before the seek.
+     */
+    @Test
+    public void testSeek() throws IOException {
+        byte data[] = createData(BLOCK_SIZE * 20);
+        MemorySftpChannel channel = new MemorySftpChannel(data, 0, Integer.MAX_VALUE);
+        SftpPipelinedInputStream in = new SftpPipelinedInputStream(channel, 0, BLOCK_SIZE, 8);
+        byte b[] = new byte[100];
+
+        in.read(b);
+        // Within the current block
+        in.setPosition(10);
+        assertEquals(in.read(), data[10] & 0xFF);
+        // Far ahead, then back to the start
+        for (long position : new long[] {BLOCK_SIZE * 15 + 5, 3, BLOCK_SIZE * 2 - 1, data.length - 1}) {
+            in.setPosition(position);
+            assertEquals(in.getPosition(), position);
+            assertEquals(in.read(), data[(int)position] & 0xFF, "at " + position);
+        }
+        assertEquals(in.read(), -1);
+        // Back from the end of the file
+        in.setPosition(BLOCK_SIZE);
+        assertEquals(in.read(), data[BLOCK_SIZE] & 0xFF);
+        in.close();
+    }
+
+    /**
+     * Requests must be pipelined: reading n blocks must take far less than n round-trips.
+     */
+    @Test
+    public void testPipelining() throws IOException {
+        byte data[] = createData(BLOCK_SIZE * 64);
+        SftpPipelinedInputStream in = new SftpPipelinedInputStream(new MemorySftpChannel(data, 20, Integer.MAX_VALUE), 0, BLOCK_SIZE, 16);
+
+        long start = System.currentTimeMillis();
+        assertTrue(Arrays.equals(readAll(in), data));
+        long elapsed = System.currentTimeMillis() - start;
+        in.close();
+        // Sequential requests would take 64 round-trips
+        assertTrue(elapsed < 20 * 32, "elapsed: " + elapsed + "ms");
+    }
+
+    /**
+     * Written data must end up at the right offsets, with no more than <code>window</code> requests outstanding.
+     */
+    @Test
+    public void testWrite() throws IOException {
+        byte data[] = createData(BLOCK_SIZE * 30 + 99);
+        MemorySftpChannel channel = new MemorySftpChannel(new byte[0], 0, Integer.MAX_VALUE);
+        SftpPipelinedOutputStream out = new SftpPipelinedOutputStream(channel, 0, BLOCK_SIZE, 4);
+
+        // Mix single bytes, small writes and writes larger than a block
+        out.write(data[0]);
+        int pos = 1;
+        int sizes[] = {10, 5000, BLOCK_SIZE * 3 + 17, BLOCK_SIZE, 1};
+        for (int i = 0; pos < data.length; i++) {
+            int n = Math.min(sizes[i % sizes.length], data.length - pos);
+            out.write(data, pos, n);
+            pos += n;
+        }
+        out.close();
+
+        assertTrue(Arrays.equals(channel.getData(), data));
+        assertTrue(channel.maxOutstanding <= 4, "max outstanding: " + channel.maxOutstanding);
+        assertTrue(channel.closed);
+    }
+
+    /**
+     * Appending must write after the existing data.
+     */
+    @Test
+    public void testAppend() throws IOException {
+        byte existing[] = createData(1000);
+        byte data[] = createData(BLOCK_SIZE * 2);
+        MemorySftpChannel channel = new MemorySftpChannel(existing, 0, Integer.MAX_VALUE);
+        try (SftpPipelinedOutputStream out = new SftpPipelinedOutputStream(channel, existing.length, BLOCK_SIZE, 4)) {
+            out.write(data);
+        }
+
+        byte expected[] = Arrays.copyOf(existing, existing.length + data.length);
+        System.arraycopy(data, 0, expected, existing.length, data.length);
+        assertTrue(Arrays.equals(channel.getData(), expected));
+    }
+
+    /**
+     * A block the server failed to write must be reported, and the file handle closed.
+     */
+    @Test
+    public void testWriteFailure() {
+        MemorySftpChannel channel = new MemorySftpChannel(new byte[0], 0, Integer.MAX_VALUE);
+        channel.failingWriteOffset = BLOCK_SIZE * 2;
+        SftpPipelinedOutputStream out = new SftpPipelinedOutputStream(channel, 0, BLOCK_SIZE, 8);
+        try {
+            out.write(createData(BLOCK_SIZE * 4));
+            out.close();
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+        assertTrue(channel.closed);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2017 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ru.trolsoft.utils.search;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * This class is a TestNG test case for {@link BlockMatcher} implementations and block search in {@link SearchUtils}.
+ */
+public class BlockMatcherTest {
+
+    private static byte[] randomData(int size, long seed) {
+        byte[] data = new byte[size];
+        Random random = new Random(seed);
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte)('a' + random.nextInt(4));
+        }
+        return data;
+    }
+
+    private static int naiveIndexOf(byte[] data, byte[] pattern) {
+        outer:
+        for (int i = 0; i + pattern.length <= data.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    @Test
+    public void testHorspool() {
+        byte[] data = randomData(10000, 1);
+        for (int len = 1; len < 12; len++) {
+            for (int start = 0; start < 9000; start += 997) {
+                byte[] pattern = new byte[len];
+                System.arraycopy(data, start, pattern, 0, len);
+                int expected = naiveIndexOf(data, pattern);
+                Assert.assertEquals(new HorspoolMatcher(pattern).indexOf(data, 0, data.length), expected);
+                Assert.assertEquals(new HorspoolMatcher(pattern).indexOf(ByteBuffer.wrap(data), 0, data.length), expected);
+                Assert.assertEquals(new AhoCorasickMatcher(new byte[][] {pattern}).indexOf(data, 0, data.length), expected);
+            }
+        }
+        Assert.assertEquals(new HorspoolMatcher("xyz".getBytes()).indexOf(data, 0, data.length), -1);
+    }
+
+    @Test
+    public void testDirectBuffer() {
+        byte[] data = "The quick brown fox jumps over the lazy dog".getBytes();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data);
+        Assert.assertEquals(new HorspoolMatcher("lazy".getBytes()).indexOf(buffer, 0, data.length), 35);
+        Assert.assertEquals(new HorspoolMatcher("lazy".getBytes()).indexOf(buffer, 0, 38), -1);
+        Assert.assertEquals(new AhoCorasickMatcher(new byte[][] {"dog".getBytes(), "fox".getBytes()}).indexOf(buffer, 0, data.length), 16);
+    }
+
+    @Test
+    public void testMultiplePatterns() {
+        byte[] data = "ushers".getBytes();
+        AhoCorasickMatcher matcher = new AhoCorasickMatcher(new byte[][] {"he".getBytes(), "she".getBytes(), "his".getBytes(), "hers".getBytes()});
+        Assert.assertEquals(matcher.indexOf(data, 0, data.length), 1);
+        Assert.assertEquals(matcher.indexOf(data, 2, data.length), 2);
+        Assert.assertEquals(matcher.indexOf(data, 3, data.length), -1);
+        Assert.assertEquals(matcher.maxLength(), 4);
+    }
+
+    @Test
+    public void testCaseInsensitive() throws Exception {
+        byte[] data = "Some TEXT in a FiLe".getBytes("UTF-8");
+        Assert.assertEquals(new StringCaseInsensitiveSearchPattern("file", "UTF-8").createMatcher().indexOf(data, 0, data.length), 15);
+        Assert.assertEquals(new StringCaseInsensitiveSearchPattern("text", "UTF-8").createMatcher().indexOf(data, 0, data.length), 5);
+        Assert.assertEquals(new StringCaseSensitiveSearchPattern("text", "UTF-8").createMatcher().indexOf(data, 0, data.length), -1);
+        Assert.assertEquals(new AhoCorasickMatcher(new byte[][] {"tExT".getBytes()}, true).indexOf(data, 0, data.length), 5);
+
+        byte[] cyrillic = "Привет, Мир".getBytes("UTF-8");
+        int expected = naiveIndexOf(cyrillic, "Мир".getBytes("UTF-8"));
+        Assert.assertEquals(new StringCaseInsensitiveSearchPattern("мИР", "UTF-8").createMatcher().indexOf(cyrillic, 0, cyrillic.length), expected);
+    }
+
+    @Test
+    public void testStreamBlockBoundaries() throws IOException {
+        byte[] data = randomData(300000, 2);
+        for (int start : new int[] {0, 65530, 65535, 65536, 131070, 299990}) {
+            byte[] pattern = new byte[10];
+            System.arraycopy(data, start, pattern, 0, pattern.length);
+            long expected = naiveIndexOf(data, pattern);
+            Assert.assertEquals(SearchUtils.indexOf(new ByteArrayInputStream(data), new HorspoolMatcher(pattern)), expected);
+        }
+        Assert.assertEquals(SearchUtils.indexOf(new ByteArrayInputStream(data), new HorspoolMatcher("xyz".getBytes())), -1);
+    }
+
+    @Test
+    public void testMappedFile() throws IOException {
+        byte[] data = randomData(100000, 3);
+        File file = File.createTempFile("search", ".bin");
+        try {
+            Files.write(file.toPath(), data);
+            byte[] pattern = new byte[16];
+            System.arraycopy(data, 99984, pattern, 0, pattern.length);
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                Assert.assertEquals(SearchUtils.indexOf(channel, new HorspoolMatcher(pattern)), naiveIndexOf(data, pattern));
+                Assert.assertEquals(SearchUtils.indexOf(channel, new HorspoolMatcher("xyz".getBytes())), -1);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testMappedWindowBoundaries() throws IOException {
+        final int windowSize = 4096;
+        byte[] data = randomData(5 * windowSize, 4);
+        File file = File.createTempFile("search", ".bin");
+        try {
+            Files.write(file.toPath(), data);
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                // Occurrences ending right before, straddling and starting right after the end of the first windows
+                for (int start : new int[] {windowSize - 16, windowSize - 8, windowSize - 1, windowSize,
+                        2 * windowSize - 30, 2 * windowSize - 20, 3 * windowSize - 10, data.length - 16}) {
+                    byte[] pattern = new byte[16];
+                    System.arraycopy(data, start, pattern, 0, pattern.length);
+                    long expected = naiveIndexOf(data, pattern);
+                    Assert.assertEquals(SearchUtils.indexOf(channel, new HorspoolMatcher(pattern), windowSize), expected);
+                    Assert.assertEquals(SearchUtils.indexOf(channel, new AhoCorasickMatcher(new byte[][] {pattern}), windowSize), expected);
+                }
+                Assert.assertEquals(SearchUtils.indexOf(channel, new HorspoolMatcher("xyz".getBytes()), windowSize), -1);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
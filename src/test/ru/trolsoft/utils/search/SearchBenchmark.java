@@ -0,0 +1,68 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/en/soft/trolcommander
+ * Copyright (C) 2013-2017 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ru.trolsoft.utils.search;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+
+/**
+ * Compares the per-byte KMP search of {@link SearchUtils#indexOf(SearchSourceStream, SearchPattern)} with the block
+ * search of {@link SearchUtils#indexOf(java.io.InputStream, BlockMatcher)} on in-memory data without occurrences.
+ *
+ * <p>Run as a plain application: <code>java ru.trolsoft.utils.search.SearchBenchmark [size in MB]</code>
+ */
+public class SearchBenchmark {
+
+    private static final int ITERATIONS = 5;
+
+    public static void main(String args[]) throws Exception {
+        int size = (args.length > 0 ? Integer.parseInt(args[0]) : 64) * 1024 * 1024;
+        byte[] data = new byte[size];
+        Random random = new Random(0);
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte)(' ' + random.nextInt(64));
+        }
+        SearchPattern[] patterns = {
+                new StringCaseSensitiveSearchPattern("éneedle", "UTF-8"),
+                new StringCaseInsensitiveSearchPattern("éneedle", "UTF-8"),
+                new BytesSearchPattern(new byte[] {(byte)0xca, (byte)0xfe, (byte)0xba, (byte)0xbe})
+        };
+        for (SearchPattern pattern : patterns) {
+            String name = pattern.getClass().getSimpleName();
+            BlockMatcher matcher = pattern.createMatcher();
+            for (int i = 0; i < ITERATIONS; i++) {
+                long time = System.nanoTime();
+                try (SearchSourceStream source = new InputStreamSource(new ByteArrayInputStream(data))) {
+                    SearchUtils.indexOf(source, pattern);
+                }
+                long kmpTime = System.nanoTime() - time;
+
+                time = System.nanoTime();
+                SearchUtils.indexOf(new ByteArrayInputStream(data), matcher);
+                long blockTime = System.nanoTime() - time;
+
+                System.out.printf("%-36s kmp: %8.1f MB/s   %s: %8.1f MB/s%n", name,
+                        mbPerSecond(size, kmpTime), matcher.getClass().getSimpleName(), mbPerSecond(size, blockTime));
+            }
+        }
+    }
+
+    private static double mbPerSecond(long bytes, long nanos) {
+        return bytes / (1024.0 * 1024.0) / (nanos / 1e9);
+    }
+}